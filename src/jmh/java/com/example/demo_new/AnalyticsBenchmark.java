@@ -0,0 +1,115 @@
+package com.example.demo_new;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dashboard queries over a year of sales: 100 cinemas x 5 screenings a day (about 180k screenings) with
+ * five bookings each (about 900k bookings). The top 10 movies by revenue over the last 30 days and one
+ * city's daily series over the year, read from sales_rollups against the GROUP BY over raw bookings they
+ * replace; plus one full rebuild of the rollups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AnalyticsBenchmark {
+    private static final LocalDate TODAY = LocalDate.now(ZoneOffset.UTC);
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start();
+        database.seed(1000);
+        try (Connection conn = database.dataSource().getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO screenings (movie_id, cinema_id, hall, starts_at, seat_rows, seats_per_row) "
+                    + "SELECT 1 + (d * 7 + c * 13 + h) % 1000, c, 'Hall ' || h, "
+                    + "date_trunc('day', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' - make_interval(days => d, hours => -10 - 3 * h), 10, 20 "
+                    + "FROM generate_series(0, 364) d, generate_series(1, 100) c, generate_series(1, 5) h");
+            stmt.execute("INSERT INTO bookings (screening_id, viewer_id, seats, total_price) "
+                    + "SELECT s.id, 1 + (s.id * 7 + b) % 1000, ARRAY[b * 2 + 1, b * 2 + 2], 2 * m.price "
+                    + "FROM screenings s JOIN movies m ON m.id = s.movie_id, generate_series(0, 4) b");
+            stmt.execute("ANALYZE screenings, bookings");
+        }
+        database.db().rebuildSalesRollups(ZoneOffset.UTC);
+        try (Connection conn = database.dataSource().getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE sales_rollups");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public List<SalesTotal> topMoviesRollup() {
+        return database.db().findTopSales(SalesRollups.MOVIE, TODAY.minusDays(29), TODAY, "revenue", 10);
+    }
+
+    @Benchmark
+    public List<SalesTotal> topMoviesRaw() throws SQLException {
+        String sql = "SELECT s.movie_id::text, sum(cardinality(b.seats)), sum(b.total_price), 0 "
+                + "FROM bookings b JOIN screenings s ON s.id = b.screening_id "
+                + "WHERE (s.starts_at AT TIME ZONE 'UTC')::date BETWEEN ? AND ? "
+                + "GROUP BY s.movie_id ORDER BY sum(b.total_price) DESC LIMIT 10";
+        return totals(sql, TODAY.minusDays(29), TODAY);
+    }
+
+    @Benchmark
+    public List<SalesPoint> citySeriesRollup() {
+        return database.db().findSalesSeries(SalesRollups.CITY, "City 7", TODAY.minusDays(364), TODAY, "day");
+    }
+
+    @Benchmark
+    public List<SalesPoint> citySeriesRaw() throws SQLException {
+        String sql = "SELECT (s.starts_at AT TIME ZONE 'UTC')::date AS day, sum(cardinality(b.seats)), sum(b.total_price) "
+                + "FROM bookings b JOIN screenings s ON s.id = b.screening_id JOIN cinemas c ON c.id = s.cinema_id "
+                + "WHERE c.city = 'City 7' AND (s.starts_at AT TIME ZONE 'UTC')::date BETWEEN ? AND ? "
+                + "GROUP BY day ORDER BY day";
+        try (Connection conn = database.dataSource().getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setObject(1, TODAY.minusDays(364));
+            ps.setObject(2, TODAY);
+            List<SalesPoint> points = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) points.add(new SalesPoint(rs.getObject(1, LocalDate.class), rs.getLong(2), rs.getDouble(3), 0));
+            }
+            return points;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public int rebuild() {
+        return database.db().rebuildSalesRollups(ZoneOffset.UTC);
+    }
+
+    private List<SalesTotal> totals(String sql, LocalDate from, LocalDate to) throws SQLException {
+        try (Connection conn = database.dataSource().getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setObject(1, from);
+            ps.setObject(2, to);
+            List<SalesTotal> totals = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) totals.add(new SalesTotal(rs.getString(1), rs.getLong(2), rs.getDouble(3), rs.getLong(4)));
+            }
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo_new;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Database behind the benchmarks: an embedded PostgreSQL started in-process by default,
+ * or an existing server when -Dbench.jdbcUrl (plus bench.user / bench.password) is given.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+    private final EmbeddedPostgres embedded;
+    private final HikariDataSource dataSource;
+    private final DBmanager db;
+
+    private BenchmarkDatabase(EmbeddedPostgres embedded, HikariDataSource dataSource) {
+        this.embedded = embedded;
+        this.dataSource = dataSource;
+        this.db = new DBmanager(dataSource);
+    }
+
+    static BenchmarkDatabase start() throws IOException {
+        String url = System.getProperty("bench.jdbcUrl");
+        EmbeddedPostgres embedded = null;
+        HikariDataSource ds = new HikariDataSource();
+        if (url == null) {
+            embedded = EmbeddedPostgres.builder().start();
+            ds.setJdbcUrl(embedded.getJdbcUrl("postgres", "postgres"));
+            ds.setUsername("postgres");
+        } else {
+            ds.setJdbcUrl(url);
+            ds.setUsername(System.getProperty("bench.user", "postgres"));
+            ds.setPassword(System.getProperty("bench.password", ""));
+        }
+        ds.setMaximumPoolSize(Integer.parseInt(System.getProperty("bench.poolSize", "16")));
+        BenchmarkDatabase bench = new BenchmarkDatabase(embedded, ds);
+        bench.db.setupDatabase();
+        return bench;
+    }
+
+    DBmanager db() { return db; }
+
+    HikariDataSource dataSource() { return dataSource; }
+
+    /** Empties all tables and fills each with the given number of generated rows. */
+    void seed(int rows) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("TRUNCATE movies, viewers, cinemas RESTART IDENTITY CASCADE");
+            insertSeries(conn, "INSERT INTO movies (title, description, duration, age_restriction, price) "
+                    + "SELECT 'Movie ' || g, 'Generated description for movie number ' || g, 80 + g % 100, (g % 5) * 4, 1000 + (g % 50) * 100 "
+                    + "FROM generate_series(1, ?) g", rows);
+            insertSeries(conn, "INSERT INTO viewers (full_name, age, email) "
+                    + "SELECT 'Viewer ' || g, 10 + g % 60, 'viewer' || g || '@example.com' FROM generate_series(1, ?) g", rows);
+            insertSeries(conn, "INSERT INTO cinemas (name, city, address) "
+                    + "SELECT 'Cinema ' || g, 'City ' || (g % 50), 'Street ' || g FROM generate_series(1, ?) g", rows);
+            stmt.execute("ANALYZE movies, viewers, cinemas");
+        }
+    }
+
+    private static void insertSeries(Connection conn, String sql, int rows) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, rows);
+            ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataSource.close();
+        if (embedded != null) embedded.close();
+    }
+}
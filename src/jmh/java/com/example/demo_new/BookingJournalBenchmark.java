@@ -0,0 +1,88 @@
+package com.example.demo_new;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Confirmed bookings per second from 16 buyers: {@code path=jdbc} is DBmanager.createBooking (one
+ * transaction per booking), {@code path=journal} is BookingJournal.append (group-committed force,
+ * drained into the same tables in the background). Each booking takes the next free seat of a
+ * screening large enough that no iteration runs out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(16)
+@Fork(1)
+public class BookingJournalBenchmark {
+
+    @Param({"jdbc", "journal"})
+    public String path;
+
+    @Param({"0", "200", "2000"})
+    public long maxDelayMicros;
+
+    private BenchmarkDatabase database;
+    private DBmanager db;
+    private Path journalDir;
+    private BookingJournal journal;
+    private int screeningId;
+    private final AtomicInteger nextSeat = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start();
+        database.seed(1000);
+        db = database.db();
+        if (path.equals("journal")) {
+            journalDir = Files.createTempDirectory("booking-journal");
+            journal = new BookingJournal(db, journalDir, 64 << 20, maxDelayMicros, 256, 500);
+            journal.recover();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void newScreening() {
+        ScreeningCreateRequest req = new ScreeningCreateRequest();
+        req.setMovieId(1);
+        req.setCinemaId(1);
+        req.setHall("Benchmark");
+        req.setStartsAt(OffsetDateTime.now());
+        req.setSeatRows(1000);
+        req.setSeatsPerRow(10_000);
+        screeningId = db.createScreening(req).getId();
+        nextSeat.set(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (journal != null) {
+            if (!journal.awaitDrained(60_000)) throw new IllegalStateException("journal did not drain");
+            if (journal.getConflicts() != 0) throw new IllegalStateException("journal drain hit seat conflicts");
+            journal.close();
+            try (Stream<Path> files = Files.walk(journalDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+        database.close();
+    }
+
+    @Benchmark
+    public Booking book() {
+        List<Integer> seats = List.of(nextSeat.incrementAndGet());
+        int viewerId = ThreadLocalRandom.current().nextInt(1, 1001);
+        if (journal != null) return journal.append(screeningId, viewerId, seats, 2500);
+        return db.createBooking(screeningId, viewerId, seats, 2500);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo_new;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DBmanager data path against a seeded database. {@code rows} is the size of every table;
+ * {@code cache=true} measures find*ById through the entity cache instead of the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class DBmanagerBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"false"})
+    public boolean cache;
+
+    private BenchmarkDatabase database;
+    private DBmanager db;
+    private MovieCreateRequest createRequest;
+    private MovieUpdateRequest updateRequest;
+    private String sortedCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start();
+        database.seed(rows);
+        db = database.db();
+        for (EntityCache<?> c : db.getCaches().values()) c.setEnabled(cache);
+        sortedCursor = db.findMovies(sortedPage(null, PageQuery.MAX_LIMIT), 12, null).getNextCursor();
+
+        createRequest = new MovieCreateRequest();
+        createRequest.setTitle("Benchmark movie");
+        createRequest.setDescription("Inserted by DBmanagerBenchmark.create");
+        createRequest.setDurationMinutes(120);
+        createRequest.setAgeRestriction(12);
+        createRequest.setTicketPrice(2500);
+
+        updateRequest = new MovieUpdateRequest();
+        updateRequest.setTitle("Updated movie");
+        updateRequest.setDescription("Updated by DBmanagerBenchmark.update");
+        updateRequest.setDurationMinutes(100);
+        updateRequest.setAgeRestriction(16);
+        updateRequest.setTicketPrice(3000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    private static PageQuery sortedPage(String after, int limit) {
+        return PageQuery.parse(limit, after, "-ticketPrice", DBmanager.MOVIE_SORTS);
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, rows + 1);
+    }
+
+    @Benchmark
+    public Movie create() {
+        return db.createMovie(createRequest);
+    }
+
+    @Benchmark
+    public Optional<Movie> findById() {
+        return db.findMovieById(randomId());
+    }
+
+    @Benchmark
+    public Page<Movie> listFirstPage() {
+        return db.findMovies(PageQuery.firstPage(PageQuery.DEFAULT_LIMIT), null, null);
+    }
+
+    /** Filtered page sorted by a non-id column, continued from a cursor. */
+    @Benchmark
+    public Page<Movie> listSortedFromCursor() {
+        return db.findMovies(sortedPage(sortedCursor, PageQuery.DEFAULT_LIMIT), 12, null);
+    }
+
+    /** The old unbounded list path, for comparison; impractical at 1M rows. */
+    @Benchmark
+    public List<Viewer> listAllViewers() {
+        return db.getAllViewers();
+    }
+
+    @Benchmark
+    public Optional<Movie> update() {
+        return db.updateMovie(randomId(), updateRequest, null);
+    }
+}
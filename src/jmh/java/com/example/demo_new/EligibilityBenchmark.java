@@ -0,0 +1,94 @@
+package com.example.demo_new;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A first page of "what can this viewer watch" from {@code movies} in memory: the {@link EligibilityIndex}
+ * range lookup against the client-side loop over every movie with {@link Movie#isAllowedForAge} that it
+ * replaces, unfiltered and with a price range that passes about one movie in five. {@code writeEvery}
+ * applies a movie update before every n-th query, so the cost of merging changes into a new snapshot shows up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EligibilityBenchmark {
+    private static final int[] AGES = {0, 6, 12, 16, 18, 21};
+    private static final double[] CHEAP = {1000, 1400};
+
+    @Param({"100000"})
+    public int movies;
+
+    /** 0 = read only. */
+    @Param({"0", "100"})
+    public int writeEvery;
+
+    private List<Movie> all;
+    private EligibilityIndex index;
+    private long queries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        all = new ArrayList<>(movies);
+        for (int id = 1; id <= movies; id++) {
+            Movie movie = new Movie(id, "Movie " + id, "", 80 + random.nextInt(100), AGES[random.nextInt(AGES.length)], 1000 + random.nextInt(2000));
+            all.add(movie);
+        }
+        index = new EligibilityIndex(() -> all.stream().map(EligibilityIndex.Entry::of).toList());
+    }
+
+    @Benchmark
+    public long[] index() {
+        write();
+        return index.eligible(viewerAge(), -1, null, null, PageQuery.DEFAULT_LIMIT + 1);
+    }
+
+    @Benchmark
+    public long[] indexWithPrice() {
+        write();
+        return index.eligible(viewerAge(), -1, CHEAP, null, PageQuery.DEFAULT_LIMIT + 1);
+    }
+
+    @Benchmark
+    public List<Movie> scan() {
+        return scan(viewerAge(), null);
+    }
+
+    @Benchmark
+    public List<Movie> scanWithPrice() {
+        return scan(viewerAge(), CHEAP);
+    }
+
+    /** What clients did before: every movie, checked one by one, sorted into the index's order. */
+    private List<Movie> scan(int age, double[] price) {
+        List<Movie> eligible = new ArrayList<>();
+        for (Movie movie : all) {
+            if (!movie.isAllowedForAge(age)) continue;
+            if (price != null && (movie.getTicketPrice() < price[0] || movie.getTicketPrice() > price[1])) continue;
+            eligible.add(movie);
+        }
+        eligible.sort((a, b) -> Long.compare(EligibilityIndex.key(a.getAgeRestriction(), a.getId()),
+                EligibilityIndex.key(b.getAgeRestriction(), b.getId())));
+        return eligible.subList(0, Math.min(eligible.size(), PageQuery.DEFAULT_LIMIT + 1));
+    }
+
+    private void write() {
+        if (writeEvery == 0 || ++queries % writeEvery != 0) return;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        index.put(new EligibilityIndex.Entry(random.nextInt(1, movies + 1), AGES[random.nextInt(AGES.length)],
+                90, 1500, queries));
+    }
+
+    private static int viewerAge() {
+        return ThreadLocalRandom.current().nextInt(5, 30);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.demo_new;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A flash crowd on a few movie pages: 64 threads read ids out of a small hot set with the entity
+ * cache off, so every read reaches DBmanager. {@code batchWindowMicros=-1} is one query per read;
+ * otherwise concurrent reads of one id share a load and misses are merged into one query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(64)
+@Fork(1)
+public class HotReadBenchmark {
+
+    @Param({"-1", "200"})
+    public long batchWindowMicros;
+
+    @Param({"16"})
+    public int hotIds;
+
+    private BenchmarkDatabase database;
+    private DBmanager db;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start();
+        database.seed(Math.max(hotIds, 1000));
+        db = database.db();
+        for (EntityCache<?> c : db.getCaches().values()) c.setEnabled(false);
+        db.setLoadBatching(batchWindowMicros);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    @Benchmark
+    public Optional<Movie> findById() {
+        return db.findMovieById(ThreadLocalRandom.current().nextInt(1, hotIds + 1));
+    }
+}
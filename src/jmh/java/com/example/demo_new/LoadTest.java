@@ -0,0 +1,107 @@
+package com.example.demo_new;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop HTTP load against a running server: {@code clients} virtual threads each send
+ * one request after another for {@code seconds}, then throughput, p50/p95/p99 and status counts
+ * are printed. Run it once against the app started normally and once with
+ * {@code --spring.threads.virtual.enabled=true} to compare the two modes.
+ *
+ * <pre>
+ *   ./mvnw -Pbenchmark compile exec:exec@load-test -Dload.args="http://localhost:8080 2000 30"
+ * </pre>
+ * Arguments: base URL, clients (default 1000), seconds (default 30), max movie id for GET /movies/{id} (default 1000).
+ */
+public final class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int maxId = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+
+        HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        long warmupEnd = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        long end = warmupEnd + Duration.ofSeconds(seconds).toNanos();
+        List<long[]> samples = new ArrayList<>(clients);
+        int[] sampleCounts = new int[clients];
+        LongAdder ok = new LongAdder();
+        LongAdder busy = new LongAdder();
+        LongAdder failed = new LongAdder();
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                long[] latencies = new long[1 << 16];
+                samples.add(latencies);
+                int client = c;
+                pool.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int n = 0;
+                    long now;
+                    while ((now = System.nanoTime()) < end) {
+                        // alternate a primary-key lookup with a bounded list page
+                        String path = random.nextBoolean()
+                                ? "/movies/" + random.nextInt(1, maxId + 1)
+                                : "/movies?limit=50";
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                                .timeout(Duration.ofSeconds(30))
+                                .GET()
+                                .build();
+                        int status;
+                        try {
+                            status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (Exception e) {
+                            status = -1;
+                        }
+                        long latency = System.nanoTime() - now;
+                        if (now < warmupEnd) continue;
+
+                        if (status >= 200 && status < 300 || status == 404) ok.increment();
+                        else if (status == 503) busy.increment();
+                        else failed.increment();
+                        if (n < latencies.length) latencies[n++] = latency;
+                    }
+                    sampleCounts[client] = n;
+                    return null;
+                });
+            }
+        }
+
+        int total = Arrays.stream(sampleCounts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(samples.get(c), 0, all, offset, sampleCounts[c]);
+            offset += sampleCounts[c];
+        }
+        Arrays.sort(all);
+
+        System.out.printf("clients=%d seconds=%d url=%s%n", clients, seconds, baseUrl);
+        System.out.printf("throughput %.1f req/s (ok=%d, 503=%d, failed=%d)%n",
+                (ok.sum() + busy.sum() + failed.sum()) / (double) seconds, ok.sum(), busy.sum(), failed.sum());
+        System.out.printf("latency ms p50=%.1f p95=%.1f p99=%.1f max=%.1f%n",
+                percentile(all, 0.50), percentile(all, 0.95), percentile(all, 0.99), percentile(all, 1.0));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.demo_new;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResultSet-to-entity mapping in isolation. Rows are fetched once into a CachedRowSet,
+ * so each invocation only pays for column access and object construction.
+ * {@code mapMovieTitles} maps the table view projection (fields=title,durationMinutes,ticketPrice).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RowMappingBenchmark {
+
+    @Param({"1000"})
+    public int rows;
+
+    private CachedRowSet movies;
+    private CachedRowSet viewers;
+    private CachedRowSet cinemas;
+    private CachedRowSet movieTitles;
+    private Projection<Movie> titles;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        try (BenchmarkDatabase database = BenchmarkDatabase.start()) {
+            database.seed(rows);
+            try (Connection conn = database.dataSource().getConnection();
+                 Statement stmt = conn.createStatement()) {
+                movies = fetch(stmt, "SELECT " + DBmanager.MOVIE_COLUMNS + " FROM movies ORDER BY id");
+                viewers = fetch(stmt, "SELECT " + DBmanager.VIEWER_COLUMNS + " FROM viewers ORDER BY id");
+                cinemas = fetch(stmt, "SELECT " + DBmanager.CINEMA_COLUMNS + " FROM cinemas ORDER BY id");
+                titles = Projection.parse("title,durationMinutes,ticketPrice", DBmanager.MOVIE_FIELDS);
+                movieTitles = fetch(stmt, "SELECT " + titles.columns() + " FROM movies ORDER BY id");
+            }
+        }
+    }
+
+    private static CachedRowSet fetch(Statement stmt, String sql) throws SQLException {
+        CachedRowSet rowSet = RowSetProvider.newFactory().createCachedRowSet();
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            rowSet.populate(rs);
+        }
+        return rowSet;
+    }
+
+    @Benchmark
+    public void mapMovies(Blackhole bh) throws SQLException {
+        movies.beforeFirst();
+        while (movies.next()) bh.consume(DBmanager.mapMovie(movies));
+    }
+
+    @Benchmark
+    public void mapViewers(Blackhole bh) throws SQLException {
+        viewers.beforeFirst();
+        while (viewers.next()) bh.consume(DBmanager.mapViewer(viewers));
+    }
+
+    @Benchmark
+    public void mapCinemas(Blackhole bh) throws SQLException {
+        cinemas.beforeFirst();
+        while (cinemas.next()) bh.consume(DBmanager.mapCinema(cinemas));
+    }
+
+    @Benchmark
+    public void mapMovieTitles(Blackhole bh) throws SQLException {
+        movieTitles.beforeFirst();
+        while (movieTitles.next()) bh.consume(titles.map(movieTitles));
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.demo_new;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The weekly auto-scheduler at 100 cinemas x 20 halls x 7 days (about 100k screenings):
+ * planning the week against in-memory hall schedules, planning plus the single batch insert,
+ * and one conflict check against the in-memory {@link HallSchedule} versus the SQL range scan
+ * it replaces.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SchedulerBenchmark {
+    static final int CINEMAS = 100;
+    static final int HALLS = 20;
+    static final LocalDate WEEK = LocalDate.now(ZoneOffset.UTC).with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+
+    static ShowtimeScheduler scheduler(DBmanager db) {
+        return new ShowtimeScheduler(db, ZoneOffset.UTC, LocalTime.of(10, 0), LocalTime.of(23, 30), 15, 5);
+    }
+
+    static List<String> halls() {
+        List<String> halls = new ArrayList<>(HALLS);
+        for (int h = 1; h <= HALLS; h++) halls.add("Hall " + h);
+        return halls;
+    }
+
+    static List<Integer> cinemaIds() {
+        List<Integer> ids = new ArrayList<>(CINEMAS);
+        for (int c = 1; c <= CINEMAS; c++) ids.add(c);
+        return ids;
+    }
+
+    static List<Movie> movies() {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) movies.add(new Movie(i, "Movie " + i, "", 85 + (i * 37) % 95, 0, 1000));
+        return movies;
+    }
+
+    static Map<Integer, Map<String, HallSchedule>> emptySchedules() {
+        Map<Integer, Map<String, HallSchedule>> schedules = new HashMap<>();
+        for (int c = 1; c <= CINEMAS; c++) {
+            Map<String, HallSchedule> halls = new HashMap<>();
+            for (String hall : halls()) halls.put(hall, new HallSchedule());
+            schedules.put(c, halls);
+        }
+        return schedules;
+    }
+
+    /** One hall's week, planned in memory, for the in-memory conflict check. */
+    @State(Scope.Benchmark)
+    public static class FilledHall {
+        HallSchedule hall;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Map<Integer, Map<String, HallSchedule>> week = emptySchedules();
+            scheduler(null).planWeek(week, WEEK, cinemaIds(), halls(), movies(), 10, 10);
+            hall = week.get(1).get(halls().get(0));
+        }
+    }
+
+    /** Empty hall schedules for every planning run. */
+    @State(Scope.Benchmark)
+    public static class EmptyWeek {
+        final ShowtimeScheduler scheduler = scheduler(null);
+        final List<Movie> movies = movies();
+        Map<Integer, Map<String, HallSchedule>> schedules;
+
+        @Setup(Level.Invocation)
+        public void emptyHalls() {
+            schedules = emptySchedules();
+        }
+    }
+
+    /** A database with 100 cinemas and movies and one scheduled week, for the SQL conflict check. */
+    @State(Scope.Benchmark)
+    public static class Database {
+        BenchmarkDatabase database;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            database = BenchmarkDatabase.start();
+            database.seed(CINEMAS);
+            List<Movie> movies = database.db().findMoviesByIds(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
+            scheduler(database.db()).scheduleWeek(WEEK, cinemaIds(), halls(), movies, 10, 10);
+            try (Connection conn = database.dataSource().getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE screenings");
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            database.close();
+        }
+    }
+
+    /** A database emptied of screenings before every scheduled week. */
+    @State(Scope.Benchmark)
+    public static class FreshDatabase {
+        BenchmarkDatabase database;
+        List<Movie> movies;
+        ShowtimeScheduler scheduler;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            database = BenchmarkDatabase.start();
+            database.seed(CINEMAS);
+            movies = database.db().findMoviesByIds(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
+        }
+
+        @Setup(Level.Invocation)
+        public void clear() throws SQLException {
+            try (Connection conn = database.dataSource().getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.execute("TRUNCATE screenings CASCADE");
+            }
+            scheduler = scheduler(database.db());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            database.close();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int planWeek(EmptyWeek state) {
+        return state.scheduler.planWeek(state.schedules, WEEK, cinemaIds(), halls(), state.movies, 10, 10).size();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int scheduleAndInsertWeek(FreshDatabase state) {
+        return state.scheduler.scheduleWeek(WEEK, cinemaIds(), halls(), state.movies, 10, 10).size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public HallSchedule.Slot conflictInMemory(FilledHall state) {
+        long start = WEEK.atTime(10, 0).toEpochSecond(ZoneOffset.UTC) + ThreadLocalRandom.current().nextInt(7 * 86_400 / 300) * 300L;
+        return state.hall.conflict(start, start + 2 * 3600);
+    }
+
+    @Benchmark
+    public boolean conflictSql(Database state) throws SQLException {
+        OffsetDateTime start = WEEK.atTime(10, 0).atOffset(ZoneOffset.UTC)
+                .plusMinutes(ThreadLocalRandom.current().nextInt(7 * 24 * 12) * 5L);
+        String sql = "SELECT EXISTS (SELECT 1 FROM screenings WHERE cinema_id = ? AND hall = ? "
+                + "AND starts_at < ? AND ends_at + interval '15 minutes' > ?)";
+        try (Connection conn = state.database.dataSource().getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, ThreadLocalRandom.current().nextInt(1, CINEMAS + 1));
+            ps.setString(2, "Hall " + ThreadLocalRandom.current().nextInt(1, HALLS + 1));
+            ps.setObject(3, start.plusHours(2));
+            ps.setObject(4, start);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getBoolean(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo_new;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.BitSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A sold-out premiere in miniature: every thread books a random pair of adjacent seats in the
+ * same hall and gives them back, so most attempts collide. {@code lockFree=false} runs the same
+ * workload against a BitSet behind one monitor, the obvious alternative to {@link SeatMap}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class SeatMapBenchmark {
+
+    @Param({"true", "false"})
+    public boolean lockFree;
+
+    /** 10 rows of 20 seats by default; small enough that threads keep fighting over the same words. */
+    @Param({"200"})
+    public int capacity;
+
+    private SeatMap seats;
+    private LockedSeats locked;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        seats = new SeatMap(capacity);
+        locked = new LockedSeats(capacity);
+    }
+
+    @TearDown(Level.Trial)
+    public void verify() {
+        // every claim was released, so a lost or doubled update would show here
+        if (seats.available() != capacity || locked.taken.cardinality() != 0) {
+            throw new IllegalStateException("seats left taken after the run");
+        }
+    }
+
+    @Benchmark
+    public boolean claimAndRelease() {
+        int first = ThreadLocalRandom.current().nextInt(capacity - 1);
+        int[] pair = {first, first + 1};
+        if (lockFree) {
+            if (!seats.tryClaim(pair)) return false;
+            seats.release(pair);
+        } else {
+            if (!locked.tryClaim(pair)) return false;
+            locked.release(pair);
+        }
+        return true;
+    }
+
+    private static final class LockedSeats {
+        final BitSet taken;
+
+        LockedSeats(int capacity) {
+            taken = new BitSet(capacity);
+        }
+
+        synchronized boolean tryClaim(int[] pair) {
+            for (int seat : pair) if (taken.get(seat)) return false;
+            for (int seat : pair) taken.set(seat);
+            return true;
+        }
+
+        synchronized void release(int[] pair) {
+            for (int seat : pair) taken.clear(seat);
+        }
+    }
+}
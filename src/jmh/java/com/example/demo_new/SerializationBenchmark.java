@@ -0,0 +1,101 @@
+package com.example.demo_new;
+
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CPU per list response for each wire encoding: JSON or CBOR, optionally gzipped as
+ * CompressionFilter does, with Jackson's bean serializers or {@link EntitySerializers}.
+ * The size of every response on the wire is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SerializationBenchmark {
+
+    /** Items per page; 50 is the default limit and 500 the maximum. */
+    @Param({"50", "500"})
+    public int pageSize;
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    /** true = EntitySerializers, as the application runs; false = Jackson's bean serializers. */
+    @Param({"true", "false"})
+    public boolean prebuilt;
+
+    private ObjectMapper mapper;
+    private Page<Movie> movies;
+    private Page<Viewer> viewers;
+    private Page<Cinema> cinemas;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (format.equals("cbor")) {
+            CBORMapper.Builder builder = CBORMapper.builder();
+            if (prebuilt) builder.addModule(new EntitySerializers());
+            mapper = builder.build();
+        } else {
+            JsonMapper.Builder builder = JsonMapper.builder();
+            if (prebuilt) builder.addModule(new EntitySerializers());
+            mapper = builder.build();
+        }
+        List<Movie> movieList = new ArrayList<>(pageSize);
+        List<Viewer> viewerList = new ArrayList<>(pageSize);
+        List<Cinema> cinemaList = new ArrayList<>(pageSize);
+        for (int i = 1; i <= pageSize; i++) {
+            movieList.add(new Movie(i, "Movie " + i, "Generated description for movie number " + i, 80 + i % 100, (i % 5) * 4, 1000 + (i % 50) * 100));
+            viewerList.add(new Viewer(i, "Viewer " + i, 10 + i % 60, "viewer" + i + "@example.com"));
+            cinemaList.add(new Cinema(i, "Cinema " + i, "City " + (i % 50), "Street " + i));
+        }
+        movies = new Page<>(movieList, "bmV4dA");
+        viewers = new Page<>(viewerList, "bmV4dA");
+        cinemas = new Page<>(cinemaList, "bmV4dA");
+
+        System.out.printf("%nbytes on the wire (%s%s, %d items): movies %d, viewers %d, cinemas %d%n",
+                format, gzip ? "+gzip" : "", pageSize, movies().length, viewers().length, cinemas().length);
+    }
+
+    @Benchmark
+    public byte[] movies() {
+        return encode(movies);
+    }
+
+    @Benchmark
+    public byte[] viewers() {
+        return encode(viewers);
+    }
+
+    @Benchmark
+    public byte[] cinemas() {
+        return encode(cinemas);
+    }
+
+    private byte[] encode(Object page) {
+        byte[] body = mapper.writeValueAsBytes(page);
+        if (!gzip) return body;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream zip = new GZIPOutputStream(out, 8192)) {
+            zip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
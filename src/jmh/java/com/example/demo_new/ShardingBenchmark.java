@@ -0,0 +1,100 @@
+package com.example.demo_new;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cinema reads with {@code shards} embedded databases standing in for the city shards, against one
+ * database ({@code shards = 0}): the first page of GET /cinemas by name (scatter-gather and merge),
+ * the page after it, one city's page (a single shard) and a lookup by id. 20k cinemas in 50 cities,
+ * created through the router so each lands on its city's shard.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ShardingBenchmark {
+    private static final int CINEMAS = 20_000;
+    private static final int CITIES = 50;
+
+    @Param({"0", "4"})
+    public int shards;
+
+    private BenchmarkDatabase main;
+    private final List<BenchmarkDatabase> shardDatabases = new ArrayList<>();
+    private CinemaShards router;
+    private List<Integer> ids;
+    private String secondPage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        main = BenchmarkDatabase.start();
+        if (shards > 0) {
+            List<DBmanager> dbs = new ArrayList<>();
+            for (int i = 0; i < shards; i++) {
+                BenchmarkDatabase shard = BenchmarkDatabase.start();
+                shardDatabases.add(shard);
+                dbs.add(shard.db());
+            }
+            router = new CinemaShards(dbs, Map.of());
+            main.db().setCinemaShards(router);
+            main.db().setupDatabase();
+        }
+        ids = new ArrayList<>(CINEMAS);
+        for (int from = 0; from < CINEMAS; from += PageQuery.MAX_LIMIT) {
+            List<CinemaCreateRequest> batch = new ArrayList<>();
+            for (int g = from; g < Math.min(from + PageQuery.MAX_LIMIT, CINEMAS); g++) {
+                CinemaCreateRequest req = new CinemaCreateRequest();
+                req.setName("Cinema " + g);
+                req.setCity("City " + g % CITIES);
+                req.setAddress("Street " + g);
+                batch.add(req);
+            }
+            for (Cinema cinema : main.db().createCinemas(batch)) ids.add(cinema.getId());
+        }
+        secondPage = main.db().findCinemas(byName(null), null).getNextCursor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        main.db().close();
+        main.close();
+        for (BenchmarkDatabase shard : shardDatabases) shard.close();
+    }
+
+    private static PageQuery byName(String after) {
+        return PageQuery.parse(null, after, "name", DBmanager.CINEMA_SORTS);
+    }
+
+    @Benchmark
+    public Page<Cinema> firstPageByName() {
+        return main.db().findCinemas(byName(null), null);
+    }
+
+    @Benchmark
+    public Page<Cinema> secondPageByName() {
+        return main.db().findCinemas(byName(secondPage), null);
+    }
+
+    @Benchmark
+    public Page<Cinema> cityPage() {
+        return main.db().findCinemas(byName(null), "City " + ThreadLocalRandom.current().nextInt(CITIES));
+    }
+
+    @Benchmark
+    public Cinema findById() {
+        // through the router, but past the cache, as a miss would be
+        int id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        Map<String, EntityCache<?>> caches = shards == 0 ? main.db().getCaches()
+                : router.getShards().get(router.indexForId(id)).getCaches();
+        caches.get("cinemas").invalidate(id);
+        return main.db().findCinemaById(id).orElseThrow();
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.demo_new;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cold start as a scaled-out node sees it: each invocation launches the application in a fresh JVM
+ * against an already set up database and polls until the first {@code GET /movies?limit=1} returns
+ * 200 ({@code firstRequest}), or until {@code /actuator/health/readiness} does ({@code ready}).
+ * {@code launch=aot-cds} runs the jar built by {@code ./mvnw -Paot-cds package} with its AOT code
+ * and CDS archive; the application's output goes to target/startup-benchmark.log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    /** classpath = target/classes as compiled; aot-cds = target/app from the aot-cds profile. */
+    @Param({"classpath"})
+    public String launch;
+
+    @Param({"true", "false"})
+    public boolean schemaSetupAsync;
+
+    private BenchmarkDatabase database;
+    private Path envFile;
+    private Path log;
+    private HttpClient http;
+    private Process app;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        database = BenchmarkDatabase.start();
+        database.seed(1000);
+        envFile = Files.createTempFile("startup-benchmark", ".env");
+        Files.writeString(envFile, String.join("\n",
+                "DB_URL=" + database.dataSource().getJdbcUrl(),
+                "DB_USER=" + database.dataSource().getUsername(),
+                "DB_PASS=" + (database.dataSource().getPassword() == null ? "" : database.dataSource().getPassword()),
+                "DB_SCHEMA_SETUP_ASYNC=" + schemaSetupAsync, ""));
+        log = Path.of("target", "startup-benchmark.log");
+        Files.createDirectories(log.getParent());
+        http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopApp() throws InterruptedException {
+        if (app == null) return;
+        app.destroy();
+        if (!app.waitFor(30, TimeUnit.SECONDS)) app.destroyForcibly().waitFor();
+        app = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(envFile);
+        database.close();
+    }
+
+    @Benchmark
+    public int firstRequest() throws Exception {
+        return startAndPoll("/movies?limit=1");
+    }
+
+    @Benchmark
+    public int ready() throws Exception {
+        return startAndPoll("/actuator/health/readiness");
+    }
+
+    private int startAndPoll(String path) throws Exception {
+        int port = freePort();
+        app = new ProcessBuilder(command(port))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()))
+                .start();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(5)).build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!app.isAlive()) throw new IllegalStateException("application exited with " + app.exitValue() + ", see " + log);
+            try {
+                HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) return response.statusCode();
+            } catch (ConnectException e) {
+                // not listening yet
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("no 200 from " + path + " within " + STARTUP_TIMEOUT);
+    }
+
+    private List<String> command(int port) throws IOException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        cmd.add("-Denv.file=" + envFile);
+        switch (launch) {
+            case "classpath" -> {
+                cmd.add("-cp");
+                cmd.add(System.getProperty("java.class.path"));
+                cmd.add(DemoNewApplication.class.getName());
+            }
+            case "aot-cds" -> {
+                Path dir = Path.of("target", "app");
+                Path archive = dir.resolve("application.jsa");
+                if (!Files.exists(archive)) throw new IllegalStateException(archive + " is missing; run ./mvnw -Paot-cds package first");
+                Path jar;
+                try (Stream<Path> files = Files.list(dir)) {
+                    jar = files.filter(p -> p.toString().endsWith(".jar")).findFirst()
+                            .orElseThrow(() -> new IllegalStateException("no application jar in " + dir));
+                }
+                cmd.add("-XX:SharedArchiveFile=" + archive);
+                cmd.add("-Dspring.aot.enabled=true");
+                cmd.add("-jar");
+                cmd.add(jar.toString());
+            }
+            default -> throw new IllegalArgumentException("launch must be classpath or aot-cds");
+        }
+        cmd.add("--server.port=" + port);
+        return cmd;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
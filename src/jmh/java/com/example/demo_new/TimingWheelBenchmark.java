@@ -0,0 +1,65 @@
+package com.example.demo_new;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cost of arming an expiry timer from many request threads: the seat-hold {@link TimingWheel}
+ * against a ScheduledExecutorService, whose delay queue is a heap behind one lock. Timers are
+ * short so both reach a steady state of roughly {@code delayMillis} worth of pending entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class TimingWheelBenchmark {
+
+    @Param({"200"})
+    public long delayMillis;
+
+    private TimingWheel wheel;
+    private ScheduledExecutorService executor;
+    private final LongAdder fired = new LongAdder();
+
+    private final class Entry extends TimingWheel.Timeout {
+        Entry(long deadlineNanos) {
+            super(deadlineNanos);
+        }
+
+        @Override
+        protected boolean expire() {
+            fired.increment();
+            return true;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        wheel = new TimingWheel("bench-wheel", 10, 512);
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wheel.close();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void wheel() {
+        wheel.schedule(new Entry(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis)));
+    }
+
+    @Benchmark
+    public ScheduledFuture<?> scheduledExecutor() {
+        return executor.schedule(fired::increment, delayMillis, TimeUnit.MILLISECONDS);
+    }
+}
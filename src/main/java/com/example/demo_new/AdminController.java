@@ -0,0 +1,44 @@
+package com.example.demo_new;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    private final DBmanager db;
+
+    public AdminController(DBmanager db) {
+        this.db = db;
+    }
+
+    @GetMapping("/pool")
+    public ResponseEntity<PoolStats> pool() {
+        PoolStats stats = db.getPoolStats();
+        return stats == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(stats);
+    }
+
+    /** Health, replay position, lag and reads per read replica; 204 when none are configured. */
+    @GetMapping("/replicas")
+    public ResponseEntity<List<ReplicaStats>> replicas() {
+        ReadReplicas replicas = db.getReplicas();
+        return replicas == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(replicas.stats());
+    }
+
+    @GetMapping("/cache")
+    public List<CacheStats> caches() {
+        return db.getCaches().values().stream().map(EntityCache::stats).toList();
+    }
+
+    /** Turns the cache of one entity type (movies, viewers, cinemas) on or off; turning it off clears it. */
+    @PutMapping("/cache/{entity}")
+    public CacheStats setCacheEnabled(@PathVariable String entity, @RequestParam boolean enabled) {
+        EntityCache<?> cache = db.getCaches().get(entity);
+        if (cache == null) throw new IllegalArgumentException("unknown cache: " + entity);
+        cache.setEnabled(enabled);
+        return cache.stats();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo_new;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AnalyticsConfig {
+
+    /** Sales rollups fed by bookings, cancellations, placed screenings and cascading deletes; see SalesRollups. */
+    @Bean(destroyMethod = "close")
+    public SalesRollups salesRollups(DBmanager db, BookingEngine engine, ShowtimeScheduler scheduler, MeterRegistry meterRegistry) {
+        SalesRollups rollups = SalesRollups.fromEnv(db);
+        engine.setRollups(rollups);
+        scheduler.setRollups(rollups);
+        db.setRollups(rollups);
+        meterRegistry.gauge("analytics.rollups.pending", rollups, SalesRollups::getPending);
+        FunctionCounter.builder("analytics.flush.failures", rollups, SalesRollups::getFlushFailures)
+                .description("Rollup flushes that failed and were retried")
+                .register(meterRegistry);
+        FunctionCounter.builder("analytics.missed", rollups, SalesRollups::getMissed)
+                .description("Screenings, bookings and cancellations left out of the rollups until the next rebuild")
+                .register(meterRegistry);
+        return rollups;
+    }
+}
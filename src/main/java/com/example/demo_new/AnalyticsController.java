@@ -0,0 +1,87 @@
+package com.example.demo_new;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+
+/** Sales dashboards, answered from the sales_rollups table; days are show days in ANALYTICS_TIME_ZONE. */
+@RestController
+@RequestMapping("/analytics")
+public class AnalyticsController {
+    static final int DEFAULT_DAYS = 30;
+    static final int MAX_DAYS = 3660;
+    static final int MAX_TOP = 100;
+    private static final Set<String> DIMENSIONS = Set.of(SalesRollups.MOVIE, SalesRollups.CINEMA, SalesRollups.CITY);
+    private static final Set<String> BUCKETS = Set.of("day", "week", "month");
+
+    private final DBmanager db;
+    private final SalesRollups rollups;
+
+    public AnalyticsController(DBmanager db, SalesRollups rollups) {
+        this.db = db;
+        this.rollups = rollups;
+    }
+
+    /** The movies, cinemas or cities with the most revenue, tickets or occupancy from {@code from} to {@code to}. */
+    @GetMapping("/top")
+    public List<SalesTotal> top(@RequestParam String by,
+                                @RequestParam(defaultValue = "revenue") String metric,
+                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                @RequestParam(defaultValue = "10") int limit) {
+        if (!DIMENSIONS.contains(by)) throw new IllegalArgumentException("by must be one of movie, cinema, city");
+        if (limit <= 0 || limit > MAX_TOP) throw new IllegalArgumentException("limit must be between 1 and " + MAX_TOP);
+        LocalDate end = to == null ? LocalDate.now(rollups.getZone()) : to;
+        LocalDate start = from == null ? end.minusDays(DEFAULT_DAYS - 1) : from;
+        validateRange(start, end);
+        return db.findTopSales(by, start, end, metric, limit);
+    }
+
+    /** One movie's, cinema's or city's sales (or the total without key) per day, week or month. */
+    @GetMapping("/series")
+    public List<SalesPoint> series(@RequestParam(defaultValue = SalesRollups.TOTAL) String by,
+                                   @RequestParam(required = false) String key,
+                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                   @RequestParam(defaultValue = "day") String bucket) {
+        if (!BUCKETS.contains(bucket)) throw new IllegalArgumentException("bucket must be one of day, week, month");
+        String value;
+        if (by.equals(SalesRollups.TOTAL)) {
+            if (key != null) throw new IllegalArgumentException("key cannot be combined with by=total");
+            value = "";
+        } else if (DIMENSIONS.contains(by)) {
+            if (key == null || key.isBlank()) throw new IllegalArgumentException("key is required for by=" + by);
+            value = key.trim();
+            if (!by.equals(SalesRollups.CITY)) {
+                try {
+                    value = String.valueOf(Integer.parseInt(value));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("key must be a " + by + " id");
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("by must be one of movie, cinema, city, total");
+        }
+        LocalDate end = to == null ? LocalDate.now(rollups.getZone()) : to;
+        LocalDate start = from == null ? end.minusDays(DEFAULT_DAYS - 1) : from;
+        validateRange(start, end);
+        return db.findSalesSeries(by, value, start, end, bucket);
+    }
+
+    /** Recomputes all rollups from bookings and screenings; meant for quiet hours. */
+    @PostMapping("/rebuild")
+    public RollupRebuild rebuild() {
+        return rollups.rebuild();
+    }
+
+    private static void validateRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) throw new IllegalArgumentException("from must not be after to");
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_DAYS) {
+            throw new IllegalArgumentException("at most " + MAX_DAYS + " days per request");
+        }
+    }
+}
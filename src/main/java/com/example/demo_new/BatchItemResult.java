@@ -0,0 +1,21 @@
+package com.example.demo_new;
+
+/** Outcome of one item of a batch request; index is the item's position in the request body. */
+public class BatchItemResult {
+    private final int index;
+    private final int status;
+    private final Integer id;
+    private final String error;
+
+    public BatchItemResult(int index, int status, Integer id, String error) {
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.error = error;
+    }
+
+    public int getIndex() { return index; }
+    public int getStatus() { return status; }
+    public Integer getId() { return id; }
+    public String getError() { return error; }
+}
@@ -0,0 +1,97 @@
+package com.example.demo_new;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Merges concurrent single-id lookups into one multi-id query. The first caller of a batch
+ * leads it: if a query from this loader is already running it waits up to {@code windowMicros}
+ * for other ids to join, then runs the query for all of them; otherwise it runs at once, so a
+ * lone request pays no extra latency. A batch closes early once it holds {@code maxBatch} ids.
+ */
+public class BatchLoader<V> {
+    private static final class Batch<V> {
+        final Thread leader = Thread.currentThread();
+        final LinkedHashSet<Integer> ids = new LinkedHashSet<>();
+        final CompletableFuture<Map<Integer, V>> rows = new CompletableFuture<>();
+        volatile boolean closed;
+    }
+
+    private final Function<List<Integer>, Map<Integer, V>> query;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private Batch<V> open; // guarded by this
+
+    public BatchLoader(Function<List<Integer>, Map<Integer, V>> query, long windowMicros, int maxBatch) {
+        if (maxBatch <= 0) throw new IllegalArgumentException("maxBatch must be positive");
+        this.query = query;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = maxBatch;
+    }
+
+    public Optional<V> load(int id) {
+        lookups.increment();
+        Batch<V> batch;
+        boolean leader;
+        synchronized (this) {
+            leader = open == null;
+            if (leader) open = new Batch<>();
+            batch = open;
+            batch.ids.add(id);
+            if (batch.ids.size() >= maxBatch) {
+                open = null;
+                batch.closed = true;
+                if (!leader) LockSupport.unpark(batch.leader);
+            }
+        }
+
+        if (leader) {
+            if (windowNanos > 0 && running.get() > 0) {
+                long deadline = System.nanoTime() + windowNanos;
+                long wait;
+                while (!batch.closed && (wait = deadline - System.nanoTime()) > 0) LockSupport.parkNanos(this, wait);
+            }
+            synchronized (this) {
+                if (open == batch) open = null;
+                batch.closed = true;
+            }
+            run(batch);
+        }
+
+        try {
+            return Optional.ofNullable(batch.rows.join().get(id));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    /** Single-id lookups received so far and the queries that served them. */
+    public long getLookups() { return lookups.sum(); }
+    public long getQueries() { return queries.sum(); }
+
+    private void run(Batch<V> batch) {
+        running.incrementAndGet();
+        queries.increment();
+        try {
+            batch.rows.complete(query.apply(new ArrayList<>(batch.ids)));
+        } catch (RuntimeException e) {
+            batch.rows.completeExceptionally(e);
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.demo_new;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/** Per-item results of POST/PUT/DELETE /{entity}/batch, in request order. */
+public class BatchResult {
+    public static final int MAX_ITEMS = 10_000;
+
+    private final BatchItemResult[] items;
+    private int succeeded;
+    private int failed;
+
+    public BatchResult(int size) {
+        if (size > MAX_ITEMS) throw new IllegalArgumentException("batch size must not exceed " + MAX_ITEMS);
+        this.items = new BatchItemResult[size];
+    }
+
+    /**
+     * Runs the single-item validator over every request. Items it rejects are recorded as 400;
+     * the indexes of the rest are returned in order.
+     */
+    public <R> List<Integer> validate(List<R> requests, Consumer<R> validator) {
+        List<Integer> valid = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            R req = requests.get(i);
+            try {
+                if (req == null) throw new IllegalArgumentException("item is required");
+                validator.accept(req);
+                valid.add(i);
+            } catch (IllegalArgumentException e) {
+                fail(i, 400, null, e.getMessage());
+            }
+        }
+        return valid;
+    }
+
+    public void ok(int index, int status, Integer id) {
+        items[index] = new BatchItemResult(index, status, id, null);
+        succeeded++;
+    }
+
+    public void fail(int index, int status, Integer id, String error) {
+        items[index] = new BatchItemResult(index, status, id, error);
+        failed++;
+    }
+
+    public int getSucceeded() { return succeeded; }
+    public int getFailed() { return failed; }
+    public List<BatchItemResult> getItems() { return Arrays.asList(items); }
+}
@@ -0,0 +1,30 @@
+package com.example.demo_new;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/** A confirmed booking of one or more seats of a screening by one viewer. */
+public class Booking {
+    private final int id;
+    private final int screeningId;
+    private final int viewerId;
+    private final List<Integer> seats;
+    private final double totalPrice;
+    private final OffsetDateTime createdAt;
+
+    public Booking(int id, int screeningId, int viewerId, List<Integer> seats, double totalPrice, OffsetDateTime createdAt) {
+        this.id = id;
+        this.screeningId = screeningId;
+        this.viewerId = viewerId;
+        this.seats = seats;
+        this.totalPrice = totalPrice;
+        this.createdAt = createdAt;
+    }
+
+    public int getId() { return id; }
+    public int getScreeningId() { return screeningId; }
+    public int getViewerId() { return viewerId; }
+    public List<Integer> getSeats() { return seats; }
+    public double getTotalPrice() { return totalPrice; }
+    public OffsetDateTime getCreatedAt() { return createdAt; }
+}
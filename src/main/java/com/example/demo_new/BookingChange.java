@@ -0,0 +1,58 @@
+package com.example.demo_new;
+
+import java.util.UUID;
+
+/**
+ * A committed booking or cancellation, as the notify_booking() trigger sends it on the
+ * booking_changes channel: "insert|delete:screening_id:node:seat,seat,...". node is the
+ * {@link #NODE} of the app node that wrote it through a booking method, or empty for anything
+ * else (cascading deletes, psql), so a node can skip the changes it has already applied.
+ */
+public class BookingChange {
+    public static final String CHANNEL = "booking_changes";
+
+    /** This process, as recorded in app.node by the booking writes. */
+    static final String NODE = UUID.randomUUID().toString();
+
+    private final boolean booked;
+    private final int screeningId;
+    private final String node;
+    private final int[] seats; // 1-based, as stored
+
+    public BookingChange(boolean booked, int screeningId, String node, int[] seats) {
+        this.booked = booked;
+        this.screeningId = screeningId;
+        this.node = node;
+        this.seats = seats;
+    }
+
+    /** Null when the payload is not one of ours. */
+    static BookingChange parse(String payload) {
+        String[] parts = payload.split(":", -1);
+        if (parts.length != 4) return null;
+        boolean booked;
+        switch (parts[0]) {
+            case "insert" -> booked = true;
+            case "delete" -> booked = false;
+            default -> {
+                return null;
+            }
+        }
+        try {
+            String[] list = parts[3].isEmpty() ? new String[0] : parts[3].split(",");
+            int[] seats = new int[list.length];
+            for (int i = 0; i < list.length; i++) seats[i] = Integer.parseInt(list[i]);
+            return new BookingChange(booked, Integer.parseInt(parts[1]), parts[2], seats);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Written by this process, which updated its seat maps when it wrote it. */
+    public boolean isLocal() { return NODE.equals(node); }
+
+    public boolean isBooked() { return booked; }
+    public int getScreeningId() { return screeningId; }
+    public String getNode() { return node; }
+    public int[] getSeats() { return seats; }
+}
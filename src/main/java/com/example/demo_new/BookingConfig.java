@@ -0,0 +1,52 @@
+package com.example.demo_new;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class BookingConfig {
+
+    /**
+     * In-memory seat maps for the screenings booked on this node. With BOOKING_JOURNAL_ENABLED=true
+     * confirmed bookings go to the memory-mapped journal and reach the database asynchronously.
+     */
+    @Bean(destroyMethod = "close")
+    public BookingEngine bookingEngine(DBmanager db, MeterRegistry meterRegistry) {
+        BookingEngine engine = new BookingEngine(db);
+        if (Boolean.parseBoolean(DBmanager.env("BOOKING_JOURNAL_ENABLED", "false"))) {
+            BookingJournal journal = BookingJournal.fromEnv(db);
+            meterRegistry.gauge("booking.journal.lag", journal, BookingJournal::getLag);
+            FunctionCounter.builder("booking.journal.conflicts", journal, BookingJournal::getConflicts)
+                    .description("Journaled bookings refused because their seats were booked on another node")
+                    .register(meterRegistry);
+            FunctionCounter.builder("booking.journal.unreadable", journal, BookingJournal::getUnreadable)
+                    .description("Journal records the drain could not read and skipped")
+                    .register(meterRegistry);
+            engine.setJournal(journal);
+        }
+        return engine;
+    }
+
+    /** In-memory hall schedules for placing screenings; see ShowtimeScheduler. */
+    @Bean
+    public ShowtimeScheduler showtimeScheduler(DBmanager db, MeterRegistry meterRegistry) {
+        ShowtimeScheduler scheduler = ShowtimeScheduler.fromEnv(db);
+        meterRegistry.gauge("schedule.halls", scheduler, ShowtimeScheduler::getHalls);
+        FunctionCounter.builder("schedule.conflicts", scheduler, ShowtimeScheduler::getConflicts)
+                .description("Screenings rejected because their hall was taken")
+                .register(meterRegistry);
+        return scheduler;
+    }
+
+    @Bean(destroyMethod = "close")
+    public SeatHolds seatHolds(BookingEngine engine, MeterRegistry meterRegistry) {
+        SeatHolds holds = SeatHolds.fromEnv(engine);
+        meterRegistry.gauge("seat.holds.active", holds, SeatHolds::getActive);
+        FunctionCounter.builder("seat.holds.expired", holds, SeatHolds::getExpired)
+                .description("Seat holds that ran out before being confirmed or released")
+                .register(meterRegistry);
+        return holds;
+    }
+}
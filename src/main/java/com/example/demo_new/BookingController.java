@@ -0,0 +1,25 @@
+package com.example.demo_new;
+
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/bookings")
+public class BookingController {
+
+    private final BookingEngine bookings;
+
+    public BookingController(BookingEngine bookings) {
+        this.bookings = bookings;
+    }
+
+    @GetMapping("/{id}")
+    public Booking getById(@PathVariable int id) {
+        return bookings.findBooking(id).orElseThrow(() -> new NotFoundException("Booking", id));
+    }
+
+    /** Cancels the booking and returns its seats to availability. */
+    @DeleteMapping("/{id}")
+    public Booking cancel(@PathVariable int id) {
+        return bookings.cancel(id);
+    }
+}
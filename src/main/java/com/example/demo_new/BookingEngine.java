@@ -0,0 +1,341 @@
+package com.example.demo_new;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Books seats against an in-memory {@link SeatMap} per screening, loaded from booked_seats on
+ * first use. The CAS claim settles races between concurrent buyers on this node without a
+ * database round-trip; the booked_seats primary key settles races with other nodes, after which
+ * the seats booked there are marked taken here too. Bookings and cancellations made on other nodes
+ * reach loaded maps through {@link #apply(BookingChange)}, and a map is refreshed from the database
+ * when those notifications may have been missed; seats claimed here but not yet in the database
+ * (open claims and holds, journaled bookings not yet drained) survive a refresh.
+ */
+public class BookingEngine implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(BookingEngine.class);
+    public static final int MAX_SEATS_PER_BOOKING = 20;
+    private static final int REFRESH_ATTEMPTS = 3;
+
+    /**
+     * One screening's seats. seats holds every seat known to be taken, claimed holds the subset
+     * claimed on this node that the database does not have yet. Claims and bookings take the read
+     * lock and change bits by CAS; freeing seats and refreshing take the write lock, since they
+     * must not clear a bit claimed concurrently.
+     */
+    private static final class ScreeningState {
+        final Screening screening;
+        final SeatMap seats;
+        final SeatMap claimed;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        /** Bumped by every change made outside a refresh, so a refresh can tell its snapshot went stale. */
+        final AtomicLong changes = new AtomicLong();
+
+        ScreeningState(Screening screening, SeatMap seats) {
+            this.screening = screening;
+            this.seats = seats;
+            this.claimed = new SeatMap(seats.getCapacity());
+        }
+
+        boolean claim(int[] indexes) {
+            lock.readLock().lock();
+            try {
+                if (!seats.tryClaim(indexes)) return false;
+                // claimed only has bits that seats has, so these are free there too
+                if (!claimed.tryClaim(indexes)) throw new IllegalStateException("claimed seats out of step with the seat map");
+                return true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void release(int[] indexes) {
+            lock.readLock().lock();
+            try {
+                claimed.release(indexes);
+                seats.release(indexes);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /** The claim is in the database now; its seats stay taken. */
+        void settle(int[] indexes) {
+            lock.readLock().lock();
+            try {
+                for (int seat : indexes) claimed.markFree(seat);
+                changes.incrementAndGet();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void booked(int[] indexes) {
+            lock.readLock().lock();
+            try {
+                for (int seat : indexes) seats.markTaken(seat);
+                changes.incrementAndGet();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /** Frees cancelled seats, except any claimed here since; those now belong to the claim. */
+        void freed(int[] indexes) {
+            lock.writeLock().lock();
+            try {
+                for (int seat : indexes) {
+                    if (!claimed.isTaken(seat)) seats.markFree(seat);
+                }
+                changes.incrementAndGet();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /** Replaces the map with the booked seats read while changes was at seen; false if it has moved since. */
+        boolean refresh(List<Integer> booked, long seen) {
+            lock.writeLock().lock();
+            try {
+                if (changes.get() != seen) return false;
+                seats.reset(booked, claimed);
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private final DBmanager db;
+    private final ConcurrentHashMap<Integer, ScreeningState> screenings = new ConcurrentHashMap<>();
+    private volatile BookingJournal journal;
+    private volatile SalesRollups rollups;
+
+    public BookingEngine(DBmanager db) {
+        this.db = db;
+    }
+
+    /** Confirms bookings through the journal instead of a direct insert. Set before the first request. */
+    public void setJournal(BookingJournal journal) {
+        this.journal = journal;
+        journal.setDrainListener(this::stored);
+    }
+
+    /** Counts bookings into the sales rollups once they are in the database, and takes cancellations off. */
+    public void setRollups(SalesRollups rollups) {
+        this.rollups = rollups;
+    }
+
+    public BookingJournal getJournal() { return journal; }
+
+    /** Stops the journal threads; anything not yet drained is replayed on the next start. */
+    @Override
+    public void close() {
+        if (journal != null) journal.close();
+    }
+
+    /** Replays the journal left by the previous run, if journaling is on; runs after database setup. */
+    public void recoverJournal() {
+        if (journal != null) journal.recover();
+    }
+
+    public Optional<Booking> findBooking(int id) {
+        Optional<Booking> booking = db.findBookingById(id);
+        if (booking.isEmpty() && awaitJournal()) booking = db.findBookingById(id);
+        return booking;
+    }
+
+    /** Seats claimed in a screening's map for one viewer, not yet written to the database. */
+    static final class Claim {
+        final int screeningId;
+        final int viewerId;
+        final int[] seats; // 0-based, ascending
+        final double totalPrice;
+        private final ScreeningState state;
+
+        private Claim(ScreeningState state, int viewerId, int[] seats, double totalPrice) {
+            this.screeningId = state.screening.getId();
+            this.viewerId = viewerId;
+            this.seats = seats;
+            this.totalPrice = totalPrice;
+            this.state = state;
+        }
+    }
+
+    public Booking book(int screeningId, BookingRequest req) {
+        return confirm(claim(screeningId, req));
+    }
+
+    /** Checks the request, prices it and claims the seats, or throws SeatUnavailableException. */
+    Claim claim(int screeningId, BookingRequest req) {
+        ScreeningState state = state(screeningId);
+        int[] seats = seatIndexes(req.getSeats(), state.screening);
+
+        Viewer viewer = db.findViewerById(req.getViewerId()).orElseThrow(() -> new NotFoundException("Viewer", req.getViewerId()));
+        int movieId = state.screening.getMovieId();
+        Movie movie = db.findMovieById(movieId).orElseThrow(() -> new NotFoundException("Movie", movieId));
+        if (!viewer.canWatch(movie)) {
+            throw new IllegalArgumentException("viewer is under the age restriction (" + movie.getAgeRestriction() + "+) of this movie");
+        }
+        double totalPrice = movie.priceForTickets(seats.length);
+
+        if (!state.claim(seats)) throw new SeatUnavailableException(screeningId);
+        return new Claim(state, viewer.getId(), seats, totalPrice);
+    }
+
+    /** Writes a claim as a booking; the seats are released again if that fails. */
+    Booking confirm(Claim claim) {
+        Booking booking;
+        try {
+            BookingJournal journal = this.journal;
+            if (journal != null) return journal.append(claim.screeningId, claim.viewerId, seatNumbers(claim.seats), claim.totalPrice);
+            booking = db.createBooking(claim.screeningId, claim.viewerId, seatNumbers(claim.seats), claim.totalPrice);
+        } catch (RuntimeException e) {
+            release(claim);
+            if (DBmanager.isUniqueViolation(e) || e instanceof SeatUnavailableException) {
+                // booked through another node (the journal's claim found it taken) and its notification
+                // not here yet (or lost): re-read the map
+                refresh(claim.state);
+                throw new SeatUnavailableException(claim.screeningId);
+            }
+            throw e;
+        }
+        stored(List.of(booking));
+        return booking;
+    }
+
+    /** Gives back seats that were claimed but will not be booked. Each claim must be released at most once. */
+    void release(Claim claim) {
+        claim.state.release(claim.seats);
+    }
+
+    /** Cancels a booking and frees its seats. */
+    public Booking cancel(int bookingId) {
+        awaitJournal();
+        Booking booking = db.deleteBooking(bookingId).orElseThrow(() -> new NotFoundException("Booking", bookingId));
+        SalesRollups rollups = this.rollups;
+        if (rollups != null) rollups.cancelled(booking);
+        // the booking's seats only: any of them claimed here since (a stale map) stay with that claim
+        ScreeningState state = screenings.get(booking.getScreeningId());
+        if (state != null) state.freed(seatIndexes(booking.getSeats()));
+        return booking;
+    }
+
+    /** Bookings that reached the database, directly or drained from the journal. */
+    private void stored(List<Booking> bookings) {
+        for (Booking booking : bookings) {
+            // replayed bookings of a previous run were never claimed here; their seats came with the load
+            ScreeningState state = screenings.get(booking.getScreeningId());
+            if (state != null) state.settle(seatIndexes(booking.getSeats()));
+        }
+        SalesRollups rollups = this.rollups;
+        if (rollups != null) rollups.booked(bookings);
+    }
+
+    /**
+     * A booking or cancellation committed by another node (or by a cascading delete). Screenings not
+     * loaded here are skipped; one being loaded gets it once loaded.
+     */
+    public void apply(BookingChange change) {
+        screenings.computeIfPresent(change.getScreeningId(), (id, state) -> {
+            int[] indexes = seatIndexes(change.getSeats());
+            if (change.isBooked()) state.booked(indexes);
+            else state.freed(indexes);
+            return state;
+        });
+    }
+
+    /** Re-reads every loaded map from the database, after booking notifications may have been lost. */
+    public void refreshAll() {
+        for (ScreeningState state : screenings.values()) refresh(state);
+    }
+
+    private void refresh(ScreeningState state) {
+        int screeningId = state.screening.getId();
+        for (int attempt = 0; attempt < REFRESH_ATTEMPTS; attempt++) {
+            long seen = state.changes.get();
+            List<Integer> booked = new ArrayList<>();
+            for (int seat : db.findBookedSeats(screeningId)) booked.add(seat - 1);
+            if (state.refresh(booked, seen)) return;
+        }
+        // busy enough that every read raced a change; those changes are applied, so the map is no staler than before
+        LOG.warn("seat map of screening {} not refreshed after {} attempts", screeningId, REFRESH_ATTEMPTS);
+    }
+
+    public SeatAvailability availability(int screeningId) {
+        ScreeningState state = state(screeningId);
+        List<Integer> taken = new ArrayList<>();
+        for (int seat : state.seats.taken()) taken.add(seat + 1);
+        return new SeatAvailability(screeningId, state.screening.getSeatRows(), state.screening.getSeatsPerRow(),
+                state.seats.available(), taken);
+    }
+
+    private ScreeningState state(int screeningId) {
+        ScreeningState state = screenings.get(screeningId);
+        if (state != null) return state;
+        // a map loaded before the replay would miss the replayed bookings
+        if (journal != null && !journal.isReady()) throw new ServiceBusyException("booking journal is recovering", 1);
+        Screening screening = db.findScreeningById(screeningId).orElseThrow(() -> new NotFoundException("Screening", screeningId));
+        return screenings.computeIfAbsent(screeningId, id -> {
+            SeatMap seats = new SeatMap(screening.getCapacity());
+            for (int seat : db.findBookedSeats(id)) seats.markTaken(seat - 1);
+            return new ScreeningState(screening, seats);
+        });
+    }
+
+    /** Lets bookings journaled so far reach the database, so reads by id see them. False if nothing to wait for. */
+    private boolean awaitJournal() {
+        BookingJournal journal = this.journal;
+        if (journal == null || !journal.isReady()) return false;
+        if (!journal.awaitDrained(5000)) throw new ServiceBusyException("booking journal is behind", 1);
+        return true;
+    }
+
+    /** Validates 1-based seat numbers and turns them into sorted, distinct 0-based indexes. */
+    private static int[] seatIndexes(List<Integer> seats, Screening screening) {
+        if (seats == null || seats.isEmpty()) throw new IllegalArgumentException("seats is required");
+        if (seats.size() > MAX_SEATS_PER_BOOKING) {
+            throw new IllegalArgumentException("at most " + MAX_SEATS_PER_BOOKING + " seats per booking");
+        }
+        int[] indexes = new int[seats.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            Integer seat = seats.get(i);
+            if (seat == null || seat < 1 || seat > screening.getCapacity()) {
+                throw new IllegalArgumentException("seats must be between 1 and " + screening.getCapacity());
+            }
+            indexes[i] = seat - 1;
+        }
+        Arrays.sort(indexes);
+        for (int i = 1; i < indexes.length; i++) {
+            if (indexes[i] == indexes[i - 1]) throw new IllegalArgumentException("seats must not repeat");
+        }
+        return indexes;
+    }
+
+    /** 1-based seat numbers as 0-based indexes. */
+    private static int[] seatIndexes(List<Integer> seats) {
+        int[] indexes = new int[seats.size()];
+        for (int i = 0; i < indexes.length; i++) indexes[i] = seats.get(i) - 1;
+        return indexes;
+    }
+
+    private static int[] seatIndexes(int[] seats) {
+        int[] indexes = new int[seats.length];
+        for (int i = 0; i < indexes.length; i++) indexes[i] = seats[i] - 1;
+        return indexes;
+    }
+
+    private static List<Integer> seatNumbers(int[] indexes) {
+        List<Integer> numbers = new ArrayList<>(indexes.length);
+        for (int index : indexes) numbers.add(index + 1);
+        return numbers;
+    }
+}
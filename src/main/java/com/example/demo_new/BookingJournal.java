@@ -0,0 +1,700 @@
+package com.example.demo_new;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead path for confirmed bookings. A booking is one fixed-size record appended to a
+ * memory-mapped segment file; appenders wait until a flusher thread has committed their record,
+ * and one commit covers every record appended meanwhile (group commit), bounded by
+ * {@code maxDelayMicros} or {@code groupMax} records. A drain thread copies durable records into
+ * bookings/booked_seats and deletes segments once they are fully drained.
+ * <p>
+ * A group commit first claims the group's seats in booked_seats with one statement (rows under the
+ * booking's id with no booking yet, tagged with this journal's id), then forces the records. A
+ * booking that lost a seat to another node has its record voided before the force and its buyer
+ * gets {@link SeatUnavailableException}, so nobody is told a seat is theirs that the database has
+ * given to someone else. Draining turns the claims into the booking's seats.
+ * <p>
+ * On startup, {@link #recover()} replays whatever segments are left into the database before any
+ * seat map is loaded, then drops this journal's claims that no replayed record took up (a crash
+ * between the claim and the force). A record that does not decode but has readable records after
+ * it was damaged, not torn: it is skipped like in the drain, and its segment and the claims are
+ * kept for an operator instead of being dropped. Booking ids are taken from the bookings sequence
+ * in blocks up front, so a replay writes the same ids and skips rows already there.
+ */
+public class BookingJournal implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(BookingJournal.class);
+
+    private static final int MAGIC = 0x424B4A31; // "BKJ1"
+    /** Replaces MAGIC in a record whose seats could not be claimed: durable, but not a booking. */
+    private static final int VOID = 0x424B4A30; // "BKJ0"
+    /** magic, crc, seq, id, screening, viewer, seat count, 20 seats, price, created at. */
+    static final int RECORD_SIZE = 128;
+    private static final int MAX_SEATS = 20;
+    private static final int ID_BLOCK = 1000;
+    private static final long CLOSE_WAIT_MILLIS = 10_000;
+    private static final String PREFIX = "bookings-";
+    private static final String SUFFIX = ".journal";
+    private static final String ID_FILE = "journal.id";
+
+    private static final class Segment {
+        final long number;
+        final Path path;
+        final MappedByteBuffer buffer;
+
+        Segment(long number, Path path, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private enum Outcome { DURABLE, CONFLICT, FAILED }
+
+    /** A record appended and waiting for its group commit; outcome and error are guarded by the lock. */
+    private static final class Pending {
+        final Booking booking;
+        final long seq;
+        final Segment segment;
+        final int offset;
+        Outcome outcome;
+        RuntimeException error;
+
+        Pending(Booking booking, long seq, Segment segment, int offset) {
+            this.booking = booking;
+            this.seq = seq;
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    private final DBmanager db;
+    private final Path dir;
+    private final int segmentBytes;
+    private final long maxDelayNanos;
+    private final int groupMax;
+    private final int drainBatch;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>(); // oldest first; last is written to
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();    // appended, not yet taken by the flusher
+    private final ByteBuffer scratch = ByteBuffer.allocate(RECORD_SIZE);
+    private int writeOffset;
+    private long lastSeq;
+    private long durableSeq;
+    private long drainedSeq;
+    private long oldestUnflushed;
+    private IOException failure;
+    private boolean closing;
+    private volatile boolean ready;
+    private volatile boolean running = true;
+    /** Tags this journal's seat claims; kept in the journal directory so it outlives restarts. */
+    private String journalId;
+
+    private final Object idLock = new Object();
+    private final ArrayDeque<Integer> ids = new ArrayDeque<>();
+
+    private final Thread flusher = new Thread(this::flushLoop, "booking-journal-flush");
+    private final Thread drainer = new Thread(this::drainLoop, "booking-journal-drain");
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder unreadable = new LongAdder();
+    private volatile Consumer<List<Booking>> drainListener = bookings -> { };
+
+    public BookingJournal(DBmanager db, Path dir, int segmentBytes, long maxDelayMicros, int groupMax, int drainBatch) {
+        if (segmentBytes < RECORD_SIZE) throw new IllegalArgumentException("segmentBytes must hold at least one record");
+        this.db = db;
+        this.dir = dir;
+        this.segmentBytes = segmentBytes - segmentBytes % RECORD_SIZE;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.groupMax = Math.max(1, groupMax);
+        this.drainBatch = Math.max(1, drainBatch);
+        flusher.setDaemon(true);
+        drainer.setDaemon(true);
+    }
+
+    /** Builds from BOOKING_JOURNAL_DIR, _SEGMENT_MB, _MAX_DELAY_MICROS, _GROUP_MAX and _DRAIN_BATCH. */
+    static BookingJournal fromEnv(DBmanager db) {
+        return new BookingJournal(db,
+                Path.of(DBmanager.env("BOOKING_JOURNAL_DIR", "journal")),
+                Integer.parseInt(DBmanager.env("BOOKING_JOURNAL_SEGMENT_MB", "64")) << 20,
+                Long.parseLong(DBmanager.env("BOOKING_JOURNAL_MAX_DELAY_MICROS", "200")),
+                Integer.parseInt(DBmanager.env("BOOKING_JOURNAL_GROUP_MAX", "256")),
+                Integer.parseInt(DBmanager.env("BOOKING_JOURNAL_DRAIN_BATCH", "500"))
+        );
+    }
+
+    /**
+     * Replays segments left by a previous run into the database, deletes those that replayed
+     * cleanly and starts writing a fresh segment. Must run after the schema exists and before bookings are taken.
+     */
+    public void recover() {
+        try {
+            Files.createDirectories(dir);
+            journalId = journalId();
+            List<Path> leftover;
+            try (Stream<Path> files = Files.list(dir)) {
+                leftover = files.filter(p -> segmentNumber(p) >= 0).sorted().toList();
+            }
+            long next = 1;
+            int replayed = 0;
+            List<Booking> batch = new ArrayList<>();
+            List<Path> damaged = new ArrayList<>();
+            for (Path path : leftover) {
+                next = Math.max(next, segmentNumber(path) + 1);
+                ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+                // records that do not decode are only torn by the crash if nothing readable follows them
+                List<Integer> unread = new ArrayList<>();
+                for (int offset = 0; offset + RECORD_SIZE <= data.capacity(); offset += RECORD_SIZE) {
+                    boolean voided = isVoid(data, offset); // its buyer was told the seats were gone
+                    Booking b = voided ? null : decode(data, offset);
+                    if (b == null && !voided) {
+                        if (!isBlank(data, offset)) unread.add(offset);
+                        continue;
+                    }
+                    if (!unread.isEmpty()) {
+                        skipUnreadable(path, unread);
+                        if (!damaged.contains(path)) damaged.add(path);
+                    }
+                    if (b == null) continue;
+                    batch.add(b);
+                    if (batch.size() >= drainBatch) replayed += insert(batch);
+                }
+            }
+            replayed += insert(batch);
+            if (damaged.isEmpty()) {
+                // every record of ours is in the database now, so a claim still without a booking was never acknowledged
+                int orphaned = db.releaseJournalClaims(journalId);
+                if (orphaned > 0) LOG.info("booking journal: released {} seats claimed for bookings that were never journaled", orphaned);
+            } else {
+                // a skipped record may hold an acknowledged booking: its claimed seats stay taken until someone looks
+                LOG.error("booking journal: kept {} and this journal's seat claims because of unreadable records; "
+                        + "remove the segments once their bookings are reconciled", damaged);
+            }
+            for (Path path : leftover) {
+                if (!damaged.contains(path)) Files.delete(path);
+            }
+            if (!leftover.isEmpty()) LOG.info("booking journal: replayed {} bookings from {} segments", replayed, leftover.size());
+
+            lock.lock();
+            try {
+                segments.add(openSegment(next));
+            } finally {
+                lock.unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("booking journal recovery failed in " + dir.toAbsolutePath(), e);
+        }
+        flusher.start();
+        drainer.start();
+        ready = true;
+    }
+
+    private String journalId() throws IOException {
+        Path file = dir.resolve(ID_FILE);
+        if (Files.exists(file)) return Files.readString(file).trim();
+        String id = UUID.randomUUID().toString();
+        Files.writeString(file, id, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+        return id;
+    }
+
+    public boolean isReady() { return ready; }
+
+    /**
+     * Appends a booking and returns once its seats are claimed in the database and its record is on
+     * disk. Throws SeatUnavailableException when a seat was booked through another node.
+     */
+    public Booking append(int screeningId, int viewerId, List<Integer> seats, double totalPrice) {
+        if (!ready) throw new ServiceBusyException("booking journal is recovering", 1);
+        if (seats.size() > MAX_SEATS) throw new IllegalArgumentException("at most " + MAX_SEATS + " seats per journaled booking");
+        Booking booking = new Booking(nextId(), screeningId, viewerId, List.copyOf(seats), totalPrice,
+                OffsetDateTime.now(ZoneOffset.UTC).withNano(0));
+        Pending pending;
+        lock.lock();
+        try {
+            if (closing) throw new ServiceBusyException("booking journal is closed", 1);
+            if (failure != null) throw new UncheckedIOException("booking journal failed", failure);
+            if (writeOffset + RECORD_SIZE > segmentBytes) rotate();
+            long seq = ++lastSeq;
+            encode(booking, seq, scratch);
+            Segment segment = segments.getLast();
+            segment.buffer.put(writeOffset, scratch, 0, RECORD_SIZE);
+            pending = new Pending(booking, seq, segment, writeOffset);
+            writeOffset += RECORD_SIZE;
+            if (queue.isEmpty()) oldestUnflushed = System.nanoTime();
+            queue.add(pending);
+            appended.signal();
+            while (pending.outcome == null) flushed.awaitUninterruptibly();
+        } catch (IOException e) {
+            failure = e;
+            appended.signal(); // the flusher fails whatever is queued
+            throw new UncheckedIOException("booking journal failed", e);
+        } finally {
+            lock.unlock();
+        }
+        return switch (pending.outcome) {
+            case DURABLE -> booking;
+            case CONFLICT -> throw new SeatUnavailableException(screeningId);
+            case FAILED -> throw pending.error;
+        };
+    }
+
+    /** Waits up to timeoutMillis until everything appended so far is in the database. */
+    public boolean awaitDrained(long timeoutMillis) {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            long target = durableSeq;
+            while (drainedSeq < target) {
+                if (nanos <= 0) return false;
+                nanos = drained.awaitNanos(nanos);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Durable bookings not yet in the database. */
+    public long getLag() {
+        lock.lock();
+        try {
+            return durableSeq - drainedSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Bookings refused because a seat was booked through another node: at append, or rarely at drain. */
+    public long getConflicts() { return conflicts.sum(); }
+
+    /** Durable records the drain could not decode and skipped; each is a booking missing from the database. */
+    public long getUnreadable() { return unreadable.sum(); }
+
+    /** Called on the drain thread with the bookings of each batch that reached the database, replays included. */
+    public void setDrainListener(Consumer<List<Booking>> listener) {
+        this.drainListener = listener;
+    }
+
+    private int nextId() {
+        synchronized (idLock) {
+            if (ids.isEmpty()) ids.addAll(db.reserveBookingIds(ID_BLOCK));
+            return ids.poll();
+        }
+    }
+
+    // -------------------- FLUSH --------------------
+
+    private void flushLoop() {
+        lock.lock();
+        try {
+            while (true) {
+                if (queue.isEmpty()) {
+                    if (closing || failure != null) break;
+                    appended.awaitUninterruptibly();
+                    continue;
+                }
+                if (failure != null) break;
+                // let the group fill up, but never hold the oldest record back longer than maxDelay
+                long wait;
+                while (!closing && queue.size() < groupMax
+                        && (wait = oldestUnflushed + maxDelayNanos - System.nanoTime()) > 0) {
+                    appended.awaitNanos(wait);
+                }
+                List<Pending> group = new ArrayList<>(queue);
+                queue.clear();
+                lock.unlock();
+                try {
+                    commit(group);
+                } finally {
+                    lock.lock();
+                }
+                if (!queue.isEmpty()) oldestUnflushed = System.nanoTime();
+                flushed.signalAll();
+            }
+        } catch (InterruptedException e) {
+            // not expected: close() lets the flusher finish instead of interrupting it
+        } finally {
+            // nobody may wait on a flusher that is gone
+            RuntimeException error = new UncheckedIOException("booking journal failed",
+                    failure != null ? failure : new IOException("booking journal closed"));
+            for (Pending p : queue) settle(p, Outcome.FAILED, error);
+            queue.clear();
+            flushed.signalAll();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Claims the group's seats, voids the records of bookings that lost one, forces the records and
+     * settles every appender. Runs without the lock.
+     */
+    private void commit(List<Pending> group) {
+        List<Booking> bookings = new ArrayList<>(group.size());
+        for (Pending p : group) bookings.add(p.booking);
+        Set<Integer> rejected;
+        RuntimeException claimError = null;
+        try {
+            rejected = db.claimJournaledSeats(bookings, journalId);
+        } catch (RuntimeException e) {
+            // the claims may or may not have committed; recover() releases any that did
+            claimError = e;
+            rejected = new HashSet<>();
+            for (Booking b : bookings) rejected.add(b.getId());
+        }
+
+        lock.lock();
+        try {
+            // a voided record is durable too, so that a replay skips it instead of booking it after all
+            for (Pending p : group) {
+                if (rejected.contains(p.booking.getId())) p.segment.buffer.putInt(p.offset, VOID);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (claimError != null) {
+            try {
+                db.releaseSeatClaims(new ArrayList<>(rejected));
+            } catch (RuntimeException e) {
+                LOG.warn("booking journal could not release claims after a failed claim, the next recovery will: {}", e.getMessage());
+            }
+        }
+
+        IOException forceError = null;
+        try {
+            force(group);
+        } catch (UncheckedIOException e) {
+            forceError = e.getCause();
+        } catch (RuntimeException e) {
+            forceError = new IOException("journal force failed", e);
+        }
+
+        lock.lock();
+        try {
+            if (forceError != null) {
+                failure = forceError;
+                for (Pending p : group) settle(p, Outcome.FAILED, new UncheckedIOException("booking journal failed", failure));
+                return;
+            }
+            for (Pending p : group) {
+                if (!rejected.contains(p.booking.getId())) {
+                    settle(p, Outcome.DURABLE, null);
+                } else if (claimError != null) {
+                    settle(p, Outcome.FAILED, claimError);
+                } else {
+                    conflicts.increment();
+                    settle(p, Outcome.CONFLICT, null);
+                }
+            }
+            durableSeq = Math.max(durableSeq, group.get(group.size() - 1).seq);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Forces the part of each segment the group was written to. */
+    private static void force(List<Pending> group) {
+        Segment segment = null;
+        int from = 0;
+        int to = 0;
+        for (Pending p : group) {
+            if (p.segment != segment) {
+                if (segment != null) segment.buffer.force(from, to - from);
+                segment = p.segment;
+                from = p.offset;
+            }
+            to = p.offset + RECORD_SIZE;
+        }
+        if (segment != null) segment.buffer.force(from, to - from);
+    }
+
+    private static void settle(Pending p, Outcome outcome, RuntimeException error) {
+        p.outcome = outcome;
+        p.error = error;
+    }
+
+    /** Called with the lock held when the current segment is full; its records are forced with their group. */
+    private void rotate() throws IOException {
+        segments.add(openSegment(segments.getLast().number + 1));
+        writeOffset = 0;
+    }
+
+    private Segment openSegment(long number) throws IOException {
+        Path path = dir.resolve(String.format("%s%016d%s", PREFIX, number, SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            channel.force(true);
+            return new Segment(number, path, buffer);
+        }
+    }
+
+    // -------------------- DRAIN --------------------
+
+    private void drainLoop() {
+        Segment segment = null;
+        int offset = 0;
+        long backoff = 100;
+        while (running) {
+            List<Booking> batch = new ArrayList<>();
+            long upTo;
+            lock.lock();
+            try {
+                while (running && drainedSeq == durableSeq) flushed.await();
+                upTo = Math.min(durableSeq, drainedSeq + drainBatch);
+                if (segment == null) segment = segments.getFirst();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            // read from our own cursor so a failed batch can be retried from the same place
+            Segment readSegment = segment;
+            int readOffset = offset;
+            List<Segment> finished = new ArrayList<>();
+            for (long seq = drainedSeq + 1; seq <= upTo; seq++) {
+                if (readOffset + RECORD_SIZE > segmentBytes) {
+                    finished.add(readSegment);
+                    readSegment = nextSegment(readSegment);
+                    readOffset = 0;
+                }
+                if (!isVoid(readSegment.buffer, readOffset)) {
+                    Booking b = decode(readSegment.buffer, readOffset);
+                    if (b != null) {
+                        batch.add(b);
+                    } else {
+                        // forced and acknowledged, then damaged on disk: nothing to insert, but the rest must go on
+                        unreadable.increment();
+                        LOG.error("booking journal record {} in {} is unreadable and was skipped; its booking is not in the database",
+                                seq, readSegment.path);
+                    }
+                }
+                readOffset += RECORD_SIZE;
+            }
+
+            try {
+                drain(batch);
+                backoff = 100;
+            } catch (RuntimeException e) {
+                LOG.warn("booking journal drain failed, retrying in {} ms: {}", backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, 30_000);
+                continue;
+            }
+
+            segment = readSegment;
+            offset = readOffset;
+            lock.lock();
+            try {
+                drainedSeq = upTo;
+                for (Segment done : finished) segments.remove(done);
+                drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            for (Segment done : finished) {
+                try {
+                    Files.deleteIfExists(done.path);
+                } catch (IOException e) {
+                    LOG.warn("could not delete drained journal segment {}: {}", done.path, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Segment nextSegment(Segment current) {
+        lock.lock();
+        try {
+            Iterator<Segment> it = segments.iterator();
+            while (it.hasNext()) {
+                if (it.next() == current) return it.next();
+            }
+            throw new IllegalStateException("journal segment " + current.number + " is gone");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Inserts a batch; if a seat conflict fails it, falls back to one booking at a time. */
+    private void drain(List<Booking> batch) {
+        List<Booking> inserted;
+        try {
+            inserted = db.insertJournaledBookings(batch);
+        } catch (RuntimeException e) {
+            if (!DBmanager.isUniqueViolation(e)) throw e;
+            inserted = new ArrayList<>();
+            for (Booking b : batch) {
+                try {
+                    inserted.addAll(db.insertJournaledBookings(List.of(b)));
+                } catch (RuntimeException single) {
+                    if (!DBmanager.isUniqueViolation(single)) {
+                        drained(inserted); // a retry skips these as replayed
+                        throw single;
+                    }
+                    conflicts.increment();
+                    // its seats were claimed when it was journaled, so only a claim released by hand gets here
+                    LOG.error("journaled booking {} (screening {}, viewer {}, seats {}) conflicts with a booking made elsewhere and was dropped",
+                            b.getId(), b.getScreeningId(), b.getViewerId(), b.getSeats());
+                }
+            }
+        }
+        drained(inserted);
+    }
+
+    private void drained(List<Booking> inserted) {
+        if (inserted.isEmpty()) return;
+        try {
+            drainListener.accept(inserted);
+        } catch (RuntimeException e) {
+            LOG.warn("booking journal drain listener failed: {}", e.getMessage());
+        }
+    }
+
+    private int insert(List<Booking> batch) {
+        if (batch.isEmpty()) return 0;
+        drain(batch);
+        int n = batch.size();
+        batch.clear();
+        return n;
+    }
+
+    // -------------------- RECORDS --------------------
+
+    /** Fills into (a RECORD_SIZE heap buffer) with the record of b. */
+    static void encode(Booking b, long seq, ByteBuffer into) {
+        into.clear();
+        into.putInt(MAGIC).putInt(0).putLong(seq)
+                .putInt(b.getId()).putInt(b.getScreeningId()).putInt(b.getViewerId())
+                .putInt(b.getSeats().size());
+        for (int i = 0; i < MAX_SEATS; i++) into.putInt(i < b.getSeats().size() ? b.getSeats().get(i) : 0);
+        into.putDouble(b.getTotalPrice()).putLong(b.getCreatedAt().toInstant().toEpochMilli());
+        CRC32C crc = new CRC32C();
+        crc.update(into.array(), 8, RECORD_SIZE - 8);
+        into.putInt(4, (int) crc.getValue());
+    }
+
+    /** A record that was forced but whose booking was refused; the magic is outside the checksum. */
+    static boolean isVoid(ByteBuffer data, int offset) {
+        return data.getInt(offset) == VOID;
+    }
+
+    /** A slot nothing was ever written to. */
+    static boolean isBlank(ByteBuffer data, int offset) {
+        for (int i = offset; i < offset + RECORD_SIZE; i++) {
+            if (data.get(i) != 0) return false;
+        }
+        return true;
+    }
+
+    /** The booking in the record at offset, or null if the slot is empty or its checksum does not match. */
+    static Booking decode(ByteBuffer data, int offset) {
+        byte[] record = new byte[RECORD_SIZE];
+        data.get(offset, record);
+        ByteBuffer r = ByteBuffer.wrap(record);
+        if (r.getInt() != MAGIC) return null;
+        int stored = r.getInt();
+        CRC32C crc = new CRC32C();
+        crc.update(record, 8, RECORD_SIZE - 8);
+        if (stored != (int) crc.getValue()) return null;
+        r.getLong(); // seq
+        int id = r.getInt();
+        int screeningId = r.getInt();
+        int viewerId = r.getInt();
+        int count = r.getInt();
+        List<Integer> seats = new ArrayList<>(count);
+        for (int i = 0; i < MAX_SEATS; i++) {
+            int seat = r.getInt();
+            if (i < count) seats.add(seat);
+        }
+        double totalPrice = r.getDouble();
+        OffsetDateTime createdAt = Instant.ofEpochMilli(r.getLong()).atOffset(ZoneOffset.UTC);
+        return new Booking(id, screeningId, viewerId, seats, totalPrice, createdAt);
+    }
+
+    /** Counts and reports records found unreadable on replay with readable ones after them. */
+    private void skipUnreadable(Path path, List<Integer> offsets) {
+        for (int offset : offsets) {
+            unreadable.increment();
+            LOG.error("booking journal record {} in {} is unreadable and was skipped; its booking is not in the database",
+                    offset / RECORD_SIZE, path);
+        }
+        offsets.clear();
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) return -1;
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Commits what is already appended, then stops the threads; appends from now on are refused.
+     * Durable records not yet drained are replayed by the next {@link #recover()}.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closing = true;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join(CLOSE_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) LOG.warn("booking journal flusher did not finish within {} ms", CLOSE_WAIT_MILLIS);
+        running = false;
+        lock.lock();
+        try {
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        drainer.interrupt();
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.demo_new;
+
+import java.util.List;
+
+/** DTO for POST /screenings/{id}/bookings. seats are seat numbers as shown by GET /screenings/{id}/seats. */
+public class BookingRequest {
+    private int viewerId;
+    private List<Integer> seats;
+
+    public BookingRequest() {}
+
+    public int getViewerId() { return viewerId; }
+    public void setViewerId(int viewerId) { this.viewerId = viewerId; }
+
+    public List<Integer> getSeats() { return seats; }
+    public void setSeats(List<Integer> seats) { this.seats = seats; }
+}
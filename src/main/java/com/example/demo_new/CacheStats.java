@@ -0,0 +1,34 @@
+package com.example.demo_new;
+
+/** Counters of one entity cache, returned by GET /admin/cache */
+public class CacheStats {
+    private final String entity;
+    private final boolean enabled;
+    private final int size;
+    private final int maxEntries;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long coalesced;
+
+    public CacheStats(String entity, boolean enabled, int size, int maxEntries, long hits, long misses, long evictions, long coalesced) {
+        this.entity = entity;
+        this.enabled = enabled;
+        this.size = size;
+        this.maxEntries = maxEntries;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.coalesced = coalesced;
+    }
+
+    public String getEntity() { return entity; }
+    public boolean isEnabled() { return enabled; }
+    public int getSize() { return size; }
+    public int getMaxEntries() { return maxEntries; }
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getEvictions() { return evictions; }
+    /** Reads that joined a load already running for the same id instead of querying themselves. */
+    public long getCoalesced() { return coalesced; }
+}
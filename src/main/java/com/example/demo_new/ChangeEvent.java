@@ -0,0 +1,46 @@
+package com.example.demo_new;
+
+/**
+ * A committed create, update or delete, as pushed to /events subscribers.
+ * version is null for deletes. Parsed from the "entity:type:id:version" payload
+ * that the notify_change() trigger sends on the catalog_changes channel.
+ */
+public class ChangeEvent {
+    public static final String CHANNEL = "catalog_changes";
+
+    private final String entity;
+    private final String type;
+    private final int id;
+    private final Long version;
+
+    public ChangeEvent(String entity, String type, int id, Long version) {
+        this.entity = entity;
+        this.type = type;
+        this.id = id;
+        this.version = version;
+    }
+
+    /** Null when the payload is not one of ours. */
+    static ChangeEvent parse(String payload) {
+        String[] parts = payload.split(":", -1);
+        if (parts.length != 4) return null;
+        String type = switch (parts[1]) {
+            case "insert" -> "created";
+            case "update" -> "updated";
+            case "delete" -> "deleted";
+            default -> null;
+        };
+        if (type == null) return null;
+        try {
+            Long version = parts[3].isEmpty() ? null : Long.parseLong(parts[3]);
+            return new ChangeEvent(parts[0], type, Integer.parseInt(parts[2]), version);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public String getEntity() { return entity; }
+    public String getType() { return type; }
+    public int getId() { return id; }
+    public Long getVersion() { return version; }
+}
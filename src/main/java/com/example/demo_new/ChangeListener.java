@@ -0,0 +1,133 @@
+package com.example.demo_new;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * LISTENs on the catalog_changes channel over its own connection, so changes committed by any
+ * app node (or by hand in psql) reach this node's subscribers, evict its cached rows and update its
+ * movie eligibility index; with read replicas, cache misses are then only filled from replicas that
+ * have replayed these changes. It also LISTENs on booking_changes, for the seat maps of the
+ * {@link BookingEngine}, and on screening_deletes, for the hall schedules of the
+ * {@link ShowtimeScheduler}. Notifications sent while the connection is down are lost, so every
+ * reconnect broadcasts a resync, drops the index for a reload, refreshes the seat maps and resets
+ * the hall schedules.
+ */
+public class ChangeListener implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeListener.class);
+    private static final int POLL_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final DBmanager db;
+    private final ChangeStream stream;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile BookingEngine bookings;
+    private volatile ShowtimeScheduler scheduler;
+
+    public ChangeListener(DBmanager db, ChangeStream stream) {
+        this.db = db;
+        this.stream = stream;
+        this.thread = new Thread(this::run, "db-change-listener");
+        this.thread.setDaemon(true);
+    }
+
+    /** Keeps the engine's seat maps in step with bookings made through other nodes. */
+    public void setBookingEngine(BookingEngine bookings) {
+        this.bookings = bookings;
+    }
+
+    /** Frees the hall slots of deleted screenings. */
+    public void setScheduler(ShowtimeScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void run() {
+        long backoff = 500;
+        boolean reconnect = false;
+        while (running) {
+            try (Connection conn = db.openListenerConnection()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + ChangeEvent.CHANNEL);
+                    stmt.execute("LISTEN " + BookingChange.CHANNEL);
+                    stmt.execute("LISTEN " + ShowtimeScheduler.CHANNEL);
+                }
+                if (reconnect) {
+                    db.getEligibilityIndex().reset();
+                    stream.resyncAll();
+                    BookingEngine bookings = this.bookings;
+                    if (bookings != null) bookings.refreshAll();
+                    ShowtimeScheduler scheduler = this.scheduler;
+                    if (scheduler != null) scheduler.reset();
+                }
+                backoff = 500;
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                // the WAL position read with the previous batch: commits up to it are notified with that
+                // query's response at the latest, so once the next poll is handled their evictions are done
+                long handled = 0;
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_MILLIS);
+                    ReadReplicas replicas = db.getReplicas();
+                    if (notifications == null || notifications.length == 0) {
+                        // nothing came for a poll: move on, or writes that notify nobody would hold it back
+                        if (replicas != null) {
+                            if (handled > 0) replicas.applied(handled);
+                            handled = ReadReplicas.currentLsn(conn);
+                        }
+                        continue;
+                    }
+                    // before any eviction, so cache fills from replicas wait for these changes
+                    long lsn = replicas == null ? 0 : ReadReplicas.currentLsn(conn);
+                    if (replicas != null) replicas.observed(lsn);
+                    for (PGNotification n : notifications) {
+                        if (n.getName().equals(BookingChange.CHANNEL)) {
+                            BookingChange change = BookingChange.parse(n.getParameter());
+                            BookingEngine bookings = this.bookings;
+                            if (change != null && bookings != null && !change.isLocal()) bookings.apply(change);
+                            continue;
+                        }
+                        if (n.getName().equals(ShowtimeScheduler.CHANNEL)) {
+                            ShowtimeScheduler scheduler = this.scheduler;
+                            if (scheduler != null) scheduler.deleted(n.getParameter());
+                            continue;
+                        }
+                        ChangeEvent event = ChangeEvent.parse(n.getParameter());
+                        if (event == null) continue;
+                        EntityCache<?> cache = db.getCaches().get(event.getEntity());
+                        if (cache != null) cache.invalidate(event.getId());
+                        if (event.getEntity().equals("movies")) db.applyMovieChange(event);
+                        stream.publish(event);
+                    }
+                    if (replicas != null && handled > 0) replicas.applied(handled);
+                    handled = lsn;
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) return;
+                LOG.warn("change listener disconnected, retrying in {} ms: {}", backoff, e.getMessage());
+                reconnect = true;
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+    }
+}
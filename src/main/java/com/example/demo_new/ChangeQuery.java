@@ -0,0 +1,51 @@
+package com.example.demo_new;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Parsed {@code since} and {@code limit} parameters of GET /{entity}/changes.
+ * A token is the (transaction id, row id) of the last change delivered; changes are
+ * returned in that order, and only from transactions that have already finished.
+ */
+public class ChangeQuery {
+    private final boolean hasSince;
+    private final long afterXid;
+    private final int afterId;
+    private final int limit;
+
+    private ChangeQuery(boolean hasSince, long afterXid, int afterId, int limit) {
+        this.hasSince = hasSince;
+        this.afterXid = afterXid;
+        this.afterId = afterId;
+        this.limit = limit;
+    }
+
+    /** @param since token from a previous response's nextToken; null asks only for the current token */
+    public static ChangeQuery parse(String since, Integer limit) {
+        int size = limit == null ? PageQuery.MAX_LIMIT : limit;
+        if (size <= 0 || size > PageQuery.MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + PageQuery.MAX_LIMIT);
+        }
+        if (since == null || since.isBlank()) return new ChangeQuery(false, 0, 0, size);
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(since), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3 || !parts[0].equals("chg")) throw new IllegalArgumentException("invalid token");
+            return new ChangeQuery(true, Long.parseLong(parts[1]), Integer.parseInt(parts[2]), size);
+        } catch (IllegalArgumentException e) {
+            // also covers NumberFormatException and bad base64
+            throw new IllegalArgumentException("invalid since token");
+        }
+    }
+
+    boolean hasSince() { return hasSince; }
+    long getAfterXid() { return afterXid; }
+    int getAfterId() { return afterId; }
+    public int getLimit() { return limit; }
+
+    static String token(long xid, int id) {
+        String raw = "chg|" + xid + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.demo_new;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fans committed changes out to SSE subscribers. An idle subscriber holds no thread: events go
+ * into its bounded queue and a virtual thread is started only to drain a non-empty queue.
+ * When a queue overflows it is emptied and replaced by one "resync" event, telling that client
+ * to catch up through GET /{entity}/changes instead of holding back everyone else.
+ */
+public class ChangeStream implements AutoCloseable {
+    private static final ChangeEvent HEARTBEAT = new ChangeEvent(null, "heartbeat", 0, null);
+    private static final ChangeEvent RESYNC = new ChangeEvent(null, "resync", 0, null);
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final Set<String> entities; // null = all
+        final ArrayBlockingQueue<ChangeEvent> queue;
+        final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter, Set<String> entities) {
+            this.emitter = emitter;
+            this.entities = entities;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        void offer(ChangeEvent event) {
+            if (!queue.offer(event)) {
+                if (event == HEARTBEAT) return;
+                queue.clear();
+                queue.offer(RESYNC);
+                dropped.increment();
+            }
+            if (draining.compareAndSet(false, true)) senders.execute(this::drain);
+        }
+
+        void drain() {
+            try {
+                ChangeEvent event;
+                while ((event = queue.poll()) != null) emitter.send(frame(event));
+            } catch (IOException | IllegalStateException e) {
+                // client went away or the emitter already completed
+                remove(this);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // an event may have arrived between the last poll and clearing the flag
+            if (!queue.isEmpty() && draining.compareAndSet(false, true)) senders.execute(this::drain);
+        }
+    }
+
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sse-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+    private final LongAdder dropped = new LongAdder();
+
+    public ChangeStream(int bufferSize, int maxSubscribers, long heartbeatSeconds) {
+        if (bufferSize < 2) throw new IllegalArgumentException("bufferSize must be at least 2");
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        heartbeats.scheduleAtFixedRate(() -> subscribers.forEach(s -> s.offer(HEARTBEAT)),
+                heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Builds a stream from SSE_BUFFER_SIZE, SSE_MAX_SUBSCRIBERS and SSE_HEARTBEAT_SECONDS. */
+    static ChangeStream fromEnv() {
+        return new ChangeStream(
+                Integer.parseInt(DBmanager.env("SSE_BUFFER_SIZE", "256")),
+                Integer.parseInt(DBmanager.env("SSE_MAX_SUBSCRIBERS", "10000")),
+                Long.parseLong(DBmanager.env("SSE_HEARTBEAT_SECONDS", "15"))
+        );
+    }
+
+    /** @param entities entity names to receive, or null for all */
+    public SseEmitter subscribe(Set<String> entities) {
+        if (subscribers.size() >= maxSubscribers) throw new ServiceBusyException("too many event subscribers", 5);
+        SseEmitter emitter = newEmitter();
+        Subscriber subscriber = new Subscriber(emitter, entities);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    /** The emitter of a new subscriber; overridable so the frames a subscriber is sent can be seen. */
+    SseEmitter newEmitter() {
+        // timeout comes from spring.mvc.async.request-timeout; EventSource reconnects on its own
+        return new SseEmitter();
+    }
+
+    public void publish(ChangeEvent event) {
+        for (Subscriber s : subscribers) {
+            if (s.entities == null || s.entities.contains(event.getEntity())) s.offer(event);
+        }
+    }
+
+    /** Tells every subscriber to catch up via /changes, e.g. after the listener lost its connection. */
+    public void resyncAll() {
+        subscribers.forEach(s -> s.offer(RESYNC));
+    }
+
+    public int getSubscribers() { return subscribers.size(); }
+    public long getDropped() { return dropped.sum(); }
+
+    private SseEmitter.SseEventBuilder frame(ChangeEvent event) {
+        if (event == HEARTBEAT) return SseEmitter.event().comment("heartbeat");
+        SseEmitter.SseEventBuilder frame = SseEmitter.event().name(event.getType());
+        if (event == RESYNC) return frame.data("resync");
+        return frame.data(event, MediaType.APPLICATION_JSON);
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) subscriber.emitter.complete();
+    }
+
+    @Override
+    public void close() {
+        heartbeats.shutdownNow();
+        subscribers.forEach(s -> s.emitter.complete());
+        subscribers.clear();
+        senders.shutdown();
+    }
+}
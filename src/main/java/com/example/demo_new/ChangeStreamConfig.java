@@ -0,0 +1,36 @@
+package com.example.demo_new;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ChangeStreamConfig {
+
+    @Bean(destroyMethod = "close")
+    public ChangeStream changeStream(MeterRegistry meterRegistry) {
+        ChangeStream stream = ChangeStream.fromEnv();
+        meterRegistry.gauge("sse.subscribers", stream, ChangeStream::getSubscribers);
+        FunctionCounter.builder("sse.resyncs.forced", stream, ChangeStream::getDropped)
+                .description("Subscriber queues that overflowed and were replaced by a resync event")
+                .register(meterRegistry);
+        return stream;
+    }
+
+    /**
+     * Feeds the stream from Postgres NOTIFY; starts in the background and reconnects on its own.
+     * Cinema shards notify on their own databases, so each gets a listener too, closed with the shards.
+     * Bookings and screenings live in the main database, so only its listener updates the seat maps
+     * and hall schedules.
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public ChangeListener changeListener(DBmanager db, ChangeStream stream, BookingEngine bookingEngine,
+                                         ShowtimeScheduler scheduler) {
+        if (db.getCinemaShards() != null) db.getCinemaShards().listen(stream);
+        ChangeListener listener = new ChangeListener(db, stream);
+        listener.setBookingEngine(bookingEngine);
+        listener.setScheduler(scheduler);
+        return listener;
+    }
+}
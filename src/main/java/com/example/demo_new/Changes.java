@@ -0,0 +1,26 @@
+package com.example.demo_new;
+
+import java.util.List;
+
+/**
+ * Rows inserted or updated and ids deleted since a token, oldest first.
+ * Pass nextToken as {@code since} on the next call; keep calling while hasMore is true.
+ */
+public class Changes<T> {
+    private final List<T> items;
+    private final List<Integer> deletedIds;
+    private final String nextToken;
+    private final boolean hasMore;
+
+    public Changes(List<T> items, List<Integer> deletedIds, String nextToken, boolean hasMore) {
+        this.items = items;
+        this.deletedIds = deletedIds;
+        this.nextToken = nextToken;
+        this.hasMore = hasMore;
+    }
+
+    public List<T> getItems() { return items; }
+    public List<Integer> getDeletedIds() { return deletedIds; }
+    public String getNextToken() { return nextToken; }
+    public boolean isHasMore() { return hasMore; }
+}
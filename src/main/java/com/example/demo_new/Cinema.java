@@ -1,9 +1,12 @@
 package com.example.demo_new;
 
+import java.time.OffsetDateTime;
 import java.util.Objects;
 
-public class Cinema {
+public class Cinema implements Versioned {
     private final int id;
+    private long version = 1;
+    private OffsetDateTime updatedAt;
     private String name;
     private String city;
     private String address;
@@ -32,6 +35,20 @@ public class Cinema {
     public String getAddress() { return address; }
     public void setAddress(String address) { this.address = address; }
 
+    public long getVersion() { return version; }
+    void setVersion(long version) { this.version = version; }
+
+    public OffsetDateTime getUpdatedAt() { return updatedAt; }
+    void setUpdatedAt(OffsetDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    /** A separate instance with the same state, so a cached row is never shared with callers. */
+    Cinema copy() {
+        Cinema copy = new Cinema(id, name, city, address);
+        copy.version = version;
+        copy.updatedAt = updatedAt;
+        return copy;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
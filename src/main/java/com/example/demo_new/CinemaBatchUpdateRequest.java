@@ -0,0 +1,11 @@
+package com.example.demo_new;
+
+/** DTO for one item of PUT /cinemas/batch */
+public class CinemaBatchUpdateRequest extends CinemaUpdateRequest {
+    private int id;
+
+    public CinemaBatchUpdateRequest() {}
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+}
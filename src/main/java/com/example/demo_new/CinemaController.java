@@ -1,24 +1,84 @@
 package com.example.demo_new;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/cinemas")
 public class CinemaController {
 
-    private final DBmanager db = new DBmanager();
+    private final DBmanager db;
+
+    public CinemaController(DBmanager db) {
+        this.db = db;
+    }
 
     @GetMapping
-    public List<Cinema> getAll() {
-        return db.getAllCinemas();
+    public Page<? extends Versioned> getAll(@RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String after,
+                                            @RequestParam(required = false) String sort,
+                                            @RequestParam(required = false) String city,
+                                            @RequestParam(required = false) String ids,
+                                            @RequestParam(required = false) String fields,
+                                            WebRequest request) {
+        Projection<Cinema> projection = Projection.parse(fields, DBmanager.CINEMA_FIELDS);
+        if (ids != null) {
+            List<Integer> wanted = PageQuery.parseIds(ids, limit, after, sort, city);
+            List<Cinema> rows = db.findCinemasByIds(wanted);
+            Page<? extends Versioned> result = projection == null ? new Page<>(rows, null) : new Page<>(projection.applyAll(rows), null);
+            return ETags.notModified(request, result) ? null : result;
+        }
+        PageQuery page = PageQuery.parse(limit, after, sort, DBmanager.CINEMA_SORTS);
+        Page<? extends Versioned> result = projection == null
+                ? db.findCinemas(page, city)
+                : db.findCinemas(page, city, projection);
+        return ETags.notModified(request, result) ? null : result;
+    }
+
+    /** Ranked, paginated full-text search; every word of q matches as a prefix. */
+    @GetMapping("/search")
+    public Page<? extends Versioned> search(@RequestParam String q,
+                                            @RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String after,
+                                            @RequestParam(required = false) String fields,
+                                            WebRequest request) {
+        Projection<Cinema> projection = Projection.parse(fields, DBmanager.CINEMA_FIELDS);
+        SearchQuery query = SearchQuery.parse(q, limit, after);
+        Page<? extends Versioned> result = projection == null ? db.searchCinemas(query) : db.searchCinemas(query, projection);
+        return ETags.notModified(request, result) ? null : result;
+    }
+
+    /**
+     * Rows written and ids deleted since the token. Without since, returns only the current token:
+     * take it before loading the list, then poll with it to stay in sync.
+     */
+    @GetMapping("/changes")
+    public Changes<Cinema> changes(@RequestParam(required = false) String since,
+                                   @RequestParam(required = false) Integer limit) {
+        return db.findCinemaChanges(ChangeQuery.parse(since, limit));
+    }
+
+    /** Streams the whole table; format is ndjson (default) or csv. */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+        return EntityExporter.export("cinemas", format, RowWriters::cinemaJson, RowWriters::cinemaCsv,
+                RowWriters.CINEMA_CSV_HEADER, db::streamCinemas);
     }
 
+    /** With fields, the cached row is cut down to them; the ETag stays the row's version. */
     @GetMapping("/{id}")
-    public Cinema getById(@PathVariable int id) {
-        return db.findCinemaById(id).orElseThrow(() -> new NotFoundException("Cinema", id));
+    public Versioned getById(@PathVariable int id, @RequestParam(required = false) String fields, WebRequest request) {
+        Projection<Cinema> projection = Projection.parse(fields, DBmanager.CINEMA_FIELDS);
+        Cinema row = db.findCinemaById(id).orElseThrow(() -> new NotFoundException("Cinema", id));
+        if (ETags.notModified(request, row)) return null;
+        return projection == null ? row : projection.apply(row);
     }
 
     @PostMapping
@@ -28,21 +88,60 @@ public class CinemaController {
         return db.createCinema(req);
     }
 
+    /** Optional If-Match makes the update conditional on the version the client last saw. */
     @PutMapping("/{id}")
-    public Cinema update(@PathVariable int id, @RequestBody CinemaUpdateRequest req) {
+    public ResponseEntity<Cinema> update(@PathVariable int id, @RequestBody CinemaUpdateRequest req,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         validateCinema(req.getName());
-        boolean updated = db.updateCinema(id, req);
-        if (!updated) throw new NotFoundException("Cinema", id);
-        return db.findCinemaById(id).orElseThrow(() -> new NotFoundException("Cinema", id));
+        Cinema updated = db.updateCinema(id, req, ETags.parseIfMatch(ifMatch))
+                .orElseThrow(() -> new NotFoundException("Cinema", id));
+        return ETags.ok(updated);
     }
 
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void delete(@PathVariable int id) {
-        boolean deleted = db.deleteCinema(id);
+    public void delete(@PathVariable int id,
+                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        boolean deleted = db.deleteCinema(id, ETags.parseIfMatch(ifMatch));
         if (!deleted) throw new NotFoundException("Cinema", id);
     }
 
+    @PostMapping("/batch")
+    public BatchResult createBatch(@RequestBody List<CinemaCreateRequest> reqs) {
+        BatchResult result = new BatchResult(reqs.size());
+        List<Integer> valid = result.validate(reqs, req -> validateCinema(req.getName()));
+        List<Cinema> created = db.createCinemas(valid.stream().map(reqs::get).toList());
+        for (int i = 0; i < valid.size(); i++) result.ok(valid.get(i), 201, created.get(i).getId());
+        return result;
+    }
+
+    @PutMapping("/batch")
+    public BatchResult updateBatch(@RequestBody List<CinemaBatchUpdateRequest> reqs) {
+        BatchResult result = new BatchResult(reqs.size());
+        List<Integer> valid = result.validate(reqs, req -> validateCinema(req.getName()));
+        boolean[] updated = db.updateCinemas(valid.stream().map(reqs::get).toList());
+        for (int i = 0; i < valid.size(); i++) {
+            int index = valid.get(i);
+            int id = reqs.get(index).getId();
+            if (updated[i]) result.ok(index, 200, id);
+            else result.fail(index, 404, id, new NotFoundException("Cinema", id).getMessage());
+        }
+        return result;
+    }
+
+    @DeleteMapping("/batch")
+    public BatchResult deleteBatch(@RequestBody List<Integer> ids) {
+        BatchResult result = new BatchResult(ids.size());
+        List<Integer> valid = result.validate(ids, id -> {});
+        Set<Integer> deleted = db.deleteCinemas(valid.stream().map(ids::get).toList());
+        for (int index : valid) {
+            int id = ids.get(index);
+            if (deleted.contains(id)) result.ok(index, 204, id);
+            else result.fail(index, 404, id, new NotFoundException("Cinema", id).getMessage());
+        }
+        return result;
+    }
+
     private static void validateCinema(String name) {
         if (name == null || name.isBlank()) throw new IllegalArgumentException("name is required");
     }
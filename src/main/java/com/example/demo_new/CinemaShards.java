@@ -0,0 +1,371 @@
+package com.example.demo_new;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Cinemas split by city over several databases, each behind its own {@link DBmanager} and pool.
+ * A new cinema goes to the shard its city is assigned to (CINEMA_SHARD_i_CITIES), or else to one
+ * picked by a hash of the city. Every shard hands out ids from a sequence stepping by
+ * {@link #MAX_SHARDS} and starting at its own index, so ids stay unique across shards and
+ * {@code id % MAX_SHARDS} names the shard that owns a cinema without a lookup. Lists filtered by
+ * city read one shard; the full list, search and multi-gets query every shard in parallel and
+ * merge in Java. Writes to several shards are one transaction per shard, not one overall.
+ */
+public class CinemaShards implements AutoCloseable {
+    /** Upper bound on the number of shards, and the id stride; fixed once ids have been handed out. */
+    static final int MAX_SHARDS = 64;
+
+    /** Orders text sort values as COLLATE "C" does: by their UTF-8 bytes. */
+    private static final Comparator<Object> BYTEWISE = (a, b) -> Arrays.compareUnsigned(
+            a.toString().getBytes(StandardCharsets.UTF_8), b.toString().getBytes(StandardCharsets.UTF_8));
+
+    /** A search match with its rank, so ranked pages from several shards can be merged. */
+    static final class Hit {
+        final Cinema cinema;
+        final float rank;
+
+        Hit(Cinema cinema, float rank) {
+            this.cinema = cinema;
+            this.rank = rank;
+        }
+    }
+
+    private final List<DBmanager> shards;
+    private final Map<String, Integer> cities;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<ChangeListener> listeners = new ArrayList<>();
+
+    /** @param cities shard index per city, keyed by {@link #normalize}; other cities are hashed */
+    public CinemaShards(List<DBmanager> shards, Map<String, Integer> cities) {
+        if (shards.isEmpty() || shards.size() > MAX_SHARDS) {
+            throw new IllegalArgumentException("between 1 and " + MAX_SHARDS + " cinema shards are supported");
+        }
+        for (int index : cities.values()) {
+            if (index < 0 || index >= shards.size()) throw new IllegalArgumentException("no cinema shard " + index);
+        }
+        this.shards = List.copyOf(shards);
+        this.cities = Map.copyOf(cities);
+    }
+
+    /**
+     * Builds from CINEMA_SHARDS and CINEMA_SHARD_i_URL / _USER / _PASS / _CITIES for i = 0..n-1,
+     * with the pool settings of the main database; null when CINEMA_SHARDS is unset or 0.
+     */
+    static CinemaShards fromEnv() {
+        int count = Integer.parseInt(DBmanager.env("CINEMA_SHARDS", "0"));
+        if (count <= 0) return null;
+        List<DBmanager> shards = new ArrayList<>(count);
+        Map<String, Integer> cities = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String prefix = "CINEMA_SHARD_" + i + "_";
+            String url = DBmanager.env(prefix + "URL", null);
+            if (url == null) throw new IllegalStateException(prefix + "URL is missing. Check .env (CINEMA_SHARDS=" + count + ").");
+            HikariDataSource pool = DBmanager.createPool("cinema-shard-" + i, url,
+                    DBmanager.env(prefix + "USER", DBmanager.env("DB_USER", null)),
+                    DBmanager.env(prefix + "PASS", DBmanager.env("DB_PASS", null)));
+            shards.add(new DBmanager(pool));
+            for (String city : DBmanager.env(prefix + "CITIES", "").split(",")) {
+                if (city.isBlank()) continue;
+                Integer previous = cities.put(normalize(city), i);
+                if (previous != null) throw new IllegalStateException("city " + city.trim() + " is assigned to shards " + previous + " and " + i);
+            }
+        }
+        return new CinemaShards(shards, cities);
+    }
+
+    static String normalize(String city) {
+        return city == null ? "" : city.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    public List<DBmanager> getShards() {
+        return shards;
+    }
+
+    /** Shard a cinema in this city is created on. */
+    public int indexForCity(String city) {
+        String key = normalize(city);
+        Integer assigned = cities.get(key);
+        return assigned != null ? assigned : Math.floorMod(key.hashCode(), shards.size());
+    }
+
+    /** Shard that owns the id, or -1 when no configured shard could have handed it out. */
+    public int indexForId(int id) {
+        if (id <= 0) return -1;
+        int index = id % MAX_SHARDS;
+        return index < shards.size() ? index : -1;
+    }
+
+    /**
+     * Creates the tables on every shard, aligns its id sequence with its index and checks that every
+     * city a shard holds cinemas in still routes to it.
+     */
+    void setup() {
+        for (int i = 0; i < shards.size(); i++) {
+            shards.get(i).setupDatabase();
+            shards.get(i).prepareCinemaShard(i, MAX_SHARDS);
+        }
+        List<String> misrouted = misrouted(gather(allIndexes(), i -> shards.get(i).findCinemaCities()));
+        if (!misrouted.isEmpty()) {
+            throw new IllegalStateException("cinemas would be hidden from city lists and created on another shard: "
+                    + String.join("; ", misrouted) + ". Restore CINEMA_SHARDS and CINEMA_SHARD_i_CITIES, or move those cinemas first");
+        }
+    }
+
+    /**
+     * For every city found on a shard it does not route to (after CINEMA_SHARD_i_CITIES or the shard
+     * count changed), where it is and where it routes; citiesByShard holds each shard's cinema cities.
+     */
+    List<String> misrouted(List<List<String>> citiesByShard) {
+        List<String> misrouted = new ArrayList<>();
+        for (int i = 0; i < citiesByShard.size(); i++) {
+            for (String city : citiesByShard.get(i)) {
+                int routed = indexForCity(city);
+                if (routed != i) misrouted.add(city + " is on shard " + i + " but routes to shard " + routed);
+            }
+        }
+        return misrouted;
+    }
+
+    /** Starts a listener per shard, so cinema changes evict shard caches and reach the stream. */
+    synchronized void listen(ChangeStream stream) {
+        for (DBmanager shard : shards) {
+            ChangeListener listener = new ChangeListener(shard, stream);
+            listener.start();
+            listeners.add(listener);
+        }
+    }
+
+    // -------------------- WRITES --------------------
+
+    public Cinema createCinema(CinemaCreateRequest req) {
+        return shards.get(indexForCity(req.getCity())).createCinema(req);
+    }
+
+    /** One batch insert per shard; result order matches the input. */
+    public List<Cinema> createCinemas(List<CinemaCreateRequest> reqs) {
+        Map<Integer, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < reqs.size(); i++) {
+            positions.computeIfAbsent(indexForCity(reqs.get(i).getCity()), k -> new ArrayList<>()).add(i);
+        }
+        Cinema[] created = new Cinema[reqs.size()];
+        for (Map.Entry<Integer, List<Integer>> shard : positions.entrySet()) {
+            List<Integer> at = shard.getValue();
+            List<Cinema> rows = shards.get(shard.getKey()).createCinemas(at.stream().map(reqs::get).toList());
+            for (int i = 0; i < at.size(); i++) created[at.get(i)] = rows.get(i);
+        }
+        return Arrays.asList(created);
+    }
+
+    /** Empty when no shard owns the id; throws IllegalArgumentException when the new city belongs to another shard. */
+    public Optional<Cinema> updateCinema(int id, CinemaUpdateRequest req, Long expectedVersion) {
+        int index = indexForId(id);
+        if (index < 0) return Optional.empty();
+        DBmanager shard = shards.get(index);
+        Optional<Cinema> current = shard.findCinemaById(id);
+        if (current.isEmpty()) return Optional.empty();
+        requireSameShard(index, current.get(), req.getCity());
+        return shard.updateCinema(id, req, expectedVersion);
+    }
+
+    /** Checked for every row before any shard is written; result[i] is false when reqs[i].id does not exist. */
+    public boolean[] updateCinemas(List<CinemaBatchUpdateRequest> reqs) {
+        Map<Integer, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < reqs.size(); i++) {
+            int index = indexForId(reqs.get(i).getId());
+            if (index >= 0) positions.computeIfAbsent(index, k -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<Integer, List<Integer>> shard : positions.entrySet()) {
+            List<Integer> ids = shard.getValue().stream().map(i -> reqs.get(i).getId()).toList();
+            Map<Integer, Cinema> current = new HashMap<>();
+            for (Cinema cinema : shards.get(shard.getKey()).findCinemasByIds(ids)) current.put(cinema.getId(), cinema);
+            for (int i : shard.getValue()) {
+                Cinema cinema = current.get(reqs.get(i).getId());
+                if (cinema != null) requireSameShard(shard.getKey(), cinema, reqs.get(i).getCity());
+            }
+        }
+        boolean[] updated = new boolean[reqs.size()];
+        for (Map.Entry<Integer, List<Integer>> shard : positions.entrySet()) {
+            List<Integer> at = shard.getValue();
+            boolean[] result = shards.get(shard.getKey()).updateCinemas(at.stream().map(reqs::get).toList());
+            for (int i = 0; i < at.size(); i++) updated[at.get(i)] = result[i];
+        }
+        return updated;
+    }
+
+    /** A cinema keeps its id, and with it its shard, so it cannot move to a city served by another one. */
+    private void requireSameShard(int index, Cinema current, String city) {
+        if (normalize(current.getCity()).equals(normalize(city)) || indexForCity(city) == index) return;
+        throw new IllegalArgumentException("cinema " + current.getId() + " cannot move to " + city
+                + ": that city is served by another shard; create the cinema there instead");
+    }
+
+    public Set<Integer> deleteCinemas(List<Integer> ids) {
+        Set<Integer> deleted = new HashSet<>();
+        for (Map.Entry<Integer, List<Integer>> shard : byShard(ids).entrySet()) {
+            deleted.addAll(shards.get(shard.getKey()).deleteCinemas(shard.getValue()));
+        }
+        return deleted;
+    }
+
+    public boolean deleteCinema(int id, Long expectedVersion) {
+        int index = indexForId(id);
+        return index >= 0 && shards.get(index).deleteCinema(id, expectedVersion);
+    }
+
+    // -------------------- READS --------------------
+
+    public Optional<Cinema> findCinemaById(int id) {
+        int index = indexForId(id);
+        return index < 0 ? Optional.empty() : shards.get(index).findCinemaById(id);
+    }
+
+    /** Rows for the given ids in the same order, skipping ids that do not exist; the shards are asked in parallel. */
+    public List<Cinema> findCinemasByIds(List<Integer> ids) {
+        Map<Integer, List<Integer>> byShard = byShard(ids);
+        List<Integer> indexes = new ArrayList<>(byShard.keySet());
+        Map<Integer, Cinema> rows = new HashMap<>();
+        for (List<Cinema> found : gather(indexes, i -> shards.get(i).findCinemasByIds(byShard.get(i)))) {
+            for (Cinema cinema : found) rows.put(cinema.getId(), cinema);
+        }
+        List<Cinema> ordered = new ArrayList<>(rows.size());
+        for (int id : ids) {
+            Cinema cinema = rows.get(id);
+            if (cinema != null) ordered.add(cinema);
+        }
+        return ordered;
+    }
+
+    /** Every cinema of every shard, by id. */
+    public List<Cinema> getAllCinemas() {
+        List<Cinema> all = new ArrayList<>();
+        for (List<Cinema> rows : gather(allIndexes(), i -> shards.get(i).getAllCinemas())) all.addAll(rows);
+        all.sort(Comparator.comparingInt(Cinema::getId));
+        return all;
+    }
+
+    /**
+     * One page in the requested order. With a city, only its shard is read. Otherwise each shard
+     * returns its own first limit rows after the cursor (text sorted bytewise, so the orders agree)
+     * and the merged first limit rows form the page; the cursor is the last of them, as unsharded.
+     */
+    public Page<Cinema> findCinemas(PageQuery page, String city) {
+        if (city != null && !city.isBlank()) return shards.get(indexForCity(city)).findCinemas(page.bytewise(), city);
+        PageQuery shardPage = page.bytewise();
+        List<Page<Cinema>> pages = gather(allIndexes(), i -> shards.get(i).findCinemas(shardPage, null));
+
+        List<Cinema> merged = new ArrayList<>();
+        boolean hasMore = false;
+        for (Page<Cinema> p : pages) {
+            merged.addAll(p.getItems());
+            hasMore |= p.getNextCursor() != null;
+        }
+        Function<Cinema, Object> sortValue = sortValue(page.sortName());
+        Comparator<Cinema> order = sortValue == null
+                ? Comparator.comparingInt(Cinema::getId)
+                : Comparator.comparing(sortValue, BYTEWISE).thenComparingInt(Cinema::getId);
+        merged.sort(page.isDescending() ? order.reversed() : order);
+
+        if (merged.size() > page.getLimit()) {
+            merged = new ArrayList<>(merged.subList(0, page.getLimit()));
+            hasMore = true;
+        }
+        if (!hasMore || merged.isEmpty()) return new Page<>(merged, null);
+        Cinema last = merged.get(merged.size() - 1);
+        return new Page<>(merged, page.cursor(sortValue == null ? null : sortValue.apply(last), last.getId()));
+    }
+
+    private static Function<Cinema, Object> sortValue(String sortName) {
+        if (sortName.equals("id")) return null;
+        Projection.Field<Cinema> field = DBmanager.CINEMA_FIELDS.get(sortName);
+        return field::valueOf;
+    }
+
+    /** Ranks are computed per row, so every shard ranks a cinema as a single database would. */
+    public Page<Cinema> searchCinemas(SearchQuery query) {
+        List<Hit> merged = new ArrayList<>();
+        boolean hasMore = false;
+        for (Page<Hit> p : gather(allIndexes(), i -> shards.get(i).searchCinemaHits(query))) {
+            merged.addAll(p.getItems());
+            hasMore |= p.getNextCursor() != null;
+        }
+        merged.sort(Comparator.comparingDouble((Hit h) -> -h.rank).thenComparingInt(h -> h.cinema.getId()));
+        if (merged.size() > query.getLimit()) {
+            merged = merged.subList(0, query.getLimit());
+            hasMore = true;
+        }
+        List<Cinema> items = new ArrayList<>(merged.size());
+        for (Hit hit : merged) items.add(hit.cinema);
+        if (!hasMore || merged.isEmpty()) return new Page<>(items, null);
+        Hit last = merged.get(merged.size() - 1);
+        return new Page<>(items, query.cursor(last.rank, last.cinema.getId()));
+    }
+
+    /** Shard after shard, each in id order. */
+    public void streamCinemas(DBmanager.RowConsumer<Cinema> consumer) throws IOException {
+        for (DBmanager shard : shards) shard.streamCinemas(consumer);
+    }
+
+    private Map<Integer, List<Integer>> byShard(List<Integer> ids) {
+        Map<Integer, List<Integer>> byShard = new HashMap<>();
+        for (int id : ids) {
+            int index = indexForId(id);
+            if (index >= 0) byShard.computeIfAbsent(index, k -> new ArrayList<>()).add(id);
+        }
+        return byShard;
+    }
+
+    private List<Integer> allIndexes() {
+        List<Integer> indexes = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) indexes.add(i);
+        return indexes;
+    }
+
+    /** Runs call for every shard index on its own virtual thread; results in the order of indexes. */
+    private <T> List<T> gather(List<Integer> indexes, Function<Integer, T> call) {
+        if (indexes.size() == 1) return List.of(call.apply(indexes.get(0)));
+        List<Future<T>> futures = new ArrayList<>(indexes.size());
+        for (int index : indexes) futures.add(executor.submit(() -> call.apply(index)));
+        List<T> results = new ArrayList<>(indexes.size());
+        try {
+            for (Future<T> future : futures) results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while reading cinema shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("cinema shard read failed", e.getCause());
+        } finally {
+            for (Future<T> future : futures) future.cancel(true);
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (ChangeListener listener : listeners) listener.close();
+        executor.shutdownNow();
+        for (DBmanager shard : shards) shard.close();
+    }
+}
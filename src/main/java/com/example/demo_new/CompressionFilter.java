@@ -0,0 +1,316 @@
+package com.example.demo_new;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzips responses of at least {@code minBytes} with a JSON, CBOR or text Content-Type for clients
+ * that send Accept-Encoding: gzip. Tomcat's own compression never touches responses with a strong
+ * ETag, which is every entity and list response here, hence this filter. A gzipped response gets
+ * its own strong ETag ({@code "7-gzip"}); the suffix is stripped from If-None-Match and If-Match
+ * before controllers compare tags. Streamed responses (exports, /events) are passed through as is.
+ */
+public class CompressionFilter extends OncePerRequestFilter {
+    static final String ETAG_SUFFIX = "-gzip";
+    private static final List<String> COMPRESSIBLE = List.of("application/json", "application/problem+json",
+            "application/cbor", "text/plain", "text/csv", "text/html");
+
+    private final int minBytes;
+
+    public CompressionFilter(int minBytes) {
+        if (minBytes < 0) throw new IllegalArgumentException("minBytes cannot be negative");
+        this.minBytes = minBytes;
+    }
+
+    /** Builds from HTTP_COMPRESSION_MIN_BYTES. */
+    static CompressionFilter fromEnv() {
+        return new CompressionFilter(Integer.parseInt(DBmanager.env("HTTP_COMPRESSION_MIN_BYTES", "1024")));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        HttpServletRequest tagged = hasConditionalHeaders(request) ? new TagStrippingRequest(request) : request;
+        if (!acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            chain.doFilter(tagged, response);
+            return;
+        }
+        GzipResponse gzip = new GzipResponse(request, response);
+        chain.doFilter(tagged, gzip);
+        gzip.finish();
+    }
+
+    /** True when Accept-Encoding lists gzip, or * without naming gzip, with a non-zero q. */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        Boolean gzip = null, any = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            boolean accepted = true;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim().toLowerCase(Locale.ROOT);
+                if (param.startsWith("q=")) accepted = !param.substring(2).trim().matches("0(\\.0*)?");
+            }
+            if (coding.equals("gzip")) gzip = accepted;
+            else if (coding.equals("*")) any = accepted;
+        }
+        return gzip != null ? gzip : any != null && any;
+    }
+
+    private static boolean hasConditionalHeaders(HttpServletRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null || request.getHeader(HttpHeaders.IF_MATCH) != null;
+    }
+
+    private static boolean compressible(String contentType) {
+        if (contentType == null) return false;
+        String type = contentType.toLowerCase(Locale.ROOT);
+        for (String prefix : COMPRESSIBLE) {
+            if (type.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /** "7" becomes "7-gzip"; weak tags already allow either encoding and are left alone. */
+    private static String gzipTag(String etag) {
+        if (etag == null || !etag.startsWith("\"") || !etag.endsWith("\"") || etag.length() < 2) return etag;
+        return etag.substring(0, etag.length() - 1) + ETAG_SUFFIX + "\"";
+    }
+
+    /** Shows controllers the tags they issued, without the suffix the gzipped response carried. */
+    private static final class TagStrippingRequest extends HttpServletRequestWrapper {
+        TagStrippingRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        private static boolean conditional(String name) {
+            return HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name) || HttpHeaders.IF_MATCH.equalsIgnoreCase(name);
+        }
+
+        private static String strip(String value) {
+            return value == null ? null : value.replace(ETAG_SUFFIX + "\"", "\"");
+        }
+
+        @Override
+        public String getHeader(String name) {
+            String value = super.getHeader(name);
+            return conditional(name) ? strip(value) : value;
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            Enumeration<String> values = super.getHeaders(name);
+            if (!conditional(name) || values == null) return values;
+            return Collections.enumeration(Collections.list(values).stream().map(TagStrippingRequest::strip).toList());
+        }
+    }
+
+    /**
+     * Buffers the body until it reaches minBytes, then decides once: gzip it, or send it as is.
+     * A body that ends below the threshold is sent as is with an exact Content-Length.
+     */
+    private final class GzipResponse extends HttpServletResponseWrapper {
+        private final HttpServletRequest request;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private OutputStream target; // null until decided
+        private GZIPOutputStream gzip;
+        private long contentLength = -1;
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+
+        GzipResponse(HttpServletRequest request, HttpServletResponse response) {
+            super(response);
+            this.request = request;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            setContentLengthLong(len);
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            if (target == null) contentLength = len;
+            else if (gzip == null) super.setContentLengthLong(len); // a gzipped length is unknown until the end
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(value == null ? -1 : Long.parseLong(value));
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) setHeader(name, value);
+            else super.addHeader(name, value);
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            setHeader(name, String.valueOf(value));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (writer != null) throw new IllegalStateException("getWriter() was already called");
+            return stream();
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) {
+                if (stream != null) throw new IllegalStateException("getOutputStream() was already called");
+                writer = new PrintWriter(new OutputStreamWriter(stream(), Charset.forName(getCharacterEncoding())));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) writer.flush();
+            if (target == null && !request.isAsyncStarted()) return; // not worth committing a partial body
+            flush();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void resetBuffer() {
+            if (target == null) buffer.reset();
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            if (target == null) {
+                buffer.reset();
+                contentLength = -1;
+            }
+            super.reset();
+        }
+
+        private ServletOutputStream stream() {
+            if (stream == null) {
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        write(new byte[]{(byte) b}, 0, 1);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        GzipResponse.this.write(b, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        GzipResponse.this.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        finish();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return target == null || container().isReady(); // buffered writes never block
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        // the container calls back when its stream, which everything ends up in, can take more
+                        container().setWriteListener(listener);
+                    }
+                };
+            }
+            return stream;
+        }
+
+        private ServletOutputStream container() {
+            try {
+                return GzipResponse.super.getOutputStream();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void write(byte[] b, int off, int len) throws IOException {
+            if (target == null) {
+                buffer.write(b, off, len);
+                if (buffer.size() >= minBytes) decide(true);
+                else if (request.isAsyncStarted()) decide(false);
+                return;
+            }
+            target.write(b, off, len);
+        }
+
+        private void flush() throws IOException {
+            if (target == null) {
+                if (!request.isAsyncStarted()) return;
+                decide(false);
+            }
+            target.flush();
+        }
+
+        private void decide(boolean largeEnough) throws IOException {
+            boolean eligible = compressible(getContentType()) && getHeader(HttpHeaders.CONTENT_ENCODING) == null;
+            if (eligible) super.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (eligible && largeEnough && !request.isAsyncStarted() && !isCommitted()) {
+                super.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                super.setHeader(HttpHeaders.ETAG, gzipTag(getHeader(HttpHeaders.ETAG)));
+                gzip = new GZIPOutputStream(super.getOutputStream(), 8192, true);
+                target = gzip;
+            } else {
+                if (contentLength >= 0) super.setContentLengthLong(contentLength);
+                else if (!largeEnough && !request.isAsyncStarted()) super.setContentLengthLong(buffer.size());
+                target = super.getOutputStream();
+            }
+            buffer.writeTo(target);
+            buffer = null;
+        }
+
+        /** Completes the body once the chain returns; a 304 echoes the gzip tag the client sent. */
+        void finish() throws IOException {
+            if (writer != null) writer.flush();
+            if (request.isAsyncStarted()) return;
+            if (getStatus() == HttpServletResponse.SC_NOT_MODIFIED) {
+                String gzipTag = gzipTag(getHeader(HttpHeaders.ETAG));
+                String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+                if (gzipTag != null && ifNoneMatch != null && ifNoneMatch.contains(gzipTag)) {
+                    super.setHeader(HttpHeaders.ETAG, gzipTag);
+                }
+                return;
+            }
+            if (target == null) {
+                if (buffer.size() == 0) return;
+                decide(false);
+            }
+            if (gzip != null) gzip.finish();
+        }
+    }
+}
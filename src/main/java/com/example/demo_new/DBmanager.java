@@ -1,22 +1,121 @@
 package com.example.demo_new;
 
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+public class DBmanager implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(DBmanager.class);
+
+    public static final Map<String, PageQuery.SortColumn> MOVIE_SORTS = sorts(
+            new PageQuery.SortColumn("title", "title", PageQuery.SortColumn.Type.TEXT),
+            new PageQuery.SortColumn("durationMinutes", "duration", PageQuery.SortColumn.Type.INT),
+            new PageQuery.SortColumn("ageRestriction", "age_restriction", PageQuery.SortColumn.Type.INT),
+            new PageQuery.SortColumn("ticketPrice", "price", PageQuery.SortColumn.Type.DOUBLE));
+    public static final Map<String, PageQuery.SortColumn> VIEWER_SORTS = sorts(
+            new PageQuery.SortColumn("fullName", "full_name", PageQuery.SortColumn.Type.TEXT),
+            new PageQuery.SortColumn("age", "age", PageQuery.SortColumn.Type.INT));
+    public static final Map<String, PageQuery.SortColumn> CINEMA_SORTS = sorts(
+            new PageQuery.SortColumn("name", "name", PageQuery.SortColumn.Type.TEXT));
+
+    /** Fields that fields= may select, besides id, version and updatedAt. */
+    public static final Map<String, Projection.Field<Movie>> MOVIE_FIELDS = Projection.fields(
+            new Projection.Field<>("title", "title", PageQuery.SortColumn.Type.TEXT, Movie::getTitle),
+            new Projection.Field<>("description", "description", PageQuery.SortColumn.Type.TEXT, Movie::getDescription),
+            new Projection.Field<>("durationMinutes", "duration", PageQuery.SortColumn.Type.INT, Movie::getDurationMinutes),
+            new Projection.Field<>("ageRestriction", "age_restriction", PageQuery.SortColumn.Type.INT, Movie::getAgeRestriction),
+            new Projection.Field<>("ticketPrice", "price", PageQuery.SortColumn.Type.DOUBLE, Movie::getTicketPrice));
+    public static final Map<String, Projection.Field<Viewer>> VIEWER_FIELDS = Projection.fields(
+            new Projection.Field<>("fullName", "full_name", PageQuery.SortColumn.Type.TEXT, Viewer::getFullName),
+            new Projection.Field<>("age", "age", PageQuery.SortColumn.Type.INT, Viewer::getAge),
+            new Projection.Field<>("email", "email", PageQuery.SortColumn.Type.TEXT, Viewer::getEmail));
+    public static final Map<String, Projection.Field<Cinema>> CINEMA_FIELDS = Projection.fields(
+            new Projection.Field<>("name", "name", PageQuery.SortColumn.Type.TEXT, Cinema::getName),
+            new Projection.Field<>("city", "city", PageQuery.SortColumn.Type.TEXT, Cinema::getCity),
+            new Projection.Field<>("address", "address", PageQuery.SortColumn.Type.TEXT, Cinema::getAddress));
+
+    /** Columns each table is read with, in the order its map* method reads them by index. */
+    static final String MOVIE_COLUMNS = "id, version, updated_at, title, description, duration, age_restriction, price";
+    static final String VIEWER_COLUMNS = "id, version, updated_at, full_name, age, email";
+    static final String CINEMA_COLUMNS = "id, version, updated_at, name, city, address";
+    /** Tables whose reads may be served by ReadReplicas; the rest, and every write, use this database. */
+    static final Set<String> REPLICATED_TABLES = Set.of("movies", "viewers", "cinemas");
+    static final String SCREENING_COLUMNS = "id, movie_id, cinema_id, hall, starts_at, seat_rows, seats_per_row";
+    static final String BOOKING_COLUMNS = "id, screening_id, viewer_id, seats, total_price, created_at";
+
+    /**
+     * .env, read on first use rather than when DBmanager is loaded, so that touching the class
+     * (AOT processing, the sort and column constants) never hits the file system. The file is
+     * ENV_FILE (system property env.file or environment variable), default .env in the working directory.
+     */
+    private static final class Env {
+        static final Map<String, String> VALUES = loadEnv(envFile());
+        static final String URL = VALUES.get("DB_URL");
+        static final String USER = VALUES.get("DB_USER");
+        static final String PASS = VALUES.get("DB_PASS");
+
+        private static String envFile() {
+            String path = System.getProperty("env.file");
+            if (path == null) path = System.getenv("ENV_FILE");
+            return path == null || path.isBlank() ? ".env" : path;
+        }
+
+        static void requireConnectionSettings() {
+            if (URL == null || USER == null || PASS == null) {
+                throw new IllegalStateException("DB env vars are missing. Check .env (DB_URL, DB_USER, DB_PASS).");
+            }
+        }
+    }
+
+    /** Pooled data source, or null when connections are opened through DriverManager per call. */
+    private final DataSource dataSource;
+
+    private final EntityCache<Movie> movieCache = EntityCache.fromEnv("movies", Movie::copy);
+    private final EntityCache<Viewer> viewerCache = EntityCache.fromEnv("viewers", Viewer::copy);
+    private final EntityCache<Cinema> cinemaCache = EntityCache.fromEnv("cinemas", Cinema::copy);
+    /** Movies by age restriction, for findEligibleMovies; kept current by the movie writes below and by ChangeListener. */
+    private final EligibilityIndex movieIndex = new EligibilityIndex(this::loadEligibilityEntries);
 
+    /** Merge concurrent find*ById misses into one id = ANY(?) query; null = one query per id. */
+    private volatile BatchLoader<Movie> movieLoader;
+    private volatile BatchLoader<Viewer> viewerLoader;
+    private volatile BatchLoader<Cinema> cinemaLoader;
 
-public class DBmanager {
-    private static String URL;
-    private static String USER;
-    private static String PASS;
+    private volatile QueryMetrics metrics = QueryMetrics.standalone();
+    /** Limits concurrent calls when request threads are cheap (virtual threads); null = unbounded. */
+    private volatile DbBulkhead bulkhead;
+    /** Limits streaming exports instead of {@link #bulkhead}; null = they share it. */
+    private volatile DbBulkhead exportBulkhead;
+    /** Where cinemas live when sharded by city; null = in this database, like everything else. */
+    private volatile CinemaShards cinemaShards;
+    /** Replicas that take list and by-id reads of movies, viewers and cinemas; null = all reads on this database. */
+    private volatile ReadReplicas replicas;
+    private volatile SalesRollups rollups;
+    // sharded: deleted cinemas whose screenings are still to be dropped
+    private final Set<Integer> orphanedCinemas = ConcurrentHashMap.newKeySet();
 
-    static {
-        Map<String, String> env = loadEnv(".env");
-        URL = env.get("DB_URL");
-        USER = env.get("DB_USER");
-        PASS = env.get("DB_PASS");
+    /** Unpooled mode: every call opens its own connection. */
+    public DBmanager() {
+        this(null);
+    }
+
+    /** Pooled mode: connections are borrowed from the given data source. */
+    public DBmanager(DataSource dataSource) {
+        this.dataSource = dataSource;
+        setLoadBatching(Long.parseLong(env("DB_LOAD_BATCH_WINDOW_MICROS", "200")));
     }
 
     private static Map<String, String> loadEnv(String filePath) {
@@ -29,21 +128,279 @@ public class DBmanager {
                 if (parts.length == 2) env.put(parts[0].trim(), parts[1].trim());
             }
         } catch (IOException e) {
-            System.err.println("Error: .env file not found in project root!");
+            System.err.println("Error: " + filePath + " file not found!");
         }
         return env;
     }
 
+    /** Value from .env, falling back to {@code defaultValue} when the key is absent or blank. */
+    static String env(String key, String defaultValue) {
+        String value = Env.VALUES.get(key);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+    /** Builds a lazily started connection pool from the DB_* and DB_POOL_* settings in .env. */
+    static HikariDataSource createPool() {
+        Env.requireConnectionSettings();
+        return createPool("cinema-db", Env.URL, Env.USER, Env.PASS);
+    }
+
+    /** The same DB_POOL_* settings against another database, e.g. a cinema shard. */
+    static HikariDataSource createPool(String name, String url, String user, String pass) {
+        HikariDataSource ds = new HikariDataSource();
+        ds.setPoolName(name);
+        ds.setJdbcUrl(url);
+        ds.setUsername(user);
+        ds.setPassword(pass);
+        ds.setMinimumIdle(Integer.parseInt(env("DB_POOL_MIN_IDLE", "2")));
+        ds.setMaximumPoolSize(Integer.parseInt(env("DB_POOL_MAX_SIZE", "10")));
+        ds.setConnectionTimeout(Long.parseLong(env("DB_POOL_ACQUIRE_TIMEOUT_MS", "5000")));
+        ds.setIdleTimeout(Long.parseLong(env("DB_POOL_IDLE_TIMEOUT_MS", "600000")));
+        ds.setMaxLifetime(Long.parseLong(env("DB_POOL_MAX_LIFETIME_MS", "1800000")));
+        ds.setValidationTimeout(Long.parseLong(env("DB_POOL_VALIDATION_TIMEOUT_MS", "3000")));
+        // Without a test query the driver's Connection.isValid() is used, which is the cheaper check.
+        String testQuery = env("DB_POOL_TEST_QUERY", null);
+        if (testQuery != null) ds.setConnectionTestQuery(testQuery);
+        return ds;
+    }
+
+    /** Replaces the default in-memory metrics, e.g. with ones bound to the application's MeterRegistry. */
+    public void setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setBulkhead(DbBulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+    public DbBulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    /** Exports hold a connection for as long as the client reads; this keeps them off the main bulkhead. */
+    public void setExportBulkhead(DbBulkhead exportBulkhead) {
+        this.exportBulkhead = exportBulkhead;
+    }
+
+    public DbBulkhead getExportBulkhead() {
+        return exportBulkhead;
+    }
+
+    /**
+     * Moves cinemas to the given shards; screenings and bookings stay here. Set before setupDatabase,
+     * which then also sets up the shards. This DBmanager closes them.
+     */
+    public void setCinemaShards(CinemaShards cinemaShards) {
+        this.cinemaShards = cinemaShards;
+    }
+
+    public CinemaShards getCinemaShards() {
+        return cinemaShards;
+    }
+
+    /** Sends reads of REPLICATED_TABLES to these replicas; this DBmanager closes them. */
+    public void setReplicas(ReadReplicas replicas) {
+        this.replicas = replicas;
+    }
+
+    /** Takes the bookings and screenings that deleting a movie, cinema or viewer cascades to off these rollups. */
+    public void setRollups(SalesRollups rollups) {
+        this.rollups = rollups;
+    }
+
+    public ReadReplicas getReplicas() {
+        return replicas;
+    }
+
     private Connection getConnection() throws SQLException {
-        if (URL == null || USER == null || PASS == null) {
-            throw new IllegalStateException("DB env vars are missing. Check .env (DB_URL, DB_USER, DB_PASS).");
+        if (dataSource == null) Env.requireConnectionSettings();
+        long start = System.nanoTime();
+        Connection conn = dataSource != null ? dataSource.getConnection() : DriverManager.getConnection(Env.URL, Env.USER, Env.PASS);
+        metrics.recordAcquire(System.nanoTime() - start);
+        return conn;
+    }
+
+    /**
+     * A connection for a read of table: from a replica that has replayed what this request must see
+     * (for a cache fill, also every change this node has been notified of), else from this database.
+     */
+    private Connection getReadConnection(String table, boolean cacheFill) throws SQLException {
+        ReadReplicas r = replicas;
+        if (r == null || !REPLICATED_TABLES.contains(table)) return getConnection();
+        long start = System.nanoTime();
+        Connection conn = r.connection(cacheFill);
+        if (conn == null) return getConnection();
+        metrics.recordAcquire(System.nanoTime() - start);
+        return conn;
+    }
+
+    /**
+     * Whether a by-id read must skip the entity caches and batch loaders: its consistency token is past
+     * the changes this node has evicted, so a cached or shared row may be older than the token.
+     */
+    private boolean aheadOfCaches() {
+        ReadReplicas r = replicas;
+        return r != null && r.aheadOfCaches();
+    }
+
+    /** This database's current WAL position; a replica that has replayed up to it sees every commit so far. */
+    long currentWalLsn() {
+        return timed("currentWalLsn", () -> {
+            try (Connection conn = getConnection()) {
+                return ReadReplicas.currentLsn(conn);
+            }
+        });
+    }
+
+    // -------------------- METRICS --------------------
+
+    @FunctionalInterface
+    private interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    /** Op of the innermost timed() call on this thread; statements are attributed to it. */
+    private static final ThreadLocal<String> CURRENT_OP = new ThreadLocal<>();
+
+    /** Runs one DBmanager call, recording its duration, outcome and row count under op. */
+    private <T> T timed(String op, SqlCall<T> call) {
+        String outer = CURRENT_OP.get();
+        // nested calls run under the permit already held by the outermost one
+        DbBulkhead limit = outer == null ? bulkhead : null;
+        if (limit != null) enter(limit, op);
+        CURRENT_OP.set(op);
+        long start = System.nanoTime();
+        T result = null;
+        boolean success = false;
+        try {
+            result = call.call();
+            success = true;
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException("DB " + op + " failed", e);
+        } finally {
+            metrics.recordCall(op, System.nanoTime() - start, success ? rowCount(result) : 0, success);
+            if (outer == null) CURRENT_OP.remove();
+            else CURRENT_OP.set(outer);
+            if (limit != null) limit.release();
         }
-        return DriverManager.getConnection(URL, USER, PASS);
+    }
+
+    private void enter(DbBulkhead limit, String op) {
+        try {
+            limit.acquire();
+        } catch (ServiceBusyException e) {
+            metrics.recordRejected(op);
+            throw e;
+        }
+    }
+
+    private static int rowCount(Object result) {
+        if (result instanceof Collection<?> c) return c.size();
+        if (result instanceof Map<?, ?> m) return m.size();
+        if (result instanceof Page<?> p) return p.getItems().size();
+        if (result instanceof Optional<?> o) return o.isPresent() ? 1 : 0;
+        if (result instanceof Boolean b) return b ? 1 : 0;
+        if (result instanceof boolean[] flags) {
+            int n = 0;
+            for (boolean f : flags) if (f) n++;
+            return n;
+        }
+        return result == null ? 0 : 1;
+    }
+
+    private ResultSet executeQuery(PreparedStatement ps, String sql) throws SQLException {
+        long start = System.nanoTime();
+        ResultSet rs = ps.executeQuery();
+        metrics.recordStatement(CURRENT_OP.get(), sql, ps, System.nanoTime() - start);
+        return rs;
+    }
+
+    private int executeUpdate(PreparedStatement ps, String sql) throws SQLException {
+        long start = System.nanoTime();
+        int count = ps.executeUpdate();
+        metrics.recordStatement(CURRENT_OP.get(), sql, ps, System.nanoTime() - start);
+        return count;
+    }
+
+    private int[] executeBatch(PreparedStatement ps, String sql) throws SQLException {
+        long start = System.nanoTime();
+        int[] counts = ps.executeBatch();
+        metrics.recordStatement(CURRENT_OP.get(), sql, ps, System.nanoTime() - start);
+        return counts;
+    }
+
+    /** A connection outside the pool, held for the life of the ChangeListener. */
+    Connection openListenerConnection() throws SQLException {
+        if (dataSource instanceof HikariDataSource hikari) {
+            return DriverManager.getConnection(hikari.getJdbcUrl(), hikari.getUsername(), hikari.getPassword());
+        }
+        Env.requireConnectionSettings();
+        return DriverManager.getConnection(Env.URL, Env.USER, Env.PASS);
+    }
+
+    /** Current pool counters, or null when running unpooled or before the pool has started. */
+    public PoolStats getPoolStats() {
+        if (!(dataSource instanceof HikariDataSource hikari)) return null;
+        HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+        if (pool == null) return null;
+        return new PoolStats(
+                pool.getActiveConnections(),
+                pool.getIdleConnections(),
+                pool.getTotalConnections(),
+                pool.getThreadsAwaitingConnection(),
+                hikari.getMinimumIdle(),
+                hikari.getMaximumPoolSize()
+        );
+    }
+
+    /**
+     * How long a find*ById miss may wait for others to share its query while one is already
+     * running; 0 batches only what arrives together, negative turns batching off.
+     */
+    public void setLoadBatching(long windowMicros) {
+        if (windowMicros < 0) {
+            movieLoader = null;
+            viewerLoader = null;
+            cinemaLoader = null;
+            return;
+        }
+        movieLoader = new BatchLoader<>(ids -> loadByIds("movies", ids, DBmanager::mapMovie, "findMovieById"), windowMicros, PageQuery.MAX_LIMIT);
+        viewerLoader = new BatchLoader<>(ids -> loadByIds("viewers", ids, DBmanager::mapViewer, "findViewerById"), windowMicros, PageQuery.MAX_LIMIT);
+        cinemaLoader = new BatchLoader<>(ids -> loadByIds("cinemas", ids, DBmanager::mapCinema, "findCinemaById"), windowMicros, PageQuery.MAX_LIMIT);
+    }
+
+    /** Single-id lookups and the batched queries that served them, per entity. */
+    public Map<String, BatchLoader<?>> getLoaders() {
+        Map<String, BatchLoader<?>> loaders = new LinkedHashMap<>();
+        if (movieLoader != null) loaders.put("movies", movieLoader);
+        if (viewerLoader != null) loaders.put("viewers", viewerLoader);
+        if (cinemaLoader != null) loaders.put("cinemas", cinemaLoader);
+        return loaders;
+    }
+
+    /** Read-through caches in front of find*ById, keyed by entity name. */
+    public Map<String, EntityCache<?>> getCaches() {
+        Map<String, EntityCache<?>> caches = new LinkedHashMap<>();
+        caches.put("movies", movieCache);
+        caches.put("viewers", viewerCache);
+        caches.put("cinemas", cinemaCache);
+        return caches;
+    }
+
+    public EligibilityIndex getEligibilityIndex() {
+        return movieIndex;
+    }
+
+    @Override
+    public void close() {
+        if (cinemaShards != null) cinemaShards.close();
+        if (replicas != null) replicas.close();
+        if (dataSource instanceof HikariDataSource hikari) hikari.close();
     }
 
     /** Creates required tables if missing. Call once on startup. */
-    public static void setupDatabase() {
-        DBmanager db = new DBmanager();
+    public void setupDatabase() {
         String moviesSql = "CREATE TABLE IF NOT EXISTS movies ("+
                 "id SERIAL PRIMARY KEY,"+
                 "title VARCHAR(255) NOT NULL,"+
@@ -67,287 +424,2120 @@ public class DBmanager {
                 "address VARCHAR(255)"+
             ");";
 
-        try (Connection conn = db.getConnection();
+        // (sort column, id) indexes back the keyset pagination in findMovies/findViewers/findCinemas
+        String[] indexesSql = {
+                "CREATE INDEX IF NOT EXISTS movies_title_id_idx ON movies (title, id)",
+                "CREATE INDEX IF NOT EXISTS movies_duration_id_idx ON movies (duration, id)",
+                "CREATE INDEX IF NOT EXISTS movies_age_restriction_id_idx ON movies (age_restriction, id)",
+                "CREATE INDEX IF NOT EXISTS movies_price_id_idx ON movies (price, id)",
+                "CREATE INDEX IF NOT EXISTS viewers_full_name_id_idx ON viewers (full_name, id)",
+                "CREATE INDEX IF NOT EXISTS viewers_age_id_idx ON viewers (age, id)",
+                "CREATE INDEX IF NOT EXISTS cinemas_name_id_idx ON cinemas (name, id)",
+                "CREATE INDEX IF NOT EXISTS cinemas_city_id_idx ON cinemas (city, id)"
+        };
+
+        // Weighted tsvector columns maintained by Postgres, with GIN indexes for searchMovies/Viewers/Cinemas
+        String[] searchSql = {
+                "ALTER TABLE movies ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS ("
+                        + "setweight(to_tsvector('simple', coalesce(title, '')), 'A') || "
+                        + "setweight(to_tsvector('simple', coalesce(description, '')), 'B')) STORED",
+                "ALTER TABLE viewers ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS ("
+                        + "setweight(to_tsvector('simple', coalesce(full_name, '')), 'A') || "
+                        + "setweight(to_tsvector('simple', coalesce(email, '')), 'B')) STORED",
+                "ALTER TABLE cinemas ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS ("
+                        + "setweight(to_tsvector('simple', coalesce(name, '')), 'A') || "
+                        + "setweight(to_tsvector('simple', coalesce(city, '')), 'B') || "
+                        + "setweight(to_tsvector('simple', coalesce(address, '')), 'C')) STORED",
+                "CREATE INDEX IF NOT EXISTS movies_search_idx ON movies USING GIN (search_vector)",
+                "CREATE INDEX IF NOT EXISTS viewers_search_idx ON viewers USING GIN (search_vector)",
+                "CREATE INDEX IF NOT EXISTS cinemas_search_idx ON cinemas USING GIN (search_vector)"
+        };
+
+        // version and updated_at back ETags, Last-Modified and If-Match; every UPDATE bumps both
+        String[] versionSql = {
+                "ALTER TABLE movies ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1",
+                "ALTER TABLE movies ADD COLUMN IF NOT EXISTS updated_at TIMESTAMPTZ NOT NULL DEFAULT now()",
+                "ALTER TABLE viewers ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1",
+                "ALTER TABLE viewers ADD COLUMN IF NOT EXISTS updated_at TIMESTAMPTZ NOT NULL DEFAULT now()",
+                "ALTER TABLE cinemas ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1",
+                "ALTER TABLE cinemas ADD COLUMN IF NOT EXISTS updated_at TIMESTAMPTZ NOT NULL DEFAULT now()"
+        };
+
+        // change_xid is the id of the transaction that last wrote a row (kept current by trigger);
+        // with the deleted_rows tombstones it backs GET /{entity}/changes. Needs PostgreSQL 13+ (xid8).
+        List<String> changeSql = new ArrayList<>(List.of(
+                "CREATE TABLE IF NOT EXISTS deleted_rows ("
+                        + "entity VARCHAR(32) NOT NULL, id INT NOT NULL, "
+                        + "change_xid xid8 NOT NULL DEFAULT pg_current_xact_id(), "
+                        + "deleted_at TIMESTAMPTZ NOT NULL DEFAULT now(), "
+                        + "PRIMARY KEY (entity, id))",
+                "CREATE INDEX IF NOT EXISTS deleted_rows_change_idx ON deleted_rows (entity, change_xid, id)",
+                "CREATE TABLE IF NOT EXISTS sync_horizon (entity VARCHAR(32) PRIMARY KEY, pruned_xid xid8 NOT NULL)",
+                "CREATE OR REPLACE FUNCTION touch_change_xid() RETURNS trigger AS $$ "
+                        + "BEGIN NEW.change_xid := pg_current_xact_id(); RETURN NEW; END $$ LANGUAGE plpgsql",
+                // "entity:insert|update|delete:id:version", picked up by ChangeListener on every node after commit
+                "CREATE OR REPLACE FUNCTION notify_change() RETURNS trigger AS $$ "
+                        + "DECLARE r RECORD; BEGIN "
+                        + "IF TG_OP = 'DELETE' THEN r := OLD; ELSE r := NEW; END IF; "
+                        + "PERFORM pg_notify('" + ChangeEvent.CHANNEL + "', TG_ARGV[0] || ':' || lower(TG_OP) || ':' || r.id || ':' "
+                        + "|| CASE WHEN TG_OP = 'DELETE' THEN '' ELSE r.version::text END); "
+                        + "RETURN NULL; END $$ LANGUAGE plpgsql",
+                "CREATE OR REPLACE FUNCTION record_deletion() RETURNS trigger AS $$ "
+                        + "BEGIN INSERT INTO deleted_rows (entity, id) VALUES (TG_ARGV[0], OLD.id) "
+                        + "ON CONFLICT (entity, id) DO UPDATE SET change_xid = EXCLUDED.change_xid, deleted_at = EXCLUDED.deleted_at; "
+                        + "RETURN OLD; END $$ LANGUAGE plpgsql"
+        ));
+        for (String table : List.of("movies", "viewers", "cinemas")) {
+            changeSql.add("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS change_xid xid8 NOT NULL DEFAULT pg_current_xact_id()");
+            changeSql.add("CREATE INDEX IF NOT EXISTS " + table + "_change_idx ON " + table + " (change_xid, id)");
+            changeSql.add("DROP TRIGGER IF EXISTS " + table + "_touch ON " + table);
+            changeSql.add("CREATE TRIGGER " + table + "_touch BEFORE UPDATE ON " + table
+                    + " FOR EACH ROW EXECUTE FUNCTION touch_change_xid()");
+            changeSql.add("DROP TRIGGER IF EXISTS " + table + "_deleted ON " + table);
+            changeSql.add("CREATE TRIGGER " + table + "_deleted AFTER DELETE ON " + table
+                    + " FOR EACH ROW EXECUTE FUNCTION record_deletion('" + table + "')");
+            changeSql.add("DROP TRIGGER IF EXISTS " + table + "_notify ON " + table);
+            changeSql.add("CREATE TRIGGER " + table + "_notify AFTER INSERT OR UPDATE OR DELETE ON " + table
+                    + " FOR EACH ROW EXECUTE FUNCTION notify_change('" + table + "')");
+        }
+
+        // Screenings and confirmed bookings; the booked_seats primary key is the durable guard against double booking
+        String[] bookingSql = {
+                "CREATE TABLE IF NOT EXISTS screenings ("
+                        + "id SERIAL PRIMARY KEY, "
+                        + "movie_id INT NOT NULL REFERENCES movies(id) ON DELETE CASCADE, "
+                        + "cinema_id INT NOT NULL REFERENCES cinemas(id) ON DELETE CASCADE, "
+                        + "hall VARCHAR(64) NOT NULL, "
+                        + "starts_at TIMESTAMPTZ NOT NULL, "
+                        + "seat_rows INT NOT NULL CHECK (seat_rows > 0), "
+                        + "seats_per_row INT NOT NULL CHECK (seats_per_row > 0))",
+                "CREATE INDEX IF NOT EXISTS screenings_movie_id_idx ON screenings (movie_id, id)",
+                "CREATE INDEX IF NOT EXISTS screenings_cinema_id_idx ON screenings (cinema_id, id)",
+                // end of the movie as placed by ShowtimeScheduler; NULL for older rows (starts_at + duration then)
+                "ALTER TABLE screenings ADD COLUMN IF NOT EXISTS ends_at TIMESTAMPTZ",
+                "CREATE INDEX IF NOT EXISTS screenings_cinema_id_starts_at_idx ON screenings (cinema_id, starts_at)",
+                "CREATE TABLE IF NOT EXISTS bookings ("
+                        + "id SERIAL PRIMARY KEY, "
+                        + "screening_id INT NOT NULL REFERENCES screenings(id) ON DELETE CASCADE, "
+                        + "viewer_id INT NOT NULL REFERENCES viewers(id) ON DELETE CASCADE, "
+                        + "seats INT[] NOT NULL, "
+                        + "total_price DOUBLE PRECISION NOT NULL, "
+                        + "created_at TIMESTAMPTZ NOT NULL DEFAULT now())",
+                "CREATE TABLE IF NOT EXISTS booked_seats ("
+                        + "screening_id INT NOT NULL REFERENCES screenings(id) ON DELETE CASCADE, "
+                        + "seat INT NOT NULL, "
+                        + "booking_id INT NOT NULL REFERENCES bookings(id) ON DELETE CASCADE, "
+                        + "PRIMARY KEY (screening_id, seat))",
+                "CREATE INDEX IF NOT EXISTS booked_seats_booking_id_idx ON booked_seats (booking_id)",
+                // a seat claimed by the booking journal before its booking is drained: booking_id NULL,
+                // claim_id the booking's reserved id, claimed_by the journal; see claimJournaledSeats
+                "ALTER TABLE booked_seats ALTER COLUMN booking_id DROP NOT NULL",
+                "ALTER TABLE booked_seats ADD COLUMN IF NOT EXISTS claim_id INT",
+                "ALTER TABLE booked_seats ADD COLUMN IF NOT EXISTS claimed_by VARCHAR(36)",
+                "CREATE INDEX IF NOT EXISTS booked_seats_claim_id_idx ON booked_seats (claim_id) WHERE claim_id IS NOT NULL",
+                // "insert|delete:screening_id:node:seats" keeps other nodes' seat maps current; see BookingChange
+                "CREATE OR REPLACE FUNCTION notify_booking() RETURNS trigger AS $$ "
+                        + "DECLARE r RECORD; BEGIN "
+                        + "IF TG_OP = 'DELETE' THEN r := OLD; ELSE r := NEW; END IF; "
+                        + "PERFORM pg_notify('" + BookingChange.CHANNEL + "', lower(TG_OP) || ':' || r.screening_id || ':' "
+                        + "|| coalesce(current_setting('app.node', true), '') || ':' || array_to_string(r.seats, ',')); "
+                        + "RETURN NULL; END $$ LANGUAGE plpgsql",
+                "DROP TRIGGER IF EXISTS bookings_notify ON bookings",
+                "CREATE TRIGGER bookings_notify AFTER INSERT OR DELETE ON bookings "
+                        + "FOR EACH ROW EXECUTE FUNCTION notify_booking()",
+                // "cinema_id:id" of every deleted screening, cascades included, so hall schedules drop their slots
+                "CREATE OR REPLACE FUNCTION notify_screening_delete() RETURNS trigger AS $$ BEGIN "
+                        + "PERFORM pg_notify('" + ShowtimeScheduler.CHANNEL + "', OLD.cinema_id || ':' || OLD.id); "
+                        + "RETURN NULL; END $$ LANGUAGE plpgsql",
+                "DROP TRIGGER IF EXISTS screenings_notify ON screenings",
+                "CREATE TRIGGER screenings_notify AFTER DELETE ON screenings "
+                        + "FOR EACH ROW EXECUTE FUNCTION notify_screening_delete()",
+                "CREATE EXTENSION IF NOT EXISTS btree_gist"
+        };
+
+        // No two placed screenings in one hall at once, whichever node placed them; rows without ends_at
+        // predate ShowtimeScheduler and are left out, as they may overlap
+        String overlapSql = "DO $$ BEGIN "
+                + "IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'screenings_hall_overlap') THEN "
+                + "ALTER TABLE screenings ADD CONSTRAINT screenings_hall_overlap EXCLUDE USING gist "
+                + "(cinema_id WITH =, hall WITH =, tstzrange(starts_at, ends_at) WITH &&) WHERE (ends_at IS NOT NULL); "
+                + "END IF; END $$";
+
+        // Pre-aggregated sales per (movie | cinema | city | total, show day), maintained by SalesRollups
+        String[] rollupSql = {
+                "CREATE TABLE IF NOT EXISTS sales_rollups ("
+                        + "dimension VARCHAR(16) NOT NULL, "
+                        + "key VARCHAR(255) NOT NULL, "
+                        + "day DATE NOT NULL, "
+                        + "tickets BIGINT NOT NULL DEFAULT 0, "
+                        + "revenue DOUBLE PRECISION NOT NULL DEFAULT 0, "
+                        + "seats BIGINT NOT NULL DEFAULT 0, "
+                        + "PRIMARY KEY (dimension, key, day))",
+                // top-N reads every key of a dimension within a date range
+                "CREATE INDEX IF NOT EXISTS sales_rollups_dimension_day_idx ON sales_rollups (dimension, day)",
+                // flushed batches, so one retried after a lost commit acknowledgement is recognised
+                "CREATE TABLE IF NOT EXISTS sales_rollup_batches ("
+                        + "id UUID PRIMARY KEY, "
+                        + "applied_at TIMESTAMPTZ NOT NULL DEFAULT now())",
+                "CREATE INDEX IF NOT EXISTS sales_rollup_batches_applied_at_idx ON sales_rollup_batches (applied_at)"
+        };
+
+        // Responses kept for Idempotency-Key retries; status NULL while the first request is still running
+        String[] idempotencySql = {
+                "CREATE TABLE IF NOT EXISTS idempotency_keys ("
+                        + "key VARCHAR(255) PRIMARY KEY, "
+                        + "fingerprint VARCHAR(64) NOT NULL, "
+                        + "status INT, "
+                        + "content_type VARCHAR(255), "
+                        + "etag VARCHAR(255), "
+                        + "location VARCHAR(1024), "
+                        + "body BYTEA, "
+                        + "created_at TIMESTAMPTZ NOT NULL DEFAULT now(), "
+                        + "expires_at TIMESTAMPTZ NOT NULL)",
+                "CREATE INDEX IF NOT EXISTS idempotency_keys_expires_at_idx ON idempotency_keys (expires_at)"
+        };
+
+        try (Connection conn = getConnection();
              Statement stmt = conn.createStatement()) {
             stmt.execute(moviesSql);
             stmt.execute(viewersSql);
             stmt.execute(cinemasSql);
+            for (String indexSql : indexesSql) stmt.execute(indexSql);
+            for (String sql : searchSql) stmt.execute(sql);
+            for (String sql : versionSql) stmt.execute(sql);
+            for (String sql : changeSql) stmt.execute(sql);
+            for (String sql : bookingSql) stmt.execute(sql);
+            for (String sql : rollupSql) stmt.execute(sql);
+            for (String sql : idempotencySql) stmt.execute(sql);
+            try {
+                stmt.execute(overlapSql);
+            } catch (SQLException e) {
+                if (!isExclusionViolation(e)) throw e;
+                LOG.warn("screenings already overlap in some hall, so the hall overlap constraint was not added; "
+                        + "remove the overlaps and restart to have the database reject them");
+            }
+            // sharded, screenings point at cinemas in other databases; callers check that the cinema exists
+            if (cinemaShards != null) stmt.execute("ALTER TABLE screenings DROP CONSTRAINT IF EXISTS screenings_cinema_id_fkey");
             System.out.println("[DB] Connection established. Tables verified.");
         } catch (SQLException e) {
             throw new RuntimeException("DB setup failed", e);
         }
+        if (cinemaShards != null) cinemaShards.setup();
+    }
+
+    /**
+     * Makes this database shard index of stride: the cinema id sequence steps by stride from a value
+     * that is index modulo stride, so no two shards hand out the same id. Fails if the table already
+     * holds ids another shard could hand out, since the router would look for them there. Also adds
+     * the bytewise (sort column, id) index that merged list pages are read with.
+     */
+    void prepareCinemaShard(int index, int stride) {
+        inTransaction(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("LOCK TABLE cinemas IN SHARE ROW EXCLUSIVE MODE");
+                stmt.execute("CREATE INDEX IF NOT EXISTS cinemas_name_c_id_idx ON cinemas (name COLLATE \"C\", id)");
+            }
+            String foreign = "SELECT count(*) FROM cinemas WHERE id % ? <> ?";
+            try (PreparedStatement ps = conn.prepareStatement(foreign)) {
+                ps.setInt(1, stride);
+                ps.setInt(2, index);
+                try (ResultSet rs = executeQuery(ps, foreign)) {
+                    rs.next();
+                    if (rs.getLong(1) > 0) {
+                        throw new IllegalStateException("cinema shard " + index + " holds " + rs.getLong(1)
+                                + " cinemas whose ids do not map to it; start shards empty or migrate them first");
+                    }
+                }
+            }
+            // next id: the first value above every id used so far that maps to this shard; the lock
+            // above holds off inserts, so no nextval can slip in between reading and setting it
+            String sql = "SELECT setval(pg_get_serial_sequence('cinemas', 'id'), n, false) FROM ("
+                    + "SELECT m + ((? - m % ?) + ?) % ? AS n FROM ("
+                    + "SELECT greatest(coalesce(max(id), 0), (SELECT CASE WHEN is_called THEN last_value ELSE last_value - 1 END "
+                    + "FROM cinemas_id_seq)) + 1 AS m FROM cinemas) a) b";
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER SEQUENCE cinemas_id_seq INCREMENT BY " + stride);
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, index);
+                ps.setInt(2, stride);
+                ps.setInt(3, stride);
+                ps.setInt(4, stride);
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    rs.next();
+                }
+            }
+            return null;
+        }, "prepareCinemaShard");
+    }
+
+    /**
+     * Drops tombstones older than the retention period and moves each entity's sync horizon past them;
+     * change tokens from before the horizon then get 410 Gone instead of silently missing deletes.
+     */
+    public void pruneDeletionLog(int retentionDays) {
+        String sql = "WITH pruned AS ("
+                + "DELETE FROM deleted_rows WHERE deleted_at < now() - make_interval(days => ?) RETURNING entity, change_xid) "
+                + "INSERT INTO sync_horizon (entity, pruned_xid) "
+                + "SELECT DISTINCT ON (entity) entity, change_xid FROM pruned ORDER BY entity, change_xid DESC "
+                + "ON CONFLICT (entity) DO UPDATE SET pruned_xid = greatest(sync_horizon.pruned_xid, EXCLUDED.pruned_xid)";
+        timed("pruneDeletionLog", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, retentionDays);
+                return executeUpdate(ps, sql);
+            }
+        });
+        CinemaShards shards = cinemaShards;
+        if (shards != null) for (DBmanager shard : shards.getShards()) shard.pruneDeletionLog(retentionDays);
     }
 
     // -------------------- MOVIES --------------------
 
     public Movie createMovie(MovieCreateRequest req) {
-        String sql = "INSERT INTO movies (title, description, duration, age_restriction, price) VALUES (?, ?, ?, ?, ?) RETURNING id";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        String sql = "INSERT INTO movies (title, description, duration, age_restriction, price) VALUES (?, ?, ?, ?, ?) RETURNING " + MOVIE_COLUMNS;
+        return timed("createMovie", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setString(1, req.getTitle());
+                ps.setString(2, req.getDescription());
+                ps.setInt(3, req.getDurationMinutes());
+                ps.setInt(4, req.getAgeRestriction());
+                ps.setDouble(5, req.getTicketPrice());
+
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    rs.next();
+                    Movie movie = mapMovie(rs);
+                    movieCache.put(movie.getId(), movie);
+                    movieIndex.put(EligibilityIndex.Entry.of(movie));
+                    return movie;
+                }
+            }
+        });
+    }
 
+    /** Inserts all movies in one transaction using JDBC batches; result order matches the input. */
+    public List<Movie> createMovies(List<MovieCreateRequest> reqs) {
+        String sql = "INSERT INTO movies (title, description, duration, age_restriction, price) VALUES (?, ?, ?, ?, ?)";
+        List<Movie> movies = insertBatch("movies", sql, reqs, (ps, req) -> {
             ps.setString(1, req.getTitle());
             ps.setString(2, req.getDescription());
             ps.setInt(3, req.getDurationMinutes());
             ps.setInt(4, req.getAgeRestriction());
             ps.setDouble(5, req.getTicketPrice());
+        }, DBmanager::mapMovie, "createMovies");
 
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                int id = rs.getInt(1);
-                return new Movie(id, req.getTitle(), req.getDescription(), req.getDurationMinutes(), req.getAgeRestriction(), req.getTicketPrice());
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException("DB createMovie failed", e);
+        for (Movie movie : movies) {
+            movieCache.put(movie.getId(), movie);
+            movieIndex.put(EligibilityIndex.Entry.of(movie));
         }
+        return movies;
     }
 
     public List<Movie> getAllMovies() {
         List<Movie> movies = new ArrayList<>();
-        String sql = "SELECT * FROM movies ORDER BY id";
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                movies.add(new Movie(
-                        rs.getInt("id"),
-                        rs.getString("title"),
-                        rs.getString("description"),
-                        rs.getInt("duration"),
-                        rs.getInt("age_restriction"),
-                        rs.getDouble("price")
-                ));
-            }
-            return movies;
-        } catch (SQLException e) {
-            throw new RuntimeException("DB getAllMovies failed", e);
+        String sql = "SELECT " + MOVIE_COLUMNS + " FROM movies ORDER BY id";
+        return timed("getAllMovies", () -> {
+            try (Connection conn = getReadConnection("movies", false);
+                 PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = executeQuery(ps, sql)) {
+
+                while (rs.next()) {
+                    movies.add(mapMovie(rs));
+                }
+                return movies;
+            }
+        });
+    }
+
+    /** One page of movies, optionally filtered by max age restriction and a price range. */
+    public Page<Movie> findMovies(PageQuery page, Integer maxAgeRestriction, double[] priceBetween) {
+        return findMovies(page, maxAgeRestriction, priceBetween, MOVIE_COLUMNS, DBmanager::mapMovie);
+    }
+
+    /** The same page with only the requested fields selected and mapped. */
+    public Page<PartialRow> findMovies(PageQuery page, Integer maxAgeRestriction, double[] priceBetween, Projection<Movie> fields) {
+        return findMovies(page, maxAgeRestriction, priceBetween, fields.columns(), fields::map);
+    }
+
+    private <T> Page<T> findMovies(PageQuery page, Integer maxAgeRestriction, double[] priceBetween, String columns, RowMapper<T> mapper) {
+        List<String> where = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (maxAgeRestriction != null) {
+            where.add("age_restriction <= ?");
+            args.add(maxAgeRestriction);
+        }
+        if (priceBetween != null) {
+            where.add("price BETWEEN ? AND ?");
+            args.add(priceBetween[0]);
+            args.add(priceBetween[1]);
         }
+        return queryPage("movies", columns, page, where, args, mapper, "findMovies");
+    }
+
+    /** Ranked prefix search over the movies search_vector. */
+    public Page<Movie> searchMovies(SearchQuery query) {
+        return searchPage("movies", MOVIE_COLUMNS, query, DBmanager::mapMovie, "searchMovies");
+    }
+
+    public Page<PartialRow> searchMovies(SearchQuery query, Projection<Movie> fields) {
+        return searchPage("movies", fields.columns(), query, fields::map, "searchMovies");
+    }
+
+    /** Pushes every movie, in id order, through a server-side cursor. */
+    public void streamMovies(RowConsumer<Movie> consumer) throws IOException {
+        streamAll("movies", DBmanager::mapMovie, consumer, "streamMovies");
+    }
+
+    /** Movies written and ids deleted since the token, in commit-safe order. */
+    public Changes<Movie> findMovieChanges(ChangeQuery query) {
+        return changesSince("movies", query, DBmanager::mapMovie, "findMovieChanges");
     }
 
     public Optional<Movie> findMovieById(int id) {
-        String sql = "SELECT * FROM movies WHERE id = ?";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        if (aheadOfCaches()) return loadMovieById(id);
+        BatchLoader<Movie> loader = movieLoader;
+        return movieCache.get(id, loader != null ? loader::load : this::loadMovieById);
+    }
 
-            ps.setInt(1, id);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return Optional.empty();
-                return Optional.of(new Movie(
-                        rs.getInt("id"),
-                        rs.getString("title"),
-                        rs.getString("description"),
-                        rs.getInt("duration"),
-                        rs.getInt("age_restriction"),
-                        rs.getDouble("price")
-                ));
+    /** Rows for the given ids in the same order, skipping ids that do not exist; one query for all cache misses. */
+    public List<Movie> findMoviesByIds(List<Integer> ids) {
+        if (aheadOfCaches()) return inOrder(ids, loadByIds("movies", ids, DBmanager::mapMovie, "findMoviesByIds"));
+        Map<Integer, Movie> rows = movieCache.getAll(ids, missing -> loadByIds("movies", missing, DBmanager::mapMovie, "findMoviesByIds"));
+        return inOrder(ids, rows);
+    }
+
+    private Optional<Movie> loadMovieById(int id) {
+        String sql = "SELECT " + MOVIE_COLUMNS + " FROM movies WHERE id = ?";
+        return timed("findMovieById", () -> {
+            try (Connection conn = getReadConnection("movies", true);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setInt(1, id);
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    if (!rs.next()) return Optional.empty();
+                    return Optional.of(mapMovie(rs));
+                }
             }
-        } catch (SQLException e) {
-            throw new RuntimeException("DB findMovieById failed", e);
+        });
+    }
+
+    /**
+     * Updates and returns the new row in one statement; empty when the id does not exist.
+     * With expectedVersion set, throws PreconditionFailedException if the row has moved on.
+     */
+    public Optional<Movie> updateMovie(int id, MovieUpdateRequest req, Long expectedVersion) {
+        Optional<Movie> updated = Optional.empty();
+        try {
+            updated = updateRow("movies", "title=?, description=?, duration=?, age_restriction=?, price=?", id, expectedVersion, ps -> {
+                ps.setString(1, req.getTitle());
+                ps.setString(2, req.getDescription());
+                ps.setInt(3, req.getDurationMinutes());
+                ps.setInt(4, req.getAgeRestriction());
+                ps.setDouble(5, req.getTicketPrice());
+            }, DBmanager::mapMovie, "Movie", "updateMovie");
+            return updated;
+        } finally {
+            movieCache.invalidate(id);
+            updated.ifPresent(row -> {
+                movieCache.put(id, row);
+                movieIndex.put(EligibilityIndex.Entry.of(row));
+            });
         }
     }
 
-    public boolean updateMovie(int id, MovieUpdateRequest req) {
-        String sql = "UPDATE movies SET title=?, description=?, duration=?, age_restriction=?, price=? WHERE id=?";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    /** Updates all movies in one transaction; result[i] is false when reqs[i].id does not exist. */
+    public boolean[] updateMovies(List<MovieBatchUpdateRequest> reqs) {
+        String sql = "UPDATE movies SET title=?, description=?, duration=?, age_restriction=?, price=?, version=version+1, updated_at=now() WHERE id=?";
+        boolean[] updated;
+        try {
+            updated = updateBatch(sql, reqs, (ps, req) -> {
+                ps.setString(1, req.getTitle());
+                ps.setString(2, req.getDescription());
+                ps.setInt(3, req.getDurationMinutes());
+                ps.setInt(4, req.getAgeRestriction());
+                ps.setDouble(5, req.getTicketPrice());
+                ps.setInt(6, req.getId());
+            }, "updateMovies");
+        } finally {
+            for (MovieBatchUpdateRequest req : reqs) movieCache.invalidate(req.getId());
+        }
+        if (movieIndex.isTracking()) {
+            // the batch does not return rows, and the new versions are needed to order later change events
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < reqs.size(); i++) if (updated[i]) ids.add(reqs.get(i).getId());
+            if (!ids.isEmpty()) {
+                for (Movie movie : findMoviesByIds(ids)) movieIndex.put(EligibilityIndex.Entry.of(movie));
+            }
+        }
+        return updated;
+    }
 
-            ps.setString(1, req.getTitle());
-            ps.setString(2, req.getDescription());
-            ps.setInt(3, req.getDurationMinutes());
-            ps.setInt(4, req.getAgeRestriction());
-            ps.setDouble(5, req.getTicketPrice());
-            ps.setInt(6, id);
+    /** Deletes the given ids with one statement and returns those that existed. */
+    public Set<Integer> deleteMovies(List<Integer> ids) {
+        try {
+            Set<Integer> deleted = deleteByIds("movies", ids, "deleteMovies");
+            for (Integer id : deleted) movieIndex.remove(id);
+            return deleted;
+        } finally {
+            for (Integer id : ids) movieCache.invalidate(id);
+        }
+    }
 
-            return ps.executeUpdate() > 0;
-        } catch (SQLException e) {
-            throw new RuntimeException("DB updateMovie failed", e);
+    /** With expectedVersion set, throws PreconditionFailedException if the row has moved on. */
+    public boolean deleteMovie(int id, Long expectedVersion) {
+        try {
+            boolean deleted = deleteRow("movies", id, expectedVersion, "Movie", "deleteMovie");
+            if (deleted) movieIndex.remove(id);
+            return deleted;
+        } finally {
+            movieCache.invalidate(id);
         }
     }
 
-    public boolean deleteMovie(int id) {
-        String sql = "DELETE FROM movies WHERE id = ?";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            return ps.executeUpdate() > 0;
-        } catch (SQLException e) {
-            throw new RuntimeException("DB deleteMovie failed", e);
+    /**
+     * Movies a viewer of viewerAge may watch (ageRestriction <= viewerAge), optionally within price and
+     * duration ranges, from the in-memory index; rows come through the movie cache. page must be sorted by
+     * ageRestriction ascending, so cursors are interchangeable with GET /movies?sort=ageRestriction.
+     */
+    public Page<Movie> findEligibleMovies(int viewerAge, PageQuery page, double[] priceBetween, double[] durationBetween) {
+        Integer afterId = page.afterId();
+        long afterKey = afterId == null ? -1 : EligibilityIndex.key((Integer) page.afterValue(), afterId);
+        long[] keys = movieIndex.eligible(viewerAge, afterKey, priceBetween, durationBetween, page.getLimit() + 1);
+        int count = Math.min(keys.length, page.getLimit());
+        List<Integer> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) ids.add(EligibilityIndex.id(keys[i]));
+        String next = null;
+        if (keys.length > count) {
+            long last = keys[count - 1];
+            next = page.cursor(EligibilityIndex.ageRestriction(last), EligibilityIndex.id(last));
+        }
+        return new Page<>(ids.isEmpty() ? List.of() : findMoviesByIds(ids), next);
+    }
+
+    /**
+     * Applies a movie change committed by any node to the eligibility index. Events for writes this node
+     * already applied are recognised by version; anything else is read back by id.
+     */
+    void applyMovieChange(ChangeEvent event) {
+        if (event.getVersion() == null) {
+            movieIndex.remove(event.getId());
+            return;
         }
+        if (!movieIndex.isTracking() || movieIndex.isCurrent(event.getId(), event.getVersion())) return;
+        Optional<Movie> row = loadMovieById(event.getId());
+        if (row.isPresent()) movieIndex.put(EligibilityIndex.Entry.of(row.get()));
+        else movieIndex.remove(event.getId());
+    }
+
+    private List<EligibilityIndex.Entry> loadEligibilityEntries() {
+        String sql = "SELECT id, age_restriction, duration, price, version FROM movies";
+        return timed("loadEligibilityIndex", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = executeQuery(ps, sql)) {
+
+                List<EligibilityIndex.Entry> entries = new ArrayList<>();
+                while (rs.next()) {
+                    entries.add(new EligibilityIndex.Entry(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getDouble(4), rs.getLong(5)));
+                }
+                return entries;
+            }
+        });
     }
 
     // -------------------- VIEWERS --------------------
 
     public Viewer createViewer(ViewerCreateRequest req) {
-        String sql = "INSERT INTO viewers (full_name, age, email) VALUES (?, ?, ?) RETURNING id";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        String sql = "INSERT INTO viewers (full_name, age, email) VALUES (?, ?, ?) RETURNING " + VIEWER_COLUMNS;
+        return timed("createViewer", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
 
+                ps.setString(1, req.getFullName());
+                ps.setInt(2, req.getAge());
+                ps.setString(3, req.getEmail());
+
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    rs.next();
+                    Viewer viewer = mapViewer(rs);
+                    viewerCache.put(viewer.getId(), viewer);
+                    return viewer;
+                }
+            }
+        });
+    }
+
+    /** Inserts all viewers in one transaction using JDBC batches; result order matches the input. */
+    public List<Viewer> createViewers(List<ViewerCreateRequest> reqs) {
+        String sql = "INSERT INTO viewers (full_name, age, email) VALUES (?, ?, ?)";
+        List<Viewer> viewers = insertBatch("viewers", sql, reqs, (ps, req) -> {
             ps.setString(1, req.getFullName());
             ps.setInt(2, req.getAge());
             ps.setString(3, req.getEmail());
+        }, DBmanager::mapViewer, "createViewers");
 
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                int id = rs.getInt(1);
-                return new Viewer(id, req.getFullName(), req.getAge(), req.getEmail());
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException("DB createViewer failed", e);
-        }
+        for (Viewer viewer : viewers) viewerCache.put(viewer.getId(), viewer);
+        return viewers;
     }
 
     public List<Viewer> getAllViewers() {
         List<Viewer> viewers = new ArrayList<>();
-        String sql = "SELECT * FROM viewers ORDER BY id";
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                viewers.add(new Viewer(
-                        rs.getInt("id"),
-                        rs.getString("full_name"),
-                        rs.getInt("age"),
-                        rs.getString("email")
-                ));
-            }
-            return viewers;
-        } catch (SQLException e) {
-            throw new RuntimeException("DB getAllViewers failed", e);
+        String sql = "SELECT " + VIEWER_COLUMNS + " FROM viewers ORDER BY id";
+        return timed("getAllViewers", () -> {
+            try (Connection conn = getReadConnection("viewers", false);
+                 PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = executeQuery(ps, sql)) {
+
+                while (rs.next()) {
+                    viewers.add(mapViewer(rs));
+                }
+                return viewers;
+            }
+        });
+    }
+
+    /** One page of viewers, optionally filtered by an inclusive age range. */
+    public Page<Viewer> findViewers(PageQuery page, Integer minAge, Integer maxAge) {
+        return findViewers(page, minAge, maxAge, VIEWER_COLUMNS, DBmanager::mapViewer);
+    }
+
+    /** The same page with only the requested fields selected and mapped. */
+    public Page<PartialRow> findViewers(PageQuery page, Integer minAge, Integer maxAge, Projection<Viewer> fields) {
+        return findViewers(page, minAge, maxAge, fields.columns(), fields::map);
+    }
+
+    private <T> Page<T> findViewers(PageQuery page, Integer minAge, Integer maxAge, String columns, RowMapper<T> mapper) {
+        List<String> where = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (minAge != null) {
+            where.add("age >= ?");
+            args.add(minAge);
+        }
+        if (maxAge != null) {
+            where.add("age <= ?");
+            args.add(maxAge);
         }
+        return queryPage("viewers", columns, page, where, args, mapper, "findViewers");
+    }
+
+    /** Ranked prefix search over the viewers search_vector. */
+    public Page<Viewer> searchViewers(SearchQuery query) {
+        return searchPage("viewers", VIEWER_COLUMNS, query, DBmanager::mapViewer, "searchViewers");
+    }
+
+    public Page<PartialRow> searchViewers(SearchQuery query, Projection<Viewer> fields) {
+        return searchPage("viewers", fields.columns(), query, fields::map, "searchViewers");
+    }
+
+    /** Pushes every viewer, in id order, through a server-side cursor. */
+    public void streamViewers(RowConsumer<Viewer> consumer) throws IOException {
+        streamAll("viewers", DBmanager::mapViewer, consumer, "streamViewers");
+    }
+
+    /** Viewers written and ids deleted since the token, in commit-safe order. */
+    public Changes<Viewer> findViewerChanges(ChangeQuery query) {
+        return changesSince("viewers", query, DBmanager::mapViewer, "findViewerChanges");
     }
 
     public Optional<Viewer> findViewerById(int id) {
-        String sql = "SELECT * FROM viewers WHERE id = ?";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        if (aheadOfCaches()) return loadViewerById(id);
+        BatchLoader<Viewer> loader = viewerLoader;
+        return viewerCache.get(id, loader != null ? loader::load : this::loadViewerById);
+    }
 
-            ps.setInt(1, id);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return Optional.empty();
-                return Optional.of(new Viewer(
-                        rs.getInt("id"),
-                        rs.getString("full_name"),
-                        rs.getInt("age"),
-                        rs.getString("email")
-                ));
+    /** Rows for the given ids in the same order, skipping ids that do not exist; one query for all cache misses. */
+    public List<Viewer> findViewersByIds(List<Integer> ids) {
+        if (aheadOfCaches()) return inOrder(ids, loadByIds("viewers", ids, DBmanager::mapViewer, "findViewersByIds"));
+        Map<Integer, Viewer> rows = viewerCache.getAll(ids, missing -> loadByIds("viewers", missing, DBmanager::mapViewer, "findViewersByIds"));
+        return inOrder(ids, rows);
+    }
+
+    private Optional<Viewer> loadViewerById(int id) {
+        String sql = "SELECT " + VIEWER_COLUMNS + " FROM viewers WHERE id = ?";
+        return timed("findViewerById", () -> {
+            try (Connection conn = getReadConnection("viewers", true);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setInt(1, id);
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    if (!rs.next()) return Optional.empty();
+                    return Optional.of(mapViewer(rs));
+                }
             }
-        } catch (SQLException e) {
-            throw new RuntimeException("DB findViewerById failed", e);
+        });
+    }
+
+    /**
+     * Updates and returns the new row in one statement; empty when the id does not exist.
+     * With expectedVersion set, throws PreconditionFailedException if the row has moved on.
+     */
+    public Optional<Viewer> updateViewer(int id, ViewerUpdateRequest req, Long expectedVersion) {
+        Optional<Viewer> updated = Optional.empty();
+        try {
+            updated = updateRow("viewers", "full_name=?, age=?, email=?", id, expectedVersion, ps -> {
+                ps.setString(1, req.getFullName());
+                ps.setInt(2, req.getAge());
+                ps.setString(3, req.getEmail());
+            }, DBmanager::mapViewer, "Viewer", "updateViewer");
+            return updated;
+        } finally {
+            viewerCache.invalidate(id);
+            updated.ifPresent(row -> viewerCache.put(id, row));
         }
     }
 
-    public boolean updateViewer(int id, ViewerUpdateRequest req) {
-        String sql = "UPDATE viewers SET full_name=?, age=?, email=? WHERE id=?";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    /** Updates all viewers in one transaction; result[i] is false when reqs[i].id does not exist. */
+    public boolean[] updateViewers(List<ViewerBatchUpdateRequest> reqs) {
+        String sql = "UPDATE viewers SET full_name=?, age=?, email=?, version=version+1, updated_at=now() WHERE id=?";
+        try {
+            return updateBatch(sql, reqs, (ps, req) -> {
+                ps.setString(1, req.getFullName());
+                ps.setInt(2, req.getAge());
+                ps.setString(3, req.getEmail());
+                ps.setInt(4, req.getId());
+            }, "updateViewers");
+        } finally {
+            for (ViewerBatchUpdateRequest req : reqs) viewerCache.invalidate(req.getId());
+        }
+    }
 
-            ps.setString(1, req.getFullName());
-            ps.setInt(2, req.getAge());
-            ps.setString(3, req.getEmail());
-            ps.setInt(4, id);
-            return ps.executeUpdate() > 0;
-        } catch (SQLException e) {
-            throw new RuntimeException("DB updateViewer failed", e);
+    /** Deletes the given ids with one statement and returns those that existed. */
+    public Set<Integer> deleteViewers(List<Integer> ids) {
+        try {
+            return deleteByIds("viewers", ids, "deleteViewers");
+        } finally {
+            for (Integer id : ids) viewerCache.invalidate(id);
         }
     }
 
-    public boolean deleteViewer(int id) {
-        String sql = "DELETE FROM viewers WHERE id = ?";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, id);
-            return ps.executeUpdate() > 0;
-        } catch (SQLException e) {
-            throw new RuntimeException("DB deleteViewer failed", e);
+    /** With expectedVersion set, throws PreconditionFailedException if the row has moved on. */
+    public boolean deleteViewer(int id, Long expectedVersion) {
+        try {
+            return deleteRow("viewers", id, expectedVersion, "Viewer", "deleteViewer");
+        } finally {
+            viewerCache.invalidate(id);
         }
     }
 
     // -------------------- CINEMAS --------------------
+    // With cinemaShards set, each public method below hands over to it; the shards' own DBmanagers
+    // have none, so there the same methods run against their database.
 
     public Cinema createCinema(CinemaCreateRequest req) {
-        String sql = "INSERT INTO cinemas (name, city, address) VALUES (?, ?, ?) RETURNING id";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) return shards.createCinema(req);
+        String sql = "INSERT INTO cinemas (name, city, address) VALUES (?, ?, ?) RETURNING " + CINEMA_COLUMNS;
+        return timed("createCinema", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setString(1, req.getName());
+                ps.setString(2, req.getCity());
+                ps.setString(3, req.getAddress());
 
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    rs.next();
+                    Cinema cinema = mapCinema(rs);
+                    cinemaCache.put(cinema.getId(), cinema);
+                    return cinema;
+                }
+            }
+        });
+    }
+
+    /** Inserts all cinemas in one transaction using JDBC batches; result order matches the input. */
+    public List<Cinema> createCinemas(List<CinemaCreateRequest> reqs) {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) return shards.createCinemas(reqs);
+        String sql = "INSERT INTO cinemas (name, city, address) VALUES (?, ?, ?)";
+        List<Cinema> cinemas = insertBatch("cinemas", sql, reqs, (ps, req) -> {
             ps.setString(1, req.getName());
             ps.setString(2, req.getCity());
             ps.setString(3, req.getAddress());
+        }, DBmanager::mapCinema, "createCinemas");
 
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                int id = rs.getInt(1);
-                return new Cinema(id, req.getName(), req.getCity(), req.getAddress());
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException("DB createCinema failed", e);
-        }
+        for (Cinema cinema : cinemas) cinemaCache.put(cinema.getId(), cinema);
+        return cinemas;
     }
 
     public List<Cinema> getAllCinemas() {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) return shards.getAllCinemas();
         List<Cinema> cinemas = new ArrayList<>();
-        String sql = "SELECT * FROM cinemas ORDER BY id";
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                cinemas.add(new Cinema(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("city"),
-                        rs.getString("address")
-                ));
-            }
-            return cinemas;
-        } catch (SQLException e) {
-            throw new RuntimeException("DB getAllCinemas failed", e);
+        String sql = "SELECT " + CINEMA_COLUMNS + " FROM cinemas ORDER BY id";
+        return timed("getAllCinemas", () -> {
+            try (Connection conn = getReadConnection("cinemas", false);
+                 PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = executeQuery(ps, sql)) {
+
+                while (rs.next()) {
+                    cinemas.add(mapCinema(rs));
+                }
+                return cinemas;
+            }
+        });
+    }
+
+    /** Distinct cities of this database's cinemas; CinemaShards checks them against its routing on a shard. */
+    List<String> findCinemaCities() {
+        String sql = "SELECT DISTINCT city FROM cinemas";
+        return timed("findCinemaCities", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = executeQuery(ps, sql)) {
+
+                List<String> cities = new ArrayList<>();
+                while (rs.next()) cities.add(rs.getString(1));
+                return cities;
+            }
+        });
+    }
+
+    /** One page of cinemas, optionally filtered by exact city. */
+    public Page<Cinema> findCinemas(PageQuery page, String city) {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) return shards.findCinemas(page, city);
+        return findCinemas(page, city, CINEMA_COLUMNS, DBmanager::mapCinema);
+    }
+
+    /** The same page with only the requested fields selected and mapped; sharded, whole rows are merged and then cut down. */
+    public Page<PartialRow> findCinemas(PageQuery page, String city, Projection<Cinema> fields) {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) {
+            Page<Cinema> rows = shards.findCinemas(page, city);
+            return new Page<>(fields.applyAll(rows.getItems()), rows.getNextCursor());
         }
+        return findCinemas(page, city, fields.columns(), fields::map);
+    }
+
+    private <T> Page<T> findCinemas(PageQuery page, String city, String columns, RowMapper<T> mapper) {
+        List<String> where = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (city != null && !city.isBlank()) {
+            where.add("city = ?");
+            args.add(city.trim());
+        }
+        return queryPage("cinemas", columns, page, where, args, mapper, "findCinemas");
+    }
+
+    /** Ranked prefix search over the cinemas search_vector. */
+    public Page<Cinema> searchCinemas(SearchQuery query) {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) return shards.searchCinemas(query);
+        return searchPage("cinemas", CINEMA_COLUMNS, query, DBmanager::mapCinema, "searchCinemas");
+    }
+
+    public Page<PartialRow> searchCinemas(SearchQuery query, Projection<Cinema> fields) {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) {
+            Page<Cinema> rows = shards.searchCinemas(query);
+            return new Page<>(fields.applyAll(rows.getItems()), rows.getNextCursor());
+        }
+        return searchPage("cinemas", fields.columns(), query, fields::map, "searchCinemas");
+    }
+
+    /** Search matches of this database with their ranks, for CinemaShards to merge. */
+    Page<CinemaShards.Hit> searchCinemaHits(SearchQuery query) {
+        int rankIndex = CINEMA_COLUMNS.split(", ").length + 1;
+        return searchPage("cinemas", CINEMA_COLUMNS, query, rs -> new CinemaShards.Hit(mapCinema(rs), rs.getFloat(rankIndex)), "searchCinemas");
+    }
+
+    /** Pushes every cinema, in id order (per shard when sharded), through a server-side cursor. */
+    public void streamCinemas(RowConsumer<Cinema> consumer) throws IOException {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) {
+            shards.streamCinemas(consumer);
+            return;
+        }
+        streamAll("cinemas", DBmanager::mapCinema, consumer, "streamCinemas");
+    }
+
+    /**
+     * Cinemas written and ids deleted since the token, in commit-safe order. Tokens are transaction
+     * ids of one database, so there is no feed while cinemas are sharded; /events still carries changes.
+     */
+    public Changes<Cinema> findCinemaChanges(ChangeQuery query) {
+        if (cinemaShards != null) throw new IllegalArgumentException("the cinema changes feed is not available while cinemas are sharded");
+        return changesSince("cinemas", query, DBmanager::mapCinema, "findCinemaChanges");
     }
 
     public Optional<Cinema> findCinemaById(int id) {
-        String sql = "SELECT * FROM cinemas WHERE id = ?";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) return shards.findCinemaById(id);
+        if (aheadOfCaches()) return loadCinemaById(id);
+        BatchLoader<Cinema> loader = cinemaLoader;
+        return cinemaCache.get(id, loader != null ? loader::load : this::loadCinemaById);
+    }
 
-            ps.setInt(1, id);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return Optional.empty();
-                return Optional.of(new Cinema(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("city"),
-                        rs.getString("address")
-                ));
+    /** Rows for the given ids in the same order, skipping ids that do not exist; one query for all cache misses. */
+    public List<Cinema> findCinemasByIds(List<Integer> ids) {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) return shards.findCinemasByIds(ids);
+        if (aheadOfCaches()) return inOrder(ids, loadByIds("cinemas", ids, DBmanager::mapCinema, "findCinemasByIds"));
+        Map<Integer, Cinema> rows = cinemaCache.getAll(ids, missing -> loadByIds("cinemas", missing, DBmanager::mapCinema, "findCinemasByIds"));
+        return inOrder(ids, rows);
+    }
+
+    private Optional<Cinema> loadCinemaById(int id) {
+        String sql = "SELECT " + CINEMA_COLUMNS + " FROM cinemas WHERE id = ?";
+        return timed("findCinemaById", () -> {
+            try (Connection conn = getReadConnection("cinemas", true);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setInt(1, id);
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    if (!rs.next()) return Optional.empty();
+                    return Optional.of(mapCinema(rs));
+                }
             }
-        } catch (SQLException e) {
-            throw new RuntimeException("DB findCinemaById failed", e);
+        });
+    }
+
+    /**
+     * Updates and returns the new row in one statement; empty when the id does not exist.
+     * With expectedVersion set, throws PreconditionFailedException if the row has moved on.
+     */
+    public Optional<Cinema> updateCinema(int id, CinemaUpdateRequest req, Long expectedVersion) {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) return shards.updateCinema(id, req, expectedVersion);
+        Optional<Cinema> updated = Optional.empty();
+        try {
+            updated = updateRow("cinemas", "name=?, city=?, address=?", id, expectedVersion, ps -> {
+                ps.setString(1, req.getName());
+                ps.setString(2, req.getCity());
+                ps.setString(3, req.getAddress());
+            }, DBmanager::mapCinema, "Cinema", "updateCinema");
+            return updated;
+        } finally {
+            cinemaCache.invalidate(id);
+            updated.ifPresent(row -> cinemaCache.put(id, row));
         }
     }
 
-    public boolean updateCinema(int id, CinemaUpdateRequest req) {
-        String sql = "UPDATE cinemas SET name=?, city=?, address=? WHERE id=?";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    /** Updates all cinemas in one transaction; result[i] is false when reqs[i].id does not exist. */
+    public boolean[] updateCinemas(List<CinemaBatchUpdateRequest> reqs) {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) return shards.updateCinemas(reqs);
+        String sql = "UPDATE cinemas SET name=?, city=?, address=?, version=version+1, updated_at=now() WHERE id=?";
+        try {
+            return updateBatch(sql, reqs, (ps, req) -> {
+                ps.setString(1, req.getName());
+                ps.setString(2, req.getCity());
+                ps.setString(3, req.getAddress());
+                ps.setInt(4, req.getId());
+            }, "updateCinemas");
+        } finally {
+            for (CinemaBatchUpdateRequest req : reqs) cinemaCache.invalidate(req.getId());
+        }
+    }
 
-            ps.setString(1, req.getName());
-            ps.setString(2, req.getCity());
-            ps.setString(3, req.getAddress());
-            ps.setInt(4, id);
-            return ps.executeUpdate() > 0;
-        } catch (SQLException e) {
-            throw new RuntimeException("DB updateCinema failed", e);
+    /** Deletes the given ids with one statement and returns those that existed. */
+    public Set<Integer> deleteCinemas(List<Integer> ids) {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) {
+            Map<Integer, String> cities = citiesOf(shards.findCinemasByIds(ids));
+            Set<Integer> deleted = shards.deleteCinemas(ids);
+            dropScreeningsOfDeletedCinemas(deleted, cities);
+            return deleted;
+        }
+        try {
+            return deleteByIds("cinemas", ids, "deleteCinemas");
+        } finally {
+            for (Integer id : ids) cinemaCache.invalidate(id);
         }
     }
 
-    public boolean deleteCinema(int id) {
-        String sql = "DELETE FROM cinemas WHERE id = ?";
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+    /** With expectedVersion set, throws PreconditionFailedException if the row has moved on. */
+    public boolean deleteCinema(int id, Long expectedVersion) {
+        CinemaShards shards = cinemaShards;
+        if (shards != null) {
+            Map<Integer, String> cities = citiesOf(shards.findCinemaById(id).stream().toList());
+            boolean deleted = shards.deleteCinema(id, expectedVersion);
+            if (deleted) dropScreeningsOfDeletedCinemas(Set.of(id), cities);
+            return deleted;
+        }
+        try {
+            return deleteRow("cinemas", id, expectedVersion, "Cinema", "deleteCinema");
+        } finally {
+            cinemaCache.invalidate(id);
+        }
+    }
+
+    /**
+     * What ON DELETE CASCADE does unsharded, for cinemas their shard has deleted. The shard's transaction
+     * has committed by now, so a failure here does not fail the delete: the ids are kept and retried with
+     * the next cinema delete, and {@link #deleteOrphanScreenings} catches what a restart lost.
+     */
+    private void dropScreeningsOfDeletedCinemas(Set<Integer> deleted, Map<Integer, String> cities) {
+        Set<Integer> ids = new HashSet<>(deleted);
+        ids.addAll(orphanedCinemas);
+        try {
+            deleteScreeningsOfCinemas(ids, cities);
+            orphanedCinemas.removeAll(ids);
+        } catch (RuntimeException e) {
+            orphanedCinemas.addAll(deleted);
+            LOG.warn("screenings of deleted cinemas {} were not deleted and are retried with the next cinema delete: {}",
+                    ids, e.getMessage());
+        }
+    }
+
+    /**
+     * Sharded, deletes the screenings whose cinema no shard holds any more, left behind when a cinema
+     * delete could not drop them; 0 unsharded, where the foreign key cascades. Cinema ids are never
+     * reused, so a screening whose cinema is missing stays orphaned. Run at startup.
+     */
+    public int deleteOrphanScreenings() {
+        CinemaShards shards = cinemaShards;
+        if (shards == null) return 0;
+        String sql = "SELECT DISTINCT cinema_id FROM screenings";
+        List<Integer> referenced = timed("findScreeningCinemas", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql);
+                 ResultSet rs = executeQuery(ps, sql)) {
+
+                List<Integer> ids = new ArrayList<>();
+                while (rs.next()) ids.add(rs.getInt(1));
+                return ids;
+            }
+        });
+        Set<Integer> missing = new HashSet<>(referenced);
+        for (Cinema cinema : shards.findCinemasByIds(referenced)) missing.remove(cinema.getId());
+        int deleted = deleteScreeningsOfCinemas(missing, Map.of());
+        orphanedCinemas.removeAll(missing);
+        if (deleted > 0) LOG.info("deleted {} screenings of cinemas no shard holds", deleted);
+        return deleted;
+    }
+
+    /**
+     * Drops the screenings (and with them the bookings) of the given cinemas; cities are the deleted
+     * cinemas' cities, read before the delete, for the sales rollups.
+     */
+    private int deleteScreeningsOfCinemas(Set<Integer> cinemaIds, Map<Integer, String> cities) {
+        if (cinemaIds.isEmpty()) return 0;
+        String sql = "DELETE FROM screenings WHERE cinema_id = ANY(?)";
+        List<SalesRollups.Removal> removed = new ArrayList<>();
+        int deleted = inTransaction(conn -> {
+            removed.addAll(removedSales(conn, "cinemas", cinemaIds, cities));
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setArray(1, conn.createArrayOf("integer", cinemaIds.toArray()));
+                return executeUpdate(ps, sql);
+            }
+        }, "deleteScreeningsOfCinemas");
+        salesRemoved(removed);
+        return deleted;
+    }
+
+    private static Map<Integer, String> citiesOf(List<Cinema> cinemas) {
+        Map<Integer, String> cities = new HashMap<>();
+        for (Cinema c : cinemas) cities.put(c.getId(), c.getCity());
+        return cities;
+    }
+
+    // -------------------- SCREENINGS & BOOKINGS --------------------
+
+    public Screening createScreening(ScreeningCreateRequest req) {
+        return createScreening(req, null);
+    }
+
+    /** endsAt is when the movie ends, as placed by ShowtimeScheduler; null derives it from the movie's duration. */
+    public Screening createScreening(ScreeningCreateRequest req, OffsetDateTime endsAt) {
+        String sql = "INSERT INTO screenings (movie_id, cinema_id, hall, starts_at, seat_rows, seats_per_row, ends_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?) RETURNING " + SCREENING_COLUMNS;
+        return timed("createScreening", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setInt(1, req.getMovieId());
+                ps.setInt(2, req.getCinemaId());
+                ps.setString(3, req.getHall());
+                ps.setObject(4, req.getStartsAt());
+                ps.setInt(5, req.getSeatRows());
+                ps.setInt(6, req.getSeatsPerRow());
+                ps.setObject(7, endsAt);
+
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    rs.next();
+                    return mapScreening(rs);
+                }
+            }
+        });
+    }
+
+    /** Inserts planned screenings in one transaction using JDBC batches; result order matches the input. */
+    public List<Screening> createScreenings(List<ShowtimeScheduler.Placement> placements) {
+        String sql = "INSERT INTO screenings (movie_id, cinema_id, hall, starts_at, seat_rows, seats_per_row, ends_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        return insertBatch("screenings", sql, placements, (ps, p) -> {
+            ps.setInt(1, p.getMovieId());
+            ps.setInt(2, p.getCinemaId());
+            ps.setString(3, p.getHall());
+            ps.setObject(4, p.getStartsAt());
+            ps.setInt(5, p.getSeatRows());
+            ps.setInt(6, p.getSeatsPerRow());
+            ps.setObject(7, p.getEndsAt());
+        }, DBmanager::mapScreening, "createScreenings");
+    }
+
+    /**
+     * Screenings of the given cinemas starting at or after since, with when each movie ends:
+     * ends_at, or for rows without it the start plus the movie's current duration.
+     */
+    public List<ShowtimeScheduler.Placement> findScheduledScreenings(Collection<Integer> cinemaIds, OffsetDateTime since) {
+        String sql = "SELECT s.id, s.movie_id, s.cinema_id, s.hall, s.starts_at, s.seat_rows, s.seats_per_row, "
+                + "coalesce(s.ends_at, s.starts_at + make_interval(mins => m.duration)) "
+                + "FROM screenings s JOIN movies m ON m.id = s.movie_id "
+                + "WHERE s.cinema_id = ANY(?) AND s.starts_at >= ?";
+        return timed("findScheduledScreenings", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setArray(1, conn.createArrayOf("integer", cinemaIds.toArray()));
+                ps.setObject(2, since);
+                List<ShowtimeScheduler.Placement> screenings = new ArrayList<>();
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    while (rs.next()) {
+                        screenings.add(new ShowtimeScheduler.Placement(rs.getInt(1), rs.getInt(2), rs.getInt(3),
+                                rs.getString(4), rs.getObject(5, OffsetDateTime.class), rs.getObject(8, OffsetDateTime.class),
+                                rs.getInt(6), rs.getInt(7)));
+                    }
+                }
+                return screenings;
+            }
+        });
+    }
+
+    /** One page of screenings by id, optionally for one movie and/or one cinema. */
+    public Page<Screening> findScreenings(PageQuery page, Integer movieId, Integer cinemaId) {
+        List<String> where = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (movieId != null) {
+            where.add("movie_id = ?");
+            args.add(movieId);
+        }
+        if (cinemaId != null) {
+            where.add("cinema_id = ?");
+            args.add(cinemaId);
+        }
+        return queryPage("screenings", SCREENING_COLUMNS, page, where, args, DBmanager::mapScreening, "findScreenings");
+    }
+
+    public Optional<Screening> findScreeningById(int id) {
+        String sql = "SELECT " + SCREENING_COLUMNS + " FROM screenings WHERE id = ?";
+        return timed("findScreeningById", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setInt(1, id);
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    if (!rs.next()) return Optional.empty();
+                    return Optional.of(mapScreening(rs));
+                }
+            }
+        });
+    }
+
+    /** Seat numbers of all confirmed bookings of a screening. */
+    public List<Integer> findBookedSeats(int screeningId) {
+        String sql = "SELECT seat FROM booked_seats WHERE screening_id = ?";
+        return timed("findBookedSeats", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setInt(1, screeningId);
+                List<Integer> seats = new ArrayList<>();
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    while (rs.next()) seats.add(rs.getInt(1));
+                }
+                return seats;
+            }
+        });
+    }
+
+    /**
+     * Persists a booking and its seats in one transaction. A seat booked concurrently elsewhere
+     * violates the booked_seats primary key; see {@link #isUniqueViolation(Throwable)}.
+     */
+    public Booking createBooking(int screeningId, int viewerId, List<Integer> seats, double totalPrice) {
+        String bookingSql = "INSERT INTO bookings (screening_id, viewer_id, seats, total_price) VALUES (?, ?, ?, ?) RETURNING " + BOOKING_COLUMNS;
+        String seatSql = "INSERT INTO booked_seats (screening_id, seat, booking_id) VALUES (?, ?, ?)";
+        return inTransaction(conn -> {
+            markOrigin(conn);
+            Booking booking;
+            try (PreparedStatement ps = conn.prepareStatement(bookingSql)) {
+                ps.setInt(1, screeningId);
+                ps.setInt(2, viewerId);
+                ps.setArray(3, conn.createArrayOf("integer", seats.toArray()));
+                ps.setDouble(4, totalPrice);
+                try (ResultSet rs = executeQuery(ps, bookingSql)) {
+                    rs.next();
+                    booking = mapBooking(rs);
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(seatSql)) {
+                for (int seat : seats) {
+                    ps.setInt(1, screeningId);
+                    ps.setInt(2, seat);
+                    ps.setInt(3, booking.getId());
+                    ps.addBatch();
+                }
+                executeBatch(ps, seatSql);
+            }
+            return booking;
+        }, "createBooking");
+    }
+
+    public Optional<Booking> findBookingById(int id) {
+        String sql = "SELECT " + BOOKING_COLUMNS + " FROM bookings WHERE id = ?";
+        return timed("findBookingById", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setInt(1, id);
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    if (!rs.next()) return Optional.empty();
+                    return Optional.of(mapBooking(rs));
+                }
+            }
+        });
+    }
+
+    /** Cancels a booking; its booked_seats rows go with it. Returns the deleted booking. */
+    public Optional<Booking> deleteBooking(int id) {
+        String sql = "DELETE FROM bookings WHERE id = ? RETURNING " + BOOKING_COLUMNS;
+        return inTransaction(conn -> {
+            markOrigin(conn);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, id);
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    if (!rs.next()) return Optional.empty();
+                    return Optional.of(mapBooking(rs));
+                }
+            }
+        }, "deleteBooking");
+    }
+
+    /** Tags the booking changes of conn's transaction with this node, whose own listener then skips them. */
+    private void markOrigin(Connection conn) throws SQLException {
+        String sql = "SELECT set_config('app.node', ?, true)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, BookingChange.NODE);
+            executeQuery(ps, sql).close();
+        }
+    }
+
+    /** Takes count ids from the bookings sequence in one round-trip, for bookings written ahead to the journal. */
+    public List<Integer> reserveBookingIds(int count) {
+        String sql = "SELECT nextval(pg_get_serial_sequence('bookings', 'id')) FROM generate_series(1, ?)";
+        return timed("reserveBookingIds", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setInt(1, count);
+                List<Integer> ids = new ArrayList<>(count);
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    while (rs.next()) ids.add(rs.getInt(1));
+                }
+                return ids;
+            }
+        });
+    }
+
+    /**
+     * Claims the seats of journaled bookings, not yet written, in one statement: each seat gets a
+     * booked_seats row under the booking's id with no booking yet. A booking that finds any of its
+     * seats taken keeps none of them. Returns the ids of those bookings.
+     */
+    public Set<Integer> claimJournaledSeats(List<Booking> bookings, String journalId) {
+        String claimSql = "INSERT INTO booked_seats (screening_id, seat, claim_id, claimed_by) "
+                + "SELECT s.screening_id, s.seat, s.claim_id, ? FROM unnest(?::int[], ?::int[], ?::int[]) AS s(claim_id, screening_id, seat) "
+                + "ON CONFLICT (screening_id, seat) DO NOTHING RETURNING claim_id";
+        String undoSql = "DELETE FROM booked_seats WHERE claim_id = ANY(?) AND booking_id IS NULL";
+        return inTransaction(conn -> {
+            List<Integer> claimIds = new ArrayList<>();
+            List<Integer> screeningIds = new ArrayList<>();
+            List<Integer> seats = new ArrayList<>();
+            Map<Integer, Integer> missing = new HashMap<>();
+            for (Booking b : bookings) {
+                for (int seat : b.getSeats()) {
+                    claimIds.add(b.getId());
+                    screeningIds.add(b.getScreeningId());
+                    seats.add(seat);
+                }
+                missing.put(b.getId(), b.getSeats().size());
+            }
+            try (PreparedStatement ps = conn.prepareStatement(claimSql)) {
+                ps.setString(1, journalId);
+                ps.setArray(2, conn.createArrayOf("integer", claimIds.toArray()));
+                ps.setArray(3, conn.createArrayOf("integer", screeningIds.toArray()));
+                ps.setArray(4, conn.createArrayOf("integer", seats.toArray()));
+                try (ResultSet rs = executeQuery(ps, claimSql)) {
+                    while (rs.next()) missing.merge(rs.getInt(1), -1, Integer::sum);
+                }
+            }
+            Set<Integer> rejected = new HashSet<>();
+            missing.forEach((id, count) -> {
+                if (count > 0) rejected.add(id);
+            });
+            if (!rejected.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(undoSql)) {
+                    ps.setArray(1, conn.createArrayOf("integer", rejected.toArray()));
+                    executeUpdate(ps, undoSql);
+                }
+            }
+            return rejected;
+        }, "claimJournaledSeats");
+    }
+
+    /** Drops seat claims of the given bookings that no booking took up. */
+    public void releaseSeatClaims(List<Integer> bookingIds) {
+        String sql = "DELETE FROM booked_seats WHERE claim_id = ANY(?) AND booking_id IS NULL";
+        inTransaction(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setArray(1, conn.createArrayOf("integer", bookingIds.toArray()));
+                return executeUpdate(ps, sql);
+            }
+        }, "releaseSeatClaims");
+    }
+
+    /** Drops every claim of a journal that no booking took up; run after its replay. Returns the seats freed. */
+    public int releaseJournalClaims(String journalId) {
+        String sql = "DELETE FROM booked_seats WHERE claimed_by = ? AND booking_id IS NULL";
+        return inTransaction(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, journalId);
+                return executeUpdate(ps, sql);
+            }
+        }, "releaseJournalClaims");
+    }
+
+    /**
+     * Writes journaled bookings, with their ids, in one transaction, and turns their seat claims into
+     * booked seats (seats not claimed, as in a journal from an older version, are inserted). Bookings
+     * already present are skipped, so a batch can be replayed after a crash. Returns those that were inserted.
+     */
+    public List<Booking> insertJournaledBookings(List<Booking> bookings) {
+        String bookingSql = "INSERT INTO bookings (id, screening_id, viewer_id, seats, total_price, created_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+        String linkSql = "UPDATE booked_seats SET booking_id = claim_id, claim_id = NULL, claimed_by = NULL "
+                + "WHERE claim_id = ANY(?) AND booking_id IS NULL";
+        String seatSql = "INSERT INTO booked_seats (screening_id, seat, booking_id) "
+                + "SELECT b.screening_id, s.seat, b.id FROM bookings b CROSS JOIN LATERAL unnest(b.seats) AS s(seat) "
+                + "WHERE b.id = ANY(?) AND NOT EXISTS (SELECT 1 FROM booked_seats x "
+                + "WHERE x.screening_id = b.screening_id AND x.seat = s.seat AND x.booking_id = b.id)";
+        return inTransaction(conn -> {
+            markOrigin(conn);
+            int[] counts;
+            try (PreparedStatement ps = conn.prepareStatement(bookingSql)) {
+                for (Booking b : bookings) {
+                    ps.setInt(1, b.getId());
+                    ps.setInt(2, b.getScreeningId());
+                    ps.setInt(3, b.getViewerId());
+                    ps.setArray(4, conn.createArrayOf("integer", b.getSeats().toArray()));
+                    ps.setDouble(5, b.getTotalPrice());
+                    ps.setObject(6, b.getCreatedAt());
+                    ps.addBatch();
+                }
+                counts = executeBatch(ps, bookingSql);
+            }
+            List<Booking> inserted = new ArrayList<>();
+            for (int i = 0; i < bookings.size(); i++) {
+                if (counts[i] != 0) inserted.add(bookings.get(i)); // 0: replayed
+            }
+            if (inserted.isEmpty()) return inserted;
+            Object[] ids = inserted.stream().map(Booking::getId).toArray();
+            try (PreparedStatement ps = conn.prepareStatement(linkSql)) {
+                ps.setArray(1, conn.createArrayOf("integer", ids));
+                executeUpdate(ps, linkSql);
+            }
+            // a seat someone else holds fails this with a unique violation, as a direct booking would
+            try (PreparedStatement ps = conn.prepareStatement(seatSql)) {
+                ps.setArray(1, conn.createArrayOf("integer", ids));
+                executeUpdate(ps, seatSql);
+            }
+            return inserted;
+        }, "insertJournaledBookings");
+    }
+
+    // -------------------- SALES ROLLUPS --------------------
+
+    /**
+     * Adds the deltas to their rollup rows in one transaction, creating rows that do not exist yet, and
+     * records batchId with them. Returns false, adding nothing, when that batch was written before.
+     * Batch ids are kept for a day.
+     */
+    public boolean applySalesDeltas(UUID batchId, Map<SalesRollups.Key, SalesRollups.Delta> deltas) {
+        String claimSql = "INSERT INTO sales_rollup_batches (id) VALUES (?) ON CONFLICT DO NOTHING";
+        String pruneSql = "DELETE FROM sales_rollup_batches WHERE applied_at < now() - interval '1 day'";
+        String sql = "INSERT INTO sales_rollups AS r (dimension, key, day, tickets, revenue, seats) VALUES (?, ?, ?, ?, ?, ?) "
+                + "ON CONFLICT (dimension, key, day) DO UPDATE SET tickets = r.tickets + EXCLUDED.tickets, "
+                + "revenue = r.revenue + EXCLUDED.revenue, seats = r.seats + EXCLUDED.seats";
+        return inTransaction(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(claimSql)) {
+                ps.setObject(1, batchId);
+                if (executeUpdate(ps, claimSql) == 0) return false;
+            }
+            try (PreparedStatement ps = conn.prepareStatement(pruneSql)) {
+                executeUpdate(ps, pruneSql);
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int n = 0;
+                for (Map.Entry<SalesRollups.Key, SalesRollups.Delta> e : SalesRollups.ordered(deltas)) {
+                    ps.setString(1, e.getKey().dimension);
+                    ps.setString(2, e.getKey().value);
+                    ps.setObject(3, e.getKey().day);
+                    ps.setLong(4, e.getValue().tickets);
+                    ps.setDouble(5, e.getValue().revenue);
+                    ps.setLong(6, e.getValue().seats);
+                    ps.addBatch();
+                    if (++n % BATCH_CHUNK == 0) executeBatch(ps, sql);
+                }
+                if (n % BATCH_CHUNK != 0) executeBatch(ps, sql);
+            }
+            return true;
+        }, "applySalesDeltas");
+    }
+
+    /**
+     * Recomputes every rollup row from screenings (seats offered) and bookings (tickets, revenue),
+     * with show days in the given zone, replacing the table's contents in one transaction. Sharded,
+     * cities come from the shards and are passed in as arrays standing in for the cinemas table.
+     */
+    public int rebuildSalesRollups(ZoneId zone) {
+        List<Cinema> sharded = cinemaShards == null ? null : cinemaShards.getAllCinemas();
+        String sql = (sharded == null ? "WITH " : "WITH cinemas AS (SELECT * FROM unnest(?::int[], ?::text[]) AS c(id, city)), ")
+                + "base AS ("
+                + "SELECT s.movie_id, s.cinema_id, c.city, (s.starts_at AT TIME ZONE ?)::date AS day, "
+                + "0::bigint AS tickets, 0::float8 AS revenue, (s.seat_rows * s.seats_per_row)::bigint AS seats "
+                + "FROM screenings s JOIN cinemas c ON c.id = s.cinema_id "
+                + "UNION ALL "
+                + "SELECT s.movie_id, s.cinema_id, c.city, (s.starts_at AT TIME ZONE ?)::date, "
+                + "cardinality(b.seats), b.total_price, 0 "
+                + "FROM bookings b JOIN screenings s ON s.id = b.screening_id JOIN cinemas c ON c.id = s.cinema_id) "
+                + "INSERT INTO sales_rollups (dimension, key, day, tickets, revenue, seats) "
+                + "SELECT CASE WHEN GROUPING(movie_id) = 0 THEN '" + SalesRollups.MOVIE + "' "
+                + "WHEN GROUPING(cinema_id) = 0 THEN '" + SalesRollups.CINEMA + "' "
+                + "WHEN GROUPING(city) = 0 THEN '" + SalesRollups.CITY + "' ELSE '" + SalesRollups.TOTAL + "' END, "
+                + "coalesce(movie_id::text, cinema_id::text, city, ''), day, sum(tickets), sum(revenue), sum(seats) "
+                + "FROM base GROUP BY GROUPING SETS ((movie_id, day), (cinema_id, day), (city, day), (day)) "
+                + "HAVING GROUPING(city) = 1 OR city IS NOT NULL";
+        return inTransaction(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DELETE FROM sales_rollups");
+            }
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int i = 1;
+                if (sharded != null) {
+                    ps.setArray(i++, conn.createArrayOf("integer", sharded.stream().map(Cinema::getId).toArray()));
+                    ps.setArray(i++, conn.createArrayOf("text", sharded.stream().map(Cinema::getCity).toArray()));
+                }
+                ps.setString(i++, zone.getId());
+                ps.setString(i, zone.getId());
+                return executeUpdate(ps, sql);
+            }
+        }, "rebuildSalesRollups");
+    }
+
+    /**
+     * The limit keys of a dimension with the highest metric (revenue, tickets or occupancy) summed
+     * over [from, to]; reads the rollup rows of that range only.
+     */
+    public List<SalesTotal> findTopSales(String dimension, LocalDate from, LocalDate to, String metric, int limit) {
+        String order = switch (metric) {
+            case "revenue" -> "sum(revenue)";
+            case "tickets" -> "sum(tickets)";
+            case "occupancy" -> "sum(tickets)::float8 / nullif(sum(seats), 0)";
+            default -> throw new IllegalArgumentException("metric must be one of revenue, tickets, occupancy");
+        };
+        String sql = "SELECT key, sum(tickets), sum(revenue), sum(seats) FROM sales_rollups "
+                + "WHERE dimension = ? AND day BETWEEN ? AND ? GROUP BY key "
+                + "ORDER BY " + order + " DESC NULLS LAST, key LIMIT ?";
+        return timed("findTopSales", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setString(1, dimension);
+                ps.setObject(2, from);
+                ps.setObject(3, to);
+                ps.setInt(4, limit);
+                List<SalesTotal> top = new ArrayList<>();
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    while (rs.next()) top.add(new SalesTotal(rs.getString(1), rs.getLong(2), rs.getDouble(3), rs.getLong(4)));
+                }
+                return top;
+            }
+        });
+    }
+
+    /**
+     * Sales of one key per day, week (from Monday) or month over [from, to]; buckets without rows are
+     * left out. A range read on the rollup primary key.
+     */
+    public List<SalesPoint> findSalesSeries(String dimension, String key, LocalDate from, LocalDate to, String bucket) {
+        String sql = "SELECT date_trunc(?, day::timestamp)::date AS start, sum(tickets), sum(revenue), sum(seats) "
+                + "FROM sales_rollups WHERE dimension = ? AND key = ? AND day BETWEEN ? AND ? "
+                + "GROUP BY start ORDER BY start";
+        return timed("findSalesSeries", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setString(1, bucket);
+                ps.setString(2, dimension);
+                ps.setString(3, key);
+                ps.setObject(4, from);
+                ps.setObject(5, to);
+                List<SalesPoint> points = new ArrayList<>();
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    while (rs.next()) {
+                        points.add(new SalesPoint(rs.getObject(1, LocalDate.class), rs.getLong(2), rs.getDouble(3), rs.getLong(4)));
+                    }
+                }
+                return points;
+            }
+        });
+    }
+
+    private <T> Map<Integer, T> loadByIds(String table, List<Integer> ids, RowMapper<T> mapper, String op) {
+        String sql = "SELECT " + columns(table) + " FROM " + table + " WHERE id = ANY(?)";
+        return timed(op, () -> {
+            try (Connection conn = getReadConnection(table, true);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setArray(1, conn.createArrayOf("integer", ids.toArray()));
+                Map<Integer, T> rows = new HashMap<>();
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    while (rs.next()) rows.put(rs.getInt(1), mapper.map(rs));
+                }
+                return rows;
+            }
+        });
+    }
+
+    private static <T> List<T> inOrder(List<Integer> ids, Map<Integer, T> rows) {
+        List<T> ordered = new ArrayList<>(rows.size());
+        for (int id : ids) {
+            T row = rows.get(id);
+            if (row != null) ordered.add(row);
+        }
+        return ordered;
+    }
+
+    /** True when a DBmanager failure was caused by a unique or primary key violation. */
+    static boolean isUniqueViolation(Throwable e) {
+        return hasSqlState(e, "23505");
+    }
+
+    /** True when e was caused by an exclusion constraint, e.g. two screenings in one hall at once. */
+    static boolean isExclusionViolation(Throwable e) {
+        return hasSqlState(e, "23P01");
+    }
+
+    private static boolean hasSqlState(Throwable e, String state) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql && state.equals(sql.getSQLState())) return true;
+        }
+        return false;
+    }
+
+    // -------------------- IDEMPOTENCY KEYS --------------------
+
+    /**
+     * Claims key for a request with the given fingerprint. Returns null when this caller now owns it,
+     * otherwise the existing record: a stored response, or one with status 0 while another node runs it.
+     * Expired keys and claims abandoned for more than lockSeconds are taken over.
+     */
+    public IdempotentResponse claimIdempotencyKey(String key, String fingerprint, long ttlSeconds, long lockSeconds) {
+        String claimSql = "INSERT INTO idempotency_keys (key, fingerprint, expires_at) "
+                + "VALUES (?, ?, now() + make_interval(secs => ?)) "
+                + "ON CONFLICT (key) DO UPDATE SET fingerprint = EXCLUDED.fingerprint, status = NULL, content_type = NULL, "
+                + "etag = NULL, location = NULL, body = NULL, created_at = now(), expires_at = EXCLUDED.expires_at "
+                + "WHERE idempotency_keys.expires_at < now() "
+                + "OR (idempotency_keys.status IS NULL AND idempotency_keys.created_at < now() - make_interval(secs => ?)) "
+                + "RETURNING key";
+        String findSql = "SELECT fingerprint, status, content_type, etag, location, body FROM idempotency_keys WHERE key = ?";
+        return timed("claimIdempotencyKey", () -> {
+            try (Connection conn = getConnection()) {
+                try (PreparedStatement ps = conn.prepareStatement(claimSql)) {
+                    ps.setString(1, key);
+                    ps.setString(2, fingerprint);
+                    ps.setLong(3, ttlSeconds);
+                    ps.setLong(4, lockSeconds);
+                    try (ResultSet rs = executeQuery(ps, claimSql)) {
+                        if (rs.next()) return null;
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement(findSql)) {
+                    ps.setString(1, key);
+                    try (ResultSet rs = executeQuery(ps, findSql)) {
+                        // deleted by a release in between: report as running, the caller retries later
+                        if (!rs.next()) return new IdempotentResponse(fingerprint, 0, null, null, null, null);
+                        return new IdempotentResponse(rs.getString("fingerprint"), rs.getInt("status"),
+                                rs.getString("content_type"), rs.getString("etag"), rs.getString("location"), rs.getBytes("body"));
+                    }
+                }
+            }
+        });
+    }
+
+    public void completeIdempotencyKey(String key, IdempotentResponse response) {
+        String sql = "UPDATE idempotency_keys SET status = ?, content_type = ?, etag = ?, location = ?, body = ? "
+                + "WHERE key = ? AND fingerprint = ? AND status IS NULL";
+        timed("completeIdempotencyKey", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, response.getStatus());
+                ps.setString(2, response.getContentType());
+                ps.setString(3, response.getEtag());
+                ps.setString(4, response.getLocation());
+                ps.setBytes(5, response.getBody());
+                ps.setString(6, key);
+                ps.setString(7, response.getFingerprint());
+                return executeUpdate(ps, sql);
+            }
+        });
+    }
+
+    /** Drops an unfinished claim so the request can be retried. */
+    public void releaseIdempotencyKey(String key, String fingerprint) {
+        String sql = "DELETE FROM idempotency_keys WHERE key = ? AND fingerprint = ? AND status IS NULL";
+        timed("releaseIdempotencyKey", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, key);
+                ps.setString(2, fingerprint);
+                return executeUpdate(ps, sql);
+            }
+        });
+    }
+
+    /** Deletes up to limit expired keys, so a large backlog is pruned in short statements. Returns how many. */
+    public int pruneIdempotencyKeys(int limit) {
+        String sql = "DELETE FROM idempotency_keys WHERE key IN "
+                + "(SELECT key FROM idempotency_keys WHERE expires_at < now() LIMIT ?)";
+        return timed("pruneIdempotencyKeys", () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, limit);
+                return executeUpdate(ps, sql);
+            }
+        });
+    }
+
+    // -------------------- VERSIONED WRITES --------------------
+
+    @FunctionalInterface
+    private interface ParameterBinder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    /**
+     * UPDATE ... RETURNING the row, bumping version and updated_at. assignments are the SET clause
+     * bound by binder from index 1; id and expectedVersion are bound after them.
+     */
+    private <T> Optional<T> updateRow(String table, String assignments, int id, Long expectedVersion,
+                                      ParameterBinder binder, RowMapper<T> mapper, String entity, String op) {
+        String sql = "UPDATE " + table + " SET " + assignments + ", version=version+1, updated_at=now() WHERE id=?"
+                + (expectedVersion == null ? "" : " AND version=?") + " RETURNING " + columns(table);
+        int idIndex = (int) assignments.chars().filter(c -> c == '?').count() + 1;
+        return timed(op, () -> {
+            try (Connection conn = getConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                binder.bind(ps);
+                ps.setInt(idIndex, id);
+                if (expectedVersion != null) ps.setLong(idIndex + 1, expectedVersion);
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    if (rs.next()) return Optional.of(mapper.map(rs));
+                }
+                if (expectedVersion != null) checkVersion(conn, table, id, expectedVersion, entity);
+                return Optional.empty();
+            }
+        });
+    }
+
+    /** Deletes a movie, viewer or cinema row; what it cascades to comes off the sales rollups. */
+    private boolean deleteRow(String table, int id, Long expectedVersion, String entity, String op) {
+        String sql = "DELETE FROM " + table + " WHERE id = ?" + (expectedVersion == null ? "" : " AND version = ?");
+        List<SalesRollups.Removal> removed = new ArrayList<>();
+        boolean deleted = inTransaction(conn -> {
+            removed.addAll(removedSales(conn, table, List.of(id), null));
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, id);
+                if (expectedVersion != null) ps.setLong(2, expectedVersion);
+                if (executeUpdate(ps, sql) > 0) return true;
+                if (expectedVersion != null) checkVersion(conn, table, id, expectedVersion, entity);
+                return false;
+            }
+        }, op);
+        if (deleted) salesRemoved(removed);
+        return deleted;
+    }
+
+    /**
+     * Sales a delete from movies, cinemas or viewers is about to cascade to, one removal per screening:
+     * its bookings, and its seats unless only viewers go. Runs in the delete's transaction after locking
+     * the rows new bookings reference, so none lands in between. Empty without rollups. Sharded, cinemas
+     * are not in this database; cities then come from the given map, or SalesRollups looks them up.
+     */
+    private List<SalesRollups.Removal> removedSales(Connection conn, String table, Collection<Integer> ids,
+                                                    Map<Integer, String> cities) throws SQLException {
+        if (rollups == null) return List.of();
+        boolean viewers = table.equals("viewers");
+        boolean joinCinemas = cinemaShards == null;
+        String column = switch (table) {
+            case "movies" -> "s.movie_id";
+            case "cinemas" -> "s.cinema_id";
+            default -> "b.viewer_id";
+        };
+        String lockSql = viewers ? "SELECT id FROM viewers WHERE id = ANY(?) ORDER BY id FOR UPDATE"
+                : "SELECT s.id FROM screenings s WHERE " + column + " = ANY(?) ORDER BY s.id FOR UPDATE";
+        String sql = "SELECT s.id, s.movie_id, s.cinema_id, " + (joinCinemas ? "c.city" : "NULL") + ", s.starts_at, "
+                + (viewers ? "0" : "(s.seat_rows * s.seats_per_row)::bigint") + ", "
+                + "coalesce(sum(cardinality(b.seats)), 0), coalesce(sum(b.total_price), 0) "
+                + "FROM screenings s " + (viewers ? "JOIN" : "LEFT JOIN") + " bookings b ON b.screening_id = s.id "
+                + (joinCinemas ? "LEFT JOIN cinemas c ON c.id = s.cinema_id " : "")
+                + "WHERE " + column + " = ANY(?) GROUP BY s.id" + (joinCinemas ? ", c.city" : "");
+        Array idArray = conn.createArrayOf("integer", ids.toArray());
+        try (PreparedStatement ps = conn.prepareStatement(lockSql)) {
+            ps.setArray(1, idArray);
+            try (ResultSet rs = executeQuery(ps, lockSql)) {
+                while (rs.next()) {
+                    // locked as read
+                }
+            }
+        }
+        List<SalesRollups.Removal> removed = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setArray(1, idArray);
+            try (ResultSet rs = executeQuery(ps, sql)) {
+                while (rs.next()) {
+                    int cinemaId = rs.getInt(3);
+                    String city = rs.getString(4);
+                    if (city == null && cities != null) city = cities.get(cinemaId);
+                    removed.add(new SalesRollups.Removal(rs.getInt(1), rs.getInt(2), cinemaId, city,
+                            rs.getObject(5, OffsetDateTime.class), rs.getLong(7), rs.getDouble(8), rs.getLong(6)));
+                }
+            }
+        }
+        return removed;
+    }
+
+    private void salesRemoved(List<SalesRollups.Removal> removed) {
+        SalesRollups r = rollups;
+        if (r != null && !removed.isEmpty()) r.removed(removed);
+    }
+
+    /** Slow path after a guarded write matched nothing: 412 if the row exists under another version, else 404. */
+    private void checkVersion(Connection conn, String table, int id, long expectedVersion, String entity) throws SQLException {
+        String sql = "SELECT version FROM " + table + " WHERE id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, id);
-            return ps.executeUpdate() > 0;
+            try (ResultSet rs = executeQuery(ps, sql)) {
+                if (rs.next()) throw new PreconditionFailedException(entity, id, expectedVersion, rs.getLong(1));
+            }
+        }
+    }
+
+    // -------------------- BATCHES --------------------
+
+    /** Statements per executeBatch round-trip. */
+    private static final int BATCH_CHUNK = 500;
+
+    @FunctionalInterface
+    private interface StatementBinder<R> {
+        void bind(PreparedStatement ps, R row) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface TransactionWork<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    /** Runs work in one transaction on one connection; any failure rolls the whole unit back. */
+    private <T> T inTransaction(TransactionWork<T> work, String op) {
+        return timed(op, () -> {
+            try (Connection conn = getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    T result = work.run(conn);
+                    conn.commit();
+                    return result;
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
+    /** Batched INSERTs; the inserted rows come back as generated keys per chunk, in statement order. */
+    private <R, T> List<T> insertBatch(String table, String sql, List<R> rows, StatementBinder<R> binder, RowMapper<T> mapper, String op) {
+        if (rows.isEmpty()) return List.of();
+        return inTransaction(conn -> {
+            List<T> inserted = new ArrayList<>(rows.size());
+            // the driver appends RETURNING with these columns, so version and updated_at come back too
+            try (PreparedStatement ps = conn.prepareStatement(sql, columns(table).split(", "))) {
+                for (int i = 0; i < rows.size(); i++) {
+                    binder.bind(ps, rows.get(i));
+                    ps.addBatch();
+                    if ((i + 1) % BATCH_CHUNK == 0 || i == rows.size() - 1) {
+                        executeBatch(ps, sql);
+                        try (ResultSet keys = ps.getGeneratedKeys()) {
+                            while (keys.next()) inserted.add(mapper.map(keys));
+                        }
+                    }
+                }
+            }
+            return inserted;
+        }, op);
+    }
+
+    private <R> boolean[] updateBatch(String sql, List<R> rows, StatementBinder<R> binder, String op) {
+        if (rows.isEmpty()) return new boolean[0];
+        return inTransaction(conn -> {
+            boolean[] updated = new boolean[rows.size()];
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int chunkStart = 0;
+                for (int i = 0; i < rows.size(); i++) {
+                    binder.bind(ps, rows.get(i));
+                    ps.addBatch();
+                    if ((i + 1) % BATCH_CHUNK == 0 || i == rows.size() - 1) {
+                        int[] counts = executeBatch(ps, sql);
+                        for (int j = 0; j < counts.length; j++) updated[chunkStart + j] = counts[j] > 0;
+                        chunkStart = i + 1;
+                    }
+                }
+            }
+            return updated;
+        }, op);
+    }
+
+    /** Deletes movie, viewer or cinema rows; what they cascade to comes off the sales rollups. */
+    private Set<Integer> deleteByIds(String table, List<Integer> ids, String op) {
+        if (ids.isEmpty()) return Set.of();
+        String sql = "DELETE FROM " + table + " WHERE id = ANY(?) RETURNING id";
+        List<SalesRollups.Removal> removed = new ArrayList<>();
+        Set<Integer> result = inTransaction(conn -> {
+            removed.addAll(removedSales(conn, table, ids, null));
+            Set<Integer> deleted = new HashSet<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setArray(1, conn.createArrayOf("integer", ids.toArray()));
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    while (rs.next()) deleted.add(rs.getInt(1));
+                }
+            }
+            return deleted;
+        }, op);
+        salesRemoved(removed);
+        return result;
+    }
+
+    // -------------------- ROW MAPPING --------------------
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /** Receives streamed rows; an IOException (e.g. client gone) stops the stream and closes the cursor. */
+    @FunctionalInterface
+    public interface RowConsumer<T> {
+        void accept(T row) throws IOException;
+    }
+
+    private static Map<String, PageQuery.SortColumn> sorts(PageQuery.SortColumn... columns) {
+        Map<String, PageQuery.SortColumn> map = new LinkedHashMap<>();
+        for (PageQuery.SortColumn c : columns) map.put(c.getName(), c);
+        return Collections.unmodifiableMap(map);
+    }
+
+    /** Runs one bounded keyset query: filters, cursor predicate, ORDER BY (sort, id), LIMIT n+1. */
+    private <T> Page<T> queryPage(String table, String columns, PageQuery page, List<String> where, List<Object> args,
+                                  RowMapper<T> mapper, String op) {
+        page.appendKeyset(where, args);
+        // the cursor needs the sort value of the last row, even when it was not asked for
+        List<String> selected = Arrays.asList(columns.split(", "));
+        int sortIndex = selected.contains(page.sortColumn()) ? selected.indexOf(page.sortColumn()) + 1 : selected.size() + 1;
+        String sql = "SELECT " + columns + (sortIndex <= selected.size() ? "" : ", " + page.sortColumn())
+                + " FROM " + table
+                + (where.isEmpty() ? "" : " WHERE " + String.join(" AND ", where))
+                + page.orderAndLimit();
+        return timed(op, () -> {
+            try (Connection conn = getReadConnection(table, false);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                PageQuery.bind(ps, args);
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    List<T> items = new ArrayList<>(Math.min(page.getLimit(), 64));
+                    Object lastValue = null;
+                    int lastId = 0;
+                    boolean hasMore = false;
+                    while (rs.next()) {
+                        if (items.size() == page.getLimit()) {
+                            hasMore = true;
+                            break;
+                        }
+                        items.add(mapper.map(rs));
+                        lastValue = rs.getObject(sortIndex);
+                        lastId = rs.getInt(1);
+                    }
+                    return new Page<>(items, hasMore ? page.cursor(lastValue, lastId) : null);
+                }
+            }
+        });
+    }
+
+    /** GIN-indexed match, ranked by ts_rank, keyset-paginated on (rank DESC, id ASC). */
+    private <T> Page<T> searchPage(String table, String columns, SearchQuery query, RowMapper<T> mapper, String op) {
+        if (query.getTsQuery() == null) return new Page<>(List.of(), null);
+        boolean hasCursor = query.getAfterRank() != null;
+        int rankIndex = columns.split(", ").length + 1;
+        String sql = "SELECT * FROM ("
+                + "SELECT " + columns + ", ts_rank(t.search_vector, q) AS rank FROM " + table + " t, to_tsquery('simple', ?) q "
+                + "WHERE t.search_vector @@ q) r"
+                + (hasCursor ? " WHERE r.rank < ? OR (r.rank = ? AND r.id > ?)" : "")
+                + " ORDER BY r.rank DESC, r.id LIMIT " + (query.getLimit() + 1);
+        return timed(op, () -> {
+            try (Connection conn = getReadConnection(table, false);
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
+
+                ps.setString(1, query.getTsQuery());
+                if (hasCursor) {
+                    ps.setFloat(2, query.getAfterRank());
+                    ps.setFloat(3, query.getAfterRank());
+                    ps.setInt(4, query.getAfterId());
+                }
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    List<T> items = new ArrayList<>(Math.min(query.getLimit(), 64));
+                    float lastRank = 0;
+                    int lastId = 0;
+                    boolean hasMore = false;
+                    while (rs.next()) {
+                        if (items.size() == query.getLimit()) {
+                            hasMore = true;
+                            break;
+                        }
+                        items.add(mapper.map(rs));
+                        lastRank = rs.getFloat(rankIndex);
+                        lastId = rs.getInt(1);
+                    }
+                    return new Page<>(items, hasMore ? query.cursor(lastRank, lastId) : null);
+                }
+            }
+        });
+    }
+
+    /** One delivered change: a written row, or a tombstone when row is null. */
+    private static final class Change<T> {
+        final long xid;
+        final int id;
+        final T row;
+
+        Change(long xid, int id, T row) {
+            this.xid = xid;
+            this.id = id;
+            this.row = row;
+        }
+
+        boolean before(Change<?> other) {
+            return xid < other.xid || (xid == other.xid && id < other.id);
+        }
+    }
+
+    /**
+     * Merges rows and tombstones after the token in (change_xid, id) order. Only transactions below
+     * the snapshot xmin are read: they are all finished, so nothing can later commit behind the token.
+     * Writes still in flight are picked up by a later call once they commit.
+     */
+    private <T> Changes<T> changesSince(String table, ChangeQuery query, RowMapper<T> mapper, String op) {
+        return timed(op, () -> {
+            try (Connection conn = getConnection()) {
+                long bound;
+                String boundSql = "SELECT pg_snapshot_xmin(pg_current_snapshot())::text";
+                try (PreparedStatement ps = conn.prepareStatement(boundSql);
+                     ResultSet rs = executeQuery(ps, boundSql)) {
+                    rs.next();
+                    bound = Long.parseLong(rs.getString(1));
+                }
+                if (!query.hasSince()) return new Changes<>(List.of(), List.of(), ChangeQuery.token(bound, 0), false);
+
+                String horizonSql = "SELECT pruned_xid::text FROM sync_horizon WHERE entity = ?";
+                try (PreparedStatement ps = conn.prepareStatement(horizonSql)) {
+                    ps.setString(1, table);
+                    try (ResultSet rs = executeQuery(ps, horizonSql)) {
+                        if (rs.next() && query.getAfterXid() <= Long.parseLong(rs.getString(1))) {
+                            throw new ResyncRequiredException(table);
+                        }
+                    }
+                }
+
+                int fetch = query.getLimit() + 1;
+                int posIndex = columns(table).split(", ").length + 1;
+                List<Change<T>> written = new ArrayList<>();
+                String rowsSql = "SELECT " + columns(table) + ", t.change_xid::text AS change_pos FROM " + table + " t "
+                        + "WHERE (t.change_xid, t.id) > (?::xid8, ?) AND t.change_xid < ?::xid8 "
+                        + "ORDER BY t.change_xid, t.id LIMIT " + fetch;
+                try (PreparedStatement ps = conn.prepareStatement(rowsSql)) {
+                    bindChangeWindow(ps, 1, query, bound);
+                    try (ResultSet rs = executeQuery(ps, rowsSql)) {
+                        while (rs.next()) {
+                            written.add(new Change<>(Long.parseLong(rs.getString(posIndex)), rs.getInt(1), mapper.map(rs)));
+                        }
+                    }
+                }
+
+                List<Change<T>> deleted = new ArrayList<>();
+                String tombstoneSql = "SELECT id, change_xid::text AS change_pos FROM deleted_rows "
+                        + "WHERE entity = ? AND (change_xid, id) > (?::xid8, ?) AND change_xid < ?::xid8 "
+                        + "ORDER BY change_xid, id LIMIT " + fetch;
+                try (PreparedStatement ps = conn.prepareStatement(tombstoneSql)) {
+                    ps.setString(1, table);
+                    bindChangeWindow(ps, 2, query, bound);
+                    try (ResultSet rs = executeQuery(ps, tombstoneSql)) {
+                        while (rs.next()) deleted.add(new Change<>(Long.parseLong(rs.getString(2)), rs.getInt(1), null));
+                    }
+                }
+
+                List<T> items = new ArrayList<>();
+                List<Integer> deletedIds = new ArrayList<>();
+                Change<T> last = null;
+                int w = 0, d = 0;
+                while (items.size() + deletedIds.size() < query.getLimit() && (w < written.size() || d < deleted.size())) {
+                    boolean takeWritten = d == deleted.size() || (w < written.size() && written.get(w).before(deleted.get(d)));
+                    last = takeWritten ? written.get(w++) : deleted.get(d++);
+                    if (takeWritten) items.add(last.row);
+                    else deletedIds.add(last.id);
+                }
+                boolean hasMore = w < written.size() || d < deleted.size();
+                // caught up: everything below the bound has been delivered, so the next call can start there
+                String next = hasMore ? ChangeQuery.token(last.xid, last.id) : ChangeQuery.token(bound, 0);
+                return new Changes<>(items, deletedIds, next, hasMore);
+            }
+        });
+    }
+
+    private static void bindChangeWindow(PreparedStatement ps, int from, ChangeQuery query, long bound) throws SQLException {
+        ps.setString(from, Long.toString(query.getAfterXid()));
+        ps.setInt(from + 1, query.getAfterId());
+        ps.setString(from + 2, Long.toString(bound));
+    }
+
+    /**
+     * With autocommit off and a fetch size, the PostgreSQL driver reads through a portal
+     * in batches of fetchSize rows instead of buffering the whole result.
+     */
+    private <T> void streamAll(String table, RowMapper<T> mapper, RowConsumer<T> consumer, String op) throws IOException {
+        String sql = "SELECT " + columns(table) + " FROM " + table + " ORDER BY id";
+        // not timed(): the consumer may throw IOException, and its write time is part of the call
+        DbBulkhead limit = exportBulkhead != null ? exportBulkhead : bulkhead;
+        if (limit != null) enter(limit, op);
+        CURRENT_OP.set(op);
+        long start = System.nanoTime();
+        int rows = 0;
+        boolean success = false;
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setFetchSize(Integer.parseInt(env("DB_EXPORT_FETCH_SIZE", "1000")));
+                try (ResultSet rs = executeQuery(ps, sql)) {
+                    while (rs.next()) {
+                        consumer.accept(mapper.map(rs));
+                        rows++;
+                    }
+                }
+            } finally {
+                // read-only transaction: ending it releases the portal before the connection is reused
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            success = true;
         } catch (SQLException e) {
-            throw new RuntimeException("DB deleteCinema failed", e);
+            throw new RuntimeException("DB " + op + " failed", e);
+        } finally {
+            metrics.recordCall(op, System.nanoTime() - start, rows, success);
+            CURRENT_OP.remove();
+            if (limit != null) limit.release();
         }
     }
+
+    /** Reads MOVIE_COLUMNS by index; they come first in every movie select. */
+    static Movie mapMovie(ResultSet rs) throws SQLException {
+        Movie movie = new Movie(
+                rs.getInt(1),
+                rs.getString(4),
+                rs.getString(5),
+                rs.getInt(6),
+                rs.getInt(7),
+                rs.getDouble(8)
+        );
+        movie.setVersion(rs.getLong(2));
+        movie.setUpdatedAt(rs.getObject(3, OffsetDateTime.class));
+        return movie;
+    }
+
+    /** Reads VIEWER_COLUMNS by index. */
+    static Viewer mapViewer(ResultSet rs) throws SQLException {
+        Viewer viewer = new Viewer(
+                rs.getInt(1),
+                rs.getString(4),
+                rs.getInt(5),
+                rs.getString(6)
+        );
+        viewer.setVersion(rs.getLong(2));
+        viewer.setUpdatedAt(rs.getObject(3, OffsetDateTime.class));
+        return viewer;
+    }
+
+    /** Reads CINEMA_COLUMNS by index. */
+    static Cinema mapCinema(ResultSet rs) throws SQLException {
+        Cinema cinema = new Cinema(
+                rs.getInt(1),
+                rs.getString(4),
+                rs.getString(5),
+                rs.getString(6)
+        );
+        cinema.setVersion(rs.getLong(2));
+        cinema.setUpdatedAt(rs.getObject(3, OffsetDateTime.class));
+        return cinema;
+    }
+
+    /** Reads SCREENING_COLUMNS by index. */
+    static Screening mapScreening(ResultSet rs) throws SQLException {
+        return new Screening(
+                rs.getInt(1),
+                rs.getInt(2),
+                rs.getInt(3),
+                rs.getString(4),
+                rs.getObject(5, OffsetDateTime.class),
+                rs.getInt(6),
+                rs.getInt(7)
+        );
+    }
+
+    /** Reads BOOKING_COLUMNS by index. */
+    static Booking mapBooking(ResultSet rs) throws SQLException {
+        Integer[] seats = (Integer[]) rs.getArray(4).getArray();
+        return new Booking(
+                rs.getInt(1),
+                rs.getInt(2),
+                rs.getInt(3),
+                List.of(seats),
+                rs.getDouble(5),
+                rs.getObject(6, OffsetDateTime.class)
+        );
+    }
+
+    private static String columns(String table) {
+        return switch (table) {
+            case "movies" -> MOVIE_COLUMNS;
+            case "viewers" -> VIEWER_COLUMNS;
+            case "cinemas" -> CINEMA_COLUMNS;
+            case "screenings" -> SCREENING_COLUMNS;
+            case "bookings" -> BOOKING_COLUMNS;
+            default -> throw new IllegalArgumentException("unknown table: " + table);
+        };
+    }
 }
@@ -0,0 +1,111 @@
+package com.example.demo_new;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.function.ToLongFunction;
+
+@Configuration
+public class DatabaseConfig {
+
+    /**
+     * Single DBmanager shared by all controllers. Pooled unless DB_POOL_ENABLED=false in .env.
+     * With virtual threads on, a DbBulkhead takes over the bounding that Tomcat's worker pool used to do.
+     * With CINEMA_SHARDS set, cinemas are read and written through {@link CinemaShards}.
+     */
+    @Bean(destroyMethod = "close")
+    public DBmanager dbManager(MeterRegistry meterRegistry,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        boolean pooled = Boolean.parseBoolean(DBmanager.env("DB_POOL_ENABLED", "true"));
+        DBmanager db;
+        if (pooled) {
+            HikariDataSource pool = DBmanager.createPool();
+            pool.setMetricRegistry(meterRegistry);
+            db = new DBmanager(pool);
+        } else {
+            db = new DBmanager();
+        }
+        QueryMetrics metrics = new QueryMetrics(meterRegistry, Long.parseLong(DBmanager.env("DB_SLOW_QUERY_MS", "500")));
+        boolean bulkhead = Boolean.parseBoolean(DBmanager.env("DB_BULKHEAD_ENABLED", String.valueOf(virtualThreads)));
+        db.setMetrics(metrics);
+        if (bulkhead) {
+            db.setBulkhead(DbBulkhead.fromEnv());
+            db.setExportBulkhead(DbBulkhead.exportsFromEnv());
+        }
+        // CINEMA_SHARDS > 0: cinemas move to their own databases, each with its own pool and bulkhead
+        CinemaShards shards = CinemaShards.fromEnv();
+        if (shards != null) {
+            for (DBmanager shard : shards.getShards()) {
+                shard.setMetrics(metrics);
+                if (bulkhead) {
+                    shard.setBulkhead(DbBulkhead.fromEnv());
+                    shard.setExportBulkhead(DbBulkhead.exportsFromEnv());
+                }
+            }
+            db.setCinemaShards(shards);
+            meterRegistry.gauge("db.cinema.shards", shards, CinemaShards::size);
+        }
+        // DB_REPLICA_URLS: list and by-id reads of movies, viewers and cinemas go to streaming replicas
+        ReadReplicas replicas = ReadReplicas.fromEnv(db);
+        if (replicas != null) {
+            db.setReplicas(replicas);
+            registerReplicaMetrics(replicas, meterRegistry);
+        }
+        for (String entity : db.getCaches().keySet()) {
+            // looked up on every scrape, since setLoadBatching replaces the loaders
+            FunctionCounter.builder("db.load.lookups", db, d -> loaderCount(d, entity, BatchLoader::getLookups))
+                    .description("find*ById calls that missed the cache and reached the batch loader")
+                    .tag("entity", entity).register(meterRegistry);
+            FunctionCounter.builder("db.load.queries", db, d -> loaderCount(d, entity, BatchLoader::getQueries))
+                    .description("Queries the batch loader ran for those lookups")
+                    .tag("entity", entity).register(meterRegistry);
+        }
+        meterRegistry.gauge("movies.eligibility.indexed", db, d -> d.getEligibilityIndex().size());
+        return db;
+    }
+
+    private static void registerReplicaMetrics(ReadReplicas replicas, MeterRegistry meterRegistry) {
+        for (ReadReplicas.Replica replica : replicas.getReplicas()) {
+            Tags tags = Tags.of("replica", replica.getName());
+            Gauge.builder("db.replica.lag.bytes", replica, ReadReplicas.Replica::getLagBytes)
+                    .description("WAL the replica has yet to replay; -1 until checked")
+                    .tags(tags).register(meterRegistry);
+            Gauge.builder("db.replica.lag.seconds", replica, ReadReplicas.Replica::getLagSeconds)
+                    .description("Age of the last replayed commit while behind, 0 when caught up")
+                    .tags(tags).register(meterRegistry);
+            Gauge.builder("db.replica.healthy", replica, r -> r.isHealthy() ? 1 : 0)
+                    .description("1 while the replica takes reads, 0 while ejected")
+                    .tags(tags).register(meterRegistry);
+            FunctionCounter.builder("db.replica.reads", replica, ReadReplicas.Replica::getReads)
+                    .description("Reads served by the replica")
+                    .tags(tags).register(meterRegistry);
+            FunctionCounter.builder("db.replica.ejections", replica, ReadReplicas.Replica::getEjections)
+                    .description("Times the replica was taken out of service")
+                    .tags(tags).register(meterRegistry);
+        }
+        FunctionCounter.builder("db.replica.fallbacks", replicas, ReadReplicas::getFallbacks)
+                .description("Replica-eligible reads sent to the primary because no replica was healthy and caught up")
+                .register(meterRegistry);
+    }
+
+    /** Consistency tokens for read-your-writes; inside compression, so the body it holds back is not yet gzipped. */
+    @Bean
+    public FilterRegistrationBean<ReadConsistencyFilter> readConsistencyFilter(DBmanager db) {
+        FilterRegistrationBean<ReadConsistencyFilter> registration = new FilterRegistrationBean<>(ReadConsistencyFilter.fromEnv(db));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+
+    private static double loaderCount(DBmanager db, String entity, ToLongFunction<BatchLoader<?>> count) {
+        BatchLoader<?> loader = db.getLoaders().get(entity);
+        return loader == null ? 0 : count.applyAsLong(loader);
+    }
+}
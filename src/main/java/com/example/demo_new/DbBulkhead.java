@@ -0,0 +1,97 @@
+package com.example.demo_new;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps concurrent DBmanager calls. With virtual threads nothing else bounds how many requests
+ * reach the database at once, so callers beyond {@code permits} wait in FIFO order; once
+ * {@code maxQueued} are waiting, or a wait exceeds {@code maxWaitMillis}, the call is rejected
+ * with {@link ServiceBusyException} instead of piling up on the connection pool. Streaming exports
+ * hold their connection for as long as the client reads, so they take permits from a bulkhead of
+ * their own ({@link #exportsFromEnv()}) and cannot starve ordinary calls.
+ */
+public class DbBulkhead {
+    private final Semaphore permits;
+    private final int maxPermits;
+    private final int maxQueued;
+    private final long maxWaitMillis;
+    private final int retryAfterSeconds;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    public DbBulkhead(int maxPermits, int maxQueued, long maxWaitMillis, int retryAfterSeconds) {
+        if (maxPermits <= 0) throw new IllegalArgumentException("maxPermits must be positive");
+        this.permits = new Semaphore(maxPermits, true);
+        this.maxPermits = maxPermits;
+        this.maxQueued = maxQueued;
+        this.maxWaitMillis = maxWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /** Builds a bulkhead from DB_BULKHEAD_* in .env; permits default to the pool connections exports leave. */
+    static DbBulkhead fromEnv() {
+        int pool = Integer.parseInt(DBmanager.env("DB_POOL_MAX_SIZE", "10"));
+        int exports = Integer.parseInt(DBmanager.env("DB_EXPORT_PERMITS", "2"));
+        return new DbBulkhead(
+                Integer.parseInt(DBmanager.env("DB_BULKHEAD_PERMITS", String.valueOf(Math.max(1, pool - exports)))),
+                Integer.parseInt(DBmanager.env("DB_BULKHEAD_MAX_QUEUED", "200")),
+                Long.parseLong(DBmanager.env("DB_BULKHEAD_MAX_WAIT_MS", "2000")),
+                Integer.parseInt(DBmanager.env("DB_BULKHEAD_RETRY_AFTER_SECONDS", "1"))
+        );
+    }
+
+    /**
+     * Builds the exports' bulkhead from DB_EXPORT_PERMITS and DB_EXPORT_MAX_QUEUED, waiting and
+     * retrying like the main one.
+     */
+    static DbBulkhead exportsFromEnv() {
+        return new DbBulkhead(
+                Integer.parseInt(DBmanager.env("DB_EXPORT_PERMITS", "2")),
+                Integer.parseInt(DBmanager.env("DB_EXPORT_MAX_QUEUED", "10")),
+                Long.parseLong(DBmanager.env("DB_BULKHEAD_MAX_WAIT_MS", "2000")),
+                Integer.parseInt(DBmanager.env("DB_BULKHEAD_RETRY_AFTER_SECONDS", "1"))
+        );
+    }
+
+    /** Takes a permit or throws ServiceBusyException; every successful call must be paired with {@link #release()}. */
+    void acquire() {
+        try {
+            // a zero timeout, unlike tryAcquire(), honours fairness: a free permit goes to earlier waiters first
+            if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject("interrupted while waiting for a database slot");
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw reject("database queue is full");
+        }
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw reject("timed out waiting for a database slot");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject("interrupted while waiting for a database slot");
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    private ServiceBusyException reject(String reason) {
+        rejected.increment();
+        return new ServiceBusyException(reason, retryAfterSeconds);
+    }
+
+    public int getMaxPermits() { return maxPermits; }
+    public int getActive() { return maxPermits - permits.availablePermits(); }
+    public int getQueued() { return queued.get(); }
+    public long getRejected() { return rejected.sum(); }
+}
@@ -3,17 +3,30 @@ package com.example.demo_new;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 public class DemoNewApplication {
 
     public static void main(String[] args) {
-        SpringApplication.run(DemoNewApplication.class, args);
+        SpringApplication app = new SpringApplication(DemoNewApplication.class);
+        // Startup steps for StartupReport and /actuator/startup; STARTUP_REPORT_ENABLED=false skips recording
+        if (Boolean.parseBoolean(DBmanager.env("STARTUP_REPORT_ENABLED", "true"))) {
+            app.setApplicationStartup(new BufferingApplicationStartup(4096));
+        }
+        app.run(args);
     }
 
+    /** Off the startup path when async: requests are served while this runs, readiness waits for it. */
     @Bean
-    CommandLineRunner initDatabase() {
-        return args -> DBmanager.setupDatabase();
+    CommandLineRunner initDatabase(DBmanager db, BookingEngine bookings, IdempotencyStore idempotency, SchemaSetup schema) {
+        return args -> schema.start(() -> {
+            db.setupDatabase();
+            db.deleteOrphanScreenings();
+            db.pruneDeletionLog(Integer.parseInt(DBmanager.env("DB_TOMBSTONE_RETENTION_DAYS", "30")));
+            idempotency.prune();
+            bookings.recoverJournal();
+        });
     }
 }
@@ -0,0 +1,70 @@
+package com.example.demo_new;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Strong ETags derived from row versions. A single row's tag is its version; a page's tag
+ * hashes the (id, version) of every item plus the next cursor, so any change to the page,
+ * including a row entering or leaving it, yields a new tag without re-serialising the body.
+ */
+public final class ETags {
+    private ETags() {}
+
+    public static String of(Versioned row) {
+        return "\"" + row.getVersion() + "\"";
+    }
+
+    public static String of(Page<? extends Versioned> page) {
+        long hash = 0xcbf29ce484222325L; // FNV-1a 64
+        for (Versioned row : page.getItems()) {
+            hash = mix(hash, row.getId());
+            hash = mix(hash, row.getVersion());
+        }
+        hash = mix(hash, page.getNextCursor() == null ? 0 : page.getNextCursor().hashCode());
+        return "\"p" + Long.toHexString(hash) + "\"";
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /** True when If-None-Match / If-Modified-Since show the client's copy is current (304 is then sent). */
+    public static boolean notModified(WebRequest request, Versioned row) {
+        if (row.getUpdatedAt() == null) return request.checkNotModified(of(row));
+        return request.checkNotModified(of(row), row.getUpdatedAt().toInstant().toEpochMilli());
+    }
+
+    public static boolean notModified(WebRequest request, Page<? extends Versioned> page) {
+        return request.checkNotModified(of(page));
+    }
+
+    /** 200 with the row's ETag and Last-Modified, as returned after a write. */
+    public static <T extends Versioned> ResponseEntity<T> ok(T row) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(of(row));
+        if (row.getUpdatedAt() != null) response.lastModified(row.getUpdatedAt().toInstant().toEpochMilli());
+        return response.body(row);
+    }
+
+    /**
+     * Version required by an If-Match header: null when absent or "*", which only requires the row to exist.
+     * Weak or unknown tags can never match a strong version tag, so they fail the precondition.
+     */
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) return null;
+        String tag = ifMatch.trim();
+        if (tag.contains(",")) throw new IllegalArgumentException("If-Match must hold a single ETag");
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new PreconditionFailedException("If-Match " + tag + " does not match the current ETag");
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match " + tag + " does not match the current ETag");
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.demo_new;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Every movie's id, age restriction, duration and price in primitive arrays sorted by
+ * (ageRestriction, id), so "movies a viewer of age N may watch" is the prefix up to the first key
+ * above N, found by binary search; a cursor is a second binary search into that prefix. Readers use an
+ * immutable snapshot without locking. Writes go into a change set that the next reader merges into a
+ * new snapshot in one O(n) pass, so a burst of writes costs one rebuild. Loaded from the table on first use.
+ */
+public final class EligibilityIndex {
+
+    /** The indexed fields of one movie. */
+    static final class Entry {
+        final int id;
+        final int ageRestriction;
+        final int durationMinutes;
+        final double ticketPrice;
+        final long version;
+
+        Entry(int id, int ageRestriction, int durationMinutes, double ticketPrice, long version) {
+            this.id = id;
+            this.ageRestriction = ageRestriction;
+            this.durationMinutes = durationMinutes;
+            this.ticketPrice = ticketPrice;
+            this.version = version;
+        }
+
+        static Entry of(Movie movie) {
+            return new Entry(movie.getId(), movie.getAgeRestriction(), movie.getDurationMinutes(),
+                    movie.getTicketPrice(), movie.getVersion());
+        }
+
+        long key() {
+            return EligibilityIndex.key(ageRestriction, id);
+        }
+    }
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new long[0], new int[0], new double[0], 0);
+
+        final long[] keys; // ageRestriction << 32 | id, ascending
+        final int[] durations;
+        final double[] prices;
+        final int size;
+
+        Snapshot(long[] keys, int[] durations, double[] prices, int size) {
+            this.keys = keys;
+            this.durations = durations;
+            this.prices = prices;
+            this.size = size;
+        }
+    }
+
+    private static final Comparator<Entry> BY_KEY = Comparator.comparingLong(Entry::key);
+
+    private final Supplier<List<Entry>> loader;
+    private final Object loadLock = new Object();
+
+    private volatile Snapshot snapshot; // null until loaded
+    private volatile boolean stale;
+    // guarded by this: every movie once loaded, and writes not yet merged into the snapshot (null = deleted),
+    // which before the first load are only kept while it runs
+    private boolean loading;
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final Map<Integer, Entry> changes = new HashMap<>();
+
+    public EligibilityIndex(Supplier<List<Entry>> loader) {
+        this.loader = loader;
+    }
+
+    static long key(int ageRestriction, int id) {
+        return (long) ageRestriction << 32 | (id & 0xFFFFFFFFL);
+    }
+
+    static int ageRestriction(long key) {
+        return (int) (key >>> 32);
+    }
+
+    static int id(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Keys of the movies a viewer of viewerAge may watch, in (ageRestriction, id) order, strictly after
+     * afterKey (or from the start when negative), within the optional ranges; at most max keys.
+     */
+    public long[] eligible(int viewerAge, long afterKey, double[] priceBetween, double[] durationBetween, int max) {
+        Snapshot s = snapshot();
+        if (viewerAge < 0) return new long[0];
+        int end = upperBound(s, key(viewerAge, -1));
+        int from = afterKey < 0 ? 0 : upperBound(s, afterKey);
+        long[] out = new long[Math.min(max, Math.max(end - from, 0))];
+        int n = 0;
+        for (int i = from; i < end && n < out.length; i++) {
+            if (priceBetween != null && (s.prices[i] < priceBetween[0] || s.prices[i] > priceBetween[1])) continue;
+            if (durationBetween != null && (s.durations[i] < durationBetween[0] || s.durations[i] > durationBetween[1])) continue;
+            out[n++] = s.keys[i];
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /** Number of movies indexed; 0 until the first query loads the table. */
+    public int size() {
+        Snapshot s = snapshot;
+        return s == null ? 0 : s.size;
+    }
+
+    /** Records a created or updated movie; older versions than the one indexed are ignored. */
+    public synchronized void put(Entry entry) {
+        if (snapshot == null && !loading) return;
+        Entry current = snapshot == null ? changes.get(entry.id) : entries.get(entry.id);
+        if (current != null && current.version > entry.version) return;
+        if (snapshot != null) entries.put(entry.id, entry);
+        changes.put(entry.id, entry);
+        stale = true;
+    }
+
+    public synchronized void remove(int id) {
+        if (snapshot == null && !loading) return;
+        if (snapshot != null) entries.remove(id);
+        changes.put(id, null);
+        stale = true;
+    }
+
+    /** True when the movie is indexed at this version or a newer one, so a change event for it needs no reload. */
+    public synchronized boolean isCurrent(int id, long version) {
+        Entry current = entries.get(id);
+        return snapshot != null && current != null && current.version >= version;
+    }
+
+    /**
+     * Whether writes are being recorded: the table is loaded or a load is running. Only when neither holds
+     * can a change event be dropped, since the next load reads the row anyway; during a load the changed
+     * row has to be read back and put, or the load may keep the version it read before the change.
+     */
+    public synchronized boolean isTracking() {
+        return snapshot != null || loading;
+    }
+
+    /** Drops everything; the next query reloads the table. Used when change events may have been missed. */
+    public void reset() {
+        synchronized (loadLock) {
+            synchronized (this) {
+                snapshot = null;
+                entries.clear();
+                changes.clear();
+                stale = false;
+            }
+        }
+    }
+
+    private Snapshot snapshot() {
+        while (true) {
+            Snapshot s = snapshot;
+            if (s != null && !stale) return s;
+            if (s == null) {
+                load();
+                continue;
+            }
+            synchronized (this) {
+                if (snapshot == null) continue; // reset in between
+                if (stale) {
+                    snapshot = merge(snapshot, changes);
+                    changes.clear();
+                    stale = false;
+                }
+                return snapshot;
+            }
+        }
+    }
+
+    private void load() {
+        synchronized (loadLock) {
+            if (snapshot != null) return;
+            synchronized (this) {
+                loading = true;
+            }
+            List<Entry> rows;
+            try {
+                rows = loader.get();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    loading = false;
+                    changes.clear();
+                }
+                throw e;
+            }
+            synchronized (this) {
+                loading = false;
+                for (Entry row : rows) entries.put(row.id, row);
+                // writes that raced the load win over what it read
+                for (Map.Entry<Integer, Entry> change : changes.entrySet()) {
+                    Entry loaded = entries.get(change.getKey());
+                    if (change.getValue() == null) entries.remove(change.getKey());
+                    else if (loaded == null || loaded.version <= change.getValue().version) entries.put(change.getKey(), change.getValue());
+                }
+                changes.clear();
+                stale = false;
+                List<Entry> all = new ArrayList<>(entries.values());
+                all.sort(BY_KEY);
+                snapshot = build(all);
+            }
+        }
+    }
+
+    /** Old snapshot minus every changed id, merged with the changed entries that still exist. */
+    private static Snapshot merge(Snapshot old, Map<Integer, Entry> changed) {
+        List<Entry> added = new ArrayList<>(changed.size());
+        for (Entry entry : changed.values()) if (entry != null) added.add(entry);
+        added.sort(BY_KEY);
+
+        int capacity = old.size + added.size();
+        long[] keys = new long[capacity];
+        int[] durations = new int[capacity];
+        double[] prices = new double[capacity];
+        int n = 0;
+        int a = 0;
+        for (int i = 0; i < old.size; i++) {
+            long key = old.keys[i];
+            if (changed.containsKey(id(key))) continue;
+            for (; a < added.size() && added.get(a).key() < key; a++, n++) set(keys, durations, prices, n, added.get(a));
+            keys[n] = key;
+            durations[n] = old.durations[i];
+            prices[n] = old.prices[i];
+            n++;
+        }
+        for (; a < added.size(); a++, n++) set(keys, durations, prices, n, added.get(a));
+        return new Snapshot(keys, durations, prices, n);
+    }
+
+    private static Snapshot build(List<Entry> sorted) {
+        if (sorted.isEmpty()) return Snapshot.EMPTY;
+        int n = sorted.size();
+        long[] keys = new long[n];
+        int[] durations = new int[n];
+        double[] prices = new double[n];
+        for (int i = 0; i < n; i++) set(keys, durations, prices, i, sorted.get(i));
+        return new Snapshot(keys, durations, prices, n);
+    }
+
+    private static void set(long[] keys, int[] durations, double[] prices, int i, Entry entry) {
+        keys[i] = entry.key();
+        durations[i] = entry.durationMinutes;
+        prices[i] = entry.ticketPrice;
+    }
+
+    /** Index of the first key greater than the given one. */
+    private static int upperBound(Snapshot s, long key) {
+        int lo = 0;
+        int hi = s.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (s.keys[mid] <= key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.demo_new;
+
+/** One viewer's first page of GET /viewers/eligible-movies. */
+public class EligibleMovies extends Page<Movie> {
+    private final int viewerId;
+
+    public EligibleMovies(int viewerId, Page<Movie> page) {
+        super(page.getItems(), page.getNextCursor());
+        this.viewerId = viewerId;
+    }
+
+    public int getViewerId() { return viewerId; }
+}
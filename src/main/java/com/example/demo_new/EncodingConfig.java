@@ -0,0 +1,44 @@
+package com.example.demo_new;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.converter.HttpMessageConverters;
+import org.springframework.http.converter.cbor.JacksonCborHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+@Configuration
+public class EncodingConfig implements WebMvcConfigurer {
+
+    /** Picked up by the auto-configured JsonMapper, so JSON responses use the same serializers as CBOR. */
+    @Bean
+    public EntitySerializers entitySerializers() {
+        return new EntitySerializers();
+    }
+
+    /** Accept: application/cbor gets CBOR; JSON stays the default for any other Accept. */
+    @Override
+    public void configureMessageConverters(HttpMessageConverters.ServerBuilder builder) {
+        CBORMapper cbor = CBORMapper.builder().addModule(new EntitySerializers()).build();
+        builder.withCborConverter(new JacksonCborHttpMessageConverter(cbor));
+    }
+
+    /** Outside every other filter, so replayed idempotent responses are compressed too. Off with HTTP_COMPRESSION_ENABLED=false. */
+    @Bean
+    public FilterRegistrationBean<CompressionFilter> compressionFilter() {
+        FilterRegistrationBean<CompressionFilter> registration = new FilterRegistrationBean<>(CompressionFilter.fromEnv());
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        registration.setEnabled(Boolean.parseBoolean(DBmanager.env("HTTP_COMPRESSION_ENABLED", "true")));
+        return registration;
+    }
+
+    /** Just inside compression, so the gzip tag is built on the representation's tag. */
+    @Bean
+    public FilterRegistrationBean<RepresentationTagFilter> representationTagFilter() {
+        FilterRegistrationBean<RepresentationTagFilter> registration = new FilterRegistrationBean<>(new RepresentationTagFilter());
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 11);
+        return registration;
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.demo_new;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Size-bounded LRU read-through cache of entities by id. Misses (404s) are cached too,
+ * with their own TTL. Writers call {@link #invalidate(int)} after changing a row.
+ * Concurrent misses for one id are coalesced into a single load (single-flight).
+ * <p>
+ * Ids are spread over independently locked stripes, each an LRU of its share of maxEntries, so
+ * readers of different ids rarely contend. Each id with a load running has a version that writes
+ * to that id bump; a load that saw an older version does not populate the cache, and loads of
+ * other ids are unaffected. Entities are mutable, so the cache keeps its own copy of every value
+ * and hands out copies of it: nothing a caller does to a returned row reaches the cache.
+ */
+public class EntityCache<V> {
+    private static final int MAX_STRIPES = 16;
+
+    private static final class Entry<V> {
+        final V value;              // null marks a cached "not found"
+        final long expiresAtNanos;  // Long.MAX_VALUE when entries never expire
+
+        Entry(V value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    /** Writes to an id while loads of it run, and how many do; kept only while loads > 0. */
+    private static final class Version {
+        long value;
+        int loads;
+    }
+
+    /** One lock's share of the ids; every field is guarded by the stripe itself. */
+    private final class Stripe {
+        final LinkedHashMap<Integer, Entry<V>> entries;
+        /** Loads running now, by id. */
+        final Map<Integer, CompletableFuture<Optional<V>>> inFlight = new HashMap<>();
+        final Map<Integer, Version> versions = new HashMap<>();
+
+        Stripe(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Entry<V>> eldest) {
+                    if (size() <= capacity) return false;
+                    evictions.increment();
+                    return true;
+                }
+            };
+        }
+
+        /** Registers a load of id; returns the version to hand back to {@link #endLoad}. */
+        long beginLoad(int id) {
+            Version version = versions.computeIfAbsent(id, k -> new Version());
+            version.loads++;
+            return version.value;
+        }
+
+        /** True when id was not written since the matching {@link #beginLoad}. */
+        boolean endLoad(int id, long seen) {
+            Version version = versions.get(id);
+            boolean current = version.value == seen;
+            if (--version.loads == 0) versions.remove(id);
+            return current;
+        }
+
+        void written(int id) {
+            Version version = versions.get(id);
+            if (version != null) version.value++;
+            inFlight.remove(id); // later readers must not join a load that started before the write
+        }
+    }
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final UnaryOperator<V> copier;
+    private final List<Stripe> stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private volatile boolean enabled;
+
+    /**
+     * @param ttlSeconds         0 keeps entries until evicted or invalidated
+     * @param negativeTtlSeconds 0 disables caching of misses
+     * @param copier             copies a value, so cached instances are never shared with callers
+     */
+    public EntityCache(String name, boolean enabled, int maxEntries, long ttlSeconds, long negativeTtlSeconds,
+                       UnaryOperator<V> copier) {
+        if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries must be positive");
+        this.name = name;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.negativeTtlNanos = negativeTtlSeconds * 1_000_000_000L;
+        this.copier = copier;
+        // a power of two, and no more stripes than entries; their capacities add up to maxEntries
+        int count = Integer.highestOneBit(Math.min(MAX_STRIPES, maxEntries));
+        this.stripes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) stripes.add(new Stripe(maxEntries / count + (i < maxEntries % count ? 1 : 0)));
+    }
+
+    /** A cache of immutable values, handed out as they are. */
+    public EntityCache(String name, boolean enabled, int maxEntries, long ttlSeconds, long negativeTtlSeconds) {
+        this(name, enabled, maxEntries, ttlSeconds, negativeTtlSeconds, UnaryOperator.identity());
+    }
+
+    /** Builds a cache from CACHE_<NAME>_ENABLED, CACHE_MAX_ENTRIES, CACHE_TTL_SECONDS and CACHE_NEGATIVE_TTL_SECONDS. */
+    static <V> EntityCache<V> fromEnv(String name, UnaryOperator<V> copier) {
+        return new EntityCache<>(
+                name,
+                Boolean.parseBoolean(DBmanager.env("CACHE_" + name.toUpperCase() + "_ENABLED", "true")),
+                Integer.parseInt(DBmanager.env("CACHE_MAX_ENTRIES", "10000")),
+                Long.parseLong(DBmanager.env("CACHE_TTL_SECONDS", "300")),
+                Long.parseLong(DBmanager.env("CACHE_NEGATIVE_TTL_SECONDS", "30")),
+                copier
+        );
+    }
+
+    private Stripe stripe(int id) {
+        // ids can share a stride (cinema shards use 64), so mix before taking the low bits
+        int h = id * 0x9E3779B9;
+        return stripes.get((h ^ (h >>> 16)) & (stripes.size() - 1));
+    }
+
+    private Optional<V> copyOf(Optional<V> value) {
+        return value.map(copier);
+    }
+
+    /**
+     * Cached value, or the loader's result on a miss. Concurrent misses for the same id share one
+     * load, also while the cache is disabled, so a burst of identical reads costs one query.
+     */
+    public Optional<V> get(int id, IntFunction<Optional<V>> loader) {
+        Stripe stripe = stripe(id);
+        CompletableFuture<Optional<V>> flight;
+        boolean joined;
+        long seen = 0;
+        synchronized (stripe) {
+            if (enabled) {
+                Entry<V> entry = stripe.entries.get(id);
+                if (entry != null && entry.expiresAtNanos - System.nanoTime() > 0) {
+                    hits.increment();
+                    return entry.value == null ? Optional.empty() : Optional.of(copier.apply(entry.value));
+                }
+                if (entry != null) stripe.entries.remove(id);
+                misses.increment();
+            }
+            flight = stripe.inFlight.get(id);
+            joined = flight != null;
+            if (joined) {
+                coalesced.increment();
+            } else {
+                flight = new CompletableFuture<>();
+                stripe.inFlight.put(id, flight);
+                seen = stripe.beginLoad(id);
+            }
+        }
+        if (joined) return copyOf(join(flight));
+
+        Optional<V> loaded;
+        try {
+            loaded = loader.apply(id);
+        } catch (RuntimeException e) {
+            synchronized (stripe) {
+                stripe.inFlight.remove(id, flight);
+                stripe.endLoad(id, seen);
+            }
+            flight.completeExceptionally(e);
+            throw e;
+        }
+
+        // the caller keeps the loaded instance; the cache and joined callers get copies
+        Optional<V> kept = copyOf(loaded);
+        long ttl = loaded.isPresent() ? ttlNanos : negativeTtlNanos;
+        long expiresAt = ttl == 0 ? Long.MAX_VALUE : System.nanoTime() + ttl;
+        synchronized (stripe) {
+            stripe.inFlight.remove(id, flight);
+            boolean current = stripe.endLoad(id, seen);
+            boolean cacheable = loaded.isPresent() || negativeTtlNanos != 0;
+            if (enabled && cacheable && current) stripe.entries.put(id, new Entry<>(kept.orElse(null), expiresAt));
+        }
+        flight.complete(kept);
+        return loaded;
+    }
+
+    /**
+     * Values for several ids, in no particular order; ids that do not exist are absent.
+     * Hits are served from the cache and all misses are loaded with one call to loader.
+     */
+    public Map<Integer, V> getAll(Collection<Integer> ids, Function<List<Integer>, Map<Integer, V>> loader) {
+        Map<Integer, V> found = new HashMap<>();
+        Map<Integer, Long> seen = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        for (int id : ids) {
+            if (found.containsKey(id) || seen.containsKey(id)) continue;
+            Stripe stripe = stripe(id);
+            synchronized (stripe) {
+                Entry<V> entry = enabled ? stripe.entries.get(id) : null;
+                if (entry != null && entry.expiresAtNanos - now > 0) {
+                    hits.increment();
+                    if (entry.value != null) found.put(id, copier.apply(entry.value));
+                    continue;
+                }
+                if (enabled) misses.increment();
+                seen.put(id, stripe.beginLoad(id));
+            }
+        }
+        if (seen.isEmpty()) return found;
+
+        Map<Integer, V> loaded = Map.of();
+        try {
+            loaded = loader.apply(new ArrayList<>(seen.keySet()));
+            found.putAll(loaded);
+        } finally {
+            long expiresAt = ttlNanos == 0 ? Long.MAX_VALUE : System.nanoTime() + ttlNanos;
+            for (Map.Entry<Integer, Long> load : seen.entrySet()) {
+                int id = load.getKey();
+                V row = loaded.get(id);
+                V kept = row == null ? null : copier.apply(row);
+                Stripe stripe = stripe(id);
+                synchronized (stripe) {
+                    boolean current = stripe.endLoad(id, load.getValue());
+                    if (enabled && current && kept != null) stripe.entries.put(id, new Entry<>(kept, expiresAt));
+                }
+            }
+        }
+        return found;
+    }
+
+    private static <V> Optional<V> join(CompletableFuture<Optional<V>> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            // the loader's own exception, so callers see the same error as the loading request
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    /** Replaces the cached value after a write that already returned the new row. */
+    public void put(int id, V value) {
+        V kept = copier.apply(value);
+        long expiresAt = ttlNanos == 0 ? Long.MAX_VALUE : System.nanoTime() + ttlNanos;
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            stripe.written(id);
+            if (enabled) stripe.entries.put(id, new Entry<>(kept, expiresAt));
+        }
+    }
+
+    public void invalidate(int id) {
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            stripe.written(id);
+            stripe.entries.remove(id);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Version version : stripe.versions.values()) version.value++;
+                stripe.inFlight.clear();
+                stripe.entries.clear();
+            }
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) invalidateAll();
+    }
+
+    public CacheStats stats() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return new CacheStats(name, enabled, size, maxEntries,
+                hits.sum(), misses.sum(), evictions.sum(), coalesced.sum());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo_new;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * Streams a whole table as NDJSON or CSV. Rows go from the JDBC cursor straight to the response,
+ * so heap use does not grow with the table. A blocked socket blocks the cursor loop (backpressure),
+ * and a client disconnect surfaces as an IOException that closes the cursor.
+ */
+public final class EntityExporter {
+    /** Rows written between explicit flushes, so clients see progress on slow exports. */
+    private static final int FLUSH_EVERY = 1000;
+
+    /** Pushes every row of a table into the consumer, e.g. DBmanager::streamMovies. */
+    @FunctionalInterface
+    public interface RowSource<T> {
+        void stream(DBmanager.RowConsumer<T> consumer) throws IOException;
+    }
+
+    private EntityExporter() {}
+
+    public static <T> ResponseEntity<StreamingResponseBody> export(String name, String format,
+                                                                   BiConsumer<StringBuilder, T> jsonWriter,
+                                                                   BiConsumer<StringBuilder, T> csvWriter,
+                                                                   String csvHeader,
+                                                                   RowSource<T> source) {
+        boolean csv;
+        if ("ndjson".equalsIgnoreCase(format)) csv = false;
+        else if ("csv".equalsIgnoreCase(format)) csv = true;
+        else throw new IllegalArgumentException("format must be ndjson or csv");
+
+        BiConsumer<StringBuilder, T> rowWriter = csv ? csvWriter : jsonWriter;
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            if (csv) writer.write(csvHeader + "\n");
+            StringBuilder line = new StringBuilder(256);
+            int[] written = {0};
+            source.stream(row -> {
+                line.setLength(0);
+                rowWriter.accept(line, row);
+                line.append('\n');
+                writer.append(line);
+                if (++written[0] % FLUSH_EVERY == 0) writer.flush();
+            });
+            writer.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + (csv ? ".csv" : ".ndjson") + "\"")
+                .body(body);
+    }
+}
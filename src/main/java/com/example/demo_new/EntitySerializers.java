@@ -0,0 +1,141 @@
+package com.example.demo_new;
+
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.SerializableString;
+import tools.jackson.core.io.SerializedString;
+import tools.jackson.databind.SerializationContext;
+import tools.jackson.databind.module.SimpleModule;
+import tools.jackson.databind.ser.std.StdSerializer;
+
+import java.util.List;
+
+/**
+ * Hand-written Jackson serializers for Movie, Viewer and Cinema, registered on every mapper
+ * (JSON and CBOR). They write the same properties as the bean serializer, but call the getters
+ * directly and reuse pre-encoded property names instead of introspected accessors.
+ * {@link PartialRow}s are written with just the fields of their projection.
+ */
+public class EntitySerializers extends SimpleModule {
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString VERSION = new SerializedString("version");
+    private static final SerializableString UPDATED_AT = new SerializedString("updatedAt");
+    private static final SerializableString TITLE = new SerializedString("title");
+    private static final SerializableString DESCRIPTION = new SerializedString("description");
+    private static final SerializableString DURATION_MINUTES = new SerializedString("durationMinutes");
+    private static final SerializableString AGE_RESTRICTION = new SerializedString("ageRestriction");
+    private static final SerializableString TICKET_PRICE = new SerializedString("ticketPrice");
+    private static final SerializableString FULL_NAME = new SerializedString("fullName");
+    private static final SerializableString AGE = new SerializedString("age");
+    private static final SerializableString EMAIL = new SerializedString("email");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString CITY = new SerializedString("city");
+    private static final SerializableString ADDRESS = new SerializedString("address");
+
+    public EntitySerializers() {
+        super("EntitySerializers");
+        addSerializer(Movie.class, new MovieSerializer());
+        addSerializer(Viewer.class, new ViewerSerializer());
+        addSerializer(Cinema.class, new CinemaSerializer());
+        addSerializer(PartialRow.class, new PartialRowSerializer());
+    }
+
+    static final class MovieSerializer extends StdSerializer<Movie> {
+        MovieSerializer() { super(Movie.class); }
+
+        @Override
+        public void serialize(Movie m, JsonGenerator gen, SerializationContext ctxt) {
+            gen.writeStartObject(m);
+            writeVersioned(m, gen, ctxt);
+            gen.writeName(TITLE);
+            gen.writeString(m.getTitle());
+            gen.writeName(DESCRIPTION);
+            gen.writeString(m.getDescription());
+            gen.writeName(DURATION_MINUTES);
+            gen.writeNumber(m.getDurationMinutes());
+            gen.writeName(AGE_RESTRICTION);
+            gen.writeNumber(m.getAgeRestriction());
+            gen.writeName(TICKET_PRICE);
+            gen.writeNumber(m.getTicketPrice());
+            gen.writeEndObject();
+        }
+    }
+
+    static final class ViewerSerializer extends StdSerializer<Viewer> {
+        ViewerSerializer() { super(Viewer.class); }
+
+        @Override
+        public void serialize(Viewer v, JsonGenerator gen, SerializationContext ctxt) {
+            gen.writeStartObject(v);
+            writeVersioned(v, gen, ctxt);
+            gen.writeName(FULL_NAME);
+            gen.writeString(v.getFullName());
+            gen.writeName(AGE);
+            gen.writeNumber(v.getAge());
+            gen.writeName(EMAIL);
+            gen.writeString(v.getEmail());
+            gen.writeEndObject();
+        }
+    }
+
+    static final class CinemaSerializer extends StdSerializer<Cinema> {
+        CinemaSerializer() { super(Cinema.class); }
+
+        @Override
+        public void serialize(Cinema c, JsonGenerator gen, SerializationContext ctxt) {
+            gen.writeStartObject(c);
+            writeVersioned(c, gen, ctxt);
+            gen.writeName(NAME);
+            gen.writeString(c.getName());
+            gen.writeName(CITY);
+            gen.writeString(c.getCity());
+            gen.writeName(ADDRESS);
+            gen.writeString(c.getAddress());
+            gen.writeEndObject();
+        }
+    }
+
+    static final class PartialRowSerializer extends StdSerializer<PartialRow> {
+        PartialRowSerializer() { super(PartialRow.class); }
+
+        @Override
+        public void serialize(PartialRow row, JsonGenerator gen, SerializationContext ctxt) {
+            Projection<?> projection = row.projection();
+            gen.writeStartObject(row);
+            gen.writeName(ID);
+            gen.writeNumber(row.getId());
+            if (projection.includesVersion()) {
+                gen.writeName(VERSION);
+                gen.writeNumber(row.getVersion());
+            }
+            if (projection.includesUpdatedAt()) {
+                gen.writeName(UPDATED_AT);
+                if (row.getUpdatedAt() == null) gen.writeNull();
+                else ctxt.writeValue(gen, row.getUpdatedAt());
+            }
+            List<? extends Projection.Field<?>> fields = projection.getFields();
+            for (int i = 0; i < fields.size(); i++) {
+                Projection.Field<?> field = fields.get(i);
+                Object value = row.value(i);
+                gen.writeName(field.encodedName);
+                if (value == null) gen.writeNull();
+                else switch (field.getType()) {
+                    case INT -> gen.writeNumber((Integer) value);
+                    case DOUBLE -> gen.writeNumber((Double) value);
+                    case TEXT -> gen.writeString((String) value);
+                }
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    /** id, version and updatedAt; the timestamp goes through the mapper so its date settings still apply. */
+    private static void writeVersioned(Versioned row, JsonGenerator gen, SerializationContext ctxt) {
+        gen.writeName(ID);
+        gen.writeNumber(row.getId());
+        gen.writeName(VERSION);
+        gen.writeNumber(row.getVersion());
+        gen.writeName(UPDATED_AT);
+        if (row.getUpdatedAt() == null) gen.writeNull();
+        else ctxt.writeValue(gen, row.getUpdatedAt());
+    }
+}
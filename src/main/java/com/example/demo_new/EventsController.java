@@ -0,0 +1,39 @@
+package com.example.demo_new;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/events")
+public class EventsController {
+    private static final Set<String> ENTITIES = Set.of("movies", "viewers", "cinemas");
+
+    private final ChangeStream stream;
+
+    public EventsController(ChangeStream stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * Server-Sent Events: created/updated/deleted for each committed change, "resync" when events
+     * were dropped (catch up with GET /{entity}/changes), and heartbeat comments.
+     * entities is a comma-separated subset of movies, viewers, cinemas; default all.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam(required = false) String entities) {
+        if (entities == null || entities.isBlank()) return stream.subscribe(null);
+        Set<String> selected = Arrays.stream(entities.split(","))
+                .map(String::trim)
+                .filter(e -> !e.isEmpty())
+                .collect(Collectors.toSet());
+        for (String e : selected) {
+            if (!ENTITIES.contains(e)) throw new IllegalArgumentException("entities must be a subset of movies, viewers, cinemas");
+        }
+        return stream.subscribe(selected);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.demo_new;
+
+import java.time.OffsetDateTime;
+
+/** Response of GET /schedules/{cinemaId}/{hall}/free-slot: when a screening of the asked length fits. */
+public class FreeSlot {
+    private final int cinemaId;
+    private final String hall;
+    private final OffsetDateTime startsAt;
+    private final OffsetDateTime endsAt;
+
+    public FreeSlot(int cinemaId, String hall, OffsetDateTime startsAt, OffsetDateTime endsAt) {
+        this.cinemaId = cinemaId;
+        this.hall = hall;
+        this.startsAt = startsAt;
+        this.endsAt = endsAt;
+    }
+
+    public int getCinemaId() { return cinemaId; }
+    public String getHall() { return hall; }
+    public OffsetDateTime getStartsAt() { return startsAt; }
+    public OffsetDateTime getEndsAt() { return endsAt; }
+}
@@ -1,6 +1,7 @@
 package com.example.demo_new;
 
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -21,6 +22,38 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
     }
 
+    @ExceptionHandler(SeatUnavailableException.class)
+    public ResponseEntity<ApiError> handleSeatUnavailable(SeatUnavailableException ex, HttpServletRequest req) {
+        ApiError body = new ApiError(409, "Conflict", ex.getMessage(), req.getRequestURI());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
+
+    @ExceptionHandler(ScheduleConflictException.class)
+    public ResponseEntity<ApiError> handleScheduleConflict(ScheduleConflictException ex, HttpServletRequest req) {
+        ApiError body = new ApiError(409, "Conflict", ex.getMessage(), req.getRequestURI());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ApiError> handlePreconditionFailed(PreconditionFailedException ex, HttpServletRequest req) {
+        ApiError body = new ApiError(412, "Precondition Failed", ex.getMessage(), req.getRequestURI());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(body);
+    }
+
+    @ExceptionHandler(ResyncRequiredException.class)
+    public ResponseEntity<ApiError> handleResync(ResyncRequiredException ex, HttpServletRequest req) {
+        ApiError body = new ApiError(410, "Gone", ex.getMessage(), req.getRequestURI());
+        return ResponseEntity.status(HttpStatus.GONE).body(body);
+    }
+
+    @ExceptionHandler(ServiceBusyException.class)
+    public ResponseEntity<ApiError> handleBusy(ServiceBusyException ex, HttpServletRequest req) {
+        ApiError body = new ApiError(503, "Service Unavailable", ex.getMessage(), req.getRequestURI());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(body);
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<ApiError> handleRuntime(RuntimeException ex, HttpServletRequest req) {
         // DB errors and other unexpected errors
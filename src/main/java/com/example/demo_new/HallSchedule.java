@@ -0,0 +1,79 @@
+package com.example.demo_new;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Occupancy of one hall: non-overlapping intervals [start, end) in epoch seconds, end including the
+ * cleaning gap, in a TreeMap keyed by start. Because intervals never overlap, the only one that can
+ * collide with a candidate is the last one starting before the candidate ends, so a conflict check
+ * is a single floor lookup, O(log n). Each method holds the hall's monitor, so check-and-place is atomic.
+ */
+final class HallSchedule {
+
+    static final class Slot {
+        final long start;
+        final long end;
+        volatile int screeningId; // 0 while the screening is not yet inserted
+
+        Slot(long start, long end, int screeningId) {
+            this.start = start;
+            this.end = end;
+            this.screeningId = screeningId;
+        }
+    }
+
+    private final TreeMap<Long, Slot> slots = new TreeMap<>();
+
+    /** The slot overlapping [start, end), or null if the interval is free. */
+    synchronized Slot conflict(long start, long end) {
+        Map.Entry<Long, Slot> before = slots.lowerEntry(end);
+        return before != null && before.getValue().end > start ? before.getValue() : null;
+    }
+
+    /** Occupies [start, end) unless it overlaps; returns the new slot, or null on conflict. */
+    synchronized Slot tryPlace(long start, long end, int screeningId) {
+        if (end <= start) throw new IllegalArgumentException("end must be after start");
+        if (conflict(start, end) != null) return null;
+        Slot slot = new Slot(start, end, screeningId);
+        slots.put(start, slot);
+        return slot;
+    }
+
+    synchronized void remove(Slot slot) {
+        slots.remove(slot.start, slot);
+    }
+
+    /** Frees the slot of a deleted screening; false if it is not in this hall. O(n), deletes are rare. */
+    synchronized boolean removeScreening(int screeningId) {
+        return slots.values().removeIf(slot -> slot.screeningId == screeningId);
+    }
+
+    /**
+     * Earliest start, a multiple of step seconds and not before from, at which [start, start + length)
+     * is free and ends by until; -1 if there is none. Each step past a conflict jumps to the end of
+     * the conflicting slot, so the cost is O(log n) per screening skipped.
+     */
+    synchronized long nextFree(long from, long length, long until, long step) {
+        long candidate = roundUp(from, step);
+        while (candidate + length <= until) {
+            Slot blocking = conflict(candidate, candidate + length);
+            if (blocking == null) return candidate;
+            candidate = roundUp(blocking.end, step);
+        }
+        return -1;
+    }
+
+    /** Forgets slots that start before the given time; they can no longer collide with new screenings. */
+    synchronized void pruneBefore(long start) {
+        slots.headMap(start).clear();
+    }
+
+    synchronized int size() {
+        return slots.size();
+    }
+
+    private static long roundUp(long value, long step) {
+        return Math.floorDiv(value + step - 1, step) * step;
+    }
+}
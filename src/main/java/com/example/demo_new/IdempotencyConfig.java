@@ -0,0 +1,27 @@
+package com.example.demo_new;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import tools.jackson.databind.json.JsonMapper;
+
+@Configuration
+public class IdempotencyConfig {
+
+    /** Kept in memory only unless IDEMPOTENCY_DB_ENABLED=true in .env. */
+    @Bean(destroyMethod = "close")
+    public IdempotencyStore idempotencyStore(DBmanager db, MeterRegistry meterRegistry) {
+        IdempotencyStore store = IdempotencyStore.fromEnv(db);
+        meterRegistry.gauge("idempotency.keys", store, IdempotencyStore::getSize);
+        FunctionCounter.builder("idempotency.replays", store, IdempotencyStore::getReplays)
+                .description("Requests answered with the response recorded for their Idempotency-Key")
+                .register(meterRegistry);
+        return store;
+    }
+
+    @Bean
+    public IdempotencyFilter idempotencyFilter(IdempotencyStore store, JsonMapper jsonMapper) {
+        return new IdempotencyFilter(store, jsonMapper);
+    }
+}
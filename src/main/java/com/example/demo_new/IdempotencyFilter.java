@@ -0,0 +1,199 @@
+package com.example.demo_new;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Makes POST requests that carry an Idempotency-Key safe to retry. The first request with a key
+ * runs normally and its response (status, body, Content-Type, ETag, Location) is recorded; a
+ * retry with the same key and the same method, path and body gets that response back without
+ * reaching a controller. Reusing a key for a different request is rejected with 422.
+ * 5xx responses are not recorded, so the retry runs again; a response too large to record is
+ * answered to retries with 409 and its original status.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+    private final JsonMapper mapper;
+
+    public IdempotencyFilter(IdempotencyStore store, JsonMapper mapper) {
+        this.store = store;
+        this.mapper = mapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || request.getHeader(HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER).trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            writeError(response, request, 400, "Bad Request", HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+
+        byte[] body = request.getInputStream().readAllBytes();
+        String fingerprint = fingerprint(request, body);
+        IdempotencyStore.Result claim = store.claim(key, fingerprint);
+        switch (claim.claim) {
+            case REPLAY -> {
+                if (claim.response.hasBody()) {
+                    replay(response, claim.response);
+                } else {
+                    // ran already, but its response was too large to record: say so instead of running it again
+                    response.setHeader(REPLAYED_HEADER, "true");
+                    if (claim.response.getLocation() != null) response.setHeader(HttpHeaders.LOCATION, claim.response.getLocation());
+                    writeError(response, request, 409, "Conflict", "the request with this " + HEADER
+                            + " already completed with status " + claim.response.getStatus() + "; its response was not kept");
+                }
+                return;
+            }
+            case MISMATCH -> {
+                writeError(response, request, 422, "Unprocessable Content",
+                        HEADER + " was already used for a different request");
+                return;
+            }
+            case BUSY -> {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                writeError(response, request, 409, "Conflict",
+                        "a request with this " + HEADER + " is still being processed");
+                return;
+            }
+            case OWNER -> { }
+        }
+
+        ContentCachingResponseWrapper recorded = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        try {
+            chain.doFilter(new CachedBodyRequest(request, body), recorded);
+            if (recorded.getStatus() < 500) {
+                store.complete(key, new IdempotentResponse(fingerprint, recorded.getStatus(), recorded.getContentType(),
+                        recorded.getHeader(HttpHeaders.ETAG), recorded.getHeader(HttpHeaders.LOCATION),
+                        recorded.getContentAsByteArray()));
+                completed = true;
+            }
+        } finally {
+            try {
+                if (!completed) store.abandon(key, fingerprint);
+            } finally {
+                recorded.copyBodyToResponse();
+            }
+        }
+    }
+
+    /** Hash of method, path, query and body, so a key can only ever answer one request. */
+    private static String fingerprint(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update((request.getMethod() + " " + request.getRequestURI() + "?" + request.getQueryString() + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            sha.update(body);
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void replay(HttpServletResponse response, IdempotentResponse stored) throws IOException {
+        response.setStatus(stored.getStatus());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.getContentType() != null) response.setContentType(stored.getContentType());
+        if (stored.getEtag() != null) response.setHeader(HttpHeaders.ETAG, stored.getEtag());
+        if (stored.getLocation() != null) response.setHeader(HttpHeaders.LOCATION, stored.getLocation());
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+    }
+
+    private void writeError(HttpServletResponse response, HttpServletRequest request, int status, String error, String message)
+            throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        mapper.writeValue(response.getOutputStream(), new ApiError(status, error, message, request.getRequestURI()));
+    }
+
+    /** Serves a body that was already read for the fingerprint. */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    // the container's stream is at its end, so it reports all data read (or refuses outside async mode);
+                    // the listener then reads the cached body from this stream
+                    try {
+                        CachedBodyRequest.super.getInputStream().setReadListener(listener);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String charset = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset)));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+    }
+}
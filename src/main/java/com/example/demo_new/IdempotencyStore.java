@@ -0,0 +1,247 @@
+package com.example.demo_new;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Responses recorded under Idempotency-Key, in a size- and TTL-bounded LRU map, optionally
+ * written through to the idempotency_keys table so other nodes and restarts see them too.
+ * A duplicate that arrives while the first request is still running on this node waits for
+ * it and gets its response; one running on another node is reported as {@link Claim#BUSY}.
+ * Expired keys are pruned every {@code pruneSeconds}, from memory and from the table.
+ */
+public class IdempotencyStore implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(IdempotencyStore.class);
+    private static final int PRUNE_BATCH = 10_000;
+
+    /** What a request holding a key should do. */
+    public enum Claim { OWNER, REPLAY, MISMATCH, BUSY }
+
+    /** Result of {@link #claim}: the decision, plus the response to send for REPLAY. */
+    public static final class Result {
+        final Claim claim;
+        final IdempotentResponse response;
+
+        Result(Claim claim, IdempotentResponse response) {
+            this.claim = claim;
+            this.response = response;
+        }
+    }
+
+    private static final class Entry {
+        final IdempotentResponse response;
+        final long expiresAtNanos;
+
+        Entry(IdempotentResponse response, long expiresAtNanos) {
+            this.response = response;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private static final class InFlight {
+        final String fingerprint;
+        final CompletableFuture<IdempotentResponse> done = new CompletableFuture<>();
+
+        InFlight(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private final DBmanager db; // null = memory only
+    private final long ttlSeconds;
+    private final long waitMillis;
+    private final int maxBodyBytes;
+    private final LinkedHashMap<String, Entry> entries;
+    private final ConcurrentHashMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder replays = new LongAdder();
+    private final ScheduledExecutorService pruner = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "idempotency-prune");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param db           backing table, or null to keep keys in this process only
+     * @param waitMillis   how long a duplicate waits for the original; also how long a claim
+     *                     abandoned by a crashed node blocks the key in the table
+     * @param maxBodyBytes larger responses are recorded by status only; their retries get 409
+     * @param pruneSeconds how often expired keys are deleted; 0 = only when looked up
+     */
+    public IdempotencyStore(DBmanager db, int maxEntries, long ttlSeconds, long waitMillis, int maxBodyBytes, long pruneSeconds) {
+        if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries must be positive");
+        if (ttlSeconds <= 0) throw new IllegalArgumentException("ttlSeconds must be positive");
+        this.db = db;
+        this.ttlSeconds = ttlSeconds;
+        this.waitMillis = waitMillis;
+        this.maxBodyBytes = maxBodyBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        if (pruneSeconds > 0) pruner.scheduleWithFixedDelay(this::pruneQuietly, pruneSeconds, pruneSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Builds from IDEMPOTENCY_MAX_KEYS, IDEMPOTENCY_TTL_SECONDS, IDEMPOTENCY_WAIT_MS, IDEMPOTENCY_MAX_BODY_BYTES,
+     * IDEMPOTENCY_PRUNE_SECONDS and IDEMPOTENCY_DB_ENABLED.
+     */
+    static IdempotencyStore fromEnv(DBmanager db) {
+        boolean shared = Boolean.parseBoolean(DBmanager.env("IDEMPOTENCY_DB_ENABLED", "false"));
+        return new IdempotencyStore(shared ? db : null,
+                Integer.parseInt(DBmanager.env("IDEMPOTENCY_MAX_KEYS", "10000")),
+                Long.parseLong(DBmanager.env("IDEMPOTENCY_TTL_SECONDS", "86400")),
+                Long.parseLong(DBmanager.env("IDEMPOTENCY_WAIT_MS", "30000")),
+                Integer.parseInt(DBmanager.env("IDEMPOTENCY_MAX_BODY_BYTES", "65536")),
+                Long.parseLong(DBmanager.env("IDEMPOTENCY_PRUNE_SECONDS", "3600"))
+        );
+    }
+
+    public boolean isShared() { return db != null; }
+
+    /**
+     * Decides what to do with a request carrying key. OWNER must be followed by exactly one
+     * {@link #complete} or {@link #abandon}.
+     */
+    public Result claim(String key, String fingerprint) {
+        while (true) {
+            IdempotentResponse stored = cached(key);
+            if (stored != null) return replayOrMismatch(stored, fingerprint);
+
+            InFlight mine = new InFlight(fingerprint);
+            InFlight running = inFlight.putIfAbsent(key, mine);
+            if (running != null) {
+                if (!running.fingerprint.equals(fingerprint)) return new Result(Claim.MISMATCH, null);
+                IdempotentResponse response = await(running);
+                if (response == null && !running.done.isDone()) return new Result(Claim.BUSY, null);
+                if (response != null) return replayOrMismatch(response, fingerprint);
+                continue; // the original failed without a response worth keeping: try to run it ourselves
+            }
+
+            if (db == null) return new Result(Claim.OWNER, null);
+            IdempotentResponse existing;
+            try {
+                existing = db.claimIdempotencyKey(key, fingerprint, ttlSeconds, TimeUnit.MILLISECONDS.toSeconds(waitMillis) + 1);
+            } catch (RuntimeException e) {
+                finish(key, mine, null);
+                throw e;
+            }
+            if (existing == null) return new Result(Claim.OWNER, null);
+            finish(key, mine, null);
+            if (!existing.getFingerprint().equals(fingerprint)) return new Result(Claim.MISMATCH, null);
+            if (!existing.isComplete()) return new Result(Claim.BUSY, null);
+            remember(key, existing);
+            replays.increment();
+            return new Result(Claim.REPLAY, existing);
+        }
+    }
+
+    /** Records the owner's response and hands it to any duplicates waiting on this node. */
+    public void complete(String key, IdempotentResponse response) {
+        InFlight mine = inFlight.get(key);
+        // too large to keep, but it happened: a retry must learn that rather than run it twice
+        if (response.getBody().length > maxBodyBytes) response = response.withoutBody();
+        try {
+            if (db != null) db.completeIdempotencyKey(key, response);
+            remember(key, response);
+            finish(key, mine, response);
+        } catch (RuntimeException e) {
+            // the response was sent already; a retry simply runs again
+            abandon(key, response.getFingerprint());
+        }
+    }
+
+    /** Gives the key up without a response, e.g. after a 5xx; a retry will run the request again. */
+    public void abandon(String key, String fingerprint) {
+        InFlight mine = inFlight.get(key);
+        try {
+            if (db != null) db.releaseIdempotencyKey(key, fingerprint);
+        } finally {
+            finish(key, mine, null);
+        }
+    }
+
+    /** Deletes expired keys from memory and, when shared, from the table. Returns how many rows the table lost. */
+    public int prune() {
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                if (it.next().expiresAtNanos - now <= 0) it.remove();
+            }
+        }
+        if (db == null) return 0;
+        int total = 0;
+        int deleted;
+        do {
+            deleted = db.pruneIdempotencyKeys(PRUNE_BATCH);
+            total += deleted;
+        } while (deleted == PRUNE_BATCH);
+        return total;
+    }
+
+    private void pruneQuietly() {
+        try {
+            prune();
+        } catch (RuntimeException e) {
+            LOG.warn("idempotency key pruning failed, retrying next time: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        pruner.shutdownNow();
+    }
+
+    public synchronized int getSize() { return entries.size(); }
+    public long getReplays() { return replays.sum(); }
+
+    private Result replayOrMismatch(IdempotentResponse response, String fingerprint) {
+        if (!response.getFingerprint().equals(fingerprint)) return new Result(Claim.MISMATCH, null);
+        replays.increment();
+        return new Result(Claim.REPLAY, response);
+    }
+
+    private IdempotentResponse await(InFlight running) {
+        try {
+            return running.done.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void finish(String key, InFlight mine, IdempotentResponse response) {
+        if (mine == null) return;
+        inFlight.remove(key, mine);
+        mine.done.complete(response);
+    }
+
+    private synchronized IdempotentResponse cached(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (entry.expiresAtNanos - System.nanoTime() > 0) return entry.response;
+        entries.remove(key);
+        return null;
+    }
+
+    private synchronized void remember(String key, IdempotentResponse response) {
+        entries.put(key, new Entry(response, System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds)));
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo_new;
+
+/**
+ * A response recorded under an Idempotency-Key, replayed byte for byte to retries of the same request.
+ * A record read back from the database with status 0 is a request still running on another node;
+ * one without a body had a response too large to keep, so only its status is known.
+ */
+public class IdempotentResponse {
+    private final String fingerprint;
+    private final int status;
+    private final String contentType;
+    private final String etag;
+    private final String location;
+    private final byte[] body;
+
+    public IdempotentResponse(String fingerprint, int status, String contentType, String etag, String location, byte[] body) {
+        this.fingerprint = fingerprint;
+        this.status = status;
+        this.contentType = contentType;
+        this.etag = etag;
+        this.location = location;
+        this.body = body;
+    }
+
+    public String getFingerprint() { return fingerprint; }
+    public int getStatus() { return status; }
+    public String getContentType() { return contentType; }
+    public String getEtag() { return etag; }
+    public String getLocation() { return location; }
+    public byte[] getBody() { return body; }
+
+    public boolean isComplete() { return status != 0; }
+
+    /** False for the marker kept in place of a response too large to record. */
+    public boolean hasBody() { return body != null; }
+
+    /** This response with its status, ETag and Location but without the body. */
+    IdempotentResponse withoutBody() {
+        return new IdempotentResponse(fingerprint, status, contentType, etag, location, null);
+    }
+}
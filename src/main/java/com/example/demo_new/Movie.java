@@ -1,9 +1,12 @@
 package com.example.demo_new;
 
+import java.time.OffsetDateTime;
 import java.util.Objects;
 
-public class Movie {
+public class Movie implements Versioned {
     private final int id;
+    private long version = 1;
+    private OffsetDateTime updatedAt;
     private String title;
     private String description;
     private int durationMinutes;
@@ -34,8 +37,21 @@ public class Movie {
     public int getDurationMinutes() {return durationMinutes;}
     public int getAgeRestriction() {return ageRestriction;}
     public double getTicketPrice() {return ticketPrice;}
+    public long getVersion() { return version; }
+    public OffsetDateTime getUpdatedAt() { return updatedAt; }
 
     // Сеттеры
+    void setVersion(long version) { this.version = version; }
+    void setUpdatedAt(OffsetDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    /** A separate instance with the same state, so a cached row is never shared with callers. */
+    Movie copy() {
+        Movie copy = new Movie(id, title, description, durationMinutes, ageRestriction, ticketPrice);
+        copy.version = version;
+        copy.updatedAt = updatedAt;
+        return copy;
+    }
+
     public void setTitle(String title){
         if (title == null) throw new IllegalArgumentException("title is required");
         this.title = title;
@@ -0,0 +1,11 @@
+package com.example.demo_new;
+
+/** DTO for one item of PUT /movies/batch */
+public class MovieBatchUpdateRequest extends MovieUpdateRequest {
+    private int id;
+
+    public MovieBatchUpdateRequest() {}
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+}
@@ -1,24 +1,86 @@
 package com.example.demo_new;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/movies")
 public class MovieController {
 
-    private final DBmanager db = new DBmanager();
+    private final DBmanager db;
+
+    public MovieController(DBmanager db) {
+        this.db = db;
+    }
 
     @GetMapping
-    public List<Movie> getAll() {
-        return db.getAllMovies();
+    public Page<? extends Versioned> getAll(@RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String after,
+                                            @RequestParam(required = false) String sort,
+                                            @RequestParam(required = false) Integer maxAgeRestriction,
+                                            @RequestParam(required = false) String priceBetween,
+                                            @RequestParam(required = false) String ids,
+                                            @RequestParam(required = false) String fields,
+                                            WebRequest request) {
+        Projection<Movie> projection = Projection.parse(fields, DBmanager.MOVIE_FIELDS);
+        if (ids != null) {
+            List<Integer> wanted = PageQuery.parseIds(ids, limit, after, sort, maxAgeRestriction, priceBetween);
+            List<Movie> rows = db.findMoviesByIds(wanted);
+            Page<? extends Versioned> result = projection == null ? new Page<>(rows, null) : new Page<>(projection.applyAll(rows), null);
+            return ETags.notModified(request, result) ? null : result;
+        }
+        PageQuery page = PageQuery.parse(limit, after, sort, DBmanager.MOVIE_SORTS);
+        double[] priceRange = priceBetween == null ? null : PageQuery.parseRange(priceBetween, "priceBetween");
+        Page<? extends Versioned> result = projection == null
+                ? db.findMovies(page, maxAgeRestriction, priceRange)
+                : db.findMovies(page, maxAgeRestriction, priceRange, projection);
+        return ETags.notModified(request, result) ? null : result;
+    }
+
+    /** Ranked, paginated full-text search; every word of q matches as a prefix. */
+    @GetMapping("/search")
+    public Page<? extends Versioned> search(@RequestParam String q,
+                                            @RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String after,
+                                            @RequestParam(required = false) String fields,
+                                            WebRequest request) {
+        Projection<Movie> projection = Projection.parse(fields, DBmanager.MOVIE_FIELDS);
+        SearchQuery query = SearchQuery.parse(q, limit, after);
+        Page<? extends Versioned> result = projection == null ? db.searchMovies(query) : db.searchMovies(query, projection);
+        return ETags.notModified(request, result) ? null : result;
+    }
+
+    /**
+     * Rows written and ids deleted since the token. Without since, returns only the current token:
+     * take it before loading the list, then poll with it to stay in sync.
+     */
+    @GetMapping("/changes")
+    public Changes<Movie> changes(@RequestParam(required = false) String since,
+                                  @RequestParam(required = false) Integer limit) {
+        return db.findMovieChanges(ChangeQuery.parse(since, limit));
+    }
+
+    /** Streams the whole table; format is ndjson (default) or csv. */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+        return EntityExporter.export("movies", format, RowWriters::movieJson, RowWriters::movieCsv,
+                RowWriters.MOVIE_CSV_HEADER, db::streamMovies);
     }
 
+    /** With fields, the cached row is cut down to them; the ETag stays the row's version. */
     @GetMapping("/{id}")
-    public Movie getById(@PathVariable int id) {
-        return db.findMovieById(id).orElseThrow(() -> new NotFoundException("Movie", id));
+    public Versioned getById(@PathVariable int id, @RequestParam(required = false) String fields, WebRequest request) {
+        Projection<Movie> projection = Projection.parse(fields, DBmanager.MOVIE_FIELDS);
+        Movie row = db.findMovieById(id).orElseThrow(() -> new NotFoundException("Movie", id));
+        if (ETags.notModified(request, row)) return null;
+        return projection == null ? row : projection.apply(row);
     }
 
     @PostMapping
@@ -28,21 +90,60 @@ public class MovieController {
         return db.createMovie(req);
     }
 
+    /** Optional If-Match makes the update conditional on the version the client last saw. */
     @PutMapping("/{id}")
-    public Movie update(@PathVariable int id, @RequestBody MovieUpdateRequest req) {
+    public ResponseEntity<Movie> update(@PathVariable int id, @RequestBody MovieUpdateRequest req,
+                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         validateMovie(req.getTitle(), req.getDescription(), req.getDurationMinutes(), req.getAgeRestriction(), req.getTicketPrice());
-        boolean updated = db.updateMovie(id, req);
-        if (!updated) throw new NotFoundException("Movie", id);
-        return db.findMovieById(id).orElseThrow(() -> new NotFoundException("Movie", id));
+        Movie updated = db.updateMovie(id, req, ETags.parseIfMatch(ifMatch))
+                .orElseThrow(() -> new NotFoundException("Movie", id));
+        return ETags.ok(updated);
     }
 
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void delete(@PathVariable int id) {
-        boolean deleted = db.deleteMovie(id);
+    public void delete(@PathVariable int id,
+                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        boolean deleted = db.deleteMovie(id, ETags.parseIfMatch(ifMatch));
         if (!deleted) throw new NotFoundException("Movie", id);
     }
 
+    @PostMapping("/batch")
+    public BatchResult createBatch(@RequestBody List<MovieCreateRequest> reqs) {
+        BatchResult result = new BatchResult(reqs.size());
+        List<Integer> valid = result.validate(reqs, req -> validateMovie(req.getTitle(), req.getDescription(), req.getDurationMinutes(), req.getAgeRestriction(), req.getTicketPrice()));
+        List<Movie> created = db.createMovies(valid.stream().map(reqs::get).toList());
+        for (int i = 0; i < valid.size(); i++) result.ok(valid.get(i), 201, created.get(i).getId());
+        return result;
+    }
+
+    @PutMapping("/batch")
+    public BatchResult updateBatch(@RequestBody List<MovieBatchUpdateRequest> reqs) {
+        BatchResult result = new BatchResult(reqs.size());
+        List<Integer> valid = result.validate(reqs, req -> validateMovie(req.getTitle(), req.getDescription(), req.getDurationMinutes(), req.getAgeRestriction(), req.getTicketPrice()));
+        boolean[] updated = db.updateMovies(valid.stream().map(reqs::get).toList());
+        for (int i = 0; i < valid.size(); i++) {
+            int index = valid.get(i);
+            int id = reqs.get(index).getId();
+            if (updated[i]) result.ok(index, 200, id);
+            else result.fail(index, 404, id, new NotFoundException("Movie", id).getMessage());
+        }
+        return result;
+    }
+
+    @DeleteMapping("/batch")
+    public BatchResult deleteBatch(@RequestBody List<Integer> ids) {
+        BatchResult result = new BatchResult(ids.size());
+        List<Integer> valid = result.validate(ids, id -> {});
+        Set<Integer> deleted = db.deleteMovies(valid.stream().map(ids::get).toList());
+        for (int index : valid) {
+            int id = ids.get(index);
+            if (deleted.contains(id)) result.ok(index, 204, id);
+            else result.fail(index, 404, id, new NotFoundException("Movie", id).getMessage());
+        }
+        return result;
+    }
+
     private static void validateMovie(String title, String description, int durationMinutes, int ageRestriction, double ticketPrice) {
         if (title == null || title.isBlank()) throw new IllegalArgumentException("title is required");
         if (description == null) throw new IllegalArgumentException("description is required");
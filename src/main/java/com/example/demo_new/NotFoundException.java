@@ -4,4 +4,8 @@ public class NotFoundException extends RuntimeException {
     public NotFoundException(String entity, int id) {
         super(entity + " with id=" + id + " not found");
     }
+
+    public NotFoundException(String entity, String id) {
+        super(entity + " with id=" + id + " not found");
+    }
 }
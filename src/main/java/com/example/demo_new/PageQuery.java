@@ -0,0 +1,219 @@
+package com.example.demo_new;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parsed {@code limit}, {@code after} and {@code sort} parameters of a keyset-paginated list request.
+ * Rows are always ordered by (sort column, id), so the cursor is the pair of values of the last row returned.
+ */
+public class PageQuery {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    /** A column clients may sort by. Only NOT NULL columns qualify, so row comparison stays total. */
+    public static class SortColumn {
+        public enum Type { INT, DOUBLE, TEXT }
+
+        private final String name;
+        private final String column;
+        private final Type type;
+
+        public SortColumn(String name, String column, Type type) {
+            this.name = name;
+            this.column = column;
+            this.type = type;
+        }
+
+        public String getName() { return name; }
+        public String getColumn() { return column; }
+        public Type getType() { return type; }
+    }
+
+    private final int limit;
+    private final SortColumn sort;
+    private final boolean descending;
+    private final Integer afterId;
+    private final Object afterValue;
+
+    private PageQuery(int limit, SortColumn sort, boolean descending, Integer afterId, Object afterValue) {
+        this.limit = limit;
+        this.sort = sort;
+        this.descending = descending;
+        this.afterId = afterId;
+        this.afterValue = afterValue;
+    }
+
+    /** First page ordered by id, as used by internal callers. */
+    public static PageQuery firstPage(int limit) {
+        return new PageQuery(limit, null, false, null, null);
+    }
+
+    /**
+     * @param sort   sortable column name, prefixed with '-' for descending; null sorts by id
+     * @param after  opaque cursor from a previous page's nextCursor; must come from the same sort
+     */
+    public static PageQuery parse(Integer limit, String after, String sort, Map<String, SortColumn> sortable) {
+        int size = limit == null ? DEFAULT_LIMIT : limit;
+        if (size <= 0 || size > MAX_LIMIT) throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+
+        boolean descending = false;
+        SortColumn column = null;
+        if (sort != null && !sort.isBlank()) {
+            String name = sort.trim();
+            if (name.startsWith("-")) {
+                descending = true;
+                name = name.substring(1);
+            }
+            if (!name.equals("id")) {
+                column = sortable.get(name);
+                if (column == null) {
+                    throw new IllegalArgumentException("sort must be one of id, " + String.join(", ", sortable.keySet()));
+                }
+            }
+        }
+
+        if (after == null || after.isBlank()) return new PageQuery(size, column, descending, null, null);
+
+        // cursor layout: <sort>|<a|d>|<id>|<value>
+        String[] parts = decode(after).split("\\|", 4);
+        String expectedSort = column == null ? "id" : column.getName();
+        if (parts.length < 3 || !parts[0].equals(expectedSort) || !parts[1].equals(descending ? "d" : "a")) {
+            throw new IllegalArgumentException("cursor does not match the requested sort");
+        }
+        try {
+            int id = Integer.parseInt(parts[2]);
+            Object value = null;
+            if (column != null) {
+                if (parts.length < 4) throw new IllegalArgumentException("invalid cursor");
+                value = switch (column.getType()) {
+                    case INT -> Integer.parseInt(parts[3]);
+                    case DOUBLE -> Double.parseDouble(parts[3]);
+                    case TEXT -> parts[3];
+                };
+            }
+            return new PageQuery(size, column, descending, id, value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+    }
+
+    /** Parses "min,max" into two doubles, e.g. priceBetween=1000,2500. */
+    public static double[] parseRange(String raw, String param) {
+        String[] parts = raw.split(",");
+        try {
+            if (parts.length == 2) {
+                double min = Double.parseDouble(parts[0].trim());
+                double max = Double.parseDouble(parts[1].trim());
+                if (min <= max) return new double[]{min, max};
+            }
+        } catch (NumberFormatException ignored) {
+            // fall through to the error below
+        }
+        throw new IllegalArgumentException(param + " must be 'min,max' with min <= max");
+    }
+
+    /**
+     * Parses ids=1,2,3 for multi-get: distinct positive ids in the given order, at most MAX_LIMIT.
+     * The other list parameters of the request are passed in and must all be absent.
+     */
+    public static List<Integer> parseIds(String raw, Object... otherParams) {
+        for (Object other : otherParams) {
+            if (other != null) throw new IllegalArgumentException("ids cannot be combined with paging, sort or filters");
+        }
+        LinkedHashSet<Integer> ids = new LinkedHashSet<>();
+        for (String part : raw.split(",")) {
+            if (part.isBlank()) continue;
+            try {
+                int id = Integer.parseInt(part.trim());
+                if (id <= 0) throw new NumberFormatException();
+                ids.add(id);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("ids must be a comma-separated list of positive ids");
+            }
+        }
+        if (ids.isEmpty()) throw new IllegalArgumentException("ids must not be empty");
+        if (ids.size() > MAX_LIMIT) throw new IllegalArgumentException("at most " + MAX_LIMIT + " ids per request");
+        return new ArrayList<>(ids);
+    }
+
+    public int getLimit() { return limit; }
+
+    /** Column the page is ordered by; "id" when no sort was requested. */
+    String sortColumn() {
+        return sort == null ? "id" : sort.getColumn();
+    }
+
+    /** Name the page is sorted by, as in the cursor; "id" when no sort was requested. */
+    String sortName() {
+        return sort == null ? "id" : sort.getName();
+    }
+
+    boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * The same page with a text sort column compared byte by byte (COLLATE "C") instead of by the
+     * database's collation, so pages read from several databases merge into one order in Java.
+     */
+    PageQuery bytewise() {
+        if (sort == null || sort.getType() != SortColumn.Type.TEXT) return this;
+        SortColumn column = new SortColumn(sort.getName(), sort.getColumn() + " COLLATE \"C\"", sort.getType());
+        return new PageQuery(limit, column, descending, afterId, afterValue);
+    }
+
+    /** Id of the cursor row, or null on the first page. */
+    Integer afterId() {
+        return afterId;
+    }
+
+    /** Sort value of the cursor row, typed per the sort column; null on the first page or when sorted by id. */
+    Object afterValue() {
+        return afterValue;
+    }
+
+    /** Adds the keyset predicate for rows strictly after the cursor. */
+    void appendKeyset(List<String> where, List<Object> args) {
+        if (afterId == null) return;
+        String op = descending ? "<" : ">";
+        if (sort == null) {
+            where.add("id " + op + " ?");
+        } else {
+            where.add("(" + sort.getColumn() + ", id) " + op + " (?, ?)");
+            args.add(afterValue);
+        }
+        args.add(afterId);
+    }
+
+    /** ORDER BY and LIMIT clauses; one extra row is fetched to tell whether another page exists. */
+    String orderAndLimit() {
+        String dir = descending ? " DESC" : "";
+        String order = sort == null ? "id" + dir : sort.getColumn() + dir + ", id" + dir;
+        return " ORDER BY " + order + " LIMIT " + (limit + 1);
+    }
+
+    String cursor(Object sortValue, int id) {
+        String sortName = sort == null ? "id" : sort.getName();
+        String raw = sortName + "|" + (descending ? "d" : "a") + "|" + id + (sort == null ? "" : "|" + sortValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void bind(PreparedStatement ps, List<Object> args) throws SQLException {
+        for (int i = 0; i < args.size(); i++) ps.setObject(i + 1, args.get(i));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.demo_new;
+
+import java.time.OffsetDateTime;
+
+/** A row cut down to the fields of a {@link Projection}; written by {@link EntitySerializers}. */
+public final class PartialRow implements Versioned {
+    private final Projection<?> projection;
+    private final int id;
+    private final long version;
+    private final OffsetDateTime updatedAt;
+    private final Object[] values;
+
+    PartialRow(Projection<?> projection, int id, long version, OffsetDateTime updatedAt, Object[] values) {
+        this.projection = projection;
+        this.id = id;
+        this.version = version;
+        this.updatedAt = updatedAt;
+        this.values = values;
+    }
+
+    public int getId() { return id; }
+    public long getVersion() { return version; }
+    public OffsetDateTime getUpdatedAt() { return updatedAt; }
+
+    Projection<?> projection() { return projection; }
+
+    /** Values in the order of projection().getFields(). */
+    Object value(int index) { return values[index]; }
+}
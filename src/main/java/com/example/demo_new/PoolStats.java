@@ -0,0 +1,27 @@
+package com.example.demo_new;
+
+/** Snapshot of connection pool counters, returned by GET /admin/pool */
+public class PoolStats {
+    private final int active;
+    private final int idle;
+    private final int total;
+    private final int waiting;
+    private final int minIdle;
+    private final int maxSize;
+
+    public PoolStats(int active, int idle, int total, int waiting, int minIdle, int maxSize) {
+        this.active = active;
+        this.idle = idle;
+        this.total = total;
+        this.waiting = waiting;
+        this.minIdle = minIdle;
+        this.maxSize = maxSize;
+    }
+
+    public int getActive() { return active; }
+    public int getIdle() { return idle; }
+    public int getTotal() { return total; }
+    public int getWaiting() { return waiting; }
+    public int getMinIdle() { return minIdle; }
+    public int getMaxSize() { return maxSize; }
+}
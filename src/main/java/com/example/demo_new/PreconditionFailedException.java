@@ -0,0 +1,12 @@
+package com.example.demo_new;
+
+/** An If-Match precondition did not hold: the row was changed since the client last read it. */
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String entity, int id, long expectedVersion, long currentVersion) {
+        super(entity + " with id=" + id + " is at version " + currentVersion + ", If-Match expected " + expectedVersion);
+    }
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.demo_new;
+
+import tools.jackson.core.SerializableString;
+import tools.jackson.core.io.SerializedString;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Parsed {@code fields} parameter, e.g. {@code fields=title,ticketPrice}. id is always returned;
+ * version and updatedAt are returned when asked for, but always read, since ETags are built from them.
+ * List queries select only these columns and map them into {@link PartialRow}s; rows that are
+ * already in memory (cache hits) are cut down with {@link #apply}.
+ */
+public final class Projection<T extends Versioned> {
+    /** Columns every projected select starts with: id, version, updated_at. */
+    private static final int FIXED_COLUMNS = 3;
+
+    /** A field clients may ask for: its column, how the column is read, and the entity getter. */
+    public static final class Field<T> {
+        private final String name;
+        private final String column;
+        private final PageQuery.SortColumn.Type type;
+        private final Function<T, Object> getter;
+        final SerializableString encodedName;
+
+        public Field(String name, String column, PageQuery.SortColumn.Type type, Function<T, Object> getter) {
+            this.name = name;
+            this.column = column;
+            this.type = type;
+            this.getter = getter;
+            this.encodedName = new SerializedString(name);
+        }
+
+        public String getName() { return name; }
+        public String getColumn() { return column; }
+        public PageQuery.SortColumn.Type getType() { return type; }
+
+        /** The field's value on a whole entity. */
+        Object valueOf(T row) {
+            return getter.apply(row);
+        }
+    }
+
+    private final List<Field<T>> fields;
+    private final boolean version;
+    private final boolean updatedAt;
+
+    private Projection(List<Field<T>> fields, boolean version, boolean updatedAt) {
+        this.fields = fields;
+        this.version = version;
+        this.updatedAt = updatedAt;
+    }
+
+    @SafeVarargs
+    static <T> Map<String, Field<T>> fields(Field<T>... fields) {
+        Map<String, Field<T>> map = new LinkedHashMap<>();
+        for (Field<T> f : fields) map.put(f.getName(), f);
+        return Collections.unmodifiableMap(map);
+    }
+
+    /** Null when raw is null, meaning whole rows; duplicates are ignored, unknown names rejected. */
+    public static <T extends Versioned> Projection<T> parse(String raw, Map<String, Field<T>> available) {
+        if (raw == null) return null;
+        List<Field<T>> selected = new ArrayList<>();
+        boolean version = false;
+        boolean updatedAt = false;
+        for (String part : raw.split(",")) {
+            String name = part.trim();
+            if (name.isEmpty() || name.equals("id")) continue;
+            if (name.equals("version")) {
+                version = true;
+                continue;
+            }
+            if (name.equals("updatedAt")) {
+                updatedAt = true;
+                continue;
+            }
+            Field<T> field = available.get(name);
+            if (field == null) {
+                throw new IllegalArgumentException("fields must be among id, version, updatedAt, "
+                        + String.join(", ", available.keySet()));
+            }
+            if (!selected.contains(field)) selected.add(field);
+        }
+        return new Projection<>(List.copyOf(selected), version, updatedAt);
+    }
+
+    public List<Field<T>> getFields() { return fields; }
+    public boolean includesVersion() { return version; }
+    public boolean includesUpdatedAt() { return updatedAt; }
+
+    /** SELECT list: id, version, updated_at, then the requested columns in request order. */
+    String columns() {
+        StringBuilder sb = new StringBuilder("id, version, updated_at");
+        for (Field<T> f : fields) sb.append(", ").append(f.getColumn());
+        return sb.toString();
+    }
+
+    /** Reads a row selected with {@link #columns()}, by column index. */
+    PartialRow map(ResultSet rs) throws SQLException {
+        Object[] values = new Object[fields.size()];
+        for (int i = 0; i < values.length; i++) {
+            int index = FIXED_COLUMNS + 1 + i;
+            values[i] = switch (fields.get(i).getType()) {
+                case INT -> rs.getInt(index);
+                case DOUBLE -> rs.getDouble(index);
+                case TEXT -> rs.getString(index);
+            };
+        }
+        return new PartialRow(this, rs.getInt(1), rs.getLong(2), rs.getObject(3, OffsetDateTime.class), values);
+    }
+
+    /** The requested fields of a whole entity, e.g. one served from the cache. */
+    public PartialRow apply(T row) {
+        Object[] values = new Object[fields.size()];
+        for (int i = 0; i < values.length; i++) values[i] = fields.get(i).valueOf(row);
+        return new PartialRow(this, row.getId(), row.getVersion(), row.getUpdatedAt(), values);
+    }
+
+    public List<PartialRow> applyAll(List<T> rows) {
+        List<PartialRow> projected = new ArrayList<>(rows.size());
+        for (T row : rows) projected.add(apply(row));
+        return projected;
+    }
+}
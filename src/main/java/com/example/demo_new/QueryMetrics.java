@@ -0,0 +1,119 @@
+package com.example.demo_new;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers and counters for the DBmanager data path, split so a slow call can be attributed:
+ * <ul>
+ *   <li>{@code db.connection.acquire} - waiting for a connection</li>
+ *   <li>{@code db.statement} - executing SQL until the first result is available, per op</li>
+ *   <li>{@code db.query} - the whole DBmanager call (acquire + execute + row mapping), per op and outcome</li>
+ *   <li>{@code db.rows} - rows returned or affected, per op</li>
+ *   <li>{@code db.bulkhead.rejected} - calls turned away by the {@link DbBulkhead}, per op</li>
+ * </ul>
+ * Statements slower than the threshold are logged with their SQL and parameter types, never values.
+ */
+public class QueryMetrics {
+    private static final Logger SLOW_QUERY_LOG = LoggerFactory.getLogger("com.example.demo_new.SlowQuery");
+
+    private final MeterRegistry registry;
+    private final long slowThresholdNanos;
+    private final Timer acquireTimer;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /** @param slowThresholdMillis 0 disables the slow-query log */
+    public QueryMetrics(MeterRegistry registry, long slowThresholdMillis) {
+        this.registry = registry;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.acquireTimer = latencyTimer("db.connection.acquire", "Time spent waiting for a database connection");
+    }
+
+    /** Metrics kept in a private in-memory registry, for DBmanager instances created outside Spring. */
+    public static QueryMetrics standalone() {
+        return new QueryMetrics(new SimpleMeterRegistry(), 0);
+    }
+
+    void recordAcquire(long nanos) {
+        acquireTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordCall(String op, long nanos, int rows, boolean success) {
+        String outcome = success ? "success" : "error";
+        timers.computeIfAbsent("db.query|" + op + "|" + outcome, k -> Timer.builder("db.query")
+                .description("Duration of a DBmanager call including connection acquisition and row mapping")
+                .tag("op", op)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry)
+        ).record(nanos, TimeUnit.NANOSECONDS);
+
+        if (success && rows > 0) {
+            counters.computeIfAbsent("db.rows|" + op, k -> Counter.builder("db.rows")
+                    .description("Rows returned or affected")
+                    .tag("op", op)
+                    .register(registry)
+            ).increment(rows);
+        }
+    }
+
+    void recordRejected(String op) {
+        counters.computeIfAbsent("db.bulkhead.rejected|" + op, k -> Counter.builder("db.bulkhead.rejected")
+                .description("Calls rejected because too many were already running or queued")
+                .tag("op", op)
+                .register(registry)
+        ).increment(1);
+    }
+
+    void recordStatement(String op, String sql, PreparedStatement ps, long nanos) {
+        timers.computeIfAbsent("db.statement|" + op, k -> Timer.builder("db.statement")
+                .description("SQL execution time until the first result is available")
+                .tag("op", op)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry)
+        ).record(nanos, TimeUnit.NANOSECONDS);
+
+        if (slowThresholdNanos > 0 && nanos >= slowThresholdNanos) {
+            SLOW_QUERY_LOG.warn("slow query op={} took={}ms params={} sql={}",
+                    op, TimeUnit.NANOSECONDS.toMillis(nanos), parameterShape(ps), sql);
+        }
+    }
+
+    /** Parameter types such as (int4, varchar); only reached on the slow path. */
+    private static String parameterShape(PreparedStatement ps) {
+        if (ps == null) return "()";
+        try {
+            ParameterMetaData meta = ps.getParameterMetaData();
+            StringJoiner shape = new StringJoiner(", ", "(", ")");
+            for (int i = 1; i <= meta.getParameterCount(); i++) shape.add(meta.getParameterTypeName(i));
+            return shape.toString();
+        } catch (SQLException e) {
+            return "(unknown)";
+        }
+    }
+
+    private Timer latencyTimer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+    }
+}
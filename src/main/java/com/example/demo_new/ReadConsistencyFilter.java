@@ -0,0 +1,103 @@
+package com.example.demo_new;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+
+/**
+ * Read-your-writes over {@link ReadReplicas}. Every read of a write request goes to the primary, and a
+ * successful write answers with a consistency token: the primary's WAL position once it is done, in a
+ * Consistency-Token header and a cookie of the same value. A later GET that sends the token back (the
+ * header, or the cookie, which browsers do by themselves) is only served by replicas that have replayed
+ * that far, and by the primary until one has. The cookie lasts pinSeconds; replicas are normally past
+ * the token long before, after which it costs nothing.
+ */
+public class ReadConsistencyFilter extends OncePerRequestFilter {
+    private static final Logger LOG = LoggerFactory.getLogger(ReadConsistencyFilter.class);
+
+    public static final String HEADER = "Consistency-Token";
+    static final String COOKIE = "consistency_token";
+
+    private final DBmanager db;
+    private final int pinSeconds;
+
+    public ReadConsistencyFilter(DBmanager db, int pinSeconds) {
+        this.db = db;
+        this.pinSeconds = pinSeconds;
+    }
+
+    /** Builds from DB_REPLICA_PIN_SECONDS. */
+    static ReadConsistencyFilter fromEnv(DBmanager db) {
+        return new ReadConsistencyFilter(db, Integer.parseInt(DBmanager.env("DB_REPLICA_PIN_SECONDS", "60")));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return db.getReplicas() == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String method = request.getMethod();
+        if (method.equals("GET") || method.equals("HEAD") || method.equals("OPTIONS")) {
+            long lsn = token(request);
+            if (lsn > 0) ReadReplicas.require(lsn);
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                ReadReplicas.release();
+            }
+            return;
+        }
+
+        // held back until the write is done, so the token can still go into the headers
+        ContentCachingResponseWrapper wrapped = new ContentCachingResponseWrapper(response);
+        ReadReplicas.require(ReadReplicas.PRIMARY_ONLY);
+        try {
+            chain.doFilter(request, wrapped);
+            if (wrapped.getStatus() < 400) issueToken(wrapped);
+        } finally {
+            ReadReplicas.release();
+            wrapped.copyBodyToResponse();
+        }
+    }
+
+    private void issueToken(HttpServletResponse response) {
+        long lsn;
+        try {
+            lsn = db.currentWalLsn();
+        } catch (RuntimeException e) {
+            LOG.warn("no consistency token issued, the client may read a replica behind its write: {}", e.getMessage());
+            return;
+        }
+        ReadReplicas replicas = db.getReplicas();
+        if (replicas != null) replicas.observed(lsn);
+        String token = ReadReplicas.formatLsn(lsn);
+        response.setHeader(HEADER, token);
+        ResponseCookie cookie = ResponseCookie.from(COOKIE, token)
+                .path("/").maxAge(pinSeconds).httpOnly(true).sameSite("Lax").build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    /** The token sent back by the client, header first; 0 when none, or when it is not a valid LSN. */
+    private static long token(HttpServletRequest request) {
+        String raw = request.getHeader(HEADER);
+        if (raw == null) {
+            Cookie cookie = WebUtils.getCookie(request, COOKIE);
+            if (cookie != null) raw = cookie.getValue();
+        }
+        return raw == null ? 0 : Math.max(ReadReplicas.parseLsn(raw.trim()), 0);
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.demo_new;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Streaming replicas of the main database that DBmanager sends list, multi-get and by-id reads to,
+ * round-robin. A monitor thread checks every replica each {@code checkMillis}: how far it has replayed
+ * the primary's WAL, and how far behind that is in bytes and in seconds (see {@link PrimaryPositions}). A replica that fails a check, a
+ * connection attempt, or falls more than {@code maxLagMillis} behind is ejected until a check passes.
+ * <p>
+ * A read may require a WAL position (an LSN, as a byte offset): the current request's consistency
+ * token, set by {@link ReadConsistencyFilter} after the client's last write, and for reads that fill
+ * the entity caches also the position of the last change this node was notified of, so a lagging
+ * replica cannot put back a row that was just evicted. Only replicas known to have replayed that far
+ * qualify; when none does, one is asked for its current position, and failing that the read goes to
+ * the primary. Caches and batched loads serve rows read for other requests, so a request whose token is
+ * past the changes this node has applied reads around them ({@link #aheadOfCaches}).
+ */
+public class ReadReplicas implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ReadReplicas.class);
+
+    /** Required position that no replica meets: reads of the request go to the primary. */
+    static final long PRIMARY_ONLY = Long.MAX_VALUE;
+
+    /** WAL position the reads of the current request must see; null = any healthy replica. */
+    private static final ThreadLocal<Long> REQUIRED = new ThreadLocal<>();
+
+    private static final String STATUS_SQL = "SELECT pg_is_in_recovery(), (pg_last_wal_replay_lsn() - '0/0')::bigint";
+
+    /** One replica and what the last check found. */
+    static final class Replica {
+        final String name;
+        final DataSource dataSource;
+        volatile boolean healthy;
+        volatile long replayLsn = -1;
+        volatile long lagBytes = -1;
+        volatile double lagSeconds = -1;
+        final LongAdder reads = new LongAdder();
+        final LongAdder ejections = new LongAdder();
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        /** Replay only moves forward; a check that raced a newer probe must not move it back. */
+        synchronized void replayed(long lsn) {
+            if (lsn > replayLsn) replayLsn = lsn;
+        }
+
+        public String getName() { return name; }
+        public boolean isHealthy() { return healthy; }
+        public long getLagBytes() { return lagBytes; }
+        public double getLagSeconds() { return lagSeconds; }
+        public long getReads() { return reads.sum(); }
+        public long getEjections() { return ejections.sum(); }
+    }
+
+    /**
+     * The primary's WAL position at past checks, so a replica's lag in seconds is how long ago the primary
+     * was first seen past what the replica has replayed. Unlike now() - pg_last_xact_replay_timestamp() this
+     * is 0 for a caught-up replica, and does not jump to the length of an idle period while the first commit
+     * after it is replayed. A position is dropped once the next one is also older than the window.
+     */
+    static final class PrimaryPositions {
+        private final ArrayDeque<long[]> samples = new ArrayDeque<>(); // (lsn, nanoTime), oldest first
+        private final long windowNanos;
+
+        PrimaryPositions(long windowNanos) {
+            this.windowNanos = windowNanos;
+        }
+
+        synchronized void sample(long lsn, long nanoTime) {
+            long[] last = samples.peekLast();
+            if (last == null || lsn > last[0]) samples.addLast(new long[]{lsn, nanoTime});
+            while (samples.size() > 1) {
+                Iterator<long[]> it = samples.iterator();
+                it.next();
+                if (nanoTime - it.next()[1] <= windowNanos) break;
+                samples.removeFirst();
+            }
+        }
+
+        /** Nanoseconds since the primary was first seen past replayLsn; 0 when it never was, -1 before any sample. */
+        synchronized long lagNanos(long replayLsn, long nanoTime) {
+            if (samples.isEmpty()) return -1;
+            for (long[] sample : samples) {
+                if (sample[0] > replayLsn) return Math.max(0, nanoTime - sample[1]);
+            }
+            return 0;
+        }
+    }
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final LongSupplier primaryLsn;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong floor = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final PrimaryPositions positions;
+    private final LongAdder fallbacks = new LongAdder();
+    private final ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "db-replica-monitor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param replicas   data sources by name, in the order they are tried
+     * @param primaryLsn the primary's current WAL position, for lag in bytes
+     */
+    public ReadReplicas(Map<String, DataSource> replicas, LongSupplier primaryLsn, long checkMillis, long maxLagMillis) {
+        if (replicas.isEmpty()) throw new IllegalArgumentException("at least one replica is required");
+        replicas.forEach((name, ds) -> this.replicas.add(new Replica(name, ds)));
+        this.primaryLsn = primaryLsn;
+        this.maxLagMillis = maxLagMillis;
+        this.positions = new PrimaryPositions(TimeUnit.MILLISECONDS.toNanos(2 * maxLagMillis));
+        // the first check runs at once; until it passes, reads stay on the primary
+        monitor.scheduleWithFixedDelay(this::check, 0, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Builds from DB_REPLICA_URLS (comma-separated JDBC URLs), DB_REPLICA_USER / DB_REPLICA_PASS
+     * (default DB_USER / DB_PASS), DB_REPLICA_CHECK_MS and DB_REPLICA_MAX_LAG_MS, with the DB_POOL_*
+     * settings for each replica's pool; null when no replica is configured.
+     */
+    static ReadReplicas fromEnv(DBmanager primary) {
+        String urls = DBmanager.env("DB_REPLICA_URLS", "");
+        Map<String, DataSource> pools = new LinkedHashMap<>();
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) continue;
+            String name = "replica-" + pools.size();
+            HikariDataSource pool = DBmanager.createPool("cinema-db-" + name, url.trim(),
+                    DBmanager.env("DB_REPLICA_USER", DBmanager.env("DB_USER", null)),
+                    DBmanager.env("DB_REPLICA_PASS", DBmanager.env("DB_PASS", null)));
+            pools.put(name, pool);
+        }
+        if (pools.isEmpty()) return null;
+        return new ReadReplicas(pools, primary::currentWalLsn,
+                Long.parseLong(DBmanager.env("DB_REPLICA_CHECK_MS", "1000")),
+                Long.parseLong(DBmanager.env("DB_REPLICA_MAX_LAG_MS", "30000")));
+    }
+
+    /** Reads on this thread must see WAL up to lsn, until {@link #release()}. */
+    static void require(long lsn) {
+        REQUIRED.set(lsn);
+    }
+
+    static void release() {
+        REQUIRED.remove();
+    }
+
+    /** A change committed on the primary at or before lsn has reached this node; cache fills must see it. */
+    public void observed(long lsn) {
+        floor.accumulateAndGet(lsn, Math::max);
+    }
+
+    /** The caches have dropped every row changed on the primary at or before lsn. */
+    public void applied(long lsn) {
+        applied.accumulateAndGet(lsn, Math::max);
+    }
+
+    /**
+     * True when this thread's reads must see a position past the changes this node has applied to its
+     * caches. A cached row, or one a batched or single-flight load read for another request, is only as
+     * new as that, so such a request reads by id on its own instead. Reads on the primary do not need to.
+     */
+    boolean aheadOfCaches() {
+        Long session = REQUIRED.get();
+        return session != null && session != PRIMARY_ONLY && session > applied.get();
+    }
+
+    /**
+     * A replica connection that satisfies this thread's required position (and for a cache fill, the
+     * position of the last change observed), or null when the read should go to the primary.
+     */
+    Connection connection(boolean cacheFill) {
+        Long session = REQUIRED.get();
+        if (session != null && session == PRIMARY_ONLY) return null;
+        long required = Math.max(session == null ? 0 : session, cacheFill ? floor.get() : 0);
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        Replica lagging = null;
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.healthy) continue;
+            if (replica.replayLsn < required) {
+                if (lagging == null) lagging = replica;
+                continue;
+            }
+            Connection conn = borrow(replica);
+            if (conn != null) {
+                replica.reads.increment();
+                return conn;
+            }
+        }
+        // the last check may predate the write being waited for; ask one replica where it is now
+        if (lagging != null) {
+            Connection conn = borrow(lagging);
+            if (conn != null) {
+                try {
+                    lagging.replayed(replayLsn(conn));
+                    if (lagging.replayLsn >= required) {
+                        lagging.reads.increment();
+                        return conn;
+                    }
+                } catch (SQLException e) {
+                    eject(lagging, e.getMessage());
+                }
+                closeQuietly(conn);
+            }
+        }
+        fallbacks.increment();
+        return null;
+    }
+
+    private Connection borrow(Replica replica) {
+        try {
+            return replica.dataSource.getConnection();
+        } catch (SQLException e) {
+            eject(replica, e.getMessage());
+            return null;
+        }
+    }
+
+    private void check() {
+        long primary;
+        try {
+            primary = primaryLsn.getAsLong();
+        } catch (RuntimeException e) {
+            primary = -1; // lag in bytes unknown this round; seconds still tell
+        }
+        long now = System.nanoTime();
+        if (primary >= 0) positions.sample(primary, now);
+        for (Replica replica : replicas) {
+            try (Connection conn = replica.dataSource.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(STATUS_SQL)) {
+                rs.next();
+                if (!rs.getBoolean(1)) {
+                    eject(replica, "not in recovery, so not a replica (promoted?)");
+                    continue;
+                }
+                replica.replayed(rs.getLong(2));
+                replica.lagBytes = primary < 0 ? -1 : Math.max(0, primary - replica.replayLsn);
+                long lag = positions.lagNanos(replica.replayLsn, now);
+                replica.lagSeconds = lag < 0 ? -1 : lag / 1e9;
+                if (replica.lagSeconds * 1000 > maxLagMillis) {
+                    eject(replica, "replay lag of " + replica.lagSeconds + " s");
+                } else if (!replica.healthy) {
+                    replica.healthy = true;
+                    LOG.info("read replica {} in service", replica.name);
+                }
+            } catch (SQLException | RuntimeException e) {
+                eject(replica, e.getMessage());
+            }
+        }
+    }
+
+    private void eject(Replica replica, String reason) {
+        if (!replica.healthy) return;
+        replica.healthy = false;
+        replica.ejections.increment();
+        LOG.warn("read replica {} ejected until its next check passes: {}", replica.name, reason);
+    }
+
+    private static long replayLsn(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT (pg_last_wal_replay_lsn() - '0/0')::bigint")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /** WAL position of the primary behind conn: a commit that has returned is at or before it. */
+    static long currentLsn(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT (pg_current_wal_lsn() - '0/0')::bigint")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /** Postgres' text form of an LSN, e.g. 16/B374D848. */
+    static String formatLsn(long lsn) {
+        return Long.toHexString(lsn >>> 32).toUpperCase() + "/" + Long.toHexString(lsn & 0xFFFFFFFFL).toUpperCase();
+    }
+
+    /** Parses {@link #formatLsn} output; -1 when text is not an LSN. */
+    static long parseLsn(String text) {
+        int slash = text.indexOf('/');
+        if (slash <= 0 || slash > 8 || text.length() - slash - 1 > 8 || slash == text.length() - 1) return -1;
+        try {
+            return Long.parseLong(text, 0, slash, 16) << 32 | Long.parseLong(text, slash + 1, text.length(), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // the pool replaces a connection that fails to close
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /** Reads that found no replica caught up (or none healthy) and went to the primary. */
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    public List<ReplicaStats> stats() {
+        List<ReplicaStats> stats = new ArrayList<>(replicas.size());
+        for (Replica r : replicas) {
+            stats.add(new ReplicaStats(r.name, r.healthy, r.replayLsn < 0 ? null : formatLsn(r.replayLsn),
+                    r.lagBytes, r.lagSeconds, r.reads.sum(), r.ejections.sum()));
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        monitor.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof HikariDataSource hikari) hikari.close();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo_new;
+
+/** State of one read replica, returned by GET /admin/replicas */
+public class ReplicaStats {
+    private final String name;
+    private final boolean healthy;
+    private final String replayLsn;
+    private final long lagBytes;
+    private final double lagSeconds;
+    private final long reads;
+    private final long ejections;
+
+    public ReplicaStats(String name, boolean healthy, String replayLsn, long lagBytes, double lagSeconds, long reads, long ejections) {
+        this.name = name;
+        this.healthy = healthy;
+        this.replayLsn = replayLsn;
+        this.lagBytes = lagBytes;
+        this.lagSeconds = lagSeconds;
+        this.reads = reads;
+        this.ejections = ejections;
+    }
+
+    public String getName() { return name; }
+    public boolean isHealthy() { return healthy; }
+    public String getReplayLsn() { return replayLsn; }
+    public long getLagBytes() { return lagBytes; }
+    public double getLagSeconds() { return lagSeconds; }
+    public long getReads() { return reads; }
+    public long getEjections() { return ejections; }
+}
@@ -0,0 +1,141 @@
+package com.example.demo_new;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Locale;
+
+/**
+ * Keeps the JSON and CBOR bodies of a row from sharing one strong ETag. Controllers tag by version
+ * only; for a request that negotiates CBOR this filter turns {@code "7"} into {@code "7-cbor"} and
+ * strips the suffix from If-None-Match and If-Match again, the way {@link CompressionFilter} does for
+ * gzip. Every tagged response gets {@code Vary: Accept}, so caches keep the two apart as well.
+ * A CBOR tag sent with a JSON request is left as is, so it never matches and the JSON is sent.
+ */
+public class RepresentationTagFilter extends OncePerRequestFilter {
+    static final String CBOR = "application/cbor";
+    static final String CBOR_SUFFIX = "-cbor";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean cbor = prefersCbor(request.getHeader(HttpHeaders.ACCEPT));
+        HttpServletRequest stripped = request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MATCH) != null ? new TagStrippingRequest(request, cbor) : request;
+        chain.doFilter(stripped, new TaggingResponse(response, cbor));
+    }
+
+    /**
+     * True when Accept makes the CBOR converter win over JSON, which is the default: CBOR with a higher q
+     * than any type JSON matches, or the same q and either listed first or against a wildcard only.
+     */
+    static boolean prefersCbor(String accept) {
+        if (accept == null) return false;
+        double cbor = 0, json = 0, wildcard = 0;
+        boolean cborFirst = false;
+        for (String part : accept.split(",")) {
+            String[] params = part.split(";");
+            String type = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim().toLowerCase(Locale.ROOT);
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            switch (type) {
+                case CBOR -> {
+                    if (q > cbor && json == 0) cborFirst = true;
+                    cbor = Math.max(cbor, q);
+                }
+                case "application/json" -> json = Math.max(json, q);
+                case "*/*", "application/*" -> wildcard = Math.max(wildcard, q);
+                default -> { }
+            }
+        }
+        if (cbor <= 0 || cbor < wildcard) return false;
+        return cbor > json || (cbor == json && cborFirst);
+    }
+
+    /** "7" becomes "7-cbor"; weak tags are left alone. */
+    static String cborTag(String etag) {
+        if (etag == null || etag.length() < 2 || !etag.startsWith("\"") || !etag.endsWith("\"")) return etag;
+        return etag.substring(0, etag.length() - 1) + CBOR_SUFFIX + "\"";
+    }
+
+    /**
+     * Shows controllers the tags they issued. If-Match compares versions, whatever the representation,
+     * so its suffix always goes; an If-None-Match tag only matches the representation it named.
+     */
+    private static final class TagStrippingRequest extends HttpServletRequestWrapper {
+        private final boolean cbor;
+
+        TagStrippingRequest(HttpServletRequest request, boolean cbor) {
+            super(request);
+            this.cbor = cbor;
+        }
+
+        private String strip(String name, String value) {
+            if (value == null) return null;
+            if (HttpHeaders.IF_MATCH.equalsIgnoreCase(name) || (cbor && HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name))) {
+                return value.replace(CBOR_SUFFIX + "\"", "\"");
+            }
+            return value;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return strip(name, super.getHeader(name));
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            Enumeration<String> values = super.getHeaders(name);
+            if (values == null) return null;
+            return Collections.enumeration(Collections.list(values).stream().map(v -> strip(name, v)).toList());
+        }
+    }
+
+    /** Suffixes the ETag as it is set, so outer filters (gzip, idempotency) see the final tag. */
+    private static final class TaggingResponse extends HttpServletResponseWrapper {
+        private final boolean cbor;
+        private boolean varied;
+
+        TaggingResponse(HttpServletResponse response, boolean cbor) {
+            super(response);
+            this.cbor = cbor;
+        }
+
+        private String tag(String name, String value) {
+            if (!HttpHeaders.ETAG.equalsIgnoreCase(name)) return value;
+            if (!varied) {
+                super.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+                varied = true;
+            }
+            return cbor ? cborTag(value) : value;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            super.setHeader(name, tag(name, value));
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            super.addHeader(name, tag(name, value));
+        }
+    }
+}
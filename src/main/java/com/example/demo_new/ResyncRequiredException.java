@@ -0,0 +1,8 @@
+package com.example.demo_new;
+
+/** A change token is older than the retained deletion log; the client must reload and start over. */
+public class ResyncRequiredException extends RuntimeException {
+    public ResyncRequiredException(String entity) {
+        super("changes for " + entity + " before this token are no longer retained; reload and request a new token");
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.demo_new;
+
+/** Result of POST /analytics/rebuild. */
+public class RollupRebuild {
+    private final int rows;
+    private final long durationMs;
+
+    public RollupRebuild(int rows, long durationMs) {
+        this.rows = rows;
+        this.durationMs = durationMs;
+    }
+
+    public int getRows() { return rows; }
+    public long getDurationMs() { return durationMs; }
+}
@@ -0,0 +1,104 @@
+package com.example.demo_new;
+
+/** Hand-written JSON and CSV encodings of entity rows, used where rows are written one at a time. */
+public final class RowWriters {
+    public static final String MOVIE_CSV_HEADER = "id,title,description,durationMinutes,ageRestriction,ticketPrice";
+    public static final String VIEWER_CSV_HEADER = "id,fullName,age,email";
+    public static final String CINEMA_CSV_HEADER = "id,name,city,address";
+
+    private RowWriters() {}
+
+    public static void movieJson(StringBuilder sb, Movie m) {
+        sb.append("{\"id\":").append(m.getId());
+        sb.append(",\"title\":"); jsonString(sb, m.getTitle());
+        sb.append(",\"description\":"); jsonString(sb, m.getDescription());
+        sb.append(",\"durationMinutes\":").append(m.getDurationMinutes());
+        sb.append(",\"ageRestriction\":").append(m.getAgeRestriction());
+        sb.append(",\"ticketPrice\":").append(m.getTicketPrice());
+        sb.append('}');
+    }
+
+    public static void viewerJson(StringBuilder sb, Viewer v) {
+        sb.append("{\"id\":").append(v.getId());
+        sb.append(",\"fullName\":"); jsonString(sb, v.getFullName());
+        sb.append(",\"age\":").append(v.getAge());
+        sb.append(",\"email\":"); jsonString(sb, v.getEmail());
+        sb.append('}');
+    }
+
+    public static void cinemaJson(StringBuilder sb, Cinema c) {
+        sb.append("{\"id\":").append(c.getId());
+        sb.append(",\"name\":"); jsonString(sb, c.getName());
+        sb.append(",\"city\":"); jsonString(sb, c.getCity());
+        sb.append(",\"address\":"); jsonString(sb, c.getAddress());
+        sb.append('}');
+    }
+
+    public static void movieCsv(StringBuilder sb, Movie m) {
+        sb.append(m.getId()).append(',');
+        csvField(sb, m.getTitle()); sb.append(',');
+        csvField(sb, m.getDescription()); sb.append(',');
+        sb.append(m.getDurationMinutes()).append(',');
+        sb.append(m.getAgeRestriction()).append(',');
+        sb.append(m.getTicketPrice());
+    }
+
+    public static void viewerCsv(StringBuilder sb, Viewer v) {
+        sb.append(v.getId()).append(',');
+        csvField(sb, v.getFullName()); sb.append(',');
+        sb.append(v.getAge()).append(',');
+        csvField(sb, v.getEmail());
+    }
+
+    public static void cinemaCsv(StringBuilder sb, Cinema c) {
+        sb.append(c.getId()).append(',');
+        csvField(sb, c.getName()); sb.append(',');
+        csvField(sb, c.getCity()); sb.append(',');
+        csvField(sb, c.getAddress());
+    }
+
+    /** JSON string literal, or null. */
+    public static void jsonString(StringBuilder sb, String s) {
+        if (s == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (ch < 0x20) sb.append(String.format("\\u%04x", (int) ch));
+                    else sb.append(ch);
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    /** RFC 4180 field: quoted only when it contains a separator, quote or line break. Null is empty. */
+    public static void csvField(StringBuilder sb, String s) {
+        if (s == null) return;
+        boolean quote = false;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char ch = s.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            sb.append(s);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '"') sb.append('"');
+            sb.append(ch);
+        }
+        sb.append('"');
+    }
+}
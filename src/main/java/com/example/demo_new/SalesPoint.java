@@ -0,0 +1,24 @@
+package com.example.demo_new;
+
+import java.time.LocalDate;
+
+/** Sales in one time bucket of a series, starting on the given day; occupancy is null when no seats were offered. */
+public class SalesPoint {
+    private final LocalDate start;
+    private final long tickets;
+    private final double revenue;
+    private final long seats;
+
+    public SalesPoint(LocalDate start, long tickets, double revenue, long seats) {
+        this.start = start;
+        this.tickets = tickets;
+        this.revenue = revenue;
+        this.seats = seats;
+    }
+
+    public LocalDate getStart() { return start; }
+    public long getTickets() { return tickets; }
+    public double getRevenue() { return revenue; }
+    public long getSeats() { return seats; }
+    public Double getOccupancy() { return seats == 0 ? null : (double) tickets / seats; }
+}
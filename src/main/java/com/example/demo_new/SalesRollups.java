@@ -0,0 +1,335 @@
+package com.example.demo_new;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tickets, revenue and seats offered per movie, cinema, city and in total, per show day, kept in the
+ * sales_rollups table so dashboards read a few pre-aggregated rows instead of grouping bookings.
+ * Bookings are added when they reach the database (directly, or when the journal drains them) and
+ * subtracted when cancelled; screenings add their capacity when placed. Deleting a movie, cinema or
+ * viewer subtracts what the delete cascaded to ({@link #removed}). Changes are summed in memory and
+ * written every {@code flushMillis} as one batch of additive upserts, so every node can flush into the
+ * same rows; each batch carries an id the database records with it, so a batch retried after a lost
+ * commit acknowledgement is not added twice. Deltas not yet flushed are lost if the process dies;
+ * {@link #rebuild()} recomputes everything from bookings and screenings.
+ */
+public class SalesRollups implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(SalesRollups.class);
+
+    public static final String MOVIE = "movie";
+    public static final String CINEMA = "cinema";
+    public static final String CITY = "city";
+    public static final String TOTAL = "total";
+
+    /** One rollup row: a dimension value on one show day. */
+    static final class Key {
+        final String dimension;
+        final String value;
+        final LocalDate day;
+
+        Key(String dimension, String value, LocalDate day) {
+            this.dimension = dimension;
+            this.value = value;
+            this.day = day;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && dimension.equals(k.dimension) && value.equals(k.value) && day.equals(k.day);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dimension, value, day);
+        }
+    }
+
+    /** Amounts to add to one rollup row; negative for cancellations. */
+    static final class Delta {
+        long tickets;
+        double revenue;
+        long seats;
+    }
+
+    /**
+     * Sales of one screening that a delete took with it: its bookings, and its capacity in seats when
+     * the screening itself went (0 when only a viewer's bookings did). city is null when not known.
+     */
+    static final class Removal {
+        final int screeningId;
+        final int movieId;
+        final int cinemaId;
+        final String city;
+        final OffsetDateTime startsAt;
+        final long tickets;
+        final double revenue;
+        final long seats;
+
+        Removal(int screeningId, int movieId, int cinemaId, String city, OffsetDateTime startsAt,
+                long tickets, double revenue, long seats) {
+            this.screeningId = screeningId;
+            this.movieId = movieId;
+            this.cinemaId = cinemaId;
+            this.city = city;
+            this.startsAt = startsAt;
+            this.tickets = tickets;
+            this.revenue = revenue;
+            this.seats = seats;
+        }
+    }
+
+    /** Deltas swapped out for one write, under the id that makes retrying it safe. */
+    private static final class Batch {
+        final UUID id = UUID.randomUUID();
+        final Map<Key, Delta> deltas;
+
+        Batch(Map<Key, Delta> deltas) {
+            this.deltas = deltas;
+        }
+    }
+
+    /** Where a screening's sales are counted; screenings never move, so this is cached per screening. */
+    private static final class Target {
+        final int movieId;
+        final int cinemaId;
+        final String city;
+        final LocalDate day;
+
+        Target(int movieId, int cinemaId, String city, LocalDate day) {
+            this.movieId = movieId;
+            this.cinemaId = cinemaId;
+            this.city = city;
+            this.day = day;
+        }
+    }
+
+    private final DBmanager db;
+    private final ZoneId zone;
+    private final ConcurrentHashMap<Integer, Target> targets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "sales-rollup-flush");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Object flushLock = new Object();
+    private Map<Key, Delta> pending = new HashMap<>(); // guarded by this
+    // written under flushLock: a batch whose write failed, retried as is before anything newer
+    private volatile Batch unacknowledged;
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder missed = new LongAdder();
+
+    public SalesRollups(DBmanager db, ZoneId zone, long flushMillis) {
+        this.db = db;
+        this.zone = zone;
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Builds from ANALYTICS_TIME_ZONE (default SCHEDULE_TIME_ZONE) and ANALYTICS_FLUSH_MILLIS. */
+    static SalesRollups fromEnv(DBmanager db) {
+        return new SalesRollups(db,
+                ZoneId.of(DBmanager.env("ANALYTICS_TIME_ZONE", DBmanager.env("SCHEDULE_TIME_ZONE", "UTC"))),
+                Long.parseLong(DBmanager.env("ANALYTICS_FLUSH_MILLIS", "1000")));
+    }
+
+    public ZoneId getZone() { return zone; }
+
+    /** Bookings now in the database. */
+    public void booked(List<Booking> bookings) {
+        for (Booking b : bookings) sold(b, 1);
+    }
+
+    public void cancelled(Booking booking) {
+        sold(booking, -1);
+    }
+
+    /** A placed screening's seats, the denominator of occupancy. */
+    public void offered(int screeningId, int movieId, int cinemaId, OffsetDateTime startsAt, int seats) {
+        Target target;
+        try {
+            target = target(movieId, cinemaId, startsAt);
+        } catch (RuntimeException e) {
+            missed.increment();
+            LOG.warn("screening {} not counted in sales rollups: {}", screeningId, e.getMessage());
+            return;
+        }
+        targets.put(screeningId, target);
+        add(target, 0, 0, seats);
+    }
+
+    /**
+     * Takes what a delete cascaded to off the rollups. Never throws, like {@link #booked}: the delete
+     * has gone through, and a rebuild recovers what is missed here.
+     */
+    public void removed(List<Removal> removals) {
+        for (Removal r : removals) {
+            Target target;
+            try {
+                Target cached = targets.get(r.screeningId);
+                if (r.city != null) target = new Target(r.movieId, r.cinemaId, r.city, r.startsAt.atZoneSameInstant(zone).toLocalDate());
+                else if (cached != null) target = cached;
+                else target = target(r.movieId, r.cinemaId, r.startsAt);
+            } catch (RuntimeException e) {
+                missed.increment();
+                LOG.warn("deleted sales of screening {} not taken off the rollups: {}", r.screeningId, e.getMessage());
+                continue;
+            }
+            if (r.seats > 0) targets.remove(r.screeningId);
+            add(target, -r.tickets, -r.revenue, -r.seats);
+        }
+    }
+
+    /** Never throws: the booking itself has gone through, and a rebuild recovers what is missed here. */
+    private void sold(Booking b, int sign) {
+        Target target;
+        try {
+            target = target(b.getScreeningId());
+        } catch (RuntimeException e) {
+            missed.increment();
+            LOG.warn("booking {} not counted in sales rollups: {}", b.getId(), e.getMessage());
+            return;
+        }
+        if (target == null) return; // screening deleted since; a rebuild drops its rows
+        add(target, sign * (long) b.getSeats().size(), sign * b.getTotalPrice(), 0);
+    }
+
+    private Target target(int screeningId) {
+        Target cached = targets.get(screeningId);
+        if (cached != null) return cached;
+        Screening s = db.findScreeningById(screeningId).orElse(null);
+        if (s == null) return null;
+        Target target = target(s.getMovieId(), s.getCinemaId(), s.getStartsAt());
+        targets.put(screeningId, target);
+        return target;
+    }
+
+    private Target target(int movieId, int cinemaId, OffsetDateTime startsAt) {
+        String city = db.findCinemaById(cinemaId).map(Cinema::getCity).orElse(null);
+        return new Target(movieId, cinemaId, city, startsAt.atZoneSameInstant(zone).toLocalDate());
+    }
+
+    private synchronized void add(Target t, long tickets, double revenue, long seats) {
+        add(new Key(MOVIE, String.valueOf(t.movieId), t.day), tickets, revenue, seats);
+        add(new Key(CINEMA, String.valueOf(t.cinemaId), t.day), tickets, revenue, seats);
+        if (t.city != null) add(new Key(CITY, t.city, t.day), tickets, revenue, seats);
+        add(new Key(TOTAL, "", t.day), tickets, revenue, seats);
+    }
+
+    private void add(Key key, long tickets, double revenue, long seats) {
+        Delta delta = pending.computeIfAbsent(key, k -> new Delta());
+        delta.tickets += tickets;
+        delta.revenue += revenue;
+        delta.seats += seats;
+    }
+
+    /**
+     * Writes the deltas summed so far. A batch whose write fails is kept apart and written again,
+     * under the same id, before anything newer: the failure may have come after the commit, and the
+     * database then skips it instead of adding it twice.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Batch retry = unacknowledged;
+            if (retry != null) write(retry);
+            Map<Key, Delta> deltas = swap();
+            if (deltas.isEmpty()) return;
+            Batch batch = new Batch(deltas);
+            unacknowledged = batch;
+            write(batch);
+            // screenings more than two days past no longer sell; a late cancellation looks its screening up again
+            LocalDate horizon = LocalDate.now(zone).minusDays(2);
+            targets.values().removeIf(t -> t.day.isBefore(horizon));
+        }
+    }
+
+    private void write(Batch batch) {
+        if (!db.applySalesDeltas(batch.id, batch.deltas)) {
+            LOG.info("sales rollup batch {} was already written", batch.id);
+        }
+        unacknowledged = null;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            LOG.warn("sales rollup flush failed, retrying: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces every rollup row with one computed from bookings and screenings. Deltas recorded on this
+     * node before the rebuild are dropped, written or not, since their bookings are counted by it. Bookings made while it
+     * runs, on another node or still in a booking journal, can be counted twice or not at all, so run it
+     * when sales are quiet.
+     */
+    public RollupRebuild rebuild() {
+        synchronized (flushLock) {
+            swap();
+            unacknowledged = null;
+            long start = System.nanoTime();
+            int rows = db.rebuildSalesRollups(zone);
+            return new RollupRebuild(rows, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private synchronized Map<Key, Delta> swap() {
+        Map<Key, Delta> batch = pending;
+        pending = new HashMap<>();
+        return batch;
+    }
+
+    /** Rollup rows with changes not yet written, including a batch waiting to be retried. */
+    public int getPending() {
+        Batch retry = unacknowledged;
+        synchronized (this) {
+            return pending.size() + (retry == null ? 0 : retry.deltas.size());
+        }
+    }
+
+    public long getFlushFailures() { return flushFailures.sum(); }
+
+    /** Screenings, bookings and cancellations left out because a lookup failed. */
+    public long getMissed() { return missed.sum(); }
+
+    /** Stops the flush thread after writing what is left. */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOG.warn("sales rollups not flushed on shutdown, rebuild to recover them: {}", e.getMessage());
+        }
+    }
+
+    /** Copies the keys and deltas for a batch write, in a stable order so concurrent flushes lock rows alike. */
+    static List<Map.Entry<Key, Delta>> ordered(Map<Key, Delta> batch) {
+        List<Map.Entry<Key, Delta>> entries = new ArrayList<>(batch.entrySet());
+        entries.sort(Map.Entry.comparingByKey((a, b) -> {
+            int c = a.dimension.compareTo(b.dimension);
+            if (c == 0) c = a.value.compareTo(b.value);
+            return c != 0 ? c : a.day.compareTo(b.day);
+        }));
+        return entries;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.demo_new;
+
+/** Sales of one movie, cinema or city over a date range; occupancy is null when no seats were offered. */
+public class SalesTotal {
+    private final String key;
+    private final long tickets;
+    private final double revenue;
+    private final long seats;
+
+    public SalesTotal(String key, long tickets, double revenue, long seats) {
+        this.key = key;
+        this.tickets = tickets;
+        this.revenue = revenue;
+        this.seats = seats;
+    }
+
+    public String getKey() { return key; }
+    public long getTickets() { return tickets; }
+    public double getRevenue() { return revenue; }
+    public long getSeats() { return seats; }
+    public Double getOccupancy() { return seats == 0 ? null : (double) tickets / seats; }
+}
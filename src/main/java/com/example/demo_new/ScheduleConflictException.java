@@ -0,0 +1,16 @@
+package com.example.demo_new;
+
+import java.util.Collection;
+
+/** The hall is already taken for part of the requested time; mapped to 409. */
+public class ScheduleConflictException extends RuntimeException {
+    public ScheduleConflictException(int cinemaId, String hall, int screeningId) {
+        super("hall " + hall + " of cinema id=" + cinemaId + " is taken"
+                + (screeningId > 0 ? " by screening id=" + screeningId : "") + " (including the cleaning gap)");
+    }
+
+    /** A hall was taken through another node; the database caught it, so which one is not known here. */
+    public ScheduleConflictException(Collection<Integer> cinemaIds) {
+        super("a hall of cinema id " + cinemaIds + " was taken meanwhile through another node; the schedule has been reloaded, try again");
+    }
+}
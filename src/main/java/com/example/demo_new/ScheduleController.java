@@ -0,0 +1,68 @@
+package com.example.demo_new;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+@RestController
+@RequestMapping("/schedules")
+public class ScheduleController {
+
+    private final DBmanager db;
+    private final ShowtimeScheduler scheduler;
+
+    public ScheduleController(DBmanager db, ShowtimeScheduler scheduler) {
+        this.db = db;
+        this.scheduler = scheduler;
+    }
+
+    /** Earliest start, from {@code from} (default now) on and within opening hours, for a screening of {@code minutes}; 204 if none within four weeks. */
+    @GetMapping("/{cinemaId}/{hall}/free-slot")
+    public ResponseEntity<FreeSlot> freeSlot(@PathVariable int cinemaId,
+                                             @PathVariable String hall,
+                                             @RequestParam int minutes,
+                                             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from) {
+        ScreeningController.validateHall(hall);
+        db.findCinemaById(cinemaId).orElseThrow(() -> new NotFoundException("Cinema", cinemaId));
+        return scheduler.nextFreeSlot(cinemaId, hall, from == null ? OffsetDateTime.now() : from, minutes)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    /** Fills the given halls of the given cinemas (default all) for a week and inserts the screenings in one batch. */
+    @PostMapping("/week")
+    @ResponseStatus(HttpStatus.CREATED)
+    public WeekSchedule scheduleWeek(@RequestBody ScheduleWeekRequest req) {
+        if (req.getWeekStart() == null) throw new IllegalArgumentException("weekStart is required");
+        if (req.getMovieIds() == null || req.getMovieIds().isEmpty() || req.getMovieIds().size() > ShowtimeScheduler.MAX_MOVIES) {
+            throw new IllegalArgumentException("movieIds must list 1 to " + ShowtimeScheduler.MAX_MOVIES + " movies");
+        }
+        if (req.getHalls() == null || req.getHalls().isEmpty() || req.getHalls().size() > ShowtimeScheduler.MAX_HALLS) {
+            throw new IllegalArgumentException("halls must list 1 to " + ShowtimeScheduler.MAX_HALLS + " halls");
+        }
+        req.getHalls().forEach(ScreeningController::validateHall);
+        if (new HashSet<>(req.getHalls()).size() != req.getHalls().size()) throw new IllegalArgumentException("halls must be distinct");
+        ScreeningController.validateSeats(req.getSeatRows(), req.getSeatsPerRow());
+
+        List<Integer> movieIds = List.copyOf(new LinkedHashSet<>(req.getMovieIds()));
+        List<Movie> movies = db.findMoviesByIds(movieIds);
+        if (movies.size() != movieIds.size()) throw new IllegalArgumentException("movieIds contains unknown movies");
+        List<Integer> cinemaIds;
+        if (req.getCinemaIds() == null) {
+            cinemaIds = db.getAllCinemas().stream().map(Cinema::getId).toList();
+        } else {
+            cinemaIds = List.copyOf(new LinkedHashSet<>(req.getCinemaIds()));
+            if (db.findCinemasByIds(cinemaIds).size() != cinemaIds.size()) throw new IllegalArgumentException("cinemaIds contains unknown cinemas");
+        }
+
+        List<ShowtimeScheduler.Placement> placed = scheduler.scheduleWeek(req.getWeekStart(), cinemaIds, req.getHalls(),
+                movies, req.getSeatRows(), req.getSeatsPerRow());
+        return new WeekSchedule(req.getWeekStart(), cinemaIds.size(), req.getHalls().size(), placed.size());
+    }
+}
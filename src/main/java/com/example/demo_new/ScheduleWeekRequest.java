@@ -0,0 +1,34 @@
+package com.example.demo_new;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/** DTO for POST /schedules/week. cinemaIds null means every cinema. */
+public class ScheduleWeekRequest {
+    private LocalDate weekStart;
+    private List<Integer> movieIds;
+    private List<Integer> cinemaIds;
+    private List<String> halls;
+    private int seatRows;
+    private int seatsPerRow;
+
+    public ScheduleWeekRequest() {}
+
+    public LocalDate getWeekStart() { return weekStart; }
+    public void setWeekStart(LocalDate weekStart) { this.weekStart = weekStart; }
+
+    public List<Integer> getMovieIds() { return movieIds; }
+    public void setMovieIds(List<Integer> movieIds) { this.movieIds = movieIds; }
+
+    public List<Integer> getCinemaIds() { return cinemaIds; }
+    public void setCinemaIds(List<Integer> cinemaIds) { this.cinemaIds = cinemaIds; }
+
+    public List<String> getHalls() { return halls; }
+    public void setHalls(List<String> halls) { this.halls = halls; }
+
+    public int getSeatRows() { return seatRows; }
+    public void setSeatRows(int seatRows) { this.seatRows = seatRows; }
+
+    public int getSeatsPerRow() { return seatsPerRow; }
+    public void setSeatsPerRow(int seatsPerRow) { this.seatsPerRow = seatsPerRow; }
+}
@@ -0,0 +1,74 @@
+package com.example.demo_new;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.health.contributor.Health;
+
+/**
+ * Runs the startup database work (DDL, pruning, journal recovery) and tracks how it went. Async,
+ * it runs on its own thread so the node starts serving reads at once; the "schema" health indicator
+ * keeps readiness OUT_OF_SERVICE until it is done, and DOWN if it failed. Sync, a failure fails startup.
+ */
+public class SchemaSetup {
+    private static final Logger LOG = LoggerFactory.getLogger(SchemaSetup.class);
+
+    enum State { PENDING, RUNNING, DONE, FAILED }
+
+    private final boolean async;
+    private volatile State state = State.PENDING;
+    private volatile RuntimeException failure;
+    private volatile long durationMillis = -1;
+
+    public SchemaSetup(boolean async) {
+        this.async = async;
+    }
+
+    /** Builds from DB_SCHEMA_SETUP_ASYNC. */
+    static SchemaSetup fromEnv() {
+        return new SchemaSetup(Boolean.parseBoolean(DBmanager.env("DB_SCHEMA_SETUP_ASYNC", "true")));
+    }
+
+    public boolean isAsync() { return async; }
+
+    /** Runs steps once, on the schema-setup thread when async. */
+    public synchronized void start(Runnable steps) {
+        if (state != State.PENDING) throw new IllegalStateException("schema setup already started");
+        state = State.RUNNING;
+        if (!async) {
+            run(steps);
+            if (failure != null) throw failure;
+            return;
+        }
+        Thread thread = new Thread(() -> run(steps), "schema-setup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run(Runnable steps) {
+        long start = System.nanoTime();
+        try {
+            steps.run();
+            durationMillis = (System.nanoTime() - start) / 1_000_000;
+            state = State.DONE;
+            LOG.info("schema setup finished in {} ms", durationMillis);
+        } catch (RuntimeException e) {
+            durationMillis = (System.nanoTime() - start) / 1_000_000;
+            failure = e;
+            state = State.FAILED;
+            if (async) LOG.error("schema setup failed; this node stays out of service until restarted", e);
+        }
+    }
+
+    public boolean isDone() { return state == State.DONE; }
+
+    /** Milliseconds the setup took, or -1 while it has not finished. */
+    public long getDurationMillis() { return durationMillis; }
+
+    Health health() {
+        return switch (state) {
+            case DONE -> Health.up().withDetail("durationMs", durationMillis).build();
+            case FAILED -> Health.down().withDetail("error", String.valueOf(failure.getMessage())).build();
+            default -> Health.outOfService().build();
+        };
+    }
+}
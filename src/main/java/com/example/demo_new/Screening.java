@@ -0,0 +1,37 @@
+package com.example.demo_new;
+
+import java.time.OffsetDateTime;
+
+/** One showing of a movie in a hall of a cinema. Seats are numbered 1..seatRows*seatsPerRow, row by row. */
+public class Screening {
+    private final int id;
+    private final int movieId;
+    private final int cinemaId;
+    private final String hall;
+    private final OffsetDateTime startsAt;
+    private final int seatRows;
+    private final int seatsPerRow;
+
+    public Screening(int id, int movieId, int cinemaId, String hall, OffsetDateTime startsAt, int seatRows, int seatsPerRow) {
+        if (id <= 0) throw new IllegalArgumentException("id must be positive");
+        if (seatRows <= 0 || seatsPerRow <= 0) throw new IllegalArgumentException("seatRows and seatsPerRow must be positive");
+
+        this.id = id;
+        this.movieId = movieId;
+        this.cinemaId = cinemaId;
+        this.hall = hall;
+        this.startsAt = startsAt;
+        this.seatRows = seatRows;
+        this.seatsPerRow = seatsPerRow;
+    }
+
+    public int getId() { return id; }
+    public int getMovieId() { return movieId; }
+    public int getCinemaId() { return cinemaId; }
+    public String getHall() { return hall; }
+    public OffsetDateTime getStartsAt() { return startsAt; }
+    public int getSeatRows() { return seatRows; }
+    public int getSeatsPerRow() { return seatsPerRow; }
+
+    public int getCapacity() { return seatRows * seatsPerRow; }
+}
@@ -0,0 +1,83 @@
+package com.example.demo_new;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/screenings")
+public class ScreeningController {
+
+    private final DBmanager db;
+    private final BookingEngine bookings;
+    private final SeatHolds holds;
+    private final ShowtimeScheduler scheduler;
+
+    public ScreeningController(DBmanager db, BookingEngine bookings, SeatHolds holds, ShowtimeScheduler scheduler) {
+        this.db = db;
+        this.bookings = bookings;
+        this.holds = holds;
+        this.scheduler = scheduler;
+    }
+
+    @GetMapping
+    public Page<Screening> getAll(@RequestParam(required = false) Integer limit,
+                                  @RequestParam(required = false) String after,
+                                  @RequestParam(required = false) Integer movieId,
+                                  @RequestParam(required = false) Integer cinemaId) {
+        PageQuery page = PageQuery.parse(limit, after, null, Map.of());
+        return db.findScreenings(page, movieId, cinemaId);
+    }
+
+    @GetMapping("/{id}")
+    public Screening getById(@PathVariable int id) {
+        return db.findScreeningById(id).orElseThrow(() -> new NotFoundException("Screening", id));
+    }
+
+    /** 409 if the hall is taken between startsAt and the end of the movie plus the cleaning gap. */
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Screening create(@RequestBody ScreeningCreateRequest req) {
+        validateScreening(req);
+        Movie movie = db.findMovieById(req.getMovieId()).orElseThrow(() -> new NotFoundException("Movie", req.getMovieId()));
+        db.findCinemaById(req.getCinemaId()).orElseThrow(() -> new NotFoundException("Cinema", req.getCinemaId()));
+        return scheduler.place(req, movie);
+    }
+
+    /** Seat layout and the seats already booked. */
+    @GetMapping("/{id}/seats")
+    public SeatAvailability seats(@PathVariable int id) {
+        return bookings.availability(id);
+    }
+
+    /** Books seats for a viewer: checks the movie's age restriction, prices the tickets and claims the seats. */
+    @PostMapping("/{id}/bookings")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Booking book(@PathVariable int id, @RequestBody BookingRequest req) {
+        return bookings.book(id, req);
+    }
+
+    /** Same checks as a booking, but the seats are only held until confirmed, released or expired. */
+    @PostMapping("/{id}/holds")
+    @ResponseStatus(HttpStatus.CREATED)
+    public SeatHold hold(@PathVariable int id, @RequestBody BookingRequest req) {
+        return holds.hold(id, req);
+    }
+
+    private static void validateScreening(ScreeningCreateRequest req) {
+        validateHall(req.getHall());
+        if (req.getStartsAt() == null) throw new IllegalArgumentException("startsAt is required");
+        validateSeats(req.getSeatRows(), req.getSeatsPerRow());
+    }
+
+    static void validateHall(String hall) {
+        if (hall == null || hall.isBlank()) throw new IllegalArgumentException("hall is required");
+        if (hall.length() > 64) throw new IllegalArgumentException("hall must be at most 64 characters");
+    }
+
+    static void validateSeats(int seatRows, int seatsPerRow) {
+        if (seatRows <= 0 || seatRows > 100) throw new IllegalArgumentException("seatRows must be between 1 and 100");
+        if (seatsPerRow <= 0 || seatsPerRow > 100) throw new IllegalArgumentException("seatsPerRow must be between 1 and 100");
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo_new;
+
+import java.time.OffsetDateTime;
+
+/** DTO for POST /screenings (no id, DB generates it). */
+public class ScreeningCreateRequest {
+    private int movieId;
+    private int cinemaId;
+    private String hall;
+    private OffsetDateTime startsAt;
+    private int seatRows;
+    private int seatsPerRow;
+
+    public ScreeningCreateRequest() {}
+
+    public int getMovieId() { return movieId; }
+    public void setMovieId(int movieId) { this.movieId = movieId; }
+
+    public int getCinemaId() { return cinemaId; }
+    public void setCinemaId(int cinemaId) { this.cinemaId = cinemaId; }
+
+    public String getHall() { return hall; }
+    public void setHall(String hall) { this.hall = hall; }
+
+    public OffsetDateTime getStartsAt() { return startsAt; }
+    public void setStartsAt(OffsetDateTime startsAt) { this.startsAt = startsAt; }
+
+    public int getSeatRows() { return seatRows; }
+    public void setSeatRows(int seatRows) { this.seatRows = seatRows; }
+
+    public int getSeatsPerRow() { return seatsPerRow; }
+    public void setSeatsPerRow(int seatsPerRow) { this.seatsPerRow = seatsPerRow; }
+}
@@ -0,0 +1,72 @@
+package com.example.demo_new;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Parsed {@code q}, {@code limit} and {@code after} parameters of GET /{entity}/search.
+ * Every word of q must match as a prefix, so "inter st" finds "Interstellar Story" while typing.
+ * Results are ordered by (rank DESC, id ASC); the cursor is that pair for the last row returned.
+ */
+public class SearchQuery {
+    /** Words beyond this are ignored; longer queries only narrow results that are already ranked. */
+    private static final int MAX_TERMS = 8;
+
+    private final String tsQuery;
+    private final int limit;
+    private final Float afterRank;
+    private final Integer afterId;
+
+    private SearchQuery(String tsQuery, int limit, Float afterRank, Integer afterId) {
+        this.tsQuery = tsQuery;
+        this.limit = limit;
+        this.afterRank = afterRank;
+        this.afterId = afterId;
+    }
+
+    public static SearchQuery parse(String q, Integer limit, String after) {
+        if (q == null || q.isBlank()) throw new IllegalArgumentException("q is required");
+        int size = limit == null ? PageQuery.DEFAULT_LIMIT : limit;
+        if (size <= 0 || size > PageQuery.MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + PageQuery.MAX_LIMIT);
+        }
+
+        // Only letters and digits reach to_tsquery, so user input can never form tsquery operators.
+        List<String> terms = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= q.length() && terms.size() < MAX_TERMS; i++) {
+            char ch = i < q.length() ? q.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(ch)) {
+                term.append(Character.toLowerCase(ch));
+            } else if (term.length() > 0) {
+                terms.add(term + ":*");
+                term.setLength(0);
+            }
+        }
+        String tsQuery = terms.isEmpty() ? null : String.join(" & ", terms);
+
+        if (after == null || after.isBlank()) return new SearchQuery(tsQuery, size, null, null);
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3 || !parts[0].equals("rank")) throw new IllegalArgumentException("invalid cursor");
+            return new SearchQuery(tsQuery, size, Float.parseFloat(parts[1]), Integer.parseInt(parts[2]));
+        } catch (IllegalArgumentException e) {
+            // also covers NumberFormatException and bad base64
+            throw new IllegalArgumentException("invalid cursor");
+        }
+    }
+
+    /** Argument for to_tsquery('simple', ?), or null when q holds no searchable words. */
+    public String getTsQuery() { return tsQuery; }
+    public int getLimit() { return limit; }
+    Float getAfterRank() { return afterRank; }
+    Integer getAfterId() { return afterId; }
+
+    String cursor(float rank, int id) {
+        String raw = "rank|" + rank + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo_new;
+
+import java.util.List;
+
+/** Seat layout of a screening and the seats already taken. */
+public class SeatAvailability {
+    private final int screeningId;
+    private final int seatRows;
+    private final int seatsPerRow;
+    private final int available;
+    private final List<Integer> takenSeats;
+
+    public SeatAvailability(int screeningId, int seatRows, int seatsPerRow, int available, List<Integer> takenSeats) {
+        this.screeningId = screeningId;
+        this.seatRows = seatRows;
+        this.seatsPerRow = seatsPerRow;
+        this.available = available;
+        this.takenSeats = takenSeats;
+    }
+
+    public int getScreeningId() { return screeningId; }
+    public int getSeatRows() { return seatRows; }
+    public int getSeatsPerRow() { return seatsPerRow; }
+    public int getAvailable() { return available; }
+    public List<Integer> getTakenSeats() { return takenSeats; }
+}
@@ -0,0 +1,77 @@
+package com.example.demo_new;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seats claimed for one viewer during checkout. The hold is its own timing-wheel entry, so an
+ * outstanding hold costs this object and its seat array and nothing else. It ends exactly once:
+ * confirmed, released or expired, and only that transition gives the seats back or books them.
+ */
+public class SeatHold extends TimingWheel.Timeout {
+    private enum State { HELD, CONFIRMED, RELEASED, EXPIRED }
+
+    private final String id;
+    final BookingEngine.Claim claim;
+    private final long createdNanos;
+    private final SeatHolds holds;
+    private State state = State.HELD;
+    private volatile long expiresAtMillis;
+
+    SeatHold(String id, BookingEngine.Claim claim, long ttlNanos, SeatHolds holds) {
+        super(System.nanoTime() + ttlNanos);
+        this.id = id;
+        this.claim = claim;
+        this.createdNanos = getDeadlineNanos() - ttlNanos;
+        this.holds = holds;
+        this.expiresAtMillis = System.currentTimeMillis() + ttlNanos / 1_000_000;
+    }
+
+    public String getId() { return id; }
+    public int getScreeningId() { return claim.screeningId; }
+    public int getViewerId() { return claim.viewerId; }
+    public double getTotalPrice() { return claim.totalPrice; }
+
+    public List<Integer> getSeats() {
+        List<Integer> seats = new ArrayList<>(claim.seats.length);
+        for (int seat : claim.seats) seats.add(seat + 1);
+        return seats;
+    }
+
+    public OffsetDateTime getExpiresAt() {
+        return Instant.ofEpochMilli(expiresAtMillis).atOffset(ZoneOffset.UTC);
+    }
+
+    /** Pushes the deadline to ttl from now, but not past maxLifetime from creation. False once the hold has ended. */
+    synchronized boolean extend(long ttlNanos, long maxLifetimeNanos) {
+        if (state != State.HELD) return false;
+        long now = System.nanoTime();
+        long deadline = Math.min(now + ttlNanos, createdNanos + maxLifetimeNanos);
+        if (deadline > getDeadlineNanos()) {
+            setDeadlineNanos(deadline);
+            expiresAtMillis = System.currentTimeMillis() + (deadline - now) / 1_000_000;
+        }
+        return true;
+    }
+
+    /** Ends the hold on behalf of confirm or release; false if it already ended. */
+    synchronized boolean finish(boolean confirmed) {
+        if (state != State.HELD) return false;
+        state = confirmed ? State.CONFIRMED : State.RELEASED;
+        return true;
+    }
+
+    @Override
+    protected boolean expire() {
+        synchronized (this) {
+            if (state != State.HELD) return true;
+            if (getDeadlineNanos() - System.nanoTime() > 0) return false; // extended meanwhile
+            state = State.EXPIRED;
+        }
+        holds.expired(this);
+        return true;
+    }
+}
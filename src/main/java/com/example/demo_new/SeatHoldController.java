@@ -0,0 +1,39 @@
+package com.example.demo_new;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/holds")
+public class SeatHoldController {
+
+    private final SeatHolds holds;
+
+    public SeatHoldController(SeatHolds holds) {
+        this.holds = holds;
+    }
+
+    @GetMapping("/{id}")
+    public SeatHold getById(@PathVariable String id) {
+        return holds.get(id);
+    }
+
+    /** Restarts the hold's countdown, up to SEAT_HOLD_MAX_SECONDS after it was taken. */
+    @PostMapping("/{id}/extend")
+    public SeatHold extend(@PathVariable String id) {
+        return holds.extend(id);
+    }
+
+    /** Turns the hold into a booking. */
+    @PostMapping("/{id}/confirm")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Booking confirm(@PathVariable String id) {
+        return holds.confirm(id);
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void release(@PathVariable String id) {
+        holds.release(id);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo_new;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Open seat holds on this node. Held seats are claimed in the screening's {@link SeatMap} like
+ * booked ones, so they are unavailable to everyone else until the hold is confirmed into a
+ * booking, released, or expires; expiry is driven by a {@link TimingWheel} rather than a sweep.
+ * A hold's id is a random UUID: it is all a client needs to confirm or release the hold, so it
+ * must not be guessable from another client's hold, and it stays unique across nodes.
+ */
+public class SeatHolds implements AutoCloseable {
+    private final BookingEngine engine;
+    private final long ttlNanos;
+    private final long maxLifetimeNanos;
+    private final int maxHolds;
+    private final TimingWheel wheel;
+    private final ConcurrentHashMap<String, SeatHold> holds = new ConcurrentHashMap<>();
+    /** Holds counted against maxHolds: taken before the claim, so concurrent callers cannot all pass the check. */
+    private final AtomicInteger open = new AtomicInteger();
+    private final LongAdder expired = new LongAdder();
+
+    public SeatHolds(BookingEngine engine, long ttlSeconds, long maxLifetimeSeconds, int maxHolds, long tickMillis, int slots) {
+        if (ttlSeconds <= 0) throw new IllegalArgumentException("ttlSeconds must be positive");
+        this.engine = engine;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxLifetimeNanos = TimeUnit.SECONDS.toNanos(Math.max(ttlSeconds, maxLifetimeSeconds));
+        this.maxHolds = maxHolds;
+        this.wheel = new TimingWheel("seat-hold-expiry", tickMillis, slots);
+    }
+
+    /** Builds from SEAT_HOLD_TTL_SECONDS, SEAT_HOLD_MAX_SECONDS, SEAT_HOLD_MAX_OPEN, SEAT_HOLD_TICK_MS and SEAT_HOLD_WHEEL_SLOTS. */
+    static SeatHolds fromEnv(BookingEngine engine) {
+        return new SeatHolds(engine,
+                Long.parseLong(DBmanager.env("SEAT_HOLD_TTL_SECONDS", "300")),
+                Long.parseLong(DBmanager.env("SEAT_HOLD_MAX_SECONDS", "900")),
+                Integer.parseInt(DBmanager.env("SEAT_HOLD_MAX_OPEN", "100000")),
+                Long.parseLong(DBmanager.env("SEAT_HOLD_TICK_MS", "1000")),
+                Integer.parseInt(DBmanager.env("SEAT_HOLD_WHEEL_SLOTS", "512"))
+        );
+    }
+
+    public SeatHold hold(int screeningId, BookingRequest req) {
+        if (open.incrementAndGet() > maxHolds) {
+            open.decrementAndGet();
+            throw new ServiceBusyException("too many open seat holds", 5);
+        }
+        BookingEngine.Claim claim;
+        try {
+            claim = engine.claim(screeningId, req);
+        } catch (RuntimeException e) {
+            open.decrementAndGet();
+            throw e;
+        }
+        SeatHold hold = new SeatHold(UUID.randomUUID().toString(), claim, ttlNanos, this);
+        holds.put(hold.getId(), hold);
+        wheel.schedule(hold);
+        return hold;
+    }
+
+    public SeatHold get(String id) {
+        SeatHold hold = holds.get(id);
+        if (hold == null) throw new NotFoundException("Hold", id);
+        return hold;
+    }
+
+    public SeatHold extend(String id) {
+        SeatHold hold = get(id);
+        if (!hold.extend(ttlNanos, maxLifetimeNanos)) throw new NotFoundException("Hold", id);
+        return hold;
+    }
+
+    /** Books the held seats; the hold is gone afterwards whether or not the booking succeeds. */
+    public Booking confirm(String id) {
+        SeatHold hold = end(id, true);
+        return engine.confirm(hold.claim);
+    }
+
+    public void release(String id) {
+        SeatHold hold = end(id, false);
+        engine.release(hold.claim);
+    }
+
+    /** Called once from the wheel thread when a hold runs out. */
+    void expired(SeatHold hold) {
+        holds.remove(hold.getId(), hold);
+        open.decrementAndGet();
+        engine.release(hold.claim);
+        expired.increment();
+    }
+
+    private SeatHold end(String id, boolean confirmed) {
+        SeatHold hold = get(id);
+        if (!hold.finish(confirmed)) throw new NotFoundException("Hold", id);
+        holds.remove(id, hold);
+        open.decrementAndGet();
+        return hold;
+    }
+
+    public int getActive() { return open.get(); }
+    public long getExpired() { return expired.sum(); }
+
+    @Override
+    public void close() {
+        wheel.close();
+    }
+}
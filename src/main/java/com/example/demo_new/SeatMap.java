@@ -0,0 +1,140 @@
+package com.example.demo_new;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Seat occupancy of one screening as a bitset, one bit per seat (0-based), 64 seats per word.
+ * Seats are claimed and released with compare-and-set on whole words, so concurrent bookings
+ * never block each other and a seat can be claimed by at most one caller.
+ */
+public final class SeatMap {
+    private final int capacity;
+    private final AtomicLongArray words;
+
+    public SeatMap(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.words = new AtomicLongArray((capacity + 63) >>> 6);
+    }
+
+    public int getCapacity() { return capacity; }
+
+    /**
+     * Claims all of the given seats or none of them.
+     * @param seats distinct 0-based seat indexes in ascending order
+     */
+    public boolean tryClaim(int[] seats) {
+        int i = 0;
+        while (i < seats.length) {
+            int word = seats[i] >>> 6;
+            int next = endOfWord(seats, i);
+            long mask = mask(seats, i, next);
+            if (!claimWord(word, mask)) {
+                // undo the words already claimed; nobody else can have cleared bits we own
+                if (i > 0) release(seats, 0, i);
+                return false;
+            }
+            i = next;
+        }
+        return true;
+    }
+
+    /**
+     * Releases seats claimed earlier. Throws IllegalStateException if any of them is not
+     * currently taken, which would mean a double release.
+     */
+    public void release(int[] seats) {
+        release(seats, 0, seats.length);
+    }
+
+    /** Marks seats taken unconditionally, when loading bookings from the database. */
+    void markTaken(int seat) {
+        int word = seat >>> 6;
+        long bit = 1L << (seat & 63);
+        long cur;
+        do {
+            cur = words.get(word);
+        } while (!words.compareAndSet(word, cur, cur | bit));
+    }
+
+    /** Marks a seat free unconditionally, when a booking is cancelled. */
+    void markFree(int seat) {
+        int word = seat >>> 6;
+        long bit = 1L << (seat & 63);
+        long cur;
+        do {
+            cur = words.get(word);
+        } while (!words.compareAndSet(word, cur, cur & ~bit));
+    }
+
+    /**
+     * Replaces the occupancy with the given 0-based seats plus those taken in {@code also}. Not
+     * atomic as a whole: callers keep every other writer of this map out while it runs.
+     */
+    void reset(List<Integer> seats, SeatMap also) {
+        long[] bits = new long[words.length()];
+        for (int seat : seats) bits[seat >>> 6] |= 1L << (seat & 63);
+        for (int w = 0; w < bits.length; w++) words.set(w, bits[w] | also.words.get(w));
+    }
+
+    public boolean isTaken(int seat) {
+        return (words.get(seat >>> 6) & (1L << (seat & 63))) != 0;
+    }
+
+    public int available() {
+        int taken = 0;
+        for (int i = 0; i < words.length(); i++) taken += Long.bitCount(words.get(i));
+        return capacity - taken;
+    }
+
+    /** Taken seats, 0-based and ascending; a snapshot that may be stale by the time it is returned. */
+    public List<Integer> taken() {
+        List<Integer> taken = new ArrayList<>();
+        for (int w = 0; w < words.length(); w++) {
+            long bits = words.get(w);
+            while (bits != 0) {
+                taken.add((w << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return taken;
+    }
+
+    private boolean claimWord(int word, long mask) {
+        while (true) {
+            long cur = words.get(word);
+            if ((cur & mask) != 0) return false;
+            if (words.compareAndSet(word, cur, cur | mask)) return true;
+        }
+    }
+
+    private void release(int[] seats, int from, int to) {
+        int i = from;
+        while (i < to) {
+            int word = seats[i] >>> 6;
+            int next = Math.min(endOfWord(seats, i), to);
+            long mask = mask(seats, i, next);
+            while (true) {
+                long cur = words.get(word);
+                if ((cur & mask) != mask) throw new IllegalStateException("releasing seats that are not taken");
+                if (words.compareAndSet(word, cur, cur & ~mask)) break;
+            }
+            i = next;
+        }
+    }
+
+    private static int endOfWord(int[] seats, int from) {
+        int word = seats[from] >>> 6;
+        int i = from + 1;
+        while (i < seats.length && seats[i] >>> 6 == word) i++;
+        return i;
+    }
+
+    private static long mask(int[] seats, int from, int to) {
+        long mask = 0;
+        for (int i = from; i < to; i++) mask |= 1L << (seats[i] & 63);
+        return mask;
+    }
+}
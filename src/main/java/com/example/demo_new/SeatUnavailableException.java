@@ -0,0 +1,8 @@
+package com.example.demo_new;
+
+/** Some requested seats are already taken; mapped to 409. */
+public class SeatUnavailableException extends RuntimeException {
+    public SeatUnavailableException(int screeningId) {
+        super("one or more seats of screening id=" + screeningId + " are already taken");
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.demo_new;
+
+/** The server is temporarily out of capacity; mapped to 503 with a Retry-After header. */
+public class ServiceBusyException extends RuntimeException {
+    private final int retryAfterSeconds;
+
+    public ServiceBusyException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() { return retryAfterSeconds; }
+}
@@ -0,0 +1,338 @@
+package com.example.demo_new;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Places screenings into cinema halls without overlaps, against a {@link HallSchedule} per hall kept
+ * in memory. A cinema's recent and upcoming screenings are loaded on first use, every cinema of a
+ * request in one query; after that conflict checks and free-slot searches never touch the database.
+ * A screening occupies its hall for the movie's duration, fixed when it is placed (screenings.ends_at),
+ * plus the cleaning gap. Screenings placed through other nodes are not in memory; the database's
+ * screenings_hall_overlap constraint rejects an overlapping movie all the same, and the cinemas involved
+ * are then reloaded. Deleted screenings (cascades from movie and cinema deletes included) arrive on
+ * {@link #CHANNEL} and free their slots.
+ */
+public class ShowtimeScheduler {
+    /** "cinema_id:screening_id" of each deleted screening, sent by the notify_screening_delete() trigger. */
+    public static final String CHANNEL = "screening_deletes";
+
+    public static final int DAYS_PER_WEEK = 7;
+    public static final int MAX_MOVIES = 1000;
+    public static final int MAX_HALLS = 100;
+    /** How far back screenings are kept and may be placed; also the longest screening considered. */
+    private static final long HISTORY_SECONDS = 86_400;
+    private static final int FREE_SLOT_SEARCH_DAYS = 28;
+
+    /** A screening in a hall, planned or loaded; id is 0 until it is inserted. */
+    public static final class Placement {
+        private int id;
+        private final int movieId;
+        private final int cinemaId;
+        private final String hall;
+        private final OffsetDateTime startsAt;
+        private final OffsetDateTime endsAt;
+        private final int seatRows;
+        private final int seatsPerRow;
+        HallSchedule.Slot slot;
+
+        public Placement(int id, int movieId, int cinemaId, String hall, OffsetDateTime startsAt, OffsetDateTime endsAt,
+                         int seatRows, int seatsPerRow) {
+            this.id = id;
+            this.movieId = movieId;
+            this.cinemaId = cinemaId;
+            this.hall = hall;
+            this.startsAt = startsAt;
+            this.endsAt = endsAt;
+            this.seatRows = seatRows;
+            this.seatsPerRow = seatsPerRow;
+        }
+
+        public int getId() { return id; }
+        public int getMovieId() { return movieId; }
+        public int getCinemaId() { return cinemaId; }
+        public String getHall() { return hall; }
+        public OffsetDateTime getStartsAt() { return startsAt; }
+        /** End of the movie; the hall is free again a cleaning gap later. */
+        public OffsetDateTime getEndsAt() { return endsAt; }
+        public int getSeatRows() { return seatRows; }
+        public int getSeatsPerRow() { return seatsPerRow; }
+    }
+
+    private final DBmanager db;
+    private final ZoneId zone;
+    private final LocalTime opensAt;
+    private final LocalTime closesAt;
+    private final long gapSeconds;
+    private final long stepSeconds;
+
+    private final ConcurrentHashMap<Integer, ConcurrentHashMap<String, HallSchedule>> cinemas = new ConcurrentHashMap<>();
+    private final Object loadLock = new Object();
+    private final LongAdder conflicts = new LongAdder();
+    private volatile SalesRollups rollups;
+
+    /**
+     * @param closesAt last screening must end by then; at or before opensAt means the next day
+     * @param stepMinutes start times are multiples of this many minutes
+     */
+    public ShowtimeScheduler(DBmanager db, ZoneId zone, LocalTime opensAt, LocalTime closesAt,
+                             int cleaningGapMinutes, int stepMinutes) {
+        if (cleaningGapMinutes < 0) throw new IllegalArgumentException("cleaningGapMinutes cannot be negative");
+        if (stepMinutes <= 0) throw new IllegalArgumentException("stepMinutes must be positive");
+        this.db = db;
+        this.zone = zone;
+        this.opensAt = opensAt;
+        this.closesAt = closesAt;
+        this.gapSeconds = cleaningGapMinutes * 60L;
+        this.stepSeconds = stepMinutes * 60L;
+    }
+
+    /** Builds from the SCHEDULE_* settings in .env. */
+    static ShowtimeScheduler fromEnv(DBmanager db) {
+        return new ShowtimeScheduler(db,
+                ZoneId.of(DBmanager.env("SCHEDULE_TIME_ZONE", "UTC")),
+                LocalTime.parse(DBmanager.env("SCHEDULE_OPENS_AT", "10:00")),
+                LocalTime.parse(DBmanager.env("SCHEDULE_CLOSES_AT", "23:30")),
+                Integer.parseInt(DBmanager.env("SCHEDULE_CLEANING_GAP_MINUTES", "15")),
+                Integer.parseInt(DBmanager.env("SCHEDULE_START_STEP_MINUTES", "5")));
+    }
+
+    /** Adds the seats of every screening placed from now on to the sales rollups. */
+    public void setRollups(SalesRollups rollups) {
+        this.rollups = rollups;
+    }
+
+    /** Screenings rejected because their hall was taken. */
+    public long getConflicts() { return conflicts.sum(); }
+
+    /** Halls with a schedule in memory. */
+    public int getHalls() {
+        int halls = 0;
+        for (Map<String, HallSchedule> cinema : cinemas.values()) halls += cinema.size();
+        return halls;
+    }
+
+    /**
+     * Inserts a screening if its hall is free from startsAt until the movie ends plus the cleaning
+     * gap; the caller has checked that the cinema exists.
+     * @throws ScheduleConflictException if it overlaps another screening in the hall
+     */
+    public Screening place(ScreeningCreateRequest req, Movie movie) {
+        long start = req.getStartsAt().toEpochSecond();
+        if (start < now() - HISTORY_SECONDS) throw new IllegalArgumentException("startsAt cannot be more than a day in the past");
+        load(List.of(req.getCinemaId()));
+        HallSchedule hall = hall(req.getCinemaId(), req.getHall());
+        long end = start + movie.getDurationMinutes() * 60L;
+        HallSchedule.Slot slot = hall.tryPlace(start, end + gapSeconds, 0);
+        if (slot == null) {
+            conflicts.increment();
+            HallSchedule.Slot taken = hall.conflict(start, end + gapSeconds);
+            throw new ScheduleConflictException(req.getCinemaId(), req.getHall(), taken == null ? 0 : taken.screeningId);
+        }
+        try {
+            Screening screening = db.createScreening(req, req.getStartsAt().plusMinutes(movie.getDurationMinutes()));
+            slot.screeningId = screening.getId();
+            offered(screening.getId(), screening.getMovieId(), screening.getCinemaId(), screening.getStartsAt(), screening.getCapacity());
+            return screening;
+        } catch (RuntimeException e) {
+            hall.remove(slot);
+            throw placementFailed(e, List.of(req.getCinemaId()));
+        }
+    }
+
+    /**
+     * Earliest start from {@code from} on, within opening hours, for a screening of the given length
+     * followed by the cleaning gap; empty if the hall is full for the next four weeks.
+     */
+    public Optional<FreeSlot> nextFreeSlot(int cinemaId, String hallName, OffsetDateTime from, int minutes) {
+        if (minutes <= 0) throw new IllegalArgumentException("minutes must be positive");
+        load(List.of(cinemaId));
+        HallSchedule hall = hall(cinemaId, hallName);
+        long length = minutes * 60L + gapSeconds;
+        LocalDate day = from.atZoneSameInstant(zone).toLocalDate().minusDays(1); // an overnight day may still be open
+        for (int i = 0; i <= FREE_SLOT_SEARCH_DAYS; i++, day = day.plusDays(1)) {
+            long start = hall.nextFree(Math.max(from.toEpochSecond(), opens(day)), length, closes(day) + gapSeconds, stepSeconds);
+            if (start >= 0) {
+                OffsetDateTime startsAt = toTime(start);
+                return Optional.of(new FreeSlot(cinemaId, hallName, startsAt, startsAt.plusMinutes(minutes)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Fills every hall of the given cinemas for seven days from weekStart: screenings follow each other
+     * from opening time, a cleaning gap apart, cycling through the movies (with a different first movie
+     * per cinema, day and hall), around any screenings already there. All of them are inserted in one
+     * transaction; if that fails nothing stays placed.
+     */
+    public List<Placement> scheduleWeek(LocalDate weekStart, List<Integer> cinemaIds, List<String> halls,
+                                        List<Movie> movies, int seatRows, int seatsPerRow) {
+        if (weekStart.atTime(opensAt).atZone(zone).toEpochSecond() < now() - HISTORY_SECONDS) {
+            throw new IllegalArgumentException("weekStart cannot be in the past");
+        }
+        load(cinemaIds);
+        Map<Integer, Map<String, HallSchedule>> schedules = new HashMap<>();
+        for (int cinemaId : cinemaIds) {
+            Map<String, HallSchedule> cinemaHalls = new HashMap<>();
+            for (String hall : halls) cinemaHalls.put(hall, hall(cinemaId, hall));
+            schedules.put(cinemaId, cinemaHalls);
+        }
+        List<Placement> planned = planWeek(schedules, weekStart, cinemaIds, halls, movies, seatRows, seatsPerRow);
+        try {
+            List<Screening> inserted = db.createScreenings(planned);
+            for (int i = 0; i < planned.size(); i++) {
+                Placement p = planned.get(i);
+                p.id = inserted.get(i).getId();
+                p.slot.screeningId = p.id;
+                offered(p.id, p.getMovieId(), p.getCinemaId(), p.getStartsAt(), p.getSeatRows() * p.getSeatsPerRow());
+            }
+            return planned;
+        } catch (RuntimeException e) {
+            unplace(schedules, planned);
+            throw placementFailed(e, cinemaIds);
+        }
+    }
+
+    /** The exception to rethrow; an overlap the database caught means memory is behind, so the cinemas are reloaded. */
+    private RuntimeException placementFailed(RuntimeException e, Collection<Integer> cinemaIds) {
+        if (!DBmanager.isExclusionViolation(e)) return e;
+        conflicts.increment();
+        for (int cinemaId : cinemaIds) cinemas.remove(cinemaId);
+        return new ScheduleConflictException(cinemaIds);
+    }
+
+    /** Frees the slot of a screening deleted from the database; payload as sent on {@link #CHANNEL}. */
+    public void deleted(String payload) {
+        String[] parts = payload.split(":");
+        if (parts.length != 2) return;
+        int cinemaId, screeningId;
+        try {
+            cinemaId = Integer.parseInt(parts[0]);
+            screeningId = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        Map<String, HallSchedule> halls = cinemas.get(cinemaId);
+        if (halls == null) return; // not loaded; a later load will not find it
+        for (HallSchedule hall : halls.values()) {
+            if (hall.removeScreening(screeningId)) return;
+        }
+    }
+
+    /** Forgets every schedule, e.g. after deletes may have been missed; each cinema is reloaded on next use. */
+    public void reset() {
+        cinemas.clear();
+    }
+
+    /** Plans and places the week into the given hall schedules without touching the database. */
+    List<Placement> planWeek(Map<Integer, Map<String, HallSchedule>> schedules, LocalDate weekStart, List<Integer> cinemaIds,
+                             List<String> halls, List<Movie> movies, int seatRows, int seatsPerRow) {
+        Movie shortest = movies.stream().min(Comparator.comparingInt(Movie::getDurationMinutes)).orElseThrow();
+        List<Placement> planned = new ArrayList<>();
+        long horizon = now() - 2 * HISTORY_SECONDS;
+        for (int c = 0; c < cinemaIds.size(); c++) {
+            int cinemaId = cinemaIds.get(c);
+            for (int h = 0; h < halls.size(); h++) {
+                HallSchedule hall = schedules.get(cinemaId).get(halls.get(h));
+                hall.pruneBefore(horizon);
+                for (int d = 0; d < DAYS_PER_WEEK; d++) {
+                    LocalDate day = weekStart.plusDays(d);
+                    long cursor = opens(day);
+                    long until = closes(day) + gapSeconds;
+                    int next = (c + d + h) % movies.size();
+                    while (true) {
+                        Movie movie = movies.get(next);
+                        long start = hall.nextFree(cursor, length(movie), until, stepSeconds);
+                        if (start < 0 && movie != shortest) {
+                            movie = shortest; // the rest of the day may still fit the shortest movie
+                            start = hall.nextFree(cursor, length(movie), until, stepSeconds);
+                        }
+                        if (start < 0) break;
+                        HallSchedule.Slot slot = hall.tryPlace(start, start + length(movie), 0);
+                        if (slot == null) continue; // taken meanwhile by a single placement; search again
+                        OffsetDateTime startsAt = toTime(start);
+                        Placement p = new Placement(0, movie.getId(), cinemaId, halls.get(h), startsAt,
+                                startsAt.plusMinutes(movie.getDurationMinutes()), seatRows, seatsPerRow);
+                        p.slot = slot;
+                        planned.add(p);
+                        cursor = slot.end;
+                        next = (next + 1) % movies.size();
+                    }
+                }
+            }
+        }
+        return planned;
+    }
+
+    private void offered(int screeningId, int movieId, int cinemaId, OffsetDateTime startsAt, int seats) {
+        SalesRollups rollups = this.rollups;
+        if (rollups != null) rollups.offered(screeningId, movieId, cinemaId, startsAt, seats);
+    }
+
+    private static void unplace(Map<Integer, Map<String, HallSchedule>> schedules, List<Placement> planned) {
+        for (Placement p : planned) schedules.get(p.getCinemaId()).get(p.getHall()).remove(p.slot);
+    }
+
+    /** Loads the schedules of the cinemas not yet in memory, all in one query. */
+    private void load(Collection<Integer> cinemaIds) {
+        if (cinemas.keySet().containsAll(cinemaIds)) return;
+        synchronized (loadLock) {
+            Set<Integer> missing = new LinkedHashSet<>(cinemaIds);
+            missing.removeAll(cinemas.keySet());
+            if (missing.isEmpty()) return;
+            // a screening starting two days ago can still reach into the last day's history
+            OffsetDateTime since = toTime(now() - 2 * HISTORY_SECONDS);
+            Map<Integer, ConcurrentHashMap<String, HallSchedule>> loaded = new HashMap<>();
+            for (int id : missing) loaded.put(id, new ConcurrentHashMap<>());
+            for (Placement p : db.findScheduledScreenings(missing, since)) {
+                HallSchedule hall = loaded.get(p.getCinemaId()).computeIfAbsent(p.getHall(), k -> new HallSchedule());
+                long start = p.getStartsAt().toEpochSecond();
+                long end = Math.max(p.getEndsAt().toEpochSecond() + gapSeconds, start + 1);
+                // rows placed before the scheduler existed may overlap; keep the first, they still exist
+                hall.tryPlace(start, end, p.getId());
+            }
+            cinemas.putAll(loaded);
+        }
+    }
+
+    private HallSchedule hall(int cinemaId, String hall) {
+        return cinemas.computeIfAbsent(cinemaId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(hall, k -> new HallSchedule());
+    }
+
+    private long length(Movie movie) {
+        return movie.getDurationMinutes() * 60L + gapSeconds;
+    }
+
+    private long opens(LocalDate day) {
+        return day.atTime(opensAt).atZone(zone).toEpochSecond();
+    }
+
+    private long closes(LocalDate day) {
+        LocalDate closingDay = closesAt.isAfter(opensAt) ? day : day.plusDays(1);
+        return closingDay.atTime(closesAt).atZone(zone).toEpochSecond();
+    }
+
+    private OffsetDateTime toTime(long epochSecond) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), zone);
+    }
+
+    private static long now() {
+        return Instant.now().getEpochSecond();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo_new;
+
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StartupConfig {
+
+    /** Startup database work, async unless DB_SCHEMA_SETUP_ASYNC=false in .env; run by initDatabase. */
+    @Bean
+    public SchemaSetup schemaSetup() {
+        return SchemaSetup.fromEnv();
+    }
+
+    /** The "schema" health indicator, part of the readiness group (application.properties). */
+    @Bean
+    public HealthIndicator schemaHealthIndicator(SchemaSetup schemaSetup) {
+        return schemaSetup::health;
+    }
+
+    @Bean
+    public StartupReport startupReport() {
+        return new StartupReport();
+    }
+}
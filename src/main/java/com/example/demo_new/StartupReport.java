@@ -0,0 +1,81 @@
+package com.example.demo_new;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.metrics.StartupStep;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Logs where boot time went once the application is ready: the JVM's own start, each top-level
+ * startup phase, and the beans that took longest to create, by self time (time spent in the
+ * bean's nested beans is charged to those). Needs the BufferingApplicationStartup set in main;
+ * the full timeline is at /actuator/startup.
+ */
+public class StartupReport implements ApplicationListener<ApplicationReadyEvent> {
+    private static final Logger LOG = LoggerFactory.getLogger(StartupReport.class);
+    private static final int SLOWEST_BEANS = 10;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (event.getApplicationContext().getApplicationStartup() instanceof BufferingApplicationStartup startup) {
+            Instant jvmStart = ProcessHandle.current().info().startInstant().orElse(null);
+            LOG.info(render(startup.getBufferedTimeline(), jvmStart, Instant.now()));
+        }
+    }
+
+    static String render(StartupTimeline timeline, Instant jvmStart, Instant ready) {
+        Map<Long, Duration> childTime = new HashMap<>();
+        for (StartupTimeline.TimelineEvent e : timeline.getEvents()) {
+            Long parent = e.getStartupStep().getParentId();
+            if (parent != null) childTime.merge(parent, e.getDuration(), Duration::plus);
+        }
+        Map<String, Duration> phases = new LinkedHashMap<>();
+        Duration beansSelf = Duration.ZERO;
+        List<Map.Entry<String, Duration>> beans = new ArrayList<>();
+        for (StartupTimeline.TimelineEvent e : timeline.getEvents()) {
+            StartupStep step = e.getStartupStep();
+            if (step.getParentId() == null) phases.merge(step.getName(), e.getDuration(), Duration::plus);
+            if (step.getName().equals("spring.beans.instantiate")) {
+                Duration self = e.getDuration().minus(childTime.getOrDefault(step.getId(), Duration.ZERO));
+                beansSelf = beansSelf.plus(self);
+                beans.add(Map.entry(tag(step, "beanName"), self));
+            }
+        }
+        beans.sort(Map.Entry.<String, Duration>comparingByValue(Comparator.reverseOrder()));
+
+        StringBuilder sb = new StringBuilder("startup report (ms):");
+        if (jvmStart != null) line(sb, "jvm start to application start", Duration.between(jvmStart, timeline.getStartTime()));
+        phases.forEach((name, time) -> line(sb, name, time));
+        line(sb, "bean instantiation, self time", beansSelf);
+        line(sb, "application start to ready", Duration.between(timeline.getStartTime(), ready));
+        if (jvmStart != null) line(sb, "jvm start to ready", Duration.between(jvmStart, ready));
+        sb.append("\n  slowest beans:");
+        for (int i = 0; i < Math.min(SLOWEST_BEANS, beans.size()); i++) {
+            sb.append(i == 0 ? " " : ", ").append(beans.get(i).getKey()).append(' ').append(beans.get(i).getValue().toMillis());
+        }
+        return sb.toString();
+    }
+
+    private static void line(StringBuilder sb, String name, Duration time) {
+        sb.append(String.format("%n  %-50s %6d", name, time.toMillis()));
+    }
+
+    private static String tag(StartupStep step, String key) {
+        for (StartupStep.Tag tag : step.getTags()) {
+            if (tag.getKey().equals(key)) return tag.getValue();
+        }
+        return "?";
+    }
+}
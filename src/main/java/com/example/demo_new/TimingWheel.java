@@ -0,0 +1,127 @@
+package com.example.demo_new;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel: timeouts hash by deadline into one of {@code slots} buckets and a single
+ * thread advances one bucket per tick, so scheduling and expiry are O(1) however many timeouts
+ * are pending. Deadlines more than one turn away wait out the extra turns in their bucket.
+ * <p>
+ * Timeouts are intrusive (the scheduled object is its own list node) and never removed early:
+ * a timeout that is no longer wanted says so from {@link Timeout#expire()}, and one whose
+ * deadline moved later is re-hashed when its old bucket comes round. Expiry fires up to one tick late.
+ */
+public class TimingWheel implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(TimingWheel.class);
+
+    public abstract static class Timeout {
+        private volatile long deadline; // System.nanoTime()
+        private long remainingRounds;   // wheel thread only
+        private Timeout next;           // wheel thread only
+
+        protected Timeout(long deadlineNanos) {
+            this.deadline = deadlineNanos;
+        }
+
+        protected long getDeadlineNanos() { return deadline; }
+
+        /** Moves the deadline; the wheel notices when the old deadline comes round. Callers synchronize. */
+        protected void setDeadlineNanos(long deadlineNanos) { this.deadline = deadlineNanos; }
+
+        /**
+         * Called on the wheel thread once the deadline has passed. Return false to stay scheduled,
+         * e.g. because the deadline was moved concurrently; return true when done with this timeout.
+         */
+        protected abstract boolean expire();
+    }
+
+    private final long tickNanos;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final long startTime = System.nanoTime();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick; // wheel thread only
+
+    /** @param slots rounded up to a power of two */
+    public TimingWheel(String name, long tickMillis, int slots) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis must be positive");
+        if (slots <= 0 || slots > (1 << 20)) throw new IllegalArgumentException("slots must be between 1 and 2^20");
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = 1;
+        while (size < slots) size <<= 1;
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /** Schedules a timeout; safe from any thread. Each timeout may be scheduled once. */
+    public void schedule(Timeout timeout) {
+        pending.add(timeout);
+    }
+
+    private void run() {
+        while (running) {
+            long tickEnd = startTime + (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = tickEnd - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, sleep);
+                if (!running) return;
+            }
+            Timeout t;
+            while ((t = pending.poll()) != null) place(t);
+            expireBucket((int) (tick & mask));
+            tick++;
+        }
+    }
+
+    private void place(Timeout t) {
+        long due = (t.deadline - startTime) / tickNanos; // tick whose bucket should hold it
+        long ticks = Math.max(due, tick);                 // already overdue: the current bucket
+        t.remainingRounds = (ticks - tick) / buckets.length;
+        int index = (int) (ticks & mask);
+        t.next = buckets[index];
+        buckets[index] = t;
+    }
+
+    private void expireBucket(int index) {
+        Timeout t = buckets[index];
+        buckets[index] = null;
+        long now = System.nanoTime();
+        while (t != null) {
+            Timeout next = t.next;
+            t.next = null;
+            if (t.remainingRounds > 0) {
+                t.remainingRounds--;
+                t.next = buckets[index];
+                buckets[index] = t;
+            } else if (t.deadline - now > 0 || !fire(t)) {
+                pending.add(t); // deadline moved since it was placed; re-hashed on the next tick
+            }
+            t = next;
+        }
+    }
+
+    private static boolean fire(Timeout t) {
+        try {
+            return t.expire();
+        } catch (RuntimeException e) {
+            LOG.warn("timeout expiry failed", e);
+            return true;
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.demo_new;
+
+import java.time.OffsetDateTime;
+
+/** A row carrying the version and updated_at columns that ETags and If-Match are derived from. */
+public interface Versioned {
+    int getId();
+    long getVersion();
+    OffsetDateTime getUpdatedAt();
+}
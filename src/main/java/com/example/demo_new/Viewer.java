@@ -1,9 +1,12 @@
 package com.example.demo_new;
 
+import java.time.OffsetDateTime;
 import java.util.Objects;
 
-public class Viewer {
+public class Viewer implements Versioned {
     private final int id;
+    private long version = 1;
+    private OffsetDateTime updatedAt;
     private String fullName;
     private int age;
     private String email;
@@ -36,6 +39,20 @@ public class Viewer {
     public String getEmail() { return email; }
     public void setEmail(String email) { this.email = email; }
 
+    public long getVersion() { return version; }
+    void setVersion(long version) { this.version = version; }
+
+    public OffsetDateTime getUpdatedAt() { return updatedAt; }
+    void setUpdatedAt(OffsetDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    /** A separate instance with the same state, so a cached row is never shared with callers. */
+    Viewer copy() {
+        Viewer copy = new Viewer(id, fullName, age, email);
+        copy.version = version;
+        copy.updatedAt = updatedAt;
+        return copy;
+    }
+
     public boolean canWatch(Movie movie) {
         return movie.isAllowedForAge(this.age);
     }
@@ -0,0 +1,11 @@
+package com.example.demo_new;
+
+/** DTO for one item of PUT /viewers/batch */
+public class ViewerBatchUpdateRequest extends ViewerUpdateRequest {
+    private int id;
+
+    public ViewerBatchUpdateRequest() {}
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+}
@@ -1,24 +1,130 @@
 package com.example.demo_new;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/viewers")
 public class ViewerController {
 
-    private final DBmanager db = new DBmanager();
+    private final DBmanager db;
+
+    public ViewerController(DBmanager db) {
+        this.db = db;
+    }
 
     @GetMapping
-    public List<Viewer> getAll() {
-        return db.getAllViewers();
+    public Page<? extends Versioned> getAll(@RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String after,
+                                            @RequestParam(required = false) String sort,
+                                            @RequestParam(required = false) Integer minAge,
+                                            @RequestParam(required = false) Integer maxAge,
+                                            @RequestParam(required = false) String ids,
+                                            @RequestParam(required = false) String fields,
+                                            WebRequest request) {
+        Projection<Viewer> projection = Projection.parse(fields, DBmanager.VIEWER_FIELDS);
+        if (ids != null) {
+            List<Integer> wanted = PageQuery.parseIds(ids, limit, after, sort, minAge, maxAge);
+            List<Viewer> rows = db.findViewersByIds(wanted);
+            Page<? extends Versioned> result = projection == null ? new Page<>(rows, null) : new Page<>(projection.applyAll(rows), null);
+            return ETags.notModified(request, result) ? null : result;
+        }
+        PageQuery page = PageQuery.parse(limit, after, sort, DBmanager.VIEWER_SORTS);
+        Page<? extends Versioned> result = projection == null
+                ? db.findViewers(page, minAge, maxAge)
+                : db.findViewers(page, minAge, maxAge, projection);
+        return ETags.notModified(request, result) ? null : result;
+    }
+
+    /** Ranked, paginated full-text search; every word of q matches as a prefix. */
+    @GetMapping("/search")
+    public Page<? extends Versioned> search(@RequestParam String q,
+                                            @RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String after,
+                                            @RequestParam(required = false) String fields,
+                                            WebRequest request) {
+        Projection<Viewer> projection = Projection.parse(fields, DBmanager.VIEWER_FIELDS);
+        SearchQuery query = SearchQuery.parse(q, limit, after);
+        Page<? extends Versioned> result = projection == null ? db.searchViewers(query) : db.searchViewers(query, projection);
+        return ETags.notModified(request, result) ? null : result;
+    }
+
+    /**
+     * Rows written and ids deleted since the token. Without since, returns only the current token:
+     * take it before loading the list, then poll with it to stay in sync.
+     */
+    @GetMapping("/changes")
+    public Changes<Viewer> changes(@RequestParam(required = false) String since,
+                                   @RequestParam(required = false) Integer limit) {
+        return db.findViewerChanges(ChangeQuery.parse(since, limit));
+    }
+
+    /** Streams the whole table; format is ndjson (default) or csv. */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+        return EntityExporter.export("viewers", format, RowWriters::viewerJson, RowWriters::viewerCsv,
+                RowWriters.VIEWER_CSV_HEADER, db::streamViewers);
+    }
+
+    /**
+     * Movies the viewer is old enough to watch, ordered by (ageRestriction, id), optionally within
+     * priceBetween and durationBetween ranges; answered from the in-memory eligibility index.
+     */
+    @GetMapping("/{id}/eligible-movies")
+    public Page<Movie> eligibleMovies(@PathVariable int id,
+                                      @RequestParam(required = false) Integer limit,
+                                      @RequestParam(required = false) String after,
+                                      @RequestParam(required = false) String priceBetween,
+                                      @RequestParam(required = false) String durationBetween,
+                                      WebRequest request) {
+        PageQuery page = PageQuery.parse(limit, after, "ageRestriction", DBmanager.MOVIE_SORTS);
+        double[] priceRange = priceBetween == null ? null : PageQuery.parseRange(priceBetween, "priceBetween");
+        double[] durationRange = durationBetween == null ? null : PageQuery.parseRange(durationBetween, "durationBetween");
+        Viewer viewer = db.findViewerById(id).orElseThrow(() -> new NotFoundException("Viewer", id));
+        Page<Movie> result = db.findEligibleMovies(viewer.getAge(), page, priceRange, durationRange);
+        return ETags.notModified(request, result) ? null : result;
+    }
+
+    /**
+     * First page of eligible movies for each of ids=1,2,3 that exists, in the given order; viewers of the
+     * same age share one lookup. Further pages come from /viewers/{id}/eligible-movies with the returned cursor.
+     */
+    @GetMapping("/eligible-movies")
+    public List<EligibleMovies> eligibleMoviesBatch(@RequestParam String ids,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    @RequestParam(required = false) String priceBetween,
+                                                    @RequestParam(required = false) String durationBetween) {
+        List<Integer> wanted = PageQuery.parseIds(ids);
+        PageQuery page = PageQuery.parse(limit, null, "ageRestriction", DBmanager.MOVIE_SORTS);
+        double[] priceRange = priceBetween == null ? null : PageQuery.parseRange(priceBetween, "priceBetween");
+        double[] durationRange = durationBetween == null ? null : PageQuery.parseRange(durationBetween, "durationBetween");
+        Map<Integer, Page<Movie>> byAge = new HashMap<>();
+        List<EligibleMovies> result = new ArrayList<>();
+        for (Viewer viewer : db.findViewersByIds(wanted)) {
+            Page<Movie> movies = byAge.computeIfAbsent(viewer.getAge(),
+                    age -> db.findEligibleMovies(age, page, priceRange, durationRange));
+            result.add(new EligibleMovies(viewer.getId(), movies));
+        }
+        return result;
     }
 
+    /** With fields, the cached row is cut down to them; the ETag stays the row's version. */
     @GetMapping("/{id}")
-    public Viewer getById(@PathVariable int id) {
-        return db.findViewerById(id).orElseThrow(() -> new NotFoundException("Viewer", id));
+    public Versioned getById(@PathVariable int id, @RequestParam(required = false) String fields, WebRequest request) {
+        Projection<Viewer> projection = Projection.parse(fields, DBmanager.VIEWER_FIELDS);
+        Viewer row = db.findViewerById(id).orElseThrow(() -> new NotFoundException("Viewer", id));
+        if (ETags.notModified(request, row)) return null;
+        return projection == null ? row : projection.apply(row);
     }
 
     @PostMapping
@@ -28,21 +134,60 @@ public class ViewerController {
         return db.createViewer(req);
     }
 
+    /** Optional If-Match makes the update conditional on the version the client last saw. */
     @PutMapping("/{id}")
-    public Viewer update(@PathVariable int id, @RequestBody ViewerUpdateRequest req) {
+    public ResponseEntity<Viewer> update(@PathVariable int id, @RequestBody ViewerUpdateRequest req,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         validateViewer(req.getFullName(), req.getAge(), req.getEmail());
-        boolean updated = db.updateViewer(id, req);
-        if (!updated) throw new NotFoundException("Viewer", id);
-        return db.findViewerById(id).orElseThrow(() -> new NotFoundException("Viewer", id));
+        Viewer updated = db.updateViewer(id, req, ETags.parseIfMatch(ifMatch))
+                .orElseThrow(() -> new NotFoundException("Viewer", id));
+        return ETags.ok(updated);
     }
 
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void delete(@PathVariable int id) {
-        boolean deleted = db.deleteViewer(id);
+    public void delete(@PathVariable int id,
+                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        boolean deleted = db.deleteViewer(id, ETags.parseIfMatch(ifMatch));
         if (!deleted) throw new NotFoundException("Viewer", id);
     }
 
+    @PostMapping("/batch")
+    public BatchResult createBatch(@RequestBody List<ViewerCreateRequest> reqs) {
+        BatchResult result = new BatchResult(reqs.size());
+        List<Integer> valid = result.validate(reqs, req -> validateViewer(req.getFullName(), req.getAge(), req.getEmail()));
+        List<Viewer> created = db.createViewers(valid.stream().map(reqs::get).toList());
+        for (int i = 0; i < valid.size(); i++) result.ok(valid.get(i), 201, created.get(i).getId());
+        return result;
+    }
+
+    @PutMapping("/batch")
+    public BatchResult updateBatch(@RequestBody List<ViewerBatchUpdateRequest> reqs) {
+        BatchResult result = new BatchResult(reqs.size());
+        List<Integer> valid = result.validate(reqs, req -> validateViewer(req.getFullName(), req.getAge(), req.getEmail()));
+        boolean[] updated = db.updateViewers(valid.stream().map(reqs::get).toList());
+        for (int i = 0; i < valid.size(); i++) {
+            int index = valid.get(i);
+            int id = reqs.get(index).getId();
+            if (updated[i]) result.ok(index, 200, id);
+            else result.fail(index, 404, id, new NotFoundException("Viewer", id).getMessage());
+        }
+        return result;
+    }
+
+    @DeleteMapping("/batch")
+    public BatchResult deleteBatch(@RequestBody List<Integer> ids) {
+        BatchResult result = new BatchResult(ids.size());
+        List<Integer> valid = result.validate(ids, id -> {});
+        Set<Integer> deleted = db.deleteViewers(valid.stream().map(ids::get).toList());
+        for (int index : valid) {
+            int id = ids.get(index);
+            if (deleted.contains(id)) result.ok(index, 204, id);
+            else result.fail(index, 404, id, new NotFoundException("Viewer", id).getMessage());
+        }
+        return result;
+    }
+
     private static void validateViewer(String fullName, int age, String email) {
         if (fullName == null || fullName.isBlank()) throw new IllegalArgumentException("fullName is required");
         if (age < 0) throw new IllegalArgumentException("age cannot be negative");
@@ -0,0 +1,23 @@
+package com.example.demo_new;
+
+import java.time.LocalDate;
+
+/** Response of POST /schedules/week: how many screenings were created. */
+public class WeekSchedule {
+    private final LocalDate weekStart;
+    private final int cinemas;
+    private final int halls;
+    private final int screenings;
+
+    public WeekSchedule(LocalDate weekStart, int cinemas, int halls, int screenings) {
+        this.weekStart = weekStart;
+        this.cinemas = cinemas;
+        this.halls = halls;
+        this.screenings = screenings;
+    }
+
+    public LocalDate getWeekStart() { return weekStart; }
+    public int getCinemas() { return cinemas; }
+    public int getHalls() { return halls; }
+    public int getScreenings() { return screenings; }
+}
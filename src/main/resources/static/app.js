@@ -1,3 +1,6 @@
+const PAGE_SIZE = 100;
+const SEARCH_DEBOUNCE_MS = 250;
+
 const state = {
   activeSection: "movies",
   filters: {
@@ -15,6 +18,21 @@ const state = {
     viewers: [],
     cinemas: [],
   },
+  cursors: {
+    movies: null,
+    viewers: null,
+    cinemas: null,
+  },
+  requestSeq: {
+    movies: 0,
+    viewers: 0,
+    cinemas: 0,
+  },
+  syncTokens: {
+    movies: null,
+    viewers: null,
+    cinemas: null,
+  },
   modal: null,
   deleteTarget: null,
 };
@@ -25,7 +43,6 @@ const ENTITY_CONFIG = {
     singular: "Movie",
     rowsId: "moviesRows",
     columns: 7,
-    searchFields: ["title", "description"],
     fields: [
       { name: "title", label: "Title", type: "text", required: true, placeholder: "Interstellar", full: true },
       { name: "description", label: "Description", as: "textarea", required: true, placeholder: "Sci-fi story...", full: true },
@@ -69,7 +86,6 @@ const ENTITY_CONFIG = {
     singular: "Viewer",
     rowsId: "viewersRows",
     columns: 5,
-    searchFields: ["fullName", "email"],
     fields: [
       { name: "fullName", label: "Full name", type: "text", required: true, placeholder: "Aruzhan A.", full: true },
       { name: "age", label: "Age", type: "number", required: true, min: "0", step: "1", defaultValue: "16" },
@@ -104,7 +120,6 @@ const ENTITY_CONFIG = {
     singular: "Cinema",
     rowsId: "cinemasRows",
     columns: 5,
-    searchFields: ["name", "city", "address"],
     fields: [
       { name: "name", label: "Name", type: "text", required: true, placeholder: "Kinopark", full: true },
       { name: "city", label: "City", type: "text", placeholder: "Almaty" },
@@ -192,7 +207,9 @@ async function api(path, options = {}) {
 
   if (!response.ok) {
     const message = parsed && parsed.message ? parsed.message : `HTTP ${response.status}`;
-    throw new Error(message);
+    const error = new Error(message);
+    error.status = response.status;
+    throw error;
   }
   return parsed;
 }
@@ -237,10 +254,15 @@ function setSection(section) {
   });
 }
 
+function formatLoadedCount(entity) {
+  const count = String(state.data[entity].length);
+  return state.cursors[entity] ? `${count}+` : count;
+}
+
 function renderMetrics() {
-  dom.metrics.movies.textContent = String(state.data.movies.length);
-  dom.metrics.viewers.textContent = String(state.data.viewers.length);
-  dom.metrics.cinemas.textContent = String(state.data.cinemas.length);
+  dom.metrics.movies.textContent = formatLoadedCount("movies");
+  dom.metrics.viewers.textContent = formatLoadedCount("viewers");
+  dom.metrics.cinemas.textContent = formatLoadedCount("cinemas");
 }
 
 function setLastSync() {
@@ -261,16 +283,6 @@ function renderLoadingRows(entity) {
     .join("");
 }
 
-function filterRecords(entity, records) {
-  const query = state.filters[entity].trim().toLowerCase();
-  if (!query) return records;
-
-  const fields = ENTITY_CONFIG[entity].searchFields;
-  return records.filter((record) =>
-    fields.some((field) => String(record[field] ?? "").toLowerCase().includes(query))
-  );
-}
-
 function renderEntity(entity) {
   const config = ENTITY_CONFIG[entity];
   const body = document.getElementById(config.rowsId);
@@ -280,13 +292,33 @@ function renderEntity(entity) {
     return;
   }
 
-  const records = filterRecords(entity, state.data[entity]);
+  const records = state.data[entity];
   if (records.length === 0) {
     body.innerHTML = `<tr><td class="empty-cell" colspan="${config.columns}">No records found</td></tr>`;
     return;
   }
 
-  body.innerHTML = records.map((record) => config.renderRow(record)).join("");
+  body.innerHTML = records.map((record) => config.renderRow(record)).join("") + renderLoadMoreRow(entity);
+}
+
+function renderLoadMoreRow(entity) {
+  if (!state.cursors[entity]) return "";
+  return `
+    <tr>
+      <td class="empty-cell" colspan="${ENTITY_CONFIG[entity].columns}">
+        <button class="btn btn-ghost" data-load-more="${entity}" type="button">Load more</button>
+      </td>
+    </tr>
+  `;
+}
+
+function buildPageUrl(entity, cursor) {
+  const query = state.filters[entity].trim();
+  const params = new URLSearchParams({ limit: String(PAGE_SIZE) });
+  if (query) params.set("q", query);
+  if (cursor) params.set("after", cursor);
+  const path = query ? `${ENTITY_CONFIG[entity].endpoint}/search` : ENTITY_CONFIG[entity].endpoint;
+  return `${path}?${params.toString()}`;
 }
 
 function renderAllTables() {
@@ -297,12 +329,18 @@ function renderAllTables() {
 
 async function loadEntity(entity, options = {}) {
   const { silent = false } = options;
-  const config = ENTITY_CONFIG[entity];
+  const requestId = ++state.requestSeq[entity];
   state.loading[entity] = true;
   renderEntity(entity);
   try {
-    const data = await api(config.endpoint);
-    state.data[entity] = Array.isArray(data) ? data : [];
+    // token first: anything written while the page loads is replayed by the next syncEntity
+    const changes = await api(`${ENTITY_CONFIG[entity].endpoint}/changes`);
+    const page = await api(buildPageUrl(entity, null));
+    // a newer search started while this one was in flight
+    if (requestId !== state.requestSeq[entity]) return false;
+    state.data[entity] = page && Array.isArray(page.items) ? page.items : [];
+    state.cursors[entity] = page ? page.nextCursor : null;
+    state.syncTokens[entity] = changes ? changes.nextToken : null;
     renderMetrics();
     setLastSync();
     return true;
@@ -312,8 +350,69 @@ async function loadEntity(entity, options = {}) {
     }
     return false;
   } finally {
-    state.loading[entity] = false;
+    if (requestId === state.requestSeq[entity]) {
+      state.loading[entity] = false;
+      renderEntity(entity);
+    }
+  }
+}
+
+async function loadMore(entity) {
+  const cursor = state.cursors[entity];
+  if (!cursor) return;
+  const requestId = state.requestSeq[entity];
+  try {
+    const page = await api(buildPageUrl(entity, cursor));
+    if (requestId !== state.requestSeq[entity]) return;
+    state.data[entity] = state.data[entity].concat(page.items);
+    state.cursors[entity] = page.nextCursor;
+    renderMetrics();
     renderEntity(entity);
+  } catch (error) {
+    showToast("error", `Failed to load more ${entity}`, error.message);
+  }
+}
+
+function applyChanges(entity, changes) {
+  const deleted = new Set(changes.deletedIds);
+  const records = state.data[entity].filter((item) => !deleted.has(Number(item.id)));
+  const indexById = new Map(records.map((item, index) => [Number(item.id), index]));
+  // new rows belong at the end only when the whole unfiltered table is loaded
+  const appendNew = !state.cursors[entity] && !state.filters[entity].trim();
+  changes.items.forEach((item) => {
+    const index = indexById.get(Number(item.id));
+    if (index !== undefined) {
+      records[index] = item;
+    } else if (appendNew) {
+      indexById.set(Number(item.id), records.length);
+      records.push(item);
+    }
+  });
+  state.data[entity] = records;
+}
+
+async function syncEntity(entity) {
+  if (!state.syncTokens[entity]) return loadEntity(entity);
+  const requestId = state.requestSeq[entity];
+  try {
+    let hasMore = true;
+    while (hasMore) {
+      const params = new URLSearchParams({ since: state.syncTokens[entity] });
+      const changes = await api(`${ENTITY_CONFIG[entity].endpoint}/changes?${params.toString()}`);
+      if (requestId !== state.requestSeq[entity]) return false;
+      applyChanges(entity, changes);
+      state.syncTokens[entity] = changes.nextToken;
+      hasMore = changes.hasMore;
+    }
+    renderMetrics();
+    setLastSync();
+    renderEntity(entity);
+    return true;
+  } catch (error) {
+    // 410: the token outlived the deletion log
+    if (error.status === 410) return loadEntity(entity);
+    showToast("error", `Failed to sync ${entity}`, error.message);
+    return false;
   }
 }
 
@@ -434,15 +533,18 @@ async function submitEntityForm() {
   }
 
   try {
+    let saved;
     if (mode === "create") {
-      await api(config.endpoint, { method: "POST", body: payload });
+      saved = await api(config.endpoint, { method: "POST", body: payload });
       showToast("success", `${config.singular} created`, "Record saved successfully.");
     } else {
-      await api(`${config.endpoint}/${id}`, { method: "PUT", body: payload });
+      saved = await api(`${config.endpoint}/${id}`, { method: "PUT", body: payload });
       showToast("success", `${config.singular} updated`, "Changes saved successfully.");
     }
     closeEntityModal();
-    await loadEntity(entity);
+    // show our own write at once; syncEntity then picks up it and anything else that changed
+    applyChanges(entity, { items: [saved], deletedIds: [] });
+    await syncEntity(entity);
   } catch (error) {
     showToast("error", `Failed to save ${config.singular.toLowerCase()}`, error.message);
   }
@@ -479,7 +581,8 @@ async function executeDelete() {
     await api(`${config.endpoint}/${id}`, { method: "DELETE" });
     showToast("success", `${config.singular} deleted`, `Record #${id} removed.`);
     closeDeleteConfirm();
-    await loadEntity(entity);
+    applyChanges(entity, { items: [], deletedIds: [id] });
+    await syncEntity(entity);
   } catch (error) {
     showToast("error", `Failed to delete ${config.singular.toLowerCase()}`, error.message);
   }
@@ -492,11 +595,13 @@ function bindEvents() {
     setSection(button.dataset.section);
   });
 
+  const searchTimers = {};
   dom.searches.forEach((input) => {
     input.addEventListener("input", (event) => {
       const entity = event.target.dataset.entity;
       state.filters[entity] = event.target.value;
-      renderEntity(entity);
+      clearTimeout(searchTimers[entity]);
+      searchTimers[entity] = setTimeout(() => loadEntity(entity), SEARCH_DEBOUNCE_MS);
     });
   });
 
@@ -513,6 +618,12 @@ function bindEvents() {
       return;
     }
 
+    const loadMoreButton = event.target.closest("[data-load-more]");
+    if (loadMoreButton) {
+      loadMore(loadMoreButton.dataset.loadMore);
+      return;
+    }
+
     const actionButton = event.target.closest("[data-row-action]");
     if (actionButton) {
       handleRowAction(
@@ -0,0 +1,160 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchLoaderTest {
+    private final List<List<Integer>> queries = Collections.synchronizedList(new ArrayList<>());
+
+    /** Every id above zero exists, as "row <id>". */
+    private Map<Integer, String> rows(List<Integer> ids) {
+        queries.add(ids);
+        Map<Integer, String> rows = new HashMap<>();
+        for (int id : ids) if (id > 0) rows.put(id, "row " + id);
+        return rows;
+    }
+
+    private static Thread load(BatchLoader<String> loader, int id, Map<Integer, Optional<String>> results) {
+        return Thread.ofPlatform().start(() -> results.put(id, loader.load(id)));
+    }
+
+    @Test
+    void aLoneLookupDoesNotWaitForCompany() {
+        BatchLoader<String> loader = new BatchLoader<>(this::rows, TimeUnit.SECONDS.toMicros(5), 100);
+        long start = System.nanoTime();
+        assertEquals(Optional.of("row 7"), loader.load(7));
+        assertEquals(Optional.empty(), loader.load(-1));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "nothing was running, so nothing to wait for");
+        assertEquals(List.of(List.of(7), List.of(-1)), queries);
+        assertEquals(2, loader.getLookups());
+        assertEquals(2, loader.getQueries());
+    }
+
+    @Test
+    void lookupsArrivingWhileAQueryRunsShareTheNextOne() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchLoader<String> loader = new BatchLoader<>(ids -> {
+            if (ids.contains(1)) {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return rows(ids);
+        }, TimeUnit.SECONDS.toMicros(5), 3);
+
+        Map<Integer, Optional<String>> results = Collections.synchronizedMap(new HashMap<>());
+        Thread first = load(loader, 1, results);
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        List<Thread> joined = new ArrayList<>();
+        for (int id = 2; id <= 4; id++) joined.add(load(loader, id, results));
+        for (Thread t : joined) t.join(TimeUnit.SECONDS.toMillis(3)); // a full batch does not wait out the window
+        assertFalse(joined.stream().anyMatch(Thread::isAlive));
+
+        release.countDown();
+        first.join();
+        assertEquals(List.of(1), queries.get(1));
+        assertEquals(Set.of(2, 3, 4), new HashSet<>(queries.get(0)));
+        assertEquals(Optional.of("row 3"), results.get(3));
+        assertEquals(4, loader.getLookups());
+        assertEquals(2, loader.getQueries());
+    }
+
+    @Test
+    void aBatchIsServedWhenTheWindowEnds() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchLoader<String> loader = new BatchLoader<>(ids -> {
+            if (ids.contains(1)) {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return rows(ids);
+        }, TimeUnit.MILLISECONDS.toMicros(50), 100);
+
+        Map<Integer, Optional<String>> results = Collections.synchronizedMap(new HashMap<>());
+        Thread first = load(loader, 1, results);
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        assertEquals(Optional.of("row 2"), loader.load(2));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        release.countDown();
+        first.join();
+        assertEquals(List.of(List.of(2), List.of(1)), queries);
+    }
+
+    @Test
+    void aFailedQueryFailsEveryLookupInTheBatch() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchLoader<String> loader = new BatchLoader<>(ids -> {
+            if (ids.contains(1)) {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return rows(ids);
+            }
+            throw new IllegalStateException("connection refused");
+        }, TimeUnit.SECONDS.toMicros(5), 2);
+
+        Thread first = load(loader, 1, Collections.synchronizedMap(new HashMap<>()));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        List<AtomicReference<RuntimeException>> failures = List.of(new AtomicReference<>(), new AtomicReference<>());
+        List<Thread> joined = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            AtomicReference<RuntimeException> failure = failures.get(i);
+            int id = i + 2;
+            joined.add(Thread.ofPlatform().start(() -> {
+                try {
+                    loader.load(id);
+                } catch (RuntimeException e) {
+                    failure.set(e);
+                }
+            }));
+        }
+        for (Thread t : joined) t.join();
+        for (AtomicReference<RuntimeException> failure : failures) {
+            assertTrue(failure.get() instanceof IllegalStateException, String.valueOf(failure.get()));
+            assertEquals("connection refused", failure.get().getMessage());
+        }
+        release.countDown();
+        first.join();
+        assertThrows(IllegalArgumentException.class, () -> new BatchLoader<>(this::rows, 100, 0));
+    }
+
+    @Test
+    void idsAreParsedInRequestOrderWithoutDuplicates() {
+        assertEquals(List.of(3, 1, 2), PageQuery.parseIds("3,1, 2,,3", null, null));
+        for (String bad : List.of("", " , ", "1,x", "0", "-4", "1.5")) {
+            assertThrows(IllegalArgumentException.class, () -> PageQuery.parseIds(bad), bad);
+        }
+        StringBuilder tooMany = new StringBuilder();
+        for (int id = 1; id <= PageQuery.MAX_LIMIT + 1; id++) tooMany.append(id).append(',');
+        assertThrows(IllegalArgumentException.class, () -> PageQuery.parseIds(tooMany.toString()));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> PageQuery.parseIds("1", null, 20));
+        assertEquals("ids cannot be combined with paging, sort or filters", e.getMessage());
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchResultTest {
+
+    /** Movies in memory; records what reached the database so rejected items can be checked not to. */
+    private static class FakeDb extends DBmanager {
+        final Set<Integer> existing = new HashSet<>(List.of(1, 2, 3));
+        final List<String> written = new ArrayList<>();
+        int nextId = 100;
+
+        @Override
+        public List<Movie> createMovies(List<MovieCreateRequest> reqs) {
+            List<Movie> created = new ArrayList<>();
+            for (MovieCreateRequest req : reqs) {
+                written.add(req.getTitle());
+                created.add(new Movie(++nextId, req.getTitle(), req.getDescription(), req.getDurationMinutes(),
+                        req.getAgeRestriction(), req.getTicketPrice()));
+            }
+            return created;
+        }
+
+        @Override
+        public boolean[] updateMovies(List<MovieBatchUpdateRequest> reqs) {
+            boolean[] updated = new boolean[reqs.size()];
+            for (int i = 0; i < reqs.size(); i++) {
+                written.add(reqs.get(i).getTitle());
+                updated[i] = existing.contains(reqs.get(i).getId());
+            }
+            return updated;
+        }
+
+        @Override
+        public Set<Integer> deleteMovies(List<Integer> ids) {
+            Set<Integer> deleted = new HashSet<>();
+            for (int id : ids) {
+                written.add("delete " + id);
+                if (existing.remove(id)) deleted.add(id);
+            }
+            return deleted;
+        }
+    }
+
+    private final FakeDb db = new FakeDb();
+    private final MovieController movies = new MovieController(db);
+
+    private static MovieCreateRequest create(String title, int duration) {
+        MovieCreateRequest req = new MovieCreateRequest();
+        req.setTitle(title);
+        req.setDescription("");
+        req.setDurationMinutes(duration);
+        req.setTicketPrice(1500);
+        return req;
+    }
+
+    private static MovieBatchUpdateRequest update(int id, String title) {
+        MovieBatchUpdateRequest req = new MovieBatchUpdateRequest();
+        req.setId(id);
+        req.setTitle(title);
+        req.setDescription("");
+        req.setDurationMinutes(90);
+        return req;
+    }
+
+    private static List<Integer> statuses(BatchResult result) {
+        return result.getItems().stream().map(BatchItemResult::getStatus).toList();
+    }
+
+    @Test
+    void invalidItemsFailAloneAndTheRestAreWritten() {
+        BatchResult result = movies.createBatch(Arrays.asList(create("Dune", 155), create(" ", 100), null, create("Up", 0), create("Heat", 170)));
+
+        assertEquals(List.of(201, 400, 400, 400, 201), statuses(result));
+        assertEquals(List.of("Dune", "Heat"), db.written, "rejected items never reach the database");
+        assertEquals(2, result.getSucceeded());
+        assertEquals(3, result.getFailed());
+
+        List<BatchItemResult> items = result.getItems();
+        assertEquals(List.of(101, 102), List.of(items.get(0).getId(), items.get(4).getId()), "ids come back in request order");
+        assertEquals("title is required", items.get(1).getError());
+        assertEquals("item is required", items.get(2).getError());
+        assertEquals("durationMinutes must be positive", items.get(3).getError());
+        assertNull(items.get(3).getId());
+        for (int i = 0; i < items.size(); i++) assertEquals(i, items.get(i).getIndex());
+    }
+
+    @Test
+    void updatesOfMissingRowsAre404AndTheOthersGoThrough() {
+        BatchResult result = movies.updateBatch(List.of(update(1, "One"), update(7, "Seven"), update(2, ""), update(3, "Three")));
+
+        assertEquals(List.of(200, 404, 400, 200), statuses(result));
+        assertEquals(List.of("One", "Seven", "Three"), db.written);
+        assertEquals(Integer.valueOf(7), result.getItems().get(1).getId());
+        assertEquals(new NotFoundException("Movie", 7).getMessage(), result.getItems().get(1).getError());
+    }
+
+    @Test
+    void deletesReportEachIdInRequestOrder() {
+        BatchResult result = movies.deleteBatch(Arrays.asList(3, 9, null, 1));
+
+        assertEquals(List.of(204, 404, 400, 204), statuses(result));
+        assertEquals(List.of(3, 9, 1), List.of(result.getItems().get(0).getId(), result.getItems().get(1).getId(), result.getItems().get(3).getId()));
+        assertEquals(Set.of(2), db.existing);
+    }
+
+    @Test
+    void aBatchOverTheLimitIsRefusedWhole() {
+        List<MovieCreateRequest> reqs = new ArrayList<>();
+        for (int i = 0; i <= BatchResult.MAX_ITEMS; i++) reqs.add(create("Movie " + i, 90));
+        assertThrows(IllegalArgumentException.class, () -> movies.createBatch(reqs));
+        assertEquals(List.of(), db.written);
+        assertEquals(BatchResult.MAX_ITEMS, new BatchResult(BatchResult.MAX_ITEMS).getItems().size());
+    }
+
+    @Test
+    void anEmptyBatchSucceedsWithNothingToDo() {
+        BatchResult result = movies.deleteBatch(List.of());
+        assertEquals(List.of(), result.getItems());
+        assertEquals(0, result.getSucceeded() + result.getFailed());
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingChangeTest {
+
+    @Test
+    void parsesTheTriggerPayload() {
+        BookingChange change = BookingChange.parse("insert:42:node-a:3,4,17");
+        assertNotNull(change);
+        assertTrue(change.isBooked());
+        assertEquals(42, change.getScreeningId());
+        assertEquals("node-a", change.getNode());
+        assertArrayEquals(new int[]{3, 4, 17}, change.getSeats());
+        assertFalse(change.isLocal());
+
+        BookingChange cancelled = BookingChange.parse("delete:7::1");
+        assertFalse(cancelled.isBooked());
+        assertEquals("", cancelled.getNode());
+    }
+
+    @Test
+    void recognisesThisNode() {
+        assertTrue(BookingChange.parse("delete:1:" + BookingChange.NODE + ":5").isLocal());
+    }
+
+    @Test
+    void rejectsOtherPayloads() {
+        assertNull(BookingChange.parse("movies:update:1:2"));
+        assertNull(BookingChange.parse("update:1::5"));
+        assertNull(BookingChange.parse("insert:x::5"));
+        assertNull(BookingChange.parse("insert:1::5,a"));
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingJournalTest {
+    private static final int RECORD = BookingJournal.RECORD_SIZE;
+
+    /** Keeps claims and bookings in memory; inserts fail while down and wait while blocked. */
+    private static class FakeDb extends DBmanager {
+        final Set<String> taken = ConcurrentHashMap.newKeySet();
+        final Map<Integer, Booking> bookings = new ConcurrentHashMap<>();
+        final AtomicInteger nextId = new AtomicInteger();
+        final AtomicInteger releases = new AtomicInteger();
+        final CountDownLatch inserting = new CountDownLatch(1);
+        volatile boolean down;
+        volatile CountDownLatch blocked;
+
+        @Override
+        public List<Integer> reserveBookingIds(int count) {
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < count; i++) ids.add(nextId.incrementAndGet());
+            return ids;
+        }
+
+        @Override
+        public synchronized Set<Integer> claimJournaledSeats(List<Booking> group, String journalId) {
+            Set<Integer> rejected = new HashSet<>();
+            for (Booking b : group) {
+                if (b.getSeats().stream().anyMatch(seat -> taken.contains(b.getScreeningId() + ":" + seat))) {
+                    rejected.add(b.getId());
+                } else {
+                    b.getSeats().forEach(seat -> taken.add(b.getScreeningId() + ":" + seat));
+                }
+            }
+            return rejected;
+        }
+
+        @Override
+        public void releaseSeatClaims(List<Integer> bookingIds) {
+        }
+
+        @Override
+        public int releaseJournalClaims(String journalId) {
+            releases.incrementAndGet();
+            return 0;
+        }
+
+        @Override
+        public List<Booking> insertJournaledBookings(List<Booking> batch) {
+            inserting.countDown();
+            CountDownLatch blocked = this.blocked;
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            if (down) throw new IllegalStateException("database is down");
+            List<Booking> inserted = new ArrayList<>();
+            for (Booking b : batch) {
+                if (bookings.putIfAbsent(b.getId(), b) == null) inserted.add(b);
+            }
+            return inserted;
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    private final List<BookingJournal> journals = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        journals.forEach(BookingJournal::close);
+    }
+
+    private BookingJournal open(FakeDb db) {
+        BookingJournal journal = new BookingJournal(db, dir, 64 * RECORD, 0, 16, 100);
+        journals.add(journal);
+        journal.recover();
+        return journal;
+    }
+
+    /** A database that never takes a booking, so everything appended stays in the journal. */
+    private static FakeDb down() {
+        FakeDb db = new FakeDb();
+        db.down = true;
+        return db;
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".journal")).sorted().toList();
+        }
+    }
+
+    private Path segment() throws Exception {
+        return segments().getFirst();
+    }
+
+    private void corrupt(int offset) throws Exception {
+        try (FileChannel channel = FileChannel.open(segment(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, offset);
+            b.put(0, (byte) (b.get(0) ^ 0x5A)).rewind();
+            channel.write(b, offset);
+            channel.force(true);
+        }
+    }
+
+    @Test
+    void recordsRoundTripAndDamageIsDetected() {
+        Booking booking = new Booking(7, 3, 9, List.of(1, 2, 40), 27.5,
+                OffsetDateTime.of(2026, 5, 1, 20, 15, 0, 0, ZoneOffset.UTC));
+        ByteBuffer record = ByteBuffer.allocate(RECORD);
+        BookingJournal.encode(booking, 11, record);
+
+        Booking decoded = BookingJournal.decode(record, 0);
+        assertNotNull(decoded);
+        assertEquals(7, decoded.getId());
+        assertEquals(3, decoded.getScreeningId());
+        assertEquals(9, decoded.getViewerId());
+        assertEquals(List.of(1, 2, 40), decoded.getSeats());
+        assertEquals(27.5, decoded.getTotalPrice(), 0.0);
+        assertEquals(booking.getCreatedAt().toInstant(), decoded.getCreatedAt().toInstant());
+        assertFalse(BookingJournal.isVoid(record, 0));
+
+        record.put(30, (byte) (record.get(30) ^ 1));
+        assertNull(BookingJournal.decode(record, 0), "checksum mismatch");
+        assertNull(BookingJournal.decode(ByteBuffer.allocate(RECORD), 0), "empty slot");
+    }
+
+    @Test
+    void theNextJournalReplaysWhatWasNotDrained() throws Exception {
+        BookingJournal first = open(down());
+        Booking a = first.append(1, 1, List.of(1, 2), 20);
+        Booking b = first.append(1, 2, List.of(3), 10);
+        first.close();
+
+        FakeDb db = new FakeDb();
+        open(db);
+        assertEquals(Set.of(a.getId(), b.getId()), db.bookings.keySet());
+        assertEquals(List.of(1, 2), db.bookings.get(a.getId()).getSeats());
+        assertEquals(1, Files.list(dir).filter(p -> p.getFileName().toString().endsWith(".journal")).count(),
+                "replayed segments are deleted");
+    }
+
+    @Test
+    void replayStopsAtATornRecord() throws Exception {
+        BookingJournal first = open(down());
+        Booking a = first.append(1, 1, List.of(1), 10);
+        Booking b = first.append(1, 1, List.of(2), 10);
+        first.append(1, 1, List.of(3), 10);
+        first.close();
+        corrupt(2 * RECORD + 20);
+
+        FakeDb db = new FakeDb();
+        BookingJournal next = open(db);
+        assertEquals(Set.of(a.getId(), b.getId()), db.bookings.keySet());
+        assertEquals(0, next.getUnreadable());
+        assertEquals(1, db.releases.get());
+        assertEquals(1, segments().size());
+    }
+
+    @Test
+    void replaySkipsADamagedRecordAndKeepsItsSegmentAndClaims() throws Exception {
+        BookingJournal first = open(down());
+        Booking a = first.append(1, 1, List.of(1), 10);
+        first.append(1, 1, List.of(2), 10);
+        Booking c = first.append(1, 1, List.of(3), 10);
+        first.close();
+        Path damaged = segment();
+        corrupt(RECORD + 20);
+
+        FakeDb db = new FakeDb();
+        BookingJournal next = open(db);
+        assertEquals(Set.of(a.getId(), c.getId()), db.bookings.keySet(), "records after the damage are replayed");
+        assertEquals(1, next.getUnreadable());
+        assertEquals(0, db.releases.get(), "the skipped booking's claimed seats stay taken");
+        assertEquals(2, segments().size());
+        assertEquals(damaged, segment(), "the damaged segment is kept");
+    }
+
+    @Test
+    void aBookingWhoseSeatIsTakenElsewhereIsRefusedAndNeverReplayed() {
+        FakeDb db = down();
+        db.taken.add("1:5");
+        BookingJournal first = open(db);
+        assertThrows(SeatUnavailableException.class, () -> first.append(1, 1, List.of(4, 5), 20));
+        Booking kept = first.append(1, 1, List.of(4), 10);
+        assertEquals(1, first.getConflicts());
+        first.close();
+
+        FakeDb next = new FakeDb();
+        open(next);
+        assertEquals(Set.of(kept.getId()), next.bookings.keySet());
+    }
+
+    @Test
+    void theDrainSkipsAndCountsAnUnreadableRecord() throws Exception {
+        FakeDb db = new FakeDb();
+        db.blocked = new CountDownLatch(1);
+        BookingJournal journal = open(db);
+        Booking a = journal.append(1, 1, List.of(1), 10);
+        assertTrue(db.inserting.await(2, TimeUnit.SECONDS));
+        // the drain holds a alone; b and c come after it
+        journal.append(1, 1, List.of(2), 10);
+        Booking c = journal.append(1, 1, List.of(3), 10);
+        corrupt(RECORD + 20);
+        db.blocked.countDown();
+
+        assertTrue(journal.awaitDrained(2000));
+        assertEquals(Set.of(a.getId(), c.getId()), db.bookings.keySet());
+        assertEquals(1, journal.getUnreadable());
+        assertEquals(0, journal.getLag());
+    }
+
+    @Test
+    void closeCommitsWhatIsQueuedAndReplaysOnlyAcknowledgedBookings() throws Exception {
+        BookingJournal first = open(down());
+        Set<Integer> acknowledged = ConcurrentHashMap.newKeySet();
+        AtomicInteger seats = new AtomicInteger();
+        List<Thread> buyers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            buyers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 50; i++) {
+                    try {
+                        acknowledged.add(first.append(1, 1, List.of(seats.incrementAndGet()), 10).getId());
+                    } catch (ServiceBusyException e) {
+                        return;
+                    }
+                }
+            }));
+        }
+        Thread.sleep(5);
+        first.close();
+        for (Thread buyer : buyers) buyer.join();
+        assertThrows(ServiceBusyException.class, () -> first.append(1, 1, List.of(9999), 10));
+
+        FakeDb db = new FakeDb();
+        open(db);
+        assertEquals(acknowledged, db.bookings.keySet());
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.demo_new;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeQueryTest {
+    private static final Pattern LIMIT = Pattern.compile("LIMIT (\\d+)");
+
+    /** One write or delete of a movie, by the transaction that made it. */
+    private record Change(long xid, int id, boolean deleted) {}
+
+    // what the database holds: the snapshot xmin, the pruned horizon and the change log of movies
+    private long xmin;
+    private Long prunedXid;
+    private final List<Change> log = new ArrayList<>();
+    private final DBmanager db = new DBmanager(dataSource());
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void write(long xid, int id) {
+        log.add(new Change(xid, id, false));
+    }
+
+    private void delete(long xid, int id) {
+        log.add(new Change(xid, id, true));
+    }
+
+    private Changes<Movie> changes(String since, Integer limit) {
+        return db.findMovieChanges(ChangeQuery.parse(since, limit));
+    }
+
+    private static List<Integer> ids(Changes<Movie> changes) {
+        return changes.getItems().stream().map(Movie::getId).toList();
+    }
+
+    /** Answers the statements changesSince runs from the fields above, honouring their bound parameters. */
+    private DataSource dataSource() {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                (ds, method, args) -> method.getName().equals("getConnection") ? connection() : null);
+    }
+
+    private Connection connection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (c, method, args) -> method.getName().equals("prepareStatement") ? statement((String) args[0]) : null);
+    }
+
+    private PreparedStatement statement(String sql) {
+        Map<Integer, Object> params = new HashMap<>();
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (s, method, args) -> {
+                    if (method.getName().startsWith("set") && args.length == 2 && args[0] instanceof Integer index) {
+                        params.put(index, args[1]);
+                    }
+                    return method.getName().equals("executeQuery") ? resultSet(query(sql, params)) : null;
+                });
+    }
+
+    private List<Map<String, Object>> query(String sql, Map<Integer, Object> params) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        if (sql.contains("pg_snapshot_xmin")) {
+            rows.add(Map.of("xmin", Long.toString(xmin)));
+        } else if (sql.contains("sync_horizon")) {
+            if (prunedXid != null) rows.add(Map.of("pruned_xid", prunedXid.toString()));
+        } else {
+            boolean tombstones = sql.contains("deleted_rows");
+            int from = tombstones ? 2 : 1;
+            long afterXid = Long.parseLong((String) params.get(from));
+            int afterId = (Integer) params.get(from + 1);
+            long bound = Long.parseLong((String) params.get(from + 2));
+            Matcher limit = LIMIT.matcher(sql);
+            assertTrue(limit.find(), sql);
+            log.stream()
+                    .filter(c -> c.deleted() == tombstones)
+                    .filter(c -> c.xid() > afterXid || (c.xid() == afterXid && c.id() > afterId))
+                    .filter(c -> c.xid() < bound)
+                    .sorted(Comparator.comparingLong(Change::xid).thenComparingInt(Change::id))
+                    .limit(Integer.parseInt(limit.group(1)))
+                    .forEach(c -> rows.add(tombstones ? tombstone(c) : movie(c)));
+        }
+        return rows;
+    }
+
+    private static Map<String, Object> movie(Change c) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", c.id());
+        row.put("version", 1L);
+        row.put("updated_at", null);
+        row.put("title", "Movie " + c.id());
+        row.put("description", "");
+        row.put("duration", 90);
+        row.put("age_restriction", 0);
+        row.put("price", 1500.0);
+        row.put("change_pos", Long.toString(c.xid()));
+        return row;
+    }
+
+    private static Map<String, Object> tombstone(Change c) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", c.id());
+        row.put("change_pos", Long.toString(c.xid()));
+        return row;
+    }
+
+    /** Columns by label or by 1-based position, in the order the row map lists them. */
+    private static ResultSet resultSet(List<Map<String, Object>> rows) {
+        int[] at = {-1};
+        return (ResultSet) Proxy.newProxyInstance(ChangeQueryTest.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (r, method, args) -> {
+                    if (method.getName().equals("next")) return ++at[0] < rows.size();
+                    if (!method.getName().startsWith("get") || args == null) return null;
+                    Map<String, Object> row = rows.get(at[0]);
+                    Object value = args[0] instanceof Integer index ? new ArrayList<>(row.values()).get(index - 1) : row.get(args[0]);
+                    return switch (method.getName()) {
+                        case "getString" -> value == null ? null : value.toString();
+                        case "getInt" -> ((Number) value).intValue();
+                        case "getLong" -> ((Number) value).longValue();
+                        case "getDouble" -> ((Number) value).doubleValue();
+                        default -> value;
+                    };
+                });
+    }
+
+    @Test
+    void withoutATokenOnlyTheCurrentPositionIsReturned() {
+        xmin = 100;
+        write(90, 1);
+        Changes<Movie> start = changes(null, null);
+        assertEquals(List.of(), start.getItems());
+        assertEquals(List.of(), start.getDeletedIds());
+        assertFalse(start.isHasMore());
+        assertEquals(encode("chg|100|0"), start.getNextToken());
+
+        xmin = 120;
+        write(100, 2);
+        delete(110, 1);
+        Changes<Movie> next = changes(start.getNextToken(), null);
+        assertEquals(List.of(2), ids(next), "written at or after the position the token was taken at");
+        assertEquals(List.of(1), next.getDeletedIds());
+    }
+
+    @Test
+    void transactionsStillRunningAreLeftForALaterCall() {
+        xmin = 50;
+        String token = changes(null, null).getNextToken();
+        write(52, 1);
+        write(60, 2); // committed
+        xmin = 55;    // 55 is still running, so nothing from 55 on may be handed out yet
+        Changes<Movie> first = changes(token, null);
+        assertEquals(List.of(1), ids(first));
+        assertEquals(encode("chg|55|0"), first.getNextToken(), "caught up to the bound, not to the last row");
+
+        write(55, 3); // 55 commits after 60, below the token that was handed out before it
+        xmin = 70;
+        Changes<Movie> second = changes(first.getNextToken(), null);
+        assertEquals(List.of(3, 2), ids(second), "nothing committed behind a token is lost");
+        assertEquals(encode("chg|70|0"), second.getNextToken());
+    }
+
+    @Test
+    void writesAndDeletesArePagedInTransactionOrder() {
+        xmin = 100;
+        write(10, 5);
+        delete(10, 7);
+        write(11, 1);
+        delete(12, 3);
+        write(12, 4);
+
+        Changes<Movie> page = changes(encode("chg|9|0"), 2);
+        assertEquals(List.of(5), ids(page));
+        assertEquals(List.of(7), page.getDeletedIds());
+        assertTrue(page.isHasMore());
+        assertEquals(encode("chg|10|7"), page.getNextToken(), "the last change delivered");
+
+        page = changes(page.getNextToken(), 2);
+        assertEquals(List.of(1), ids(page));
+        assertEquals(List.of(3), page.getDeletedIds());
+        assertTrue(page.isHasMore());
+
+        page = changes(page.getNextToken(), 2);
+        assertEquals(List.of(4), ids(page));
+        assertFalse(page.isHasMore());
+        assertEquals(encode("chg|100|0"), page.getNextToken());
+    }
+
+    @Test
+    void aTokenFromBeforeThePrunedTombstonesMustResync() {
+        xmin = 100;
+        prunedXid = 40L;
+        write(45, 1);
+        ResyncRequiredException e = assertThrows(ResyncRequiredException.class, () -> changes(encode("chg|40|9"), null));
+        assertThrows(ResyncRequiredException.class, () -> changes(encode("chg|12|0"), null));
+        assertEquals(List.of(1), ids(changes(encode("chg|41|0"), null)));
+
+        HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (r, method, args) -> "/movies/changes");
+        ResponseEntity<ApiError> response = new GlobalExceptionHandler().handleResync(e, request);
+        assertEquals(410, response.getStatusCode().value());
+        assertTrue(response.getBody().getMessage().contains("reload"));
+    }
+
+    @Test
+    void tokensAndLimitsAreChecked() {
+        ChangeQuery query = ChangeQuery.parse(ChangeQuery.token(1234567890123L, 42), 10);
+        assertTrue(query.hasSince());
+        assertEquals(1234567890123L, query.getAfterXid());
+        assertEquals(42, query.getAfterId());
+        assertEquals(10, query.getLimit());
+        assertEquals(PageQuery.MAX_LIMIT, ChangeQuery.parse(null, null).getLimit());
+        assertFalse(ChangeQuery.parse(" ", null).hasSince());
+
+        for (String bad : List.of("%%%", encode("chg|1"), encode("chg|x|1"), encode("chg|1|y"), encode("rank|1|1"), encode("chg|1|1|1"))) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ChangeQuery.parse(bad, null), bad);
+            assertEquals("invalid since token", e.getMessage());
+        }
+        assertThrows(IllegalArgumentException.class, () -> ChangeQuery.parse(null, 0));
+        assertThrows(IllegalArgumentException.class, () -> ChangeQuery.parse(null, PageQuery.MAX_LIMIT + 1));
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeStreamTest {
+
+    /** Keeps every frame it is sent as text, with a change event's JSON shown as entity#id. */
+    private static class RecordingEmitter extends SseEmitter {
+        final List<String> frames = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch sending = new CountDownLatch(1);
+        volatile CountDownLatch gate;
+        volatile boolean broken;
+        volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            if (broken) throw new IOException("Broken pipe");
+            StringBuilder frame = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                frame.append(part.getData() instanceof ChangeEvent e ? e.getEntity() + "#" + e.getId() : part.getData());
+            }
+            frames.add(frame.toString());
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+            super.complete();
+        }
+    }
+
+    /** Hands out recording emitters, in subscription order. */
+    private static class RecordingStream extends ChangeStream {
+        final List<RecordingEmitter> emitters = new ArrayList<>();
+
+        RecordingStream(int bufferSize, int maxSubscribers, long heartbeatSeconds) {
+            super(bufferSize, maxSubscribers, heartbeatSeconds);
+        }
+
+        @Override
+        SseEmitter newEmitter() {
+            RecordingEmitter emitter = new RecordingEmitter();
+            emitters.add(emitter);
+            return emitter;
+        }
+
+        RecordingEmitter subscribed(Set<String> entities) {
+            subscribe(entities);
+            return emitters.get(emitters.size() - 1);
+        }
+    }
+
+    private final List<AutoCloseable> closing = new ArrayList<>();
+
+    @AfterEach
+    void close() throws Exception {
+        for (AutoCloseable c : closing) c.close();
+    }
+
+    private RecordingStream stream(int bufferSize, long heartbeatSeconds) {
+        RecordingStream stream = new RecordingStream(bufferSize, 100, heartbeatSeconds);
+        closing.add(stream);
+        return stream;
+    }
+
+    private static void awaitFrames(RecordingEmitter emitter, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (emitter.frames.size() < count) {
+            assertTrue(System.nanoTime() < deadline, "waiting for " + count + " frames, got " + emitter.frames);
+            Thread.sleep(1);
+        }
+    }
+
+    private static ChangeEvent updated(String entity, int id) {
+        return new ChangeEvent(entity, "updated", id, 2L);
+    }
+
+    private static String frame(String type, String data) {
+        return "event:" + type + "\ndata:" + data + "\n\n";
+    }
+
+    @Test
+    void notificationPayloadsAreParsed() {
+        ChangeEvent update = ChangeEvent.parse("movies:update:5:3");
+        assertEquals("movies", update.getEntity());
+        assertEquals("updated", update.getType());
+        assertEquals(5, update.getId());
+        assertEquals(Long.valueOf(3), update.getVersion());
+        assertEquals("created", ChangeEvent.parse("viewers:insert:1:1").getType());
+
+        ChangeEvent delete = ChangeEvent.parse("cinemas:delete:7:");
+        assertEquals("deleted", delete.getType());
+        assertNull(delete.getVersion());
+
+        for (String foreign : List.of("", "movies:update:5", "movies:truncate:5:1", "movies:update:x:1", "movies:update:5:1:1")) {
+            assertNull(ChangeEvent.parse(foreign), foreign);
+        }
+    }
+
+    @Test
+    void eventsReachOnlyTheSubscribersOfTheirEntity() throws Exception {
+        RecordingStream stream = stream(16, 3600);
+        RecordingEmitter all = stream.subscribed(null);
+        RecordingEmitter movies = stream.subscribed(Set.of("movies"));
+        RecordingEmitter viewers = stream.subscribed(Set.of("viewers"));
+
+        stream.publish(updated("movies", 1));
+        stream.publish(new ChangeEvent("cinemas", "deleted", 4, null));
+        awaitFrames(all, 2);
+        awaitFrames(movies, 1);
+        assertEquals(List.of(frame("updated", "movies#1"), frame("deleted", "cinemas#4")), all.frames);
+        assertEquals(List.of(frame("updated", "movies#1")), movies.frames);
+        assertEquals(List.of(), viewers.frames);
+
+        stream.resyncAll();
+        awaitFrames(viewers, 1);
+        assertEquals(List.of(frame("resync", "resync")), viewers.frames);
+    }
+
+    @Test
+    void aSlowSubscriberGetsOneResyncInsteadOfABacklog() throws Exception {
+        RecordingStream stream = stream(2, 3600);
+        RecordingEmitter fast = stream.subscribed(null);
+        RecordingEmitter slow = stream.subscribed(null);
+        slow.gate = new CountDownLatch(1);
+
+        stream.publish(updated("movies", 1));
+        assertTrue(slow.sending.await(5, TimeUnit.SECONDS));
+        awaitFrames(fast, 1);
+        for (int id = 2; id <= 5; id++) { // 2 and 3 fill the slow queue, 4 overflows it
+            stream.publish(updated("movies", id));
+            awaitFrames(fast, id); // the slow one holds nobody else back
+        }
+        assertEquals(1, stream.getDropped());
+
+        slow.gate.countDown();
+        awaitFrames(slow, 3);
+        assertEquals(List.of(frame("updated", "movies#1"), frame("resync", "resync"), frame("updated", "movies#5")), slow.frames);
+        assertEquals(2, stream.getSubscribers());
+    }
+
+    @Test
+    void heartbeatsAreCommentsAndAGoneClientIsDropped() throws Exception {
+        RecordingStream stream = stream(16, 1);
+        RecordingEmitter open = stream.subscribed(null);
+        RecordingEmitter gone = stream.subscribed(null);
+        awaitFrames(open, 1);
+        assertEquals(":heartbeat\n\n", open.frames.get(0));
+
+        gone.broken = true;
+        stream.publish(updated("movies", 1));
+        awaitFrames(open, 2);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (stream.getSubscribers() > 1) {
+            assertTrue(System.nanoTime() < deadline, "the broken subscriber was not removed");
+            Thread.sleep(1);
+        }
+        assertTrue(gone.completed);
+        assertFalse(open.completed);
+    }
+
+    @Test
+    void subscribersBeyondTheCapAreTurnedAway() {
+        ChangeStream stream = new RecordingStream(2, 1, 3600);
+        closing.add(stream);
+        stream.subscribe(null);
+        ServiceBusyException e = assertThrows(ServiceBusyException.class, () -> stream.subscribe(Set.of("movies")));
+        assertEquals(5, e.getRetryAfterSeconds());
+        assertEquals(1, stream.getSubscribers());
+    }
+
+    /** A listener connection whose notifications, or failures, the test hands over one poll at a time. */
+    private static class FakeDb extends DBmanager {
+        final BlockingQueue<Object> polls = new LinkedBlockingQueue<>();
+        final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger connects = new AtomicInteger();
+
+        @Override
+        Connection openListenerConnection() {
+            connects.incrementAndGet();
+            PGConnection pg = (PGConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PGConnection.class},
+                    (p, method, args) -> {
+                        Object poll = polls.poll((Integer) args[0], TimeUnit.MILLISECONDS);
+                        if (poll instanceof SQLException e) throw e;
+                        return poll;
+                    });
+            Statement stmt = (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class},
+                    (s, method, args) -> method.getName().equals("execute") ? executed.add((String) args[0]) : null);
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (c, method, args) -> switch (method.getName()) {
+                        case "createStatement" -> stmt;
+                        case "unwrap" -> pg;
+                        default -> null;
+                    });
+        }
+    }
+
+    private static PGNotification notification(String channel, String payload) {
+        return (PGNotification) Proxy.newProxyInstance(ChangeStreamTest.class.getClassLoader(), new Class<?>[]{PGNotification.class},
+                (n, method, args) -> switch (method.getName()) {
+                    case "getName" -> channel;
+                    case "getParameter" -> payload;
+                    default -> 0;
+                });
+    }
+
+    @Test
+    void theListenerEvictsAndFansOutCommittedChangesAndResyncsAfterReconnecting() throws Exception {
+        FakeDb db = new FakeDb();
+        RecordingStream stream = stream(16, 3600);
+        RecordingEmitter emitter = stream.subscribed(null);
+        @SuppressWarnings("unchecked")
+        EntityCache<Movie> movies = (EntityCache<Movie>) db.getCaches().get("movies");
+        AtomicInteger loads = new AtomicInteger();
+        movies.put(1, new Movie(1, "Cached", "", 90, 0, 1500));
+
+        ChangeListener listener = new ChangeListener(db, stream);
+        closing.add(0, listener);
+        listener.start();
+        db.polls.add(new PGNotification[]{
+                notification(ChangeEvent.CHANNEL, "not ours"),
+                notification(ChangeEvent.CHANNEL, "movies:update:1:2")
+        });
+        awaitFrames(emitter, 1);
+        assertEquals(frame("updated", "movies#1"), emitter.frames.get(0));
+        movies.get(1, id -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        assertEquals(1, loads.get(), "the changed row was evicted");
+        assertTrue(db.executed.contains("LISTEN " + ChangeEvent.CHANNEL));
+
+        db.polls.add(new SQLException("connection lost"));
+        awaitFrames(emitter, 2);
+        assertEquals(frame("resync", "resync"), emitter.frames.get(1), "changes may have been missed while reconnecting");
+        assertEquals(2, db.connects.get());
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CinemaShardsTest {
+    private static final Comparator<Cinema> BY_NAME = Comparator.comparing((Cinema c) -> c.getName(),
+            (a, b) -> Arrays.compareUnsigned(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8)))
+            .thenComparingInt(Cinema::getId);
+
+    /** One shard's cinemas in memory, paged the way queryPage pages them: keyset after the cursor, limit + 1. */
+    private static class FakeShard extends DBmanager {
+        final List<Cinema> cinemas = new ArrayList<>();
+
+        @Override
+        public Page<Cinema> findCinemas(PageQuery page, String city) {
+            Comparator<Cinema> order = page.sortName().equals("id") ? Comparator.comparingInt(Cinema::getId) : BY_NAME;
+            if (page.isDescending()) order = order.reversed();
+            List<Cinema> rows = new ArrayList<>();
+            for (Cinema c : cinemas) {
+                if (city != null && !c.getCity().equals(city)) continue;
+                if (page.afterId() != null && order.compare(c, cursorRow(page)) <= 0) continue;
+                rows.add(c);
+            }
+            rows.sort(order);
+            if (rows.size() <= page.getLimit()) return new Page<>(rows, null);
+            rows = new ArrayList<>(rows.subList(0, page.getLimit()));
+            Cinema last = rows.get(rows.size() - 1);
+            return new Page<>(rows, page.cursor(page.sortName().equals("id") ? null : last.getName(), last.getId()));
+        }
+
+        /** A row standing for the cursor: its sort value and id. */
+        private static Cinema cursorRow(PageQuery page) {
+            Cinema row = new Cinema(page.afterId(), "cursor", "", "");
+            if (page.afterValue() != null) row.setName((String) page.afterValue());
+            return row;
+        }
+
+        @Override
+        List<String> findCinemaCities() {
+            return cinemas.stream().map(Cinema::getCity).distinct().toList();
+        }
+    }
+
+    private final List<FakeShard> fakes = List.of(new FakeShard(), new FakeShard(), new FakeShard());
+    private final CinemaShards shards = new CinemaShards(new ArrayList<>(fakes), Map.of("almaty", 0, "astana", 1));
+
+    @AfterEach
+    void close() {
+        shards.close();
+    }
+
+    private List<Cinema> seed(String... names) {
+        List<Cinema> all = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            int shard = i % fakes.size();
+            Cinema c = new Cinema(shard + CinemaShards.MAX_SHARDS * (i + 1), names[i], "City " + shard, "Street " + i);
+            fakes.get(shard).cinemas.add(c);
+            all.add(c);
+        }
+        return all;
+    }
+
+    /** Every page from the first one on, following nextCursor. */
+    private List<Integer> walk(String sort, int limit) {
+        List<Integer> ids = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            Page<Cinema> page = shards.findCinemas(PageQuery.parse(limit, after, sort, DBmanager.CINEMA_SORTS), null);
+            assertTrue(page.getItems().size() <= limit);
+            for (Cinema c : page.getItems()) ids.add(c.getId());
+            after = page.getNextCursor();
+            assertTrue(++pages < 100, "the cursor must move on");
+        } while (after != null);
+        return ids;
+    }
+
+    @Test
+    void pagesMergeIntoOneOrderAcrossShards() {
+        List<Cinema> all = seed("Kino", "arena", "Arena", "Öskemen", "Zvezda", "Kino", "Mega", "Arena", "Chaplin", "Kinopark");
+        List<Cinema> byName = new ArrayList<>(all);
+        byName.sort(BY_NAME);
+        List<Integer> expected = byName.stream().map(Cinema::getId).toList();
+
+        for (int limit = 1; limit <= 11; limit++) {
+            assertEquals(expected, walk("name", limit), "limit " + limit);
+            assertEquals(expected.reversed(), walk("-name", limit), "descending, limit " + limit);
+        }
+    }
+
+    @Test
+    void pagesByIdInterleaveTheShards() {
+        List<Cinema> all = seed("a", "b", "c", "d", "e", "f", "g");
+        List<Integer> expected = all.stream().map(Cinema::getId).sorted().toList();
+        assertEquals(expected, walk(null, 3));
+        assertEquals(expected.reversed(), walk("-id", 2));
+    }
+
+    @Test
+    void theLastPageHasNoCursor() {
+        seed("a", "b", "c");
+        Page<Cinema> page = shards.findCinemas(PageQuery.parse(3, null, null, DBmanager.CINEMA_SORTS), null);
+        assertEquals(3, page.getItems().size());
+        assertNull(page.getNextCursor());
+        assertNotNull(shards.findCinemas(PageQuery.parse(2, null, null, DBmanager.CINEMA_SORTS), null).getNextCursor());
+    }
+
+    @Test
+    void citiesOnAShardTheyNoLongerRouteToAreReported() {
+        String hashed = "Shymkent";
+        int home = shards.indexForCity(hashed);
+        int other = home == 1 ? 2 : 1;
+        assertEquals(0, shards.indexForCity(" ALMATY "));
+
+        assertEquals(List.of(), shards.misrouted(List.of(List.of("Almaty", "almaty"), List.of("Astana"), List.of())));
+        List<List<String>> cities = new ArrayList<>(List.of(List.<String>of(), List.<String>of(), List.<String>of()));
+        cities.set(home, List.of(hashed));
+        cities.set(other, List.of("Almaty"));
+        assertEquals(List.of("Almaty is on shard " + other + " but routes to shard 0"), shards.misrouted(cities));
+        cities.set(home, List.of());
+        cities.set(other, List.of(hashed));
+        assertEquals(1, shards.misrouted(cities).size());
+    }
+}
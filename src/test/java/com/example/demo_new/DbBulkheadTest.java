@@ -0,0 +1,116 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DbBulkheadTest {
+
+    /** A caller that takes a permit, notes its name, holds the permit a moment and gives it back. */
+    private static Thread caller(DbBulkhead bulkhead, String name, List<String> order) {
+        return Thread.ofPlatform().start(() -> {
+            bulkhead.acquire();
+            try {
+                order.add(name);
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {
+            } finally {
+                bulkhead.release();
+            }
+        });
+    }
+
+    private static void awaitQueued(DbBulkhead bulkhead, int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (bulkhead.getQueued() < queued) {
+            assertTrue(System.nanoTime() < deadline, "waiting for " + queued + " queued callers");
+            Thread.sleep(1);
+        }
+        Thread.sleep(50); // from counted to parked on the semaphore
+    }
+
+    @Test
+    void callsBeyondThePermitsWaitForOneToBeReleased() throws Exception {
+        DbBulkhead bulkhead = new DbBulkhead(2, 10, 2000, 1);
+        bulkhead.acquire();
+        bulkhead.acquire();
+        assertEquals(2, bulkhead.getActive());
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        Thread waiter = caller(bulkhead, "waiter", order);
+        awaitQueued(bulkhead, 1);
+        assertEquals(List.of(), order);
+
+        bulkhead.release();
+        waiter.join();
+        assertEquals(List.of("waiter"), order);
+        assertEquals(0, bulkhead.getQueued());
+        assertEquals(1, bulkhead.getActive());
+        assertEquals(0, bulkhead.getRejected());
+    }
+
+    @Test
+    void aFullQueueRejectsAtOnce() throws Exception {
+        DbBulkhead bulkhead = new DbBulkhead(1, 1, 2000, 3);
+        bulkhead.acquire();
+        Thread waiter = caller(bulkhead, "waiter", new ArrayList<>());
+        awaitQueued(bulkhead, 1);
+
+        long start = System.nanoTime();
+        ServiceBusyException e = assertThrows(ServiceBusyException.class, bulkhead::acquire);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500), "no wait when the queue is full");
+        assertEquals(3, e.getRetryAfterSeconds());
+        assertEquals(1, bulkhead.getRejected());
+        assertEquals(1, bulkhead.getQueued());
+
+        bulkhead.release();
+        waiter.join();
+    }
+
+    @Test
+    void aWaitPastTheLimitIsRejected() {
+        DbBulkhead bulkhead = new DbBulkhead(1, 10, 50, 1);
+        bulkhead.acquire();
+        long start = System.nanoTime();
+        assertThrows(ServiceBusyException.class, bulkhead::acquire);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(0, bulkhead.getQueued(), "a rejected caller leaves the queue");
+        assertEquals(1, bulkhead.getActive());
+    }
+
+    @Test
+    void waitersGetPermitsInArrivalOrder() throws Exception {
+        DbBulkhead bulkhead = new DbBulkhead(1, 10, 2000, 1);
+        bulkhead.acquire();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> waiters = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            waiters.add(caller(bulkhead, "waiter " + i, order));
+            awaitQueued(bulkhead, i + 1);
+        }
+        bulkhead.release();
+        for (Thread waiter : waiters) waiter.join();
+        assertEquals(List.of("waiter 0", "waiter 1", "waiter 2", "waiter 3"), order);
+    }
+
+    @Test
+    void aNewCallerDoesNotBargePastAQueuedOne() throws Exception {
+        DbBulkhead bulkhead = new DbBulkhead(1, 10, 2000, 1);
+        bulkhead.acquire();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        Thread waiter = caller(bulkhead, "waiter", order);
+        awaitQueued(bulkhead, 1);
+
+        bulkhead.release();
+        bulkhead.acquire(); // the permit just freed belongs to the waiter
+        order.add("newcomer");
+        bulkhead.release();
+        waiter.join();
+        assertEquals(List.of("waiter", "newcomer"), order);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.demo_new;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.lang.reflect.Proxy;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ETagsTest {
+
+    /** Movies with versions, checked the way the conditional UPDATE and DELETE check them. */
+    private static class FakeDb extends DBmanager {
+        final Map<Integer, Movie> movies = new HashMap<>();
+        final List<Long> expected = new ArrayList<>();
+
+        @Override
+        public Optional<Movie> updateMovie(int id, MovieUpdateRequest req, Long expectedVersion) {
+            expected.add(expectedVersion);
+            Movie row = movies.get(id);
+            if (row == null) return Optional.empty();
+            if (expectedVersion != null && row.getVersion() != expectedVersion) {
+                throw new PreconditionFailedException("Movie " + id + " is at version " + row.getVersion());
+            }
+            Movie updated = new Movie(id, req.getTitle(), req.getDescription(), req.getDurationMinutes(),
+                    req.getAgeRestriction(), req.getTicketPrice());
+            updated.setVersion(row.getVersion() + 1);
+            updated.setUpdatedAt(OffsetDateTime.of(2026, 10, 18, 12, 0, 0, 0, ZoneOffset.UTC));
+            movies.put(id, updated);
+            return Optional.of(updated);
+        }
+
+        @Override
+        public boolean deleteMovie(int id, Long expectedVersion) {
+            expected.add(expectedVersion);
+            Movie row = movies.get(id);
+            if (row == null) return false;
+            if (expectedVersion != null && row.getVersion() != expectedVersion) {
+                throw new PreconditionFailedException("Movie " + id + " is at version " + row.getVersion());
+            }
+            movies.remove(id);
+            return true;
+        }
+    }
+
+    private final FakeDb db = new FakeDb();
+    private final MovieController controller = new MovieController(db);
+
+    private static Movie movie(int id, long version) {
+        Movie m = new Movie(id, "Movie " + id, "", 90, 0, 1500);
+        m.setVersion(version);
+        return m;
+    }
+
+    private static MovieUpdateRequest change(String title) {
+        MovieUpdateRequest req = new MovieUpdateRequest();
+        req.setTitle(title);
+        req.setDescription("");
+        req.setDurationMinutes(100);
+        return req;
+    }
+
+    /** A request whose If-None-Match holds the given tag; checkNotModified compares it like Spring does. */
+    private static WebRequest ifNoneMatch(String tag) {
+        return (WebRequest) Proxy.newProxyInstance(ETagsTest.class.getClassLoader(), new Class<?>[]{WebRequest.class},
+                (r, method, args) -> switch (method.getName()) {
+                    case "checkNotModified" -> args[0] instanceof String etag && etag.equals(tag);
+                    case "getHeader" -> HttpHeaders.IF_NONE_MATCH.equals(args[0]) ? tag : null;
+                    default -> null;
+                });
+    }
+
+    private static HttpServletRequest request(String uri) {
+        return (HttpServletRequest) Proxy.newProxyInstance(ETagsTest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class},
+                (r, method, args) -> method.getName().equals("getRequestURI") ? uri : null);
+    }
+
+    @Test
+    void ifMatchNamesTheVersionTheClientSaw() {
+        assertNull(ETags.parseIfMatch(null));
+        assertNull(ETags.parseIfMatch(" "));
+        assertNull(ETags.parseIfMatch("*"), "any version, as long as the row exists");
+        assertEquals(Long.valueOf(7), ETags.parseIfMatch("\"7\""));
+        assertEquals(Long.valueOf(7), ETags.parseIfMatch(" \"7\" "));
+
+        for (String stale : List.of("W/\"7\"", "\"\"", "7", "\"p1a2b\"", "\"7-gzip\"")) {
+            assertThrows(PreconditionFailedException.class, () -> ETags.parseIfMatch(stale), stale);
+        }
+        assertThrows(IllegalArgumentException.class, () -> ETags.parseIfMatch("\"7\", \"8\""));
+    }
+
+    @Test
+    void anUpdateAgainstAnOlderVersionIs412AndChangesNothing() {
+        db.movies.put(1, movie(1, 3));
+
+        ResponseEntity<Movie> updated = controller.update(1, change("New title"), ETags.of(db.movies.get(1)));
+        assertEquals(200, updated.getStatusCode().value());
+        assertEquals("\"4\"", updated.getHeaders().getETag());
+        assertEquals(4, updated.getBody().getVersion());
+
+        PreconditionFailedException e = assertThrows(PreconditionFailedException.class,
+                () -> controller.update(1, change("Lost update"), "\"3\""));
+        assertEquals("New title", db.movies.get(1).getTitle());
+        ResponseEntity<ApiError> response = new GlobalExceptionHandler().handlePreconditionFailed(e, request("/movies/1"));
+        assertEquals(412, response.getStatusCode().value());
+        assertEquals(412, response.getBody().getStatus());
+
+        assertThrows(PreconditionFailedException.class, () -> controller.delete(1, "\"3\""));
+        assertThrows(PreconditionFailedException.class, () -> controller.delete(1, "W/\"4\""));
+        controller.delete(1, "\"4\"");
+        assertFalse(db.movies.containsKey(1));
+        assertEquals(List.of(3L, 3L, 3L, 4L), db.expected, "a weak tag fails before the database is asked");
+    }
+
+    @Test
+    void withoutIfMatchTheWriteIsUnconditional() {
+        db.movies.put(1, movie(1, 9));
+        controller.update(1, change("Anything"), null);
+        controller.update(1, change("Goes"), "*");
+        assertEquals(11, db.movies.get(1).getVersion());
+        assertThrows(NotFoundException.class, () -> controller.update(2, change("Missing"), null));
+    }
+
+    @Test
+    void aPageTagChangesWhenAnyRowOnItDoes() {
+        Page<Movie> page = new Page<>(List.of(movie(1, 1), movie(2, 1)), "next");
+        String tag = ETags.of(page);
+        assertEquals(tag, ETags.of(new Page<>(List.of(movie(1, 1), movie(2, 1)), "next")));
+        assertNotEquals(tag, ETags.of(new Page<>(List.of(movie(1, 1), movie(2, 2)), "next")), "a row was updated");
+        assertNotEquals(tag, ETags.of(new Page<>(List.of(movie(1, 1), movie(3, 1)), "next")), "a row was replaced");
+        assertNotEquals(tag, ETags.of(new Page<>(List.of(movie(1, 1)), "next")), "a row left");
+        assertNotEquals(tag, ETags.of(new Page<>(List.of(movie(1, 1), movie(2, 1)), null)), "the last page");
+        assertTrue(tag.startsWith("\"p") && tag.endsWith("\""));
+        assertNotEquals(ETags.of(movie(1, 1)), tag);
+    }
+
+    @Test
+    void aCurrentCopyIsAnsweredWithoutABody() {
+        Movie row = movie(5, 2);
+        assertTrue(ETags.notModified(ifNoneMatch("\"2\""), row));
+        assertFalse(ETags.notModified(ifNoneMatch("\"1\""), row));
+        Page<Movie> page = new Page<>(List.of(row), null);
+        assertTrue(ETags.notModified(ifNoneMatch(ETags.of(page)), page));
+        assertFalse(ETags.notModified(ifNoneMatch("\"2\""), page));
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EligibilityIndexTest {
+
+    private static EligibilityIndex.Entry entry(int id, int age, long version) {
+        return new EligibilityIndex.Entry(id, age, 90 + id, 10 + id, version);
+    }
+
+    private static List<Integer> ids(long[] keys) {
+        List<Integer> ids = new ArrayList<>();
+        for (long key : keys) ids.add(EligibilityIndex.id(key));
+        return ids;
+    }
+
+    private static List<Integer> all(EligibilityIndex index, int viewerAge) {
+        return ids(index.eligible(viewerAge, -1, null, null, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void moviesComeInAgeThenIdOrderUpToTheViewersAge() {
+        EligibilityIndex index = new EligibilityIndex(() -> List.of(entry(3, 16, 1), entry(1, 0, 1), entry(2, 18, 1), entry(4, 0, 1)));
+        assertEquals(List.of(1, 4, 3), all(index, 17));
+        assertEquals(List.of(1, 4, 3, 2), all(index, 18));
+        assertEquals(List.of(), all(index, -1));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void theCursorContinuesAfterTheLastKey() {
+        List<EligibilityIndex.Entry> rows = new ArrayList<>();
+        for (int id = 1; id <= 10; id++) rows.add(entry(id, id % 3 * 6, 1));
+        EligibilityIndex index = new EligibilityIndex(() -> rows);
+
+        List<Integer> paged = new ArrayList<>();
+        long after = -1;
+        while (true) {
+            long[] page = index.eligible(18, after, null, null, 3);
+            if (page.length == 0) break;
+            paged.addAll(ids(page));
+            after = page[page.length - 1];
+        }
+        assertEquals(all(index, 18), paged);
+        assertEquals(List.of(3, 6, 9, 1, 4, 7, 10, 2, 5, 8), paged);
+    }
+
+    @Test
+    void rangesFilterWithoutBreakingTheOrder() {
+        EligibilityIndex index = new EligibilityIndex(() -> List.of(entry(1, 0, 1), entry(2, 0, 1), entry(3, 0, 1), entry(4, 0, 1)));
+        assertEquals(List.of(2, 3), ids(index.eligible(18, -1, new double[]{12, 13}, null, 10)));
+        assertEquals(List.of(3, 4), ids(index.eligible(18, -1, null, new double[]{93, 200}, 10)));
+    }
+
+    @Test
+    void writesAreMergedAndOlderVersionsIgnored() {
+        EligibilityIndex index = new EligibilityIndex(() -> List.of(entry(1, 0, 1), entry(2, 12, 1), entry(3, 16, 1)));
+        assertEquals(List.of(1, 2, 3), all(index, 18));
+
+        index.put(entry(1, 18, 2));       // moves to the end
+        index.put(entry(5, 12, 1));       // new, between 2 and 3
+        index.remove(3);
+        index.put(entry(2, 0, 1));        // same version as indexed, applied
+        index.put(entry(1, 0, 1));        // older than the indexed version 2, ignored
+        assertEquals(List.of(2, 5, 1), all(index, 18));
+        assertTrue(index.isCurrent(1, 2));
+        assertFalse(index.isCurrent(1, 3));
+        assertFalse(index.isCurrent(3, 1));
+    }
+
+    @Test
+    void nothingIsTrackedBeforeTheFirstQuery() {
+        AtomicInteger loads = new AtomicInteger();
+        EligibilityIndex index = new EligibilityIndex(() -> {
+            loads.incrementAndGet();
+            return List.of(entry(1, 0, 1));
+        });
+        assertFalse(index.isTracking());
+        index.put(entry(2, 0, 1));
+        assertEquals(0, loads.get());
+        assertEquals(List.of(1), all(index, 18), "the put before the load is dropped; the load reads the table");
+        assertTrue(index.isTracking());
+
+        index.reset();
+        assertFalse(index.isTracking());
+        assertEquals(List.of(1), all(index, 18));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void writesRacingTheLoadWinOverWhatItRead() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        EligibilityIndex index = new EligibilityIndex(() -> {
+            // what the load read before the writes below committed
+            List<EligibilityIndex.Entry> rows = List.of(entry(1, 0, 1), entry(2, 0, 1), entry(3, 0, 3));
+            reading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return rows;
+        });
+        AtomicReference<List<Integer>> seen = new AtomicReference<>();
+        Thread reader = Thread.ofPlatform().start(() -> seen.set(all(index, 18)));
+        assertTrue(reading.await(2, TimeUnit.SECONDS));
+
+        assertTrue(index.isTracking(), "a change event during the load must be applied");
+        index.put(entry(1, 18, 2));
+        index.remove(2);
+        index.put(entry(3, 0, 2));        // older than what the load returns
+        index.put(entry(4, 6, 1));
+        release.countDown();
+        reader.join();
+
+        assertEquals(List.of(3, 4, 1), seen.get());
+        assertTrue(index.isCurrent(1, 2));
+        assertTrue(index.isCurrent(3, 3));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void aFailedLoadKeepsNothingAndTheNextQueryRetries() {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicReference<EligibilityIndex> self = new AtomicReference<>();
+        EligibilityIndex index = new EligibilityIndex(() -> {
+            if (calls.incrementAndGet() == 1) {
+                self.get().put(entry(9, 0, 1));
+                throw new IllegalStateException("database is down");
+            }
+            return List.of(entry(1, 0, 1));
+        });
+        self.set(index);
+        assertThrows(IllegalStateException.class, () -> all(index, 18));
+        assertFalse(index.isTracking());
+        assertEquals(List.of(1), all(index, 18));
+    }
+
+    @Test
+    void readersNeverSeeAPartialMerge() throws Exception {
+        List<EligibilityIndex.Entry> rows = new ArrayList<>();
+        for (int id = 1; id <= 1000; id++) rows.add(entry(id, 0, 1));
+        EligibilityIndex index = new EligibilityIndex(() -> rows);
+        all(index, 18);
+
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            readers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 200; i++) {
+                    long[] keys = index.eligible(18, -1, null, null, Integer.MAX_VALUE);
+                    if (keys.length != 1000) failure.set("size " + keys.length);
+                    for (int k = 1; k < keys.length; k++) {
+                        if (keys[k - 1] >= keys[k]) failure.set("out of order at " + k);
+                    }
+                }
+            }));
+        }
+        // every write moves a movie between ages, so the set of ids never changes
+        for (int v = 2; v < 200; v++) index.put(entry(v % 1000 + 1, v % 19, v));
+        for (Thread reader : readers) reader.join();
+        assertNull(failure.get());
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityCacheTest {
+
+    private static EntityCache<Cinema> cache(int maxEntries) {
+        return new EntityCache<>("cinemas", true, maxEntries, 0, 30, Cinema::copy);
+    }
+
+    private static Optional<Cinema> row(int id) {
+        return Optional.of(new Cinema(id, "Cinema " + id, "City", "Street"));
+    }
+
+    @Test
+    void hitsAreCopiesOfTheCachedRow() {
+        EntityCache<Cinema> cache = cache(100);
+        Cinema loaded = cache.get(1, EntityCacheTest::row).orElseThrow();
+        loaded.setName("changed by the caller");
+
+        Cinema first = cache.get(1, id -> fail("should be a hit")).orElseThrow();
+        Cinema second = cache.get(1, id -> fail("should be a hit")).orElseThrow();
+        assertEquals("Cinema 1", first.getName());
+        assertNotSame(first, second);
+
+        first.setName("changed again");
+        assertEquals("Cinema 1", cache.get(1, id -> fail("should be a hit")).orElseThrow().getName());
+    }
+
+    @Test
+    void putKeepsItsOwnCopy() {
+        EntityCache<Cinema> cache = cache(100);
+        Cinema cinema = row(7).orElseThrow();
+        cache.put(7, cinema);
+        cinema.setName("changed after the put");
+        assertEquals("Cinema 7", cache.get(7, id -> fail("should be a hit")).orElseThrow().getName());
+    }
+
+    @Test
+    void missesAreCachedAndInvalidated() {
+        EntityCache<Cinema> cache = cache(100);
+        AtomicInteger loads = new AtomicInteger();
+        assertTrue(cache.get(3, id -> { loads.incrementAndGet(); return Optional.empty(); }).isEmpty());
+        assertTrue(cache.get(3, id -> { loads.incrementAndGet(); return Optional.empty(); }).isEmpty());
+        assertEquals(1, loads.get());
+
+        cache.invalidate(3);
+        assertTrue(cache.get(3, EntityCacheTest::row).isPresent());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedWithinMaxEntries() {
+        EntityCache<Cinema> cache = cache(32);
+        for (int id = 1; id <= 1_000; id++) cache.get(id, EntityCacheTest::row);
+        CacheStats stats = cache.stats();
+        assertTrue(stats.getSize() <= 32, "size " + stats.getSize());
+        assertEquals(1_000 - stats.getSize(), stats.getEvictions());
+    }
+
+    @Test
+    void invalidationOfOneIdKeepsLoadsOfOthers() throws Exception {
+        EntityCache<Cinema> cache = cache(100);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        Thread loader = Thread.ofVirtual().start(() -> cache.get(1, id -> {
+            loading.countDown();
+            await(invalidated);
+            return row(id);
+        }));
+        loading.await();
+        cache.invalidate(2);
+        invalidated.countDown();
+        loader.join();
+
+        assertEquals("Cinema 1", cache.get(1, id -> fail("the load of 1 should have been kept")).orElseThrow().getName());
+    }
+
+    @Test
+    void aLoadThatRacedAWriteToItsIdIsNotCached() throws Exception {
+        EntityCache<Cinema> cache = cache(100);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        Thread loader = Thread.ofVirtual().start(() -> cache.get(1, id -> {
+            loading.countDown();
+            await(written);
+            return Optional.of(new Cinema(id, "stale", "City", "Street"));
+        }));
+        loading.await();
+        cache.invalidate(1);
+        written.countDown();
+        loader.join();
+
+        assertEquals("Cinema 1", cache.get(1, EntityCacheTest::row).orElseThrow().getName());
+    }
+
+    @Test
+    void getAllServesHitsAndLoadsMissesOnce() {
+        EntityCache<Cinema> cache = cache(100);
+        cache.get(1, EntityCacheTest::row);
+        AtomicInteger calls = new AtomicInteger();
+        Map<Integer, Cinema> rows = cache.getAll(List.of(1, 2, 2, 3), missing -> {
+            calls.incrementAndGet();
+            assertEquals(List.of(2, 3), missing);
+            return Map.of(2, row(2).orElseThrow());
+        });
+        assertEquals(1, calls.get());
+        assertEquals(Set.of(1, 2), rows.keySet());
+        assertEquals("Cinema 2", cache.get(2, id -> fail("should be a hit")).orElseThrow().getName());
+    }
+
+    @Test
+    void getAllAfterAFailedLoadStillCaches() {
+        EntityCache<Cinema> cache = cache(100);
+        assertThrows(IllegalStateException.class, () -> cache.getAll(List.of(5), missing -> {
+            throw new IllegalStateException("down");
+        }));
+        cache.getAll(List.of(5), missing -> Map.of(5, row(5).orElseThrow()));
+        assertTrue(cache.get(5, id -> fail("should be a hit")).isPresent());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityExporterTest {
+
+    private static String json(Viewer v) {
+        StringBuilder sb = new StringBuilder();
+        RowWriters.viewerJson(sb, v);
+        return sb.toString();
+    }
+
+    private static String csv(Cinema c) {
+        StringBuilder sb = new StringBuilder();
+        RowWriters.cinemaCsv(sb, c);
+        return sb.toString();
+    }
+
+    private static ResponseEntity<StreamingResponseBody> viewers(String format, EntityExporter.RowSource<Viewer> source) {
+        return EntityExporter.export("viewers", format, RowWriters::viewerJson, RowWriters::viewerCsv,
+                RowWriters.VIEWER_CSV_HEADER, source);
+    }
+
+    private static String write(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void jsonStringsAreEscaped() {
+        assertEquals("{\"id\":1,\"fullName\":\"Ann \\\"Nan\\\" O\\\\Brien\",\"age\":30,\"email\":\"a@b.kz\"}",
+                json(new Viewer(1, "Ann \"Nan\" O\\Brien", 30, "a@b.kz")));
+        assertEquals("{\"id\":2,\"fullName\":\"line\\nbreak\\ttab\\r\\u0001 Әсел\",\"age\":20,\"email\":\"e@x.kz\"}",
+                json(new Viewer(2, "line\nbreak\ttab\r\u0001 Әсел", 20, "e@x.kz")));
+
+        StringBuilder sb = new StringBuilder();
+        RowWriters.jsonString(sb, null);
+        assertEquals("null", sb.toString());
+    }
+
+    @Test
+    void csvFieldsAreQuotedOnlyWhenTheyNeedIt() {
+        assertEquals("3,Kinopark,Almaty,Abay 1", csv(new Cinema(3, "Kinopark", "Almaty", "Abay 1")));
+        assertEquals("4,\"Chaplin, Mega\",Astana,\"Kabanbay \"\"Batyr\"\" 62\"",
+                csv(new Cinema(4, "Chaplin, Mega", "Astana", "Kabanbay \"Batyr\" 62")));
+        assertEquals("5,\"two\nlines\",Almaty,\"a\rb\"", csv(new Cinema(5, "two\nlines", "Almaty", "a\rb")));
+
+        StringBuilder sb = new StringBuilder();
+        RowWriters.csvField(sb, null);
+        assertEquals("", sb.toString());
+    }
+
+    @Test
+    void everyRowBecomesOneLineInTheOrderItWasRead() throws IOException {
+        int rows = 2500; // more than one flush
+        EntityExporter.RowSource<Viewer> source = consumer -> {
+            for (int id = 1; id <= rows; id++) consumer.accept(new Viewer(id, "Viewer " + id, 18 + id % 50, "v" + id + "@x.kz"));
+        };
+
+        List<String> ndjson = write(viewers("ndjson", source)).lines().toList();
+        assertEquals(rows, ndjson.size());
+        assertEquals(json(new Viewer(1, "Viewer 1", 19, "v1@x.kz")), ndjson.get(0));
+        assertTrue(ndjson.get(rows - 1).startsWith("{\"id\":" + rows + ","));
+
+        ResponseEntity<StreamingResponseBody> response = viewers("CSV", source);
+        assertEquals("attachment; filename=\"viewers.csv\"", response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
+        List<String> csv = write(response).lines().toList();
+        assertEquals(rows + 1, csv.size());
+        assertEquals(RowWriters.VIEWER_CSV_HEADER, csv.get(0));
+        assertEquals("1,Viewer 1,19,v1@x.kz", csv.get(1));
+    }
+
+    @Test
+    void anUnknownFormatIsRefusedBeforeAnythingIsRead() {
+        AtomicInteger reads = new AtomicInteger();
+        assertThrows(IllegalArgumentException.class, () -> viewers("xml", consumer -> reads.incrementAndGet()));
+        assertThrows(IllegalArgumentException.class, () -> viewers(null, consumer -> reads.incrementAndGet()));
+        assertEquals(0, reads.get());
+    }
+
+    @Test
+    void aClientThatGoesAwayStopsTheCursor() {
+        AtomicInteger read = new AtomicInteger();
+        EntityExporter.RowSource<Viewer> endless = consumer -> {
+            while (true) consumer.accept(new Viewer(read.incrementAndGet(), "Viewer", 30, "v@x.kz"));
+        };
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(IOException.class, () -> viewers("ndjson", endless).getBody().writeTo(disconnected));
+        assertTrue(read.get() <= 1000, "the first flush fails, after at most one batch of rows: " + read.get());
+    }
+}
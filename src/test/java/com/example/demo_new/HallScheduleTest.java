@@ -0,0 +1,51 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HallScheduleTest {
+
+    @Test
+    void overlappingIntervalsAreRefusedAndTouchingOnesFit() {
+        HallSchedule hall = new HallSchedule();
+        assertNotNull(hall.tryPlace(100, 200, 1));
+        assertNull(hall.tryPlace(150, 250, 2));
+        assertNull(hall.tryPlace(50, 101, 2));
+        assertNull(hall.tryPlace(120, 130, 2), "inside another slot");
+        assertNull(hall.tryPlace(0, 1000, 2), "around another slot");
+        assertNotNull(hall.tryPlace(200, 300, 2));
+        assertNotNull(hall.tryPlace(0, 100, 3));
+        assertEquals(3, hall.size());
+        assertEquals(2, hall.conflict(250, 260).screeningId);
+        assertNull(hall.conflict(300, 400));
+        assertThrows(IllegalArgumentException.class, () -> hall.tryPlace(10, 10, 4));
+    }
+
+    @Test
+    void nextFreeSkipsTakenSlotsOnTheStepGrid() {
+        HallSchedule hall = new HallSchedule();
+        hall.tryPlace(100, 200, 1);
+        hall.tryPlace(230, 300, 2);
+        // 50 long from 90: 100-200 blocks, 200 leaves only 30 before 230, so after 300
+        assertEquals(300, hall.nextFree(90, 50, 1000, 10));
+        assertEquals(0, hall.nextFree(0, 100, 1000, 10));
+        assertEquals(210, hall.nextFree(101, 20, 1000, 15), "rounded up to the 15 grid past 200");
+        assertEquals(-1, hall.nextFree(90, 50, 320, 10), "must end by until");
+    }
+
+    @Test
+    void deletedScreeningsAndOldSlotsAreDropped() {
+        HallSchedule hall = new HallSchedule();
+        hall.tryPlace(100, 200, 7);
+        HallSchedule.Slot pending = hall.tryPlace(300, 400, 0);
+        assertTrue(hall.removeScreening(7));
+        assertFalse(hall.removeScreening(7));
+        assertNotNull(hall.tryPlace(100, 200, 8));
+
+        hall.remove(pending);
+        assertNull(hall.conflict(300, 400));
+        hall.pruneBefore(150);
+        assertEquals(0, hall.size());
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTest {
+    private final List<IdempotencyStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        stores.forEach(IdempotencyStore::close);
+    }
+
+    private IdempotencyStore store(long ttlSeconds, int maxBodyBytes) {
+        IdempotencyStore store = new IdempotencyStore(null, 100, ttlSeconds, 1000, maxBodyBytes, 0);
+        stores.add(store);
+        return store;
+    }
+
+    private static IdempotentResponse response(String fingerprint, int bodyBytes) {
+        return new IdempotentResponse(fingerprint, 201, "application/json", "\"1\"", "/movies/1", new byte[bodyBytes]);
+    }
+
+    @Test
+    void aRetryReplaysTheRecordedResponse() {
+        IdempotencyStore store = store(60, 1024);
+        assertEquals(IdempotencyStore.Claim.OWNER, store.claim("k", "f").claim);
+        store.complete("k", response("f", 10));
+
+        IdempotencyStore.Result retry = store.claim("k", "f");
+        assertEquals(IdempotencyStore.Claim.REPLAY, retry.claim);
+        assertTrue(retry.response.hasBody());
+        assertEquals(10, retry.response.getBody().length);
+        assertEquals(IdempotencyStore.Claim.MISMATCH, store.claim("k", "other").claim);
+    }
+
+    @Test
+    void anOversizedResponseIsKeptAsAStatusOnlyMarker() {
+        IdempotencyStore store = store(60, 16);
+        assertEquals(IdempotencyStore.Claim.OWNER, store.claim("k", "f").claim);
+        store.complete("k", response("f", 17));
+
+        IdempotencyStore.Result retry = store.claim("k", "f");
+        assertEquals(IdempotencyStore.Claim.REPLAY, retry.claim, "a retry must not run the request again");
+        assertFalse(retry.response.hasBody());
+        assertEquals(201, retry.response.getStatus());
+        assertEquals("/movies/1", retry.response.getLocation());
+    }
+
+    @Test
+    void abandonLetsTheRetryRunAgain() {
+        IdempotencyStore store = store(60, 1024);
+        store.claim("k", "f");
+        store.abandon("k", "f");
+        assertEquals(IdempotencyStore.Claim.OWNER, store.claim("k", "f").claim);
+    }
+
+    @Test
+    void pruneDropsExpiredKeys() throws Exception {
+        IdempotencyStore store = store(1, 1024);
+        store.claim("k", "f");
+        store.complete("k", response("f", 1));
+        assertEquals(1, store.getSize());
+        Thread.sleep(1100);
+        assertEquals(0, store.prune(), "no table to prune");
+        assertEquals(0, store.getSize());
+        assertEquals(IdempotencyStore.Claim.OWNER, store.claim("k", "f").claim);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageQueryTest {
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static PageQuery movies(String after, String sort) {
+        return PageQuery.parse(10, after, sort, DBmanager.MOVIE_SORTS);
+    }
+
+    /** The keyset predicate and its arguments, as the query would get them. */
+    private static List<Object> keyset(PageQuery page) {
+        List<String> where = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        page.appendKeyset(where, args);
+        List<Object> both = new ArrayList<>(where);
+        both.addAll(args);
+        return both;
+    }
+
+    @Test
+    void theFirstPageHasNoKeysetAndFetchesOneExtraRow() {
+        PageQuery page = PageQuery.parse(null, null, null, DBmanager.MOVIE_SORTS);
+        assertEquals(PageQuery.DEFAULT_LIMIT, page.getLimit());
+        assertEquals(List.of(), keyset(page));
+        assertEquals(" ORDER BY id LIMIT " + (PageQuery.DEFAULT_LIMIT + 1), page.orderAndLimit());
+        assertEquals(" ORDER BY title DESC, id DESC LIMIT 11", movies(null, "-title").orderAndLimit());
+    }
+
+    @Test
+    void aCursorContinuesAfterTheRowItWasMadeFrom() {
+        PageQuery first = movies(null, "-ticketPrice");
+        PageQuery next = movies(first.cursor(1500.5, 42), "-ticketPrice");
+        assertEquals(List.of("(price, id) < (?, ?)", 1500.5, 42), keyset(next));
+
+        PageQuery byId = PageQuery.parse(5, null, null, DBmanager.MOVIE_SORTS);
+        assertEquals(List.of("id > ?", 7), keyset(PageQuery.parse(5, byId.cursor(null, 7), null, DBmanager.MOVIE_SORTS)));
+        PageQuery byIdDown = PageQuery.parse(5, null, "-id", DBmanager.MOVIE_SORTS);
+        assertEquals(List.of("id < ?", 7), keyset(PageQuery.parse(5, byIdDown.cursor(null, 7), "-id", DBmanager.MOVIE_SORTS)));
+
+        PageQuery byAge = movies(null, "ageRestriction");
+        assertEquals(List.of("(age_restriction, id) > (?, ?)", 16, 3), keyset(movies(byAge.cursor(16, 3), "ageRestriction")));
+    }
+
+    @Test
+    void textCursorsKeepSeparatorsAndNonAsciiCharacters() {
+        PageQuery first = movies(null, "title");
+        String title = "Mad Max | Fury Road: Жол";
+        assertEquals(List.of("(title, id) > (?, ?)", title, 9), keyset(movies(first.cursor(title, 9), "title")));
+        assertEquals(List.of("(title, id) > (?, ?)", "", 9), keyset(movies(first.cursor("", 9), "title")));
+    }
+
+    @Test
+    void aCursorOnlyWorksWithTheSortItCameFrom() {
+        String byTitle = movies(null, "title").cursor("Up", 1);
+        assertThrows(IllegalArgumentException.class, () -> movies(byTitle, "-title"));
+        assertThrows(IllegalArgumentException.class, () -> movies(byTitle, "ageRestriction"));
+        assertThrows(IllegalArgumentException.class, () -> movies(byTitle, null));
+        String byId = movies(null, null).cursor(null, 1);
+        assertThrows(IllegalArgumentException.class, () -> movies(byId, "title"));
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        // cursor, then the sort it is sent with
+        String[][] cases = {
+                {"%%%", null},
+                {"not base64!", null},
+                {encode("id"), null},
+                {encode("id|a"), null},
+                {encode("id|a|x"), null},
+                {encode("title|x|1|Up"), "title"},
+                {encode("ageRestriction|a|1"), "ageRestriction"},
+                {encode("ageRestriction|a|1|old"), "ageRestriction"},
+                {encode("ticketPrice|a|1|cheap"), "ticketPrice"},
+        };
+        for (String[] c : cases) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> movies(c[0], c[1]), c[0]);
+            assertTrue(e.getMessage().contains("cursor"), e.getMessage());
+        }
+    }
+
+    @Test
+    void limitsAndSortsAreChecked() {
+        assertThrows(IllegalArgumentException.class, () -> PageQuery.parse(0, null, null, DBmanager.MOVIE_SORTS));
+        assertThrows(IllegalArgumentException.class, () -> PageQuery.parse(PageQuery.MAX_LIMIT + 1, null, null, DBmanager.MOVIE_SORTS));
+        assertEquals(PageQuery.MAX_LIMIT, PageQuery.parse(PageQuery.MAX_LIMIT, null, null, DBmanager.MOVIE_SORTS).getLimit());
+        assertThrows(IllegalArgumentException.class, () -> movies(null, "description"));
+        assertThrows(IllegalArgumentException.class, () -> PageQuery.parse(10, null, "title", DBmanager.VIEWER_SORTS));
+        assertEquals(" ORDER BY id DESC LIMIT 11", movies(null, " -id ").orderAndLimit());
+        assertEquals(" ORDER BY id LIMIT 11", movies(null, "").orderAndLimit());
+    }
+
+    @Test
+    void rangesNeedTwoOrderedNumbers() {
+        assertArrayEquals(new double[]{1000, 2500}, PageQuery.parseRange("1000, 2500", "priceBetween"));
+        assertArrayEquals(new double[]{5, 5}, PageQuery.parseRange("5,5", "priceBetween"));
+        for (String bad : List.of("2500,1000", "1000", "1,2,3", "a,b", ",")) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> PageQuery.parseRange(bad, "priceBetween"));
+            assertTrue(e.getMessage().startsWith("priceBetween"), bad);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectionTest {
+    private static final OffsetDateTime UPDATED = OffsetDateTime.of(2026, 10, 18, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private static Projection<Movie> movies(String fields) {
+        return Projection.parse(fields, DBmanager.MOVIE_FIELDS);
+    }
+
+    private static List<String> names(Projection<?> projection) {
+        return projection.getFields().stream().map(Projection.Field::getName).toList();
+    }
+
+    /** One row, answering getX(index) from the given values; index 1 is the first. */
+    private static ResultSet row(Object... values) {
+        return (ResultSet) Proxy.newProxyInstance(ProjectionTest.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (rs, method, args) -> {
+                    assertTrue(args[0] instanceof Integer, method.getName() + " must read by index");
+                    return values[(Integer) args[0] - 1];
+                });
+    }
+
+    @Test
+    void withoutFieldsWholeRowsAreReturned() {
+        assertNull(movies(null));
+    }
+
+    @Test
+    void fieldsAreSelectedInRequestOrderOnce() {
+        Projection<Movie> p = movies(" ticketPrice,title,id,,ticketPrice ");
+        assertEquals(List.of("ticketPrice", "title"), names(p));
+        assertFalse(p.includesVersion());
+        assertFalse(p.includesUpdatedAt());
+        assertEquals("id, version, updated_at, price, title", p.columns());
+
+        Projection<Movie> versioned = movies("version,updatedAt");
+        assertEquals(List.of(), versioned.getFields());
+        assertTrue(versioned.includesVersion());
+        assertTrue(versioned.includesUpdatedAt());
+        assertEquals("id, version, updated_at", versioned.columns());
+        assertEquals(List.of(), movies("").getFields(), "just the id");
+    }
+
+    @Test
+    void unknownFieldsAreRejectedWithTheChoices() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> movies("title,price"));
+        assertEquals("fields must be among id, version, updatedAt, title, description, durationMinutes, ageRestriction, ticketPrice",
+                e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> Projection.parse("email", DBmanager.CINEMA_FIELDS));
+        assertThrows(IllegalArgumentException.class, () -> movies("Title"));
+    }
+
+    @Test
+    void selectedRowsAreReadByIndexAfterTheFixedColumns() throws Exception {
+        Projection<Movie> p = movies("durationMinutes,ticketPrice,title");
+        PartialRow row = p.map(row(5, 3L, UPDATED, 120, 1500.0, "Arrival"));
+        assertEquals(5, row.getId());
+        assertEquals(3, row.getVersion(), "read even when not asked for, for the ETag");
+        assertEquals(UPDATED, row.getUpdatedAt());
+        assertEquals(120, row.value(0));
+        assertEquals(1500.0, row.value(1));
+        assertEquals("Arrival", row.value(2));
+        assertSame(p, row.projection());
+    }
+
+    @Test
+    void aCachedEntityIsCutDownToTheSameFields() {
+        Movie movie = new Movie(5, "Arrival", "Linguistics", 120, 12, 1500);
+        movie.setVersion(3);
+        movie.setUpdatedAt(UPDATED);
+        Projection<Movie> p = movies("ageRestriction,title");
+        List<PartialRow> rows = p.applyAll(List.of(movie));
+        assertEquals(1, rows.size());
+        PartialRow row = rows.get(0);
+        assertEquals(5, row.getId());
+        assertEquals(3, row.getVersion());
+        assertEquals(UPDATED, row.getUpdatedAt());
+        assertEquals(12, row.value(0));
+        assertEquals("Arrival", row.value(1));
+        assertEquals(ETags.of(movie), ETags.of(row), "a projection is tagged like its row");
+    }
+}
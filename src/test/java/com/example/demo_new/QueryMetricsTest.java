@@ -0,0 +1,65 @@
+package com.example.demo_new;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryMetricsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final QueryMetrics metrics = new QueryMetrics(registry, 0);
+
+    private Timer call(String op, String outcome) {
+        return registry.find("db.query").tag("op", op).tag("outcome", outcome).timer();
+    }
+
+    @Test
+    void callsAreTimedPerOpAndOutcome() {
+        metrics.recordCall("findMovies", TimeUnit.MILLISECONDS.toNanos(3), 50, true);
+        metrics.recordCall("findMovies", TimeUnit.MILLISECONDS.toNanos(5), 0, true);
+        metrics.recordCall("findMovies", TimeUnit.MILLISECONDS.toNanos(7), 0, false);
+        metrics.recordCall("createMovie", TimeUnit.MILLISECONDS.toNanos(1), 1, true);
+
+        assertEquals(2, call("findMovies", "success").count());
+        assertEquals(8.0, call("findMovies", "success").totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, call("findMovies", "error").count());
+        assertEquals(1, call("createMovie", "success").count());
+        assertNull(call("createMovie", "error"), "no timer until an op has failed once");
+    }
+
+    @Test
+    void rowsAreCountedOnlyForCallsThatSucceeded() {
+        metrics.recordCall("findViewers", 1000, 20, true);
+        metrics.recordCall("findViewers", 1000, 30, true);
+        metrics.recordCall("findViewers", 1000, 99, false);
+        metrics.recordCall("deleteViewer", 1000, 0, true);
+
+        assertEquals(50.0, registry.find("db.rows").tag("op", "findViewers").counter().count(), 0.0);
+        assertNull(registry.find("db.rows").tag("op", "deleteViewer").counter());
+    }
+
+    @Test
+    void statementsAcquisitionsAndRejectionsHaveTheirOwnMeters() {
+        metrics.recordAcquire(TimeUnit.MILLISECONDS.toNanos(2));
+        metrics.recordStatement("findCinemas", "SELECT 1", null, TimeUnit.MILLISECONDS.toNanos(4));
+        metrics.recordRejected("findCinemas");
+        metrics.recordRejected("findCinemas");
+
+        assertEquals(1, registry.find("db.connection.acquire").timer().count());
+        Timer statement = registry.find("db.statement").tag("op", "findCinemas").timer();
+        assertEquals(4.0, statement.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        Counter rejected = registry.find("db.bulkhead.rejected").tag("op", "findCinemas").counter();
+        assertEquals(2.0, rejected.count(), 0.0);
+    }
+
+    @Test
+    void aSlowStatementWithoutParametersIsStillRecorded() {
+        QueryMetrics slow = new QueryMetrics(registry, 1);
+        slow.recordStatement("findMovies", "SELECT * FROM movies", null, TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(1, registry.find("db.statement").tag("op", "findMovies").timer().count());
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadReplicasTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /** A replica that is in recovery and has replayed up to replay; its connections print as its name. */
+    private static DataSource replica(String name, AtomicLong replay) {
+        return (DataSource) Proxy.newProxyInstance(ReadReplicasTest.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (ds, method, args) -> method.getName().equals("getConnection") ? connection(name, replay) : null);
+    }
+
+    private static Connection connection(String name, AtomicLong replay) {
+        ResultSet rs = (ResultSet) Proxy.newProxyInstance(ReadReplicasTest.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (r, method, args) -> switch (method.getName()) {
+                    case "next", "getBoolean" -> true;
+                    case "getLong" -> replay.get();
+                    default -> null;
+                });
+        Statement stmt = (Statement) Proxy.newProxyInstance(ReadReplicasTest.class.getClassLoader(), new Class<?>[]{Statement.class},
+                (st, method, args) -> method.getName().equals("executeQuery") ? rs : null);
+        return (Connection) Proxy.newProxyInstance(ReadReplicasTest.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (c, method, args) -> switch (method.getName()) {
+                    case "createStatement" -> stmt;
+                    case "toString" -> name;
+                    default -> null;
+                });
+    }
+
+    private final AtomicLong a = new AtomicLong(100);
+    private final AtomicLong b = new AtomicLong(200);
+    private ReadReplicas replicas;
+
+    private ReadReplicas start() throws Exception {
+        Map<String, DataSource> sources = new LinkedHashMap<>();
+        sources.put("a", replica("a", a));
+        sources.put("b", replica("b", b));
+        replicas = new ReadReplicas(sources, () -> 200, 3_600_000, 30_000);
+        long deadline = System.nanoTime() + 5 * SECOND;
+        while (!replicas.getReplicas().stream().allMatch(ReadReplicas.Replica::isHealthy)) {
+            assertTrue(System.nanoTime() < deadline, "the first check puts both replicas in service");
+            Thread.sleep(5);
+        }
+        return replicas;
+    }
+
+    @AfterEach
+    void close() {
+        ReadReplicas.release();
+        if (replicas != null) replicas.close();
+    }
+
+    @Test
+    void lsnsRoundTripThroughTheirTextForm() {
+        assertEquals("0/0", ReadReplicas.formatLsn(0));
+        assertEquals("16/B374D848", ReadReplicas.formatLsn(0x16B374D848L));
+        assertEquals(0x16B374D848L, ReadReplicas.parseLsn("16/B374D848"));
+        assertEquals(0x16B374D848L, ReadReplicas.parseLsn("16/b374d848"));
+        assertEquals(0xFFFFFFFFFFFFFFFEL, ReadReplicas.parseLsn(ReadReplicas.formatLsn(0xFFFFFFFFFFFFFFFEL)));
+        for (long lsn : new long[]{1, 0xFFFFFFFFL, 0x100000000L, 0x7FFFFFFF00000001L}) {
+            assertEquals(lsn, ReadReplicas.parseLsn(ReadReplicas.formatLsn(lsn)));
+        }
+        for (String bad : new String[]{"", "/", "16", "16/", "/B374D848", "x/1", "1/x", "123456789/1", "1/123456789", "1/2/3"}) {
+            assertEquals(-1, ReadReplicas.parseLsn(bad), bad);
+        }
+    }
+
+    @Test
+    void lagIsTheAgeOfTheOldestPrimaryPositionNotYetReplayed() {
+        ReadReplicas.PrimaryPositions positions = new ReadReplicas.PrimaryPositions(60 * SECOND);
+        assertEquals(-1, positions.lagNanos(0, 0));
+        positions.sample(100, 0);
+        positions.sample(100, 5 * SECOND); // no new WAL: the position keeps its first sighting
+        positions.sample(300, 10 * SECOND);
+        assertEquals(12 * SECOND, positions.lagNanos(99, 12 * SECOND));
+        assertEquals(2 * SECOND, positions.lagNanos(100, 12 * SECOND));
+        assertEquals(0, positions.lagNanos(300, 12 * SECOND));
+    }
+
+    @Test
+    void aCommitAfterAnIdlePeriodDoesNotLookLikeLag() {
+        ReadReplicas.PrimaryPositions positions = new ReadReplicas.PrimaryPositions(60 * SECOND);
+        positions.sample(100, 0);
+        // an hour without writes, then one commit that the replica has not replayed at the next check
+        for (long t = 1; t <= 3600; t++) positions.sample(100, t * SECOND);
+        positions.sample(120, 3601 * SECOND);
+        assertEquals(SECOND / 2, positions.lagNanos(100, 3601 * SECOND + SECOND / 2));
+        assertEquals(0, positions.lagNanos(120, 3602 * SECOND));
+    }
+
+    @Test
+    void oldPositionsAreDroppedOnlyOnceANewerOneIsOutOfTheWindowToo() {
+        ReadReplicas.PrimaryPositions positions = new ReadReplicas.PrimaryPositions(10 * SECOND);
+        positions.sample(100, 0);
+        positions.sample(200, 5 * SECOND);
+        positions.sample(300, 30 * SECOND);
+        // 100 went with 200 out of the window; a replica still before 100 is at least that far behind
+        assertEquals(25 * SECOND, positions.lagNanos(50, 30 * SECOND));
+        assertEquals(0, positions.lagNanos(300, 30 * SECOND));
+    }
+
+    @Test
+    void readsGoToReplicasThatHaveReplayedTheToken() throws Exception {
+        ReadReplicas replicas = start();
+        assertNotNull(replicas.connection(false), "no token: any healthy replica");
+
+        ReadReplicas.require(150);
+        for (int i = 0; i < 4; i++) assertEquals("b", replicas.connection(false).toString());
+
+        ReadReplicas.require(250);
+        assertNull(replicas.connection(false), "neither has replayed the token, so the primary serves it");
+        assertEquals(1, replicas.getFallbacks());
+
+        a.set(300);
+        assertEquals("a", replicas.connection(false).toString(), "a lagging replica is asked where it is now");
+
+        ReadReplicas.require(ReadReplicas.PRIMARY_ONLY);
+        assertNull(replicas.connection(false));
+    }
+
+    @Test
+    void cacheFillsWaitForTheChangesThisNodeWasNotifiedOf() throws Exception {
+        ReadReplicas replicas = start();
+        replicas.observed(150);
+        for (int i = 0; i < 4; i++) assertEquals("b", replicas.connection(true).toString());
+        assertNotNull(replicas.connection(false));
+        replicas.observed(400);
+        assertNull(replicas.connection(true));
+    }
+
+    @Test
+    void aTokenPastTheAppliedChangesReadsAroundTheCaches() throws Exception {
+        ReadReplicas replicas = start();
+        assertFalse(replicas.aheadOfCaches(), "no token");
+        ReadReplicas.require(150);
+        assertTrue(replicas.aheadOfCaches());
+        replicas.observed(150);
+        assertTrue(replicas.aheadOfCaches(), "notified of, but not yet evicted");
+        replicas.applied(150);
+        assertFalse(replicas.aheadOfCaches());
+        ReadReplicas.require(ReadReplicas.PRIMARY_ONLY);
+        assertFalse(replicas.aheadOfCaches(), "writes read the primary through the caches as before");
+    }
+}
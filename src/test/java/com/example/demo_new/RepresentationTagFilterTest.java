@@ -0,0 +1,32 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepresentationTagFilterTest {
+
+    @Test
+    void cborIsChosenOnlyWhenItBeatsJson() {
+        assertTrue(RepresentationTagFilter.prefersCbor("application/cbor"));
+        assertTrue(RepresentationTagFilter.prefersCbor("application/cbor, */*;q=0.5"));
+        assertTrue(RepresentationTagFilter.prefersCbor("application/cbor, */*"));
+        assertTrue(RepresentationTagFilter.prefersCbor("application/cbor, application/json"));
+        assertTrue(RepresentationTagFilter.prefersCbor("application/json;q=0.8, application/cbor"));
+
+        assertFalse(RepresentationTagFilter.prefersCbor(null));
+        assertFalse(RepresentationTagFilter.prefersCbor("*/*"));
+        assertFalse(RepresentationTagFilter.prefersCbor("application/json"));
+        assertFalse(RepresentationTagFilter.prefersCbor("application/json, application/cbor"));
+        assertFalse(RepresentationTagFilter.prefersCbor("application/cbor;q=0.5, */*"));
+        assertFalse(RepresentationTagFilter.prefersCbor("application/cbor;q=0"));
+    }
+
+    @Test
+    void onlyStrongTagsGetTheSuffix() {
+        assertEquals("\"7-cbor\"", RepresentationTagFilter.cborTag("\"7\""));
+        assertEquals("\"pa1b2-cbor\"", RepresentationTagFilter.cborTag("\"pa1b2\""));
+        assertEquals("W/\"7\"", RepresentationTagFilter.cborTag("W/\"7\""));
+        assertNull(RepresentationTagFilter.cborTag(null));
+    }
+}
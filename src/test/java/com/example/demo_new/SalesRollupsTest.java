@@ -0,0 +1,251 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesRollupsTest {
+    private static final OffsetDateTime MONDAY = OffsetDateTime.of(2026, 10, 19, 20, 0, 0, 0, ZoneOffset.UTC);
+
+    /** Keeps the rollup table, batch ids, screenings and cinemas in memory; writes can fail before or after committing. */
+    private static class FakeDb extends DBmanager {
+        final Map<String, long[]> table = new HashMap<>(); // "dimension/key/day" -> tickets, revenue, seats
+        final Set<UUID> batches = new HashSet<>();
+        final Map<Integer, Screening> screenings = new HashMap<>();
+        final Map<Integer, Cinema> cinemas = new HashMap<>();
+        volatile boolean failBeforeCommit;
+        volatile boolean failAfterCommit;
+
+        @Override
+        public synchronized boolean applySalesDeltas(UUID batchId, Map<SalesRollups.Key, SalesRollups.Delta> deltas) {
+            if (failBeforeCommit) throw new IllegalStateException("database is down");
+            if (!batches.add(batchId)) return false;
+            deltas.forEach((k, d) -> {
+                long[] row = table.computeIfAbsent(k.dimension + "/" + k.value + "/" + k.day, x -> new long[3]);
+                row[0] += d.tickets;
+                row[1] += Math.round(d.revenue);
+                row[2] += d.seats;
+            });
+            if (failAfterCommit) throw new IllegalStateException("connection reset before the commit was acknowledged");
+            return true;
+        }
+
+        @Override
+        public int rebuildSalesRollups(java.time.ZoneId zone) {
+            table.clear();
+            return 0;
+        }
+
+        @Override
+        public Optional<Screening> findScreeningById(int id) {
+            return Optional.ofNullable(screenings.get(id));
+        }
+
+        @Override
+        public Optional<Cinema> findCinemaById(int id) {
+            return Optional.ofNullable(cinemas.get(id));
+        }
+
+        /** The table without rows that came back to zero, as the rebuild would leave it. */
+        synchronized Map<String, List<Long>> rows() {
+            Map<String, List<Long>> rows = new HashMap<>();
+            table.forEach((k, v) -> {
+                if (v[0] != 0 || v[1] != 0 || v[2] != 0) rows.put(k, List.of(v[0], v[1], v[2]));
+            });
+            return rows;
+        }
+    }
+
+    private final FakeDb db = new FakeDb();
+    private final SalesRollups rollups = new SalesRollups(db, ZoneOffset.UTC, 3_600_000);
+    private final List<Booking> bookings = new ArrayList<>();
+    private int nextBooking;
+
+    @AfterEach
+    void close() {
+        db.failBeforeCommit = false;
+        db.failAfterCommit = false;
+        rollups.close();
+    }
+
+    private void cinema(int id, String city) {
+        db.cinemas.put(id, new Cinema(id, "Cinema " + id, city, "Street " + id));
+    }
+
+    private Screening screening(int id, int movieId, int cinemaId, int dayOffset) {
+        Screening s = new Screening(id, movieId, cinemaId, "1", MONDAY.plusDays(dayOffset), 10, 10);
+        db.screenings.put(id, s);
+        rollups.offered(id, movieId, cinemaId, s.getStartsAt(), 100);
+        return s;
+    }
+
+    private Booking book(int screeningId, int viewerId, int seats, double price) {
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < seats; i++) numbers.add(i + 1);
+        Booking b = new Booking(++nextBooking, screeningId, viewerId, numbers, price, MONDAY);
+        bookings.add(b);
+        rollups.booked(List.of(b));
+        return b;
+    }
+
+    private static String row(String dimension, Object key, int dayOffset) {
+        return dimension + "/" + key + "/" + MONDAY.toLocalDate().plusDays(dayOffset);
+    }
+
+    /** What rebuildSalesRollups computes from the screenings and bookings that are left. */
+    private Map<String, List<Long>> rebuilt() {
+        Map<String, long[]> table = new HashMap<>();
+        for (Screening s : db.screenings.values()) {
+            add(table, s, 0, 0, (long) s.getSeatRows() * s.getSeatsPerRow());
+        }
+        for (Booking b : bookings) {
+            Screening s = db.screenings.get(b.getScreeningId());
+            if (s != null) add(table, s, b.getSeats().size(), Math.round(b.getTotalPrice()), 0);
+        }
+        Map<String, List<Long>> rows = new HashMap<>();
+        table.forEach((k, v) -> rows.put(k, List.of(v[0], v[1], v[2])));
+        return rows;
+    }
+
+    private void add(Map<String, long[]> table, Screening s, long tickets, long revenue, long seats) {
+        LocalDate day = s.getStartsAt().toLocalDate();
+        for (String key : List.of(SalesRollups.MOVIE + "/" + s.getMovieId(), SalesRollups.CINEMA + "/" + s.getCinemaId(),
+                SalesRollups.CITY + "/" + db.cinemas.get(s.getCinemaId()).getCity(), SalesRollups.TOTAL + "/")) {
+            long[] row = table.computeIfAbsent(key + "/" + day, x -> new long[3]);
+            row[0] += tickets;
+            row[1] += revenue;
+            row[2] += seats;
+        }
+    }
+
+    @Test
+    void aBookingCountsInEveryDimensionUntilCancelled() {
+        cinema(1, "Almaty");
+        screening(1, 7, 1, 0);
+        Booking b = book(1, 1, 3, 30);
+        rollups.flush();
+
+        Map<String, List<Long>> rows = db.rows();
+        for (String key : List.of(row("movie", 7, 0), row("cinema", 1, 0), row("city", "Almaty", 0), row("total", "", 0))) {
+            assertEquals(List.of(3L, 30L, 100L), rows.get(key), key);
+        }
+        assertEquals(4, rows.size());
+
+        bookings.remove(b);
+        rollups.cancelled(b);
+        rollups.flush();
+        assertEquals(List.of(0L, 0L, 100L), db.rows().get(row("total", "", 0)));
+        assertEquals(rebuilt(), db.rows());
+    }
+
+    @Test
+    void aBatchWhoseCommitWasNotAcknowledgedIsNotCountedTwice() {
+        cinema(1, "Almaty");
+        screening(1, 7, 1, 0);
+        book(1, 1, 2, 20);
+        db.failAfterCommit = true;
+        assertThrows(IllegalStateException.class, rollups::flush);
+        assertTrue(rollups.getPending() > 0, "the batch waits to be retried");
+
+        db.failAfterCommit = false;
+        book(1, 2, 1, 10);
+        rollups.flush();
+        assertEquals(0, rollups.getPending());
+        assertEquals(List.of(3L, 30L, 100L), db.rows().get(row("total", "", 0)));
+        assertEquals(rebuilt(), db.rows());
+    }
+
+    @Test
+    void aBatchThatFailedIsWrittenOnceTheDatabaseIsBack() {
+        cinema(1, "Almaty");
+        screening(1, 7, 1, 0);
+        book(1, 1, 2, 20);
+        db.failBeforeCommit = true;
+        assertThrows(IllegalStateException.class, rollups::flush);
+        book(1, 2, 1, 10);
+        assertThrows(IllegalStateException.class, rollups::flush);
+
+        db.failBeforeCommit = false;
+        rollups.flush();
+        assertEquals(2, db.batches.size(), "the first batch keeps its id; the second holds what came after");
+        assertEquals(rebuilt(), db.rows());
+    }
+
+    @Test
+    void cascadingDeletesLeaveWhatARebuildWouldCompute() {
+        cinema(1, "Almaty");
+        cinema(2, "Astana");
+        screening(1, 7, 1, 0);
+        screening(2, 7, 2, 1);
+        screening(3, 8, 1, 0);
+        screening(4, 8, 2, 1);
+        book(1, 1, 2, 20);
+        book(2, 1, 1, 10);
+        book(3, 2, 4, 40);
+        book(4, 2, 1, 15);
+        Booking cancelled = book(4, 3, 2, 25);
+        rollups.flush();
+        bookings.remove(cancelled);
+        rollups.cancelled(cancelled);
+
+        // movie 7 goes: its screenings with their seats and bookings, as DBmanager reads them before the delete
+        List<SalesRollups.Removal> movie = new ArrayList<>();
+        for (int id : List.of(1, 2)) {
+            Screening s = db.screenings.remove(id);
+            long tickets = 0;
+            double revenue = 0;
+            for (Booking b : bookings) {
+                if (b.getScreeningId() == id) {
+                    tickets += b.getSeats().size();
+                    revenue += b.getTotalPrice();
+                }
+            }
+            movie.add(new SalesRollups.Removal(id, s.getMovieId(), s.getCinemaId(), null, s.getStartsAt(), tickets, revenue, 100));
+        }
+        rollups.removed(movie);
+
+        // viewer 2 goes: only the bookings, the screenings stay; cinema 2's city comes with the removal
+        List<SalesRollups.Removal> viewer = new ArrayList<>();
+        for (Booking b : new ArrayList<>(bookings)) {
+            if (b.getViewerId() != 2) continue;
+            bookings.remove(b);
+            Screening s = db.screenings.get(b.getScreeningId());
+            viewer.add(new SalesRollups.Removal(s.getId(), s.getMovieId(), s.getCinemaId(),
+                    db.cinemas.get(s.getCinemaId()).getCity(), s.getStartsAt(), b.getSeats().size(), b.getTotalPrice(), 0));
+        }
+        rollups.removed(viewer);
+        rollups.flush();
+
+        assertEquals(rebuilt(), db.rows());
+        assertEquals(0, rollups.getMissed());
+    }
+
+    @Test
+    void aRebuildDropsWhatWasNotWritten() {
+        cinema(1, "Almaty");
+        screening(1, 7, 1, 0);
+        book(1, 1, 2, 20);
+        db.failAfterCommit = true;
+        assertThrows(IllegalStateException.class, rollups::flush);
+        book(1, 2, 1, 10);
+
+        db.failAfterCommit = false;
+        rollups.rebuild();
+        assertEquals(0, rollups.getPending());
+        rollups.flush();
+        assertTrue(db.rows().isEmpty());
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchQueryTest {
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void everyWordBecomesALowercasePrefixTerm() {
+        assertEquals("inter:* & st:*", SearchQuery.parse("Inter st", null, null).getTsQuery());
+        assertEquals("алматы:* & 2:*", SearchQuery.parse("  Алматы,2 ", null, null).getTsQuery());
+    }
+
+    @Test
+    void tsqueryOperatorsInTheInputAreOnlySeparators() {
+        assertEquals("a:* & b:* & c:* & d:*", SearchQuery.parse("a&b|!c:*(d)", null, null).getTsQuery());
+        assertEquals("drop:* & table:*", SearchQuery.parse("'); DROP TABLE --", null, null).getTsQuery());
+        assertNull(SearchQuery.parse("!!! ::: &|", null, null).getTsQuery(), "nothing searchable");
+    }
+
+    @Test
+    void onlyTheFirstEightWordsAreUsed() {
+        String tsQuery = SearchQuery.parse("a b c d e f g h i j", null, null).getTsQuery();
+        assertEquals("a:* & b:* & c:* & d:* & e:* & f:* & g:* & h:*", tsQuery);
+    }
+
+    @Test
+    void theCursorCarriesTheRankAndIdOfTheLastRow() {
+        SearchQuery first = SearchQuery.parse("dune", 20, null);
+        assertNull(first.getAfterRank());
+        assertNull(first.getAfterId());
+        assertEquals(20, first.getLimit());
+
+        float rank = 0.0607927f;
+        SearchQuery next = SearchQuery.parse("dune", 20, first.cursor(rank, 42));
+        assertEquals(rank, next.getAfterRank(), 0.0f, "the rank round-trips exactly, so no row is skipped or repeated");
+        assertEquals(Integer.valueOf(42), next.getAfterId());
+        assertEquals("dune:*", next.getTsQuery());
+
+        float tiny = Math.nextUp(0f);
+        assertEquals(tiny, SearchQuery.parse("dune", 20, first.cursor(tiny, 1)).getAfterRank(), 0.0f);
+    }
+
+    @Test
+    void badCursorsAndLimitsAreRejected() {
+        for (String bad : List.of("%%%", encode("rank|0.5"), encode("rank|x|1"), encode("rank|0.5|y"),
+                encode("title|0.5|1"), encode("rank|0.5|1|2"))) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("dune", null, bad), bad);
+            assertEquals("invalid cursor", e.getMessage());
+        }
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("  ", null, null));
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse(null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("dune", 0, null));
+        assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("dune", PageQuery.MAX_LIMIT + 1, null));
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatHoldsTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /** Claims nothing and counts the releases, so holds can be tested without a database. */
+    private static class FakeEngine extends BookingEngine {
+        final AtomicInteger releases = new AtomicInteger();
+        volatile boolean failClaims;
+
+        FakeEngine() {
+            super(null);
+        }
+
+        @Override
+        Claim claim(int screeningId, BookingRequest req) {
+            if (failClaims) throw new SeatUnavailableException(screeningId);
+            return null;
+        }
+
+        @Override
+        void release(Claim claim) {
+            releases.incrementAndGet();
+        }
+    }
+
+    private final FakeEngine engine = new FakeEngine();
+    private SeatHolds holds;
+
+    @AfterEach
+    void close() {
+        if (holds != null) holds.close();
+    }
+
+    @Test
+    void aHoldEndsExactlyOnce() {
+        holds = new SeatHolds(engine, 60, 60, 10, 1000, 8);
+        SeatHold hold = new SeatHold("a", null, SECOND, holds);
+        assertTrue(hold.finish(false));
+        assertFalse(hold.finish(true));
+        assertFalse(hold.extend(SECOND, 10 * SECOND));
+        // the wheel then finds it finished and drops it without releasing again
+        assertTrue(hold.expire());
+        assertEquals(0, engine.releases.get());
+    }
+
+    @Test
+    void extendIsCappedByTheMaximumLifetime() {
+        holds = new SeatHolds(engine, 60, 60, 10, 1000, 8);
+        SeatHold hold = new SeatHold("a", null, SECOND, holds);
+        long created = hold.getDeadlineNanos() - SECOND;
+        assertTrue(hold.extend(10 * SECOND, 3 * SECOND));
+        assertEquals(created + 3 * SECOND, hold.getDeadlineNanos());
+    }
+
+    @Test
+    void anExtendedHoldDoesNotExpireAtItsOldDeadline() {
+        holds = new SeatHolds(engine, 60, 60, 10, 1000, 8);
+        SeatHold hold = new SeatHold("a", null, 0, holds);
+        assertTrue(hold.extend(60 * SECOND, 120 * SECOND));
+        assertFalse(hold.expire());
+        assertTrue(hold.finish(true));
+    }
+
+    @Test
+    void expiryReleasesTheSeatsOnce() throws Exception {
+        holds = new SeatHolds(engine, 1, 1, 10, 10, 8);
+        SeatHold hold = holds.hold(1, new BookingRequest());
+        assertEquals(1, holds.getActive());
+        long deadline = System.nanoTime() + 5 * SECOND;
+        while (holds.getExpired() == 0 && System.nanoTime() < deadline) Thread.sleep(20);
+
+        assertEquals(1, holds.getExpired());
+        assertEquals(1, engine.releases.get());
+        assertEquals(0, holds.getActive());
+        assertThrows(NotFoundException.class, () -> holds.get(hold.getId()));
+        assertThrows(NotFoundException.class, () -> holds.release(hold.getId()));
+    }
+
+    @Test
+    void releaseGivesTheSeatsBackAndFreesTheSlot() {
+        holds = new SeatHolds(engine, 60, 60, 1, 1000, 8);
+        SeatHold hold = holds.hold(1, new BookingRequest());
+        assertThrows(ServiceBusyException.class, () -> holds.hold(1, new BookingRequest()));
+        holds.release(hold.getId());
+        assertEquals(1, engine.releases.get());
+        assertNotNull(holds.hold(1, new BookingRequest()));
+    }
+
+    @Test
+    void holdIdsAreUnguessableAndOnlyTheExactIdReachesAHold() {
+        holds = new SeatHolds(engine, 60, 60, 10, 1000, 8);
+        SeatHold first = holds.hold(1, new BookingRequest());
+        SeatHold second = holds.hold(1, new BookingRequest());
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals(4, UUID.fromString(first.getId()).version(), "random, not sequential");
+
+        String other = first.getId().substring(0, 35) + (first.getId().endsWith("0") ? "1" : "0");
+        assertThrows(NotFoundException.class, () -> holds.release(other));
+        assertThrows(NotFoundException.class, () -> holds.confirm("1"));
+        assertThrows(NotFoundException.class, () -> holds.extend(first.getId() + "0"));
+        assertEquals(0, engine.releases.get());
+        holds.release(first.getId());
+        assertEquals(1, engine.releases.get());
+    }
+
+    @Test
+    void aFailedClaimDoesNotUseUpTheLimit() {
+        holds = new SeatHolds(engine, 60, 60, 1, 1000, 8);
+        engine.failClaims = true;
+        assertThrows(SeatUnavailableException.class, () -> holds.hold(1, new BookingRequest()));
+        engine.failClaims = false;
+        assertNotNull(holds.hold(1, new BookingRequest()));
+    }
+
+    @Test
+    void concurrentHoldsNeverExceedTheLimit() throws Exception {
+        holds = new SeatHolds(engine, 60, 60, 5, 1000, 8);
+        AtomicInteger taken = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            callers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                    holds.hold(1, new BookingRequest());
+                    taken.incrementAndGet();
+                } catch (ServiceBusyException e) {
+                    refused.incrementAndGet();
+                } catch (InterruptedException ignored) {
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread caller : callers) caller.join();
+
+        assertEquals(5, taken.get());
+        assertEquals(59, refused.get());
+        assertEquals(5, holds.getActive());
+    }
+}
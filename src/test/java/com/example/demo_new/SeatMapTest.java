@@ -0,0 +1,93 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatMapTest {
+
+    @Test
+    void claimsAllSeatsOrNone() {
+        SeatMap map = new SeatMap(200);
+        assertTrue(map.tryClaim(new int[]{3, 70, 150}));
+        // 150 is taken, so 10 and 80 in the words before it must be given back
+        assertFalse(map.tryClaim(new int[]{10, 80, 150}));
+        assertFalse(map.isTaken(10));
+        assertFalse(map.isTaken(80));
+        assertEquals(List.of(3, 70, 150), map.taken());
+        assertEquals(197, map.available());
+    }
+
+    @Test
+    void releaseFreesTheSeatsAndRefusesADoubleRelease() {
+        SeatMap map = new SeatMap(100);
+        int[] seats = {0, 63, 64, 99};
+        assertTrue(map.tryClaim(seats));
+        map.release(seats);
+        assertEquals(100, map.available());
+        assertThrows(IllegalStateException.class, () -> map.release(seats));
+        assertTrue(map.tryClaim(seats));
+    }
+
+    @Test
+    void releaseOfPartlyTakenSeatsThrows() {
+        SeatMap map = new SeatMap(64);
+        assertTrue(map.tryClaim(new int[]{1}));
+        assertThrows(IllegalStateException.class, () -> map.release(new int[]{1, 2}));
+    }
+
+    @Test
+    void markTakenAndMarkFreeAreIdempotent() {
+        SeatMap map = new SeatMap(10);
+        map.markTaken(4);
+        map.markTaken(4);
+        assertTrue(map.isTaken(4));
+        assertFalse(map.tryClaim(new int[]{4}));
+        map.markFree(4);
+        map.markFree(4);
+        assertFalse(map.isTaken(4));
+    }
+
+    @Test
+    void resetKeepsTheSeatsTakenInTheOtherMap() {
+        SeatMap map = new SeatMap(130);
+        SeatMap claimed = new SeatMap(130);
+        map.markTaken(1);
+        map.markTaken(129);
+        claimed.markTaken(129);
+        map.reset(List.of(5, 64), claimed);
+        assertEquals(List.of(5, 64, 129), map.taken());
+    }
+
+    @Test
+    void concurrentClaimsOfOneSeatHaveOneWinner() throws Exception {
+        SeatMap map = new SeatMap(256);
+        int threads = 32;
+        AtomicInteger wins = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> buyers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            // every buyer wants seat 100, plus one seat of its own in another word
+            int own = t < 16 ? t : 200 + t;
+            int[] seats = own < 100 ? new int[]{own, 100} : new int[]{100, own};
+            buyers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (map.tryClaim(seats)) wins.incrementAndGet();
+            }));
+        }
+        start.countDown();
+        for (Thread buyer : buyers) buyer.join();
+
+        assertEquals(1, wins.get());
+        assertEquals(254, map.available());
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShowtimeSchedulerTest {
+    private static final OffsetDateTime TOMORROW = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS)
+            .plusDays(1).withHour(12);
+
+    /** Keeps screenings in a list; an exclusion violation can be injected for the next insert. */
+    private static class FakeDb extends DBmanager {
+        final List<ShowtimeScheduler.Placement> rows = new ArrayList<>();
+        final AtomicInteger nextId = new AtomicInteger();
+        final AtomicInteger loads = new AtomicInteger();
+        volatile boolean overlapElsewhere;
+
+        @Override
+        public List<ShowtimeScheduler.Placement> findScheduledScreenings(Collection<Integer> cinemaIds, OffsetDateTime since) {
+            loads.incrementAndGet();
+            return rows.stream().filter(p -> cinemaIds.contains(p.getCinemaId())).toList();
+        }
+
+        @Override
+        public Screening createScreening(ScreeningCreateRequest req, OffsetDateTime endsAt) {
+            if (overlapElsewhere) {
+                overlapElsewhere = false;
+                throw new RuntimeException(new SQLException("conflicting key value violates exclusion constraint", "23P01"));
+            }
+            int id = nextId.incrementAndGet();
+            rows.add(new ShowtimeScheduler.Placement(id, req.getMovieId(), req.getCinemaId(), req.getHall(),
+                    req.getStartsAt(), endsAt, req.getSeatRows(), req.getSeatsPerRow()));
+            return new Screening(id, req.getMovieId(), req.getCinemaId(), req.getHall(), req.getStartsAt(),
+                    req.getSeatRows(), req.getSeatsPerRow());
+        }
+    }
+
+    private final FakeDb db = new FakeDb();
+    private final ShowtimeScheduler scheduler = new ShowtimeScheduler(db, ZoneOffset.UTC,
+            LocalTime.of(10, 0), LocalTime.of(23, 30), 15, 5);
+    private final Movie movie = new Movie(1, "m", "d", 90, 0, 10);
+
+    private static ScreeningCreateRequest request(int cinemaId, String hall, OffsetDateTime startsAt) {
+        ScreeningCreateRequest req = new ScreeningCreateRequest();
+        req.setMovieId(1);
+        req.setCinemaId(cinemaId);
+        req.setHall(hall);
+        req.setStartsAt(startsAt);
+        req.setSeatRows(5);
+        req.setSeatsPerRow(10);
+        return req;
+    }
+
+    @Test
+    void overlapsIncludingTheCleaningGapAreRefused() {
+        scheduler.place(request(1, "A", TOMORROW), movie);
+        // the movie ends at 13:30 and the hall is being cleaned until 13:45
+        assertThrows(ScheduleConflictException.class, () -> scheduler.place(request(1, "A", TOMORROW.plusMinutes(100)), movie));
+        assertNotNull(scheduler.place(request(1, "A", TOMORROW.plusMinutes(105)), movie));
+        assertNotNull(scheduler.place(request(1, "B", TOMORROW), movie), "another hall");
+        assertEquals(1, scheduler.getConflicts());
+    }
+
+    @Test
+    void anOverlapCaughtByTheDatabaseReloadsTheCinema() {
+        scheduler.place(request(1, "A", TOMORROW), movie);
+        assertEquals(1, db.loads.get());
+        db.overlapElsewhere = true;
+        assertThrows(ScheduleConflictException.class, () -> scheduler.place(request(1, "A", TOMORROW.plusHours(3)), movie));
+        assertEquals(1, scheduler.getConflicts());
+
+        // the slot is not left behind, and the schedule is read again
+        assertNotNull(scheduler.place(request(1, "A", TOMORROW.plusHours(3)), movie));
+        assertEquals(2, db.loads.get());
+    }
+
+    @Test
+    void aDeletedScreeningFreesItsSlot() {
+        Screening placed = scheduler.place(request(3, "A", TOMORROW), movie);
+        db.rows.clear(); // deleted by a cascade
+        scheduler.deleted("3:" + placed.getId());
+        assertNotNull(scheduler.place(request(3, "A", TOMORROW), movie));
+
+        scheduler.deleted("garbage");
+        scheduler.deleted("9:1"); // a cinema not loaded here
+    }
+
+    @Test
+    void resetReloadsFromTheDatabase() {
+        scheduler.place(request(1, "A", TOMORROW), movie);
+        db.rows.clear();
+        scheduler.reset();
+        assertNotNull(scheduler.place(request(1, "A", TOMORROW), movie));
+        assertEquals(2, db.loads.get());
+    }
+
+    @Test
+    void aPlannedWeekHasNoOverlapsAndStaysInOpeningHours() {
+        Map<Integer, Map<String, HallSchedule>> schedules = new HashMap<>();
+        HallSchedule busy = new HallSchedule();
+        long existing = TOMORROW.plusHours(2).toEpochSecond();
+        busy.tryPlace(existing, existing + 7200, 99);
+        schedules.put(1, new HashMap<>(Map.of("A", busy, "B", new HallSchedule())));
+        List<Movie> movies = List.of(new Movie(1, "a", "", 120, 0, 10), new Movie(2, "b", "", 95, 0, 10));
+        LocalDate weekStart = TOMORROW.toLocalDate();
+
+        List<ShowtimeScheduler.Placement> planned = scheduler.planWeek(schedules, weekStart, List.of(1), List.of("A", "B"), movies, 5, 10);
+        assertFalse(planned.isEmpty());
+        for (String hall : List.of("A", "B")) {
+            List<ShowtimeScheduler.Placement> inHall = planned.stream().filter(p -> p.getHall().equals(hall))
+                    .sorted(Comparator.comparing(ShowtimeScheduler.Placement::getStartsAt)).toList();
+            for (int i = 1; i < inHall.size(); i++) {
+                assertFalse(inHall.get(i).getStartsAt().isBefore(inHall.get(i - 1).getEndsAt().plusMinutes(15)),
+                        "cleaning gap kept in hall " + hall);
+            }
+            for (ShowtimeScheduler.Placement p : inHall) {
+                assertFalse(p.getStartsAt().toLocalTime().isBefore(LocalTime.of(10, 0)));
+                assertFalse(p.getEndsAt().isAfter(p.getStartsAt().toLocalDate().atTime(23, 30).atOffset(ZoneOffset.UTC)));
+                long start = p.getStartsAt().toEpochSecond();
+                long end = p.getEndsAt().toEpochSecond();
+                if (hall.equals("A")) assertTrue(end + 900 <= existing || start >= existing + 7200, "around the existing screening");
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo_new;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+    private final TimingWheel wheel = new TimingWheel("test-wheel", 5, 8);
+
+    @AfterEach
+    void close() {
+        wheel.close();
+    }
+
+    /** Counts expiries and when the first one happened. */
+    private static class Probe extends TimingWheel.Timeout {
+        final CountDownLatch fired = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        volatile long firedAtNanos;
+
+        Probe(long delayMillis) {
+            super(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        }
+
+        @Override
+        protected boolean expire() {
+            if (calls.incrementAndGet() == 1) firedAtNanos = System.nanoTime();
+            fired.countDown();
+            return true;
+        }
+    }
+
+    @Test
+    void firesOnceAfterTheDeadline() throws Exception {
+        Probe probe = new Probe(30);
+        wheel.schedule(probe);
+        assertTrue(probe.fired.await(2, TimeUnit.SECONDS));
+        assertTrue(probe.firedAtNanos >= probe.getDeadlineNanos(), "fired before its deadline");
+        Thread.sleep(100);
+        assertEquals(1, probe.calls.get());
+    }
+
+    @Test
+    void waitsOutDeadlinesMoreThanOneTurnAway() throws Exception {
+        // 8 slots of 5 ms: 120 ms is three turns
+        Probe probe = new Probe(120);
+        wheel.schedule(probe);
+        assertTrue(probe.fired.await(2, TimeUnit.SECONDS));
+        assertTrue(probe.firedAtNanos >= probe.getDeadlineNanos(), "fired a turn early");
+    }
+
+    @Test
+    void aMovedDeadlineIsRehashed() throws Exception {
+        Probe probe = new Probe(20);
+        wheel.schedule(probe);
+        probe.setDeadlineNanos(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(150));
+        assertTrue(probe.fired.await(2, TimeUnit.SECONDS));
+        assertTrue(probe.firedAtNanos >= probe.getDeadlineNanos(), "fired at the old deadline");
+    }
+
+    @Test
+    void stayingScheduledFiresAgain() throws Exception {
+        CountDownLatch twice = new CountDownLatch(2);
+        wheel.schedule(new TimingWheel.Timeout(System.nanoTime()) {
+            @Override
+            protected boolean expire() {
+                twice.countDown();
+                return twice.getCount() == 0;
+            }
+        });
+        assertTrue(twice.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void aFailingTimeoutDoesNotStopTheWheel() throws Exception {
+        wheel.schedule(new TimingWheel.Timeout(System.nanoTime()) {
+            @Override
+            protected boolean expire() {
+                throw new IllegalStateException("boom");
+            }
+        });
+        Probe probe = new Probe(20);
+        wheel.schedule(probe);
+        assertTrue(probe.fired.await(2, TimeUnit.SECONDS));
+    }
+}